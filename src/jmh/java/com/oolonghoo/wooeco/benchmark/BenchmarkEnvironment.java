@@ -0,0 +1,70 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.api.events.BalanceChangeReason;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import org.bukkit.entity.Player;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 基准测试环境
+ * 使用 MockBukkit 模拟服务器加载插件，数据库为数据目录下的嵌入式 SQLite 文件
+ * 每个 JMH fork 只启动一次，由各基准的 @Setup/@TearDown 调用
+ */
+public final class BenchmarkEnvironment {
+
+    /** 基准账户的初始余额，足够在一次迭代内反复扣款 */
+    public static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000");
+
+    private static ServerMock server;
+    private static WooEco plugin;
+    private static int references;
+
+    private BenchmarkEnvironment() {
+    }
+
+    public static synchronized WooEco start() {
+        if (references++ == 0) {
+            server = MockBukkit.mock();
+            plugin = MockBukkit.load(WooEco.class);
+        }
+        return plugin;
+    }
+
+    public static synchronized void stop() {
+        if (--references == 0) {
+            MockBukkit.unmock();
+            server = null;
+            plugin = null;
+        }
+    }
+
+    /**
+     * 创建一个在线玩家，其账户位于在线缓存中
+     */
+    public static synchronized Player addOnlinePlayer(String name) {
+        Player player = server.addPlayer(name);
+        PlayerAccount account = plugin.getPlayerDataManager().getOrCreateAccount(player.getUniqueId(), name);
+        resetBalance(account.getUuid());
+        return player;
+    }
+
+    /**
+     * 将余额恢复为初始值，每次迭代前调用，避免余额耗尽或触及上限
+     */
+    public static void resetBalance(UUID uuid) {
+        plugin.getEconomyManager().set(uuid, INITIAL_BALANCE, BalanceChangeReason.ADMIN_SET, null, null);
+    }
+
+    /**
+     * 修改配置并刷新税收缓存
+     */
+    public static void setTaxEnabled(boolean enabled) {
+        plugin.getConfig().set("transaction.tax.enabled", enabled);
+        plugin.getTaxManager().cacheTaxReceiver();
+    }
+}
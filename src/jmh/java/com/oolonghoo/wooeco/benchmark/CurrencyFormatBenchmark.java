@@ -0,0 +1,58 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.config.CurrencyConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+
+/**
+ * CurrencyConfig 金额格式化
+ */
+@State(Scope.Benchmark)
+public class CurrencyFormatBenchmark {
+
+    @Param({"0", "1234.5", "98765432.10"})
+    public String amount;
+
+    private CurrencyConfig currencyConfig;
+    private BigDecimal decimalAmount;
+    private double doubleAmount;
+    private long units;
+    private int scale;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        currencyConfig = BenchmarkEnvironment.start().getCurrencyConfig();
+        decimalAmount = new BigDecimal(amount);
+        doubleAmount = decimalAmount.doubleValue();
+        BigDecimal scaled = currencyConfig.formatInput(decimalAmount);
+        units = scaled.unscaledValue().longValueExact();
+        scale = scaled.scale();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public String formatDecimal() {
+        return currencyConfig.format(decimalAmount);
+    }
+
+    @Benchmark
+    public String formatDouble() {
+        return currencyConfig.format(doubleAmount);
+    }
+
+    @Benchmark
+    public String formatUnits() {
+        return currencyConfig.formatUnits(units, scale);
+    }
+}
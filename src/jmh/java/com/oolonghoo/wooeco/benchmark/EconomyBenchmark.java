@@ -0,0 +1,52 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.manager.EconomyManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * EconomyManager 存取款（账户已在在线缓存中）
+ */
+@State(Scope.Benchmark)
+public class EconomyBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    private EconomyManager economyManager;
+    private UUID uuid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WooEco plugin = BenchmarkEnvironment.start();
+        economyManager = plugin.getEconomyManager();
+        uuid = BenchmarkEnvironment.addOnlinePlayer("BenchEconomy").getUniqueId();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBalance() {
+        BenchmarkEnvironment.resetBalance(uuid);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public EconomyManager.EconomyResult deposit() {
+        return economyManager.deposit(uuid, AMOUNT);
+    }
+
+    @Benchmark
+    public EconomyManager.EconomyResult withdraw() {
+        return economyManager.withdraw(uuid, AMOUNT);
+    }
+}
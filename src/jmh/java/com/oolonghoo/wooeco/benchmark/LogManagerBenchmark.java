@@ -0,0 +1,44 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.api.events.BalanceChangeReason;
+import com.oolonghoo.wooeco.manager.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * LogManager 余额变动日志入队（不含后台写库）
+ */
+@State(Scope.Benchmark)
+public class LogManagerBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("10");
+    private static final BigDecimal BEFORE = new BigDecimal("100");
+    private static final BigDecimal AFTER = new BigDecimal("110");
+
+    private LogManager logManager;
+    private UUID uuid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        logManager = BenchmarkEnvironment.start().getLogManager();
+        uuid = UUID.randomUUID();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public void logBalanceChange() {
+        logManager.logBalanceChange(uuid, "BenchLog", "DEPOSIT", AMOUNT, BEFORE, AFTER,
+            null, null, BalanceChangeReason.ADMIN.name());
+    }
+}
@@ -0,0 +1,40 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.hook.PlaceholderAPIHook;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * PlaceholderAPIHook 常用变量解析
+ */
+@State(Scope.Benchmark)
+public class PlaceholderBenchmark {
+
+    @Param({"balance", "balance_formatted", "daily_income", "weekly_income", "top_rank", "top_income_formatted_week_3"})
+    public String identifier;
+
+    private PlaceholderAPIHook hook;
+    private OfflinePlayer player;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hook = new PlaceholderAPIHook(BenchmarkEnvironment.start());
+        player = BenchmarkEnvironment.addOnlinePlayer("BenchPlaceholder");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public String onRequest() {
+        return hook.onRequest(player, identifier);
+    }
+}
@@ -0,0 +1,60 @@
+package com.oolonghoo.wooeco.benchmark;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.manager.TransactionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * TransactionManager 转账，分别测量开启和关闭交易税
+ * 每次调用交换转账方向，使双方余额在一次迭代内保持稳定
+ */
+@State(Scope.Benchmark)
+public class TransactionBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("10");
+
+    @Param({"true", "false"})
+    public boolean taxEnabled;
+
+    private TransactionManager transactionManager;
+    private UUID sender;
+    private UUID receiver;
+    private boolean reversed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WooEco plugin = BenchmarkEnvironment.start();
+        transactionManager = plugin.getTransactionManager();
+        sender = BenchmarkEnvironment.addOnlinePlayer("BenchSender").getUniqueId();
+        receiver = BenchmarkEnvironment.addOnlinePlayer("BenchReceiver").getUniqueId();
+        BenchmarkEnvironment.setTaxEnabled(taxEnabled);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBalances() {
+        BenchmarkEnvironment.resetBalance(sender);
+        BenchmarkEnvironment.resetBalance(receiver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public TransactionManager.TransactionResult transfer() {
+        reversed = !reversed;
+        return reversed
+            ? transactionManager.transfer(receiver, sender, AMOUNT)
+            : transactionManager.transfer(sender, receiver, AMOUNT);
+    }
+}
@@ -0,0 +1,62 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.benchmark.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * RedisSyncManager 同步消息序列化/反序列化（不连接 Redis），对比文本格式与二进制格式
+ * 与被测类同包，以访问包级可见的编解码方法
+ */
+@State(Scope.Benchmark)
+public class RedisSyncBenchmark {
+
+    private RedisSyncManager syncManager;
+    private RedisSyncManager.SyncMessage message;
+    private String encoded;
+    private List<RedisSyncManager.SyncMessage> batch;
+    private byte[] binaryEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        syncManager = new RedisSyncManager(BenchmarkEnvironment.start());
+        message = new RedisSyncManager.SyncMessage(RedisSyncManager.SyncType.BALANCE_UPDATE, "bench",
+            UUID.randomUUID(), "BenchRedis", new BigDecimal("12345.67"), new BigDecimal("89.00"), System.currentTimeMillis(), 42L);
+        encoded = syncManager.serialize(message);
+        batch = List.of(message);
+        binaryEncoded = SyncCodec.encode("bench", batch, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEnvironment.stop();
+    }
+
+    @Benchmark
+    public String serialize() {
+        return syncManager.serialize(message);
+    }
+
+    @Benchmark
+    public RedisSyncManager.SyncMessage deserialize() {
+        return syncManager.deserialize(encoded);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return SyncCodec.encode("bench", batch, null);
+    }
+
+    @Benchmark
+    public List<RedisSyncManager.SyncMessage> decodeBinary() {
+        return SyncCodec.decode(binaryEncoded, null);
+    }
+}
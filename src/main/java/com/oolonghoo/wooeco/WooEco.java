@@ -14,9 +14,12 @@ import com.oolonghoo.wooeco.config.DatabaseConfig;
 import com.oolonghoo.wooeco.config.MessageManager;
 import com.oolonghoo.wooeco.database.DatabaseManager;
 import com.oolonghoo.wooeco.hook.PlaceholderAPIHook;
+import com.oolonghoo.wooeco.hook.PlaceholderRenderCache;
 import com.oolonghoo.wooeco.listener.PlayerJoinListener;
+import com.oolonghoo.wooeco.manager.AccountBatchLoader;
 import com.oolonghoo.wooeco.manager.CooldownManager;
 import com.oolonghoo.wooeco.manager.EconomyManager;
+import com.oolonghoo.wooeco.manager.EconomySnapshotManager;
 import com.oolonghoo.wooeco.manager.GlobalStatsManager;
 import com.oolonghoo.wooeco.manager.LeaderboardManager;
 import com.oolonghoo.wooeco.manager.LogManager;
@@ -24,9 +27,13 @@ import com.oolonghoo.wooeco.manager.NonPlayerAccountManager;
 import com.oolonghoo.wooeco.manager.OfflineTransferManager;
 import com.oolonghoo.wooeco.manager.PayToggleManager;
 import com.oolonghoo.wooeco.manager.PlayerDataManager;
+import com.oolonghoo.wooeco.manager.SharedAccountCache;
 import com.oolonghoo.wooeco.manager.TaxManager;
 import com.oolonghoo.wooeco.manager.TransactionManager;
+import com.oolonghoo.wooeco.manager.TransferCommitWriter;
+import com.oolonghoo.wooeco.manager.WriteBehindManager;
 import com.oolonghoo.wooeco.migration.MigrationManager;
+import com.oolonghoo.wooeco.sync.RedisAccountStore;
 import com.oolonghoo.wooeco.sync.RedisSyncManager;
 import com.oolonghoo.wooeco.util.AsyncUtils;
 import com.oolonghoo.wooeco.util.DebugManager;
@@ -50,6 +57,10 @@ public class WooEco extends JavaPlugin {
     private CurrencyConfig currencyConfig;
     private DatabaseManager databaseManager;
     private PlayerDataManager playerDataManager;
+    private WriteBehindManager writeBehindManager;
+    private TransferCommitWriter transferCommitWriter;
+    private SharedAccountCache sharedAccountCache;
+    private AccountBatchLoader accountBatchLoader;
     private EconomyManager economyManager;
     private TransactionManager transactionManager;
     private TaxManager taxManager;
@@ -58,9 +69,11 @@ public class WooEco extends JavaPlugin {
     private OfflineTransferManager offlineTransferManager;
     private NonPlayerAccountManager nonPlayerAccountManager;
     private GlobalStatsManager globalStatsManager;
+    private EconomySnapshotManager economySnapshotManager;
     private UUIDHandler uuidHandler;
     private RedisSyncManager redisSyncManager;
     private VaultHook vaultHook;
+    private PlaceholderAPIHook placeholderAPIHook;
     private DebugManager debugManager;
     private CommandAliasManager commandAliasManager;
     private CooldownManager cooldownManager;
@@ -111,16 +124,42 @@ public class WooEco extends JavaPlugin {
         debugManager = new DebugManager(this);
         cooldownManager = new CooldownManager(this);
         
+        // 共享账户缓存需在延迟写入之前创建，重放的日志也写入共享缓存
+        if (databaseConfig.isAccountCacheEnabled() && !getConfig().getBoolean("performance.disable-cache", false)) {
+            sharedAccountCache = new SharedAccountCache(this,
+                RedisAccountStore.create(databaseConfig, currencyConfig.getDecimalPlaces()));
+            sharedAccountCache.start();
+            getLogger().info("[WooEco] 共享账户缓存已启用");
+        }
+        
+        // 延迟写入需在玩家数据管理器之前创建，以便先重放上次未刷新的日志
+        if (getConfig().getBoolean("database.write-behind.enabled", true)
+                && !getConfig().getBoolean("performance.disable-cache", false)) {
+            writeBehindManager = new WriteBehindManager(this);
+        }
+        // 共享账户缓存按玩家读取 Redis，不需要批量查库
+        if (sharedAccountCache == null && getConfig().getBoolean("performance.batch-load.enabled", true)
+                && !getConfig().getBoolean("performance.disable-cache", false)) {
+            accountBatchLoader = new AccountBatchLoader(this);
+        }
         playerDataManager = new PlayerDataManager(this);
         logManager = new LogManager(this);
         economyManager = new EconomyManager(this);
         taxManager = new TaxManager(this);
         taxManager.cacheTaxReceiver();
+        if (getConfig().getBoolean("transaction.group-commit.enabled", true)
+                && !getConfig().getBoolean("performance.disable-cache", false)) {
+            transferCommitWriter = new TransferCommitWriter(this);
+        }
         transactionManager = new TransactionManager(this);
         leaderboardManager = new LeaderboardManager(this);
         offlineTransferManager = new OfflineTransferManager(this);
         nonPlayerAccountManager = new NonPlayerAccountManager(this);
         globalStatsManager = new GlobalStatsManager(this);
+        if (getConfig().getBoolean("performance.snapshot.enabled", true)
+                && !getConfig().getBoolean("performance.disable-cache", false)) {
+            economySnapshotManager = new EconomySnapshotManager(this);
+        }
         uuidHandler = new UUIDHandler(this);
         payToggleManager = new PayToggleManager(this);
         migrationManager = new MigrationManager(this);
@@ -143,7 +182,8 @@ public class WooEco extends JavaPlugin {
         }
         
         if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            new PlaceholderAPIHook(this).register();
+            placeholderAPIHook = new PlaceholderAPIHook(this);
+            placeholderAPIHook.register();
         }
         
         WooEcoAPI.initialize(this);
@@ -157,6 +197,10 @@ public class WooEco extends JavaPlugin {
     
     @Override
     public void onDisable() {
+        if (economySnapshotManager != null) {
+            economySnapshotManager.shutdown();
+        }
+
         try {
             if (logManager != null) {
                 logManager.shutdown();
@@ -165,6 +209,22 @@ public class WooEco extends JavaPlugin {
             getLogger().severe("[WooEco] 日志管理器关闭异常: " + e.getMessage());
         }
 
+        try {
+            if (transferCommitWriter != null) {
+                transferCommitWriter.shutdown();
+            }
+        } catch (Exception e) {
+            getLogger().severe("[WooEco] 转账提交写入器关闭异常: " + e.getMessage());
+        }
+
+        try {
+            if (accountBatchLoader != null) {
+                accountBatchLoader.shutdown();
+            }
+        } catch (Exception e) {
+            getLogger().severe("[WooEco] 账户批量加载器关闭异常: " + e.getMessage());
+        }
+
         try {
             if (playerDataManager != null) {
                 playerDataManager.saveAll();
@@ -180,6 +240,22 @@ public class WooEco extends JavaPlugin {
             }
         }
 
+        try {
+            if (writeBehindManager != null) {
+                writeBehindManager.shutdown();
+            }
+        } catch (Exception e) {
+            getLogger().severe("[WooEco] 延迟写入管理器关闭异常: " + e.getMessage());
+        }
+
+        try {
+            if (sharedAccountCache != null) {
+                sharedAccountCache.shutdown();
+            }
+        } catch (Exception e) {
+            getLogger().severe("[WooEco] 共享账户缓存关闭异常: " + e.getMessage());
+        }
+
         try {
             if (nonPlayerAccountManager != null) {
                 nonPlayerAccountManager.saveAll();
@@ -268,11 +344,20 @@ public class WooEco extends JavaPlugin {
         SchedulerUtils.runAsyncTimer(this, () -> {
             if (playerDataManager != null) {
                 playerDataManager.checkDailyReset();
+                playerDataManager.evictIdleOfflineAccounts();
+            }
+            if (economyManager != null) {
+                economyManager.getIncomeCache().evictExpired();
             }
         }, SchedulerUtils.ticksToMs(dailyCheckInterval), SchedulerUtils.ticksToMs(dailyCheckInterval));
 
         scheduleMidnightReset();
 
+        if (economySnapshotManager != null) {
+            long snapshotInterval = Math.max(1L, getConfig().getLong("performance.snapshot.interval-ticks", 1));
+            economySnapshotManager.start(SchedulerUtils.ticksToMs(snapshotInterval));
+        }
+
         long cleanupInterval = 20L * 60 * 60 * 24; // 1 day in ticks
         SchedulerUtils.runAsyncTimer(this, () -> {
             int retentionDays = getConfig().getInt("logging.retention-days", 30);
@@ -328,6 +413,13 @@ public class WooEco extends JavaPlugin {
         if (taxManager != null) {
             taxManager.cacheTaxReceiver();
         }
+        // 货币格式可能已改变
+        if (placeholderAPIHook != null) {
+            placeholderAPIHook.getRenderCache().clear();
+        }
+        if (economySnapshotManager != null) {
+            economySnapshotManager.markAllChanged();
+        }
     }
     
     public static WooEco getInstance() {
@@ -358,6 +450,22 @@ public class WooEco extends JavaPlugin {
         return playerDataManager;
     }
     
+    public WriteBehindManager getWriteBehindManager() {
+        return writeBehindManager;
+    }
+    
+    public TransferCommitWriter getTransferCommitWriter() {
+        return transferCommitWriter;
+    }
+
+    public AccountBatchLoader getAccountBatchLoader() {
+        return accountBatchLoader;
+    }
+    
+    public SharedAccountCache getSharedAccountCache() {
+        return sharedAccountCache;
+    }
+    
     public EconomyManager getEconomyManager() {
         return economyManager;
     }
@@ -378,6 +486,13 @@ public class WooEco extends JavaPlugin {
         return leaderboardManager;
     }
     
+    /**
+     * 在线玩家经济快照，未启用时为 null
+     */
+    public EconomySnapshotManager getEconomySnapshotManager() {
+        return economySnapshotManager;
+    }
+    
     public OfflineTransferManager getOfflineTransferManager() {
         return offlineTransferManager;
     }
@@ -402,6 +517,13 @@ public class WooEco extends JavaPlugin {
         return vaultHook;
     }
     
+    /**
+     * 变量渲染缓存，未安装 PlaceholderAPI 时为 null
+     */
+    public PlaceholderRenderCache getPlaceholderRenderCache() {
+        return placeholderAPIHook != null ? placeholderAPIHook.getRenderCache() : null;
+    }
+    
     public DebugManager getDebugManager() {
         return debugManager;
     }
@@ -2,11 +2,17 @@ package com.oolonghoo.wooeco.api;
 
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.manager.EconomyManager;
+import com.oolonghoo.wooeco.manager.EconomySnapshotManager;
 import com.oolonghoo.wooeco.manager.TransactionManager;
 import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.model.PlayerEconomySnapshot;
 
+import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * WooEco API接口
@@ -33,6 +39,13 @@ import java.util.UUID;
  *         player2.getUniqueId(), 
  *         50.0
  *     );
+ *     
+ *     // 异步存款（推荐，离线玩家的账户加载不会阻塞当前线程）
+ *     WooEcoAPI.depositAsync(player.getUniqueId(), 100.0).thenAccept(asyncResult -> {
+ *         if (asyncResult.isSuccess()) {
+ *             // 回调在 WooEco 的经济线程中执行，操作 Bukkit 对象前需切回对应线程
+ *         }
+ *     });
  * }
  * }</pre>
  * 
@@ -44,7 +57,9 @@ import java.util.UUID;
  * 
  * <h2>线程安全</h2>
  * <p>所有API方法都是线程安全的，可以异步调用。
- * 数据库操作会自动在异步线程中执行，不会阻塞主线程。</p>
+ * 数据库操作会自动在异步线程中执行，同步方法在主线程/区域线程上从不等待数据库：
+ * 未缓存的离线玩家在账户加载完成前余额按 0 返回，存款在加载完成后补记，取款和设置余额返回失败；
+ * 在其他线程上调用时最多等待 performance.async-timeout 秒。需要离线玩家准确结果时请使用 *Async 方法。</p>
  * 
  */
 public class WooEcoAPI {
@@ -192,6 +207,59 @@ public class WooEcoAPI {
         return instance.getTransactionManager().transfer(from, to, amount);
     }
     
+    /**
+     * 异步获取玩家余额
+     * 
+     * @param uuid 玩家UUID
+     * @return 完成时包含余额的操作结果，玩家不存在时为失败结果
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static CompletableFuture<EconomyManager.EconomyResult> getBalanceAsync(UUID uuid) {
+        checkLoaded();
+        return instance.getEconomyManager().getBalanceAsync(uuid);
+    }
+    
+    /**
+     * 异步向玩家账户存入金额，离线玩家的账户在后台加载，调用线程不会被阻塞
+     * 
+     * @param uuid 玩家UUID
+     * @param amount 存入金额（必须大于0）
+     * @return 完成时包含操作结果
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static CompletableFuture<EconomyManager.EconomyResult> depositAsync(UUID uuid, double amount) {
+        checkLoaded();
+        return instance.getEconomyManager().depositAsync(uuid, BigDecimal.valueOf(amount));
+    }
+    
+    /**
+     * 异步从玩家账户扣除金额，离线玩家的账户在后台加载，调用线程不会被阻塞
+     * 
+     * @param uuid 玩家UUID
+     * @param amount 扣除金额（必须大于0）
+     * @return 完成时包含操作结果
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static CompletableFuture<EconomyManager.EconomyResult> withdrawAsync(UUID uuid, double amount) {
+        checkLoaded();
+        return instance.getEconomyManager().withdrawAsync(uuid, BigDecimal.valueOf(amount));
+    }
+    
+    /**
+     * 异步在两个玩家之间转账
+     * 
+     * @param from 发送者UUID
+     * @param to 接收者UUID
+     * @param amount 转账金额（必须大于0）
+     * @return 完成时包含操作结果，包括实际转账金额、税费等信息；启用组提交时在写入数据库后完成，
+     *         写入失败时以 TransferCommitWriter.CommitFailedException 异常完成（转账已生效，不要重试）
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static CompletableFuture<TransactionManager.TransactionResult> transferAsync(UUID from, UUID to, double amount) {
+        checkLoaded();
+        return instance.getTransactionManager().transferAsync(from, to, BigDecimal.valueOf(amount));
+    }
+    
     /**
      * 获取玩家今日收入
      * 
@@ -274,6 +342,32 @@ public class WooEcoAPI {
         return instance.getLeaderboardManager().getIncomeTop(1, limit);
     }
     
+    /**
+     * 获取在线玩家的经济快照（余额、格式化余额、日/周/月收入、余额排名）
+     * 快照每 tick 更新，最多落后实际余额一个刷新间隔；适合计分板等每 tick 读取所有在线玩家的场景
+     * 
+     * @return 不可修改的 UUID -> 快照映射，快照未启用时为空
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static Map<UUID, PlayerEconomySnapshot> getEconomySnapshots() {
+        checkLoaded();
+        EconomySnapshotManager snapshotManager = instance.getEconomySnapshotManager();
+        return snapshotManager != null ? snapshotManager.getSnapshots() : Collections.emptyMap();
+    }
+    
+    /**
+     * 获取单个在线玩家的经济快照
+     * 
+     * @param uuid 玩家UUID
+     * @return 玩家快照，玩家不在线、账户尚未加载或快照未启用时返回null
+     * @throws IllegalStateException 如果插件未加载
+     */
+    public static PlayerEconomySnapshot getEconomySnapshot(UUID uuid) {
+        checkLoaded();
+        EconomySnapshotManager snapshotManager = instance.getEconomySnapshotManager();
+        return snapshotManager != null ? snapshotManager.get(uuid) : null;
+    }
+    
     private static void checkLoaded() {
         if (!isLoaded()) {
             throw new IllegalStateException("WooEco is not loaded!");
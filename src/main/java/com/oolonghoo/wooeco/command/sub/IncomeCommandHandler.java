@@ -6,6 +6,7 @@ import com.oolonghoo.wooeco.manager.EconomyManager;
 import com.oolonghoo.wooeco.manager.PlayerDataManager;
 import com.oolonghoo.wooeco.model.IncomePeriod;
 import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.util.SchedulerUtils;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
@@ -15,6 +16,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class IncomeCommandHandler extends AbstractSubCommandHandler {
     
@@ -84,11 +86,23 @@ public class IncomeCommandHandler extends AbstractSubCommandHandler {
             playerName = player.getName();
         }
         
-        BigDecimal income = getIncome(uuid, period);
-        String formatted = plugin.getCurrencyConfig().format(income);
         String messageKey = getMessageKey(period, targetName != null);
+        boolean isOther = targetName != null;
+        CompletableFuture<BigDecimal> income = getIncome(uuid, period);
+        if (income.isDone()) {
+            sendIncome(sender, messageKey, isOther, playerName, income.join());
+        } else {
+            // 周/月收入尚未缓存，加载完成后回到发送者所在线程回复
+            income.thenAccept(value -> runForSender(sender,
+                () -> sendIncome(sender, messageKey, isOther, playerName, value)));
+        }
         
-        if (targetName != null) {
+        return true;
+    }
+    
+    private void sendIncome(CommandSender sender, String messageKey, boolean isOther, String playerName, BigDecimal income) {
+        String formatted = plugin.getCurrencyConfig().format(income);
+        if (isOther) {
             messages.send(sender, messageKey, Map.of(
                 "player", playerName,
                 "symbol", messages.getSymbol(),
@@ -100,18 +114,23 @@ public class IncomeCommandHandler extends AbstractSubCommandHandler {
                 "income", formatted
             ));
         }
-        
-        return true;
     }
     
-    private BigDecimal getIncome(UUID uuid, IncomePeriod period) {
+    private void runForSender(CommandSender sender, Runnable task) {
+        if (sender instanceof Player p) {
+            SchedulerUtils.runForEntity(plugin, p, task);
+        } else {
+            SchedulerUtils.runGlobal(plugin, task);
+        }
+    }
+    
+    private CompletableFuture<BigDecimal> getIncome(UUID uuid, IncomePeriod period) {
         switch (period) {
             case WEEK:
-                return economyManager.getWeeklyIncomeDecimalCached(uuid);
             case MONTH:
-                return economyManager.getMonthlyIncomeDecimalCached(uuid);
+                return economyManager.getIncomeCache().get(uuid, period);
             default:
-                return economyManager.getDailyIncomeDecimal(uuid);
+                return CompletableFuture.completedFuture(economyManager.getDailyIncomeDecimal(uuid));
         }
     }
     
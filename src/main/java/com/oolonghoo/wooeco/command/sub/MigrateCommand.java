@@ -3,8 +3,10 @@ package com.oolonghoo.wooeco.command.sub;
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.command.AbstractSubCommandHandler;
 import com.oolonghoo.wooeco.migration.MigrationResult;
+import com.oolonghoo.wooeco.util.SchedulerUtils;
 import org.bukkit.command.CommandSender;
 
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +68,10 @@ public class MigrateCommand extends AbstractSubCommandHandler {
                 }
                 break;
 
+            case "income-rollup":
+                backfillIncomeRollup(sender);
+                break;
+
             default:
                 sendUsage(sender);
                 break;
@@ -74,6 +80,27 @@ public class MigrateCommand extends AbstractSubCommandHandler {
         return true;
     }
 
+    /**
+     * 从日志重建收入日汇总表（数据库升级时已自动回填，用于数据不一致时手动修复）
+     */
+    private void backfillIncomeRollup(CommandSender sender) {
+        messages.send(sender, "migration.rollup-start");
+        SchedulerUtils.runAsync(plugin, () -> {
+            long start = System.currentTimeMillis();
+            try {
+                int rows = plugin.getDatabaseManager().getLogDAO().backfillIncomeDaily();
+                plugin.getLeaderboardManager().refreshCache();
+                messages.send(sender, "migration.rollup-completed", Map.of(
+                    "rows", String.valueOf(rows),
+                    "time", String.valueOf(System.currentTimeMillis() - start)
+                ));
+            } catch (SQLException e) {
+                plugin.getLogger().severe(String.format("回填收入汇总失败：%s", e.getMessage()));
+                messages.send(sender, "migration.rollup-failed", Map.of("error", e.getMessage()));
+            }
+        });
+    }
+
     private void sendUsage(CommandSender sender) {
         messages.send(sender, "migration.usage");
     }
@@ -114,7 +141,7 @@ public class MigrateCommand extends AbstractSubCommandHandler {
     @Override
     public List<String> tabComplete(CommandSender sender, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("vault", "xconomy", "status");
+            return Arrays.asList("vault", "xconomy", "status", "income-rollup");
         }
         if (args.length == 2) {
             return Arrays.asList("--dry-run");
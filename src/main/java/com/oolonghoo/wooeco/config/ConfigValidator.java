@@ -167,6 +167,11 @@ public class ConfigValidator {
         if (autoSave < 30) {
             warnings.add("database.auto-save 建议至少为30秒，当前为: " + autoSave);
         }
+        
+        long flushInterval = config.getLong("database.write-behind.flush-interval-ms", 2000);
+        if (flushInterval > 60000) {
+            warnings.add("database.write-behind.flush-interval-ms 过大，崩溃恢复前数据库中的余额可能长时间滞后，当前为: " + flushInterval);
+        }
     }
     
     private void validatePerformance(FileConfiguration config) {
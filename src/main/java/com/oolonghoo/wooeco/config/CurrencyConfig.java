@@ -1,6 +1,7 @@
 package com.oolonghoo.wooeco.config;
 
 import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.util.FixedPoint;
 import org.bukkit.configuration.ConfigurationSection;
 
 import java.math.BigDecimal;
@@ -28,6 +29,12 @@ public class CurrencyConfig {
     private String displayFormat;
     private boolean formatBalanceEnabled;
     private TreeMap<Double, String> formatBalanceThresholds;
+    private BigDecimal maxBalanceDecimal;
+    /** 定点模式下以最小货币单位表示的最大余额 */
+    private long maxBalanceUnits;
+    private boolean fixedPointConfigured;
+    private RoundingMode rounding;
+    private CurrencyFormatter formatter;
     
     public CurrencyConfig(WooEco plugin) {
         this.plugin = plugin;
@@ -38,9 +45,48 @@ public class CurrencyConfig {
         ConfigurationSection section = plugin.getConfig().getConfigurationSection("currency");
         if (section == null) {
             setDefaults();
-            return;
+        } else {
+            loadSection(section);
         }
-        
+        this.maxBalanceDecimal = BigDecimal.valueOf(maxBalance);
+        this.rounding = switch (roundingMode) {
+            case 1 -> RoundingMode.UP;
+            case 2 -> RoundingMode.HALF_UP;
+            default -> RoundingMode.DOWN;
+        };
+        this.formatter = new CurrencyFormatter(this, rounding);
+        configureFixedPoint();
+    }
+    
+    /**
+     * 定点余额只在首次加载时启用，账户创建后小数位数不能再变
+     */
+    private void configureFixedPoint() {
+        int places = integerBalance ? 0 : decimalPlaces;
+        if (!fixedPointConfigured) {
+            fixedPointConfigured = true;
+            if (plugin.getConfig().getBoolean("performance.fixed-point.enabled", false)) {
+                if (FixedPoint.enable(places, maxBalanceDecimal)) {
+                    plugin.getLogger().info(String.format("已启用定点余额（%d 位小数）", places));
+                } else {
+                    plugin.getLogger().warning("最大余额换算为最小货币单位后超出 long 范围，未启用定点余额");
+                }
+            } else {
+                FixedPoint.disable();
+            }
+        } else if (FixedPoint.isEnabled() && FixedPoint.getScale() != places) {
+            plugin.getLogger().warning("定点余额的小数位数在启动时确定，修改小数位数需重启服务器后生效");
+        }
+        if (FixedPoint.isEnabled()) {
+            try {
+                this.maxBalanceUnits = FixedPoint.toUnits(maxBalanceDecimal, FixedPoint.getScale());
+            } catch (ArithmeticException e) {
+                this.maxBalanceUnits = Long.MAX_VALUE;
+            }
+        }
+    }
+    
+    private void loadSection(ConfigurationSection section) {
         this.singularName = section.getString("singular-name", "金币");
         this.pluralName = section.getString("plural-name", "金币");
         this.symbol = section.getString("symbol", "&e￥&r");
@@ -110,44 +156,14 @@ public class CurrencyConfig {
     }
     
     public String format(BigDecimal amount) {
-        RoundingMode rm = switch (roundingMode) {
-            case 1 -> RoundingMode.UP;
-            case 2 -> RoundingMode.HALF_UP;
-            default -> RoundingMode.DOWN;
-        };
-        
-        int places = integerBalance ? 0 : decimalPlaces;
-        BigDecimal bd = amount.setScale(places, rm);
-        
-        if (formatBalanceEnabled) {
-            for (Map.Entry<Double, String> entry : formatBalanceThresholds.entrySet()) {
-                if (bd.compareTo(BigDecimal.valueOf(entry.getKey())) >= 0) {
-                    BigDecimal divisor = BigDecimal.valueOf(entry.getKey());
-                    int abbrPlaces = integerBalance ? 0 : Math.min(decimalPlaces, 2);
-                    BigDecimal abbreviated = bd.divide(divisor, abbrPlaces, rm);
-                    return abbreviated.setScale(abbrPlaces, rm).toPlainString() + entry.getValue();
-                }
-            }
-        }
-        
-        if (integerBalance) {
-            return bd.toPlainString();
-        }
-        
-        String plain = bd.toPlainString();
-        int dotIdx = plain.indexOf('.');
-        String intPart = dotIdx >= 0 ? plain.substring(0, dotIdx) : plain;
-        String decPart = dotIdx >= 0 ? plain.substring(dotIdx) : "";
-        
-        StringBuilder sb = new StringBuilder();
-        int len = intPart.length();
-        for (int i = 0; i < len; i++) {
-            if (i > 0 && (len - i) % 3 == 0) {
-                sb.append(thousandsSeparator);
-            }
-            sb.append(intPart.charAt(i));
-        }
-        return sb.append(decPart).toString();
+        return formatter.format(amount);
+    }
+    
+    /**
+     * 格式化以最小货币单位表示的金额（定点余额）
+     */
+    public String formatUnits(long units, int scale) {
+        return formatter.format(units, scale);
     }
     
     public String format(double amount) {
@@ -162,12 +178,7 @@ public class CurrencyConfig {
     }
     
     public String formatDisplay(double amount) {
-        String balanceStr = format(amount);
-        String currencyName = Math.abs(amount - 1) < 0.001 ? singularName : pluralName;
-        
-        return displayFormat
-            .replace("%balance%", balanceStr)
-            .replace("%currencyname%", currencyName);
+        return formatter.formatDisplay(amount);
     }
     
     public String formatDisplayWithColor(double amount) {
@@ -236,12 +247,7 @@ public class CurrencyConfig {
     
     public BigDecimal formatInput(BigDecimal amount) {
         int places = integerBalance ? 0 : decimalPlaces;
-        RoundingMode rm = switch (roundingMode) {
-            case 1 -> RoundingMode.UP;
-            case 2 -> RoundingMode.HALF_UP;
-            default -> RoundingMode.DOWN;
-        };
-        return amount.setScale(places, rm);
+        return amount.setScale(places, rounding);
     }
 
     public BigDecimal formatInput(double amount) {
@@ -249,7 +255,14 @@ public class CurrencyConfig {
     }
 
     public BigDecimal getMaxBalanceBigDecimal() {
-        return BigDecimal.valueOf(maxBalance);
+        return maxBalanceDecimal;
+    }
+
+    /**
+     * 以最小货币单位表示的最大余额，仅定点模式有效
+     */
+    public long getMaxBalanceUnits() {
+        return maxBalanceUnits;
     }
 
     public TreeMap<Double, String> getFormatBalanceThresholds() {
@@ -0,0 +1,293 @@
+package com.oolonghoo.wooeco.config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的金额格式化器
+ * 由 CurrencyConfig.load() 按当前配置构建一次：缩写阈值预先换算为最小货币单位，display-format 模板预先拆分，
+ * 格式化时把金额换算为 long 最小单位数后直接写入线程本地的字符缓冲区，只在最后创建结果字符串；
+ * 超出 long 范围的金额或无法预先换算的阈值配置走 BigDecimal 路径
+ */
+final class CurrencyFormatter {
+
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** 无法以 long 表示时的最小单位数 */
+    private static final long NOT_COMPACT = Long.MIN_VALUE;
+
+    private static final int LITERAL = 0;
+    private static final int BALANCE = 1;
+    private static final int CURRENCY_NAME = 2;
+
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private final int places;
+    private final RoundingMode rounding;
+    private final boolean integerBalance;
+    private final String separator;
+    private final boolean abbreviate;
+    private final int abbrPlaces;
+    private final String singularName;
+    private final String pluralName;
+
+    /** 缩写阈值（BigDecimal 路径），与配置的 TreeMap 顺序一致 */
+    private final BigDecimal[] thresholds;
+    private final String[] suffixes;
+    /** 阈值的最小单位数；超出 long 范围的阈值任何 long 金额都达不到，记为 Long.MAX_VALUE 之后跳过 */
+    private final long[] thresholdUnits;
+    /** 最小单位数除以它得到保留 abbrPlaces 位小数的缩写值 */
+    private final long[] abbrDivisors;
+    /** 能否走 long 路径：小数位数在 long 范围内且阈值均为正整数 */
+    private final boolean compact;
+
+    /** display-format 拆分后的片段及其类型 */
+    private final String[] segments;
+    private final int[] kinds;
+
+    CurrencyFormatter(CurrencyConfig config, RoundingMode rounding) {
+        this.integerBalance = config.isIntegerBalance();
+        this.places = integerBalance ? 0 : config.getDecimalPlaces();
+        this.rounding = rounding;
+        this.separator = config.getThousandsSeparator();
+        this.abbreviate = config.isFormatBalanceEnabled();
+        this.abbrPlaces = integerBalance ? 0 : Math.min(config.getDecimalPlaces(), 2);
+        this.singularName = config.getSingularName();
+        this.pluralName = config.getPluralName();
+
+        Map<Double, String> configured = config.getFormatBalanceThresholds();
+        int size = abbreviate ? configured.size() : 0;
+        this.thresholds = new BigDecimal[size];
+        this.suffixes = new String[size];
+        this.thresholdUnits = new long[size];
+        this.abbrDivisors = new long[size];
+        boolean allCompact = places >= 0 && places < POW10.length && abbrPlaces >= 0;
+        if (size > 0) {
+            int i = 0;
+            for (Map.Entry<Double, String> entry : configured.entrySet()) {
+                double threshold = entry.getKey();
+                thresholds[i] = BigDecimal.valueOf(threshold);
+                suffixes[i] = String.valueOf(entry.getValue());
+                if (allCompact && threshold >= 1 && threshold < 0x1p63 && threshold == Math.rint(threshold)) {
+                    long whole = (long) threshold;
+                    try {
+                        thresholdUnits[i] = Math.multiplyExact(whole, POW10[places]);
+                        abbrDivisors[i] = whole * POW10[places - abbrPlaces];
+                    } catch (ArithmeticException e) {
+                        thresholdUnits[i] = Long.MAX_VALUE;
+                        abbrDivisors[i] = 0;
+                    }
+                } else {
+                    allCompact = false;
+                }
+                i++;
+            }
+        }
+        this.compact = allCompact;
+
+        List<String> parts = new ArrayList<>();
+        List<Integer> partKinds = new ArrayList<>();
+        String[] balanceSplit = config.getDisplayFormat().split("%balance%", -1);
+        for (int i = 0; i < balanceSplit.length; i++) {
+            if (i > 0) {
+                parts.add(null);
+                partKinds.add(BALANCE);
+            }
+            String[] nameSplit = balanceSplit[i].split("%currencyname%", -1);
+            for (int j = 0; j < nameSplit.length; j++) {
+                if (j > 0) {
+                    parts.add(null);
+                    partKinds.add(CURRENCY_NAME);
+                }
+                if (!nameSplit[j].isEmpty()) {
+                    parts.add(nameSplit[j]);
+                    partKinds.add(LITERAL);
+                }
+            }
+        }
+        this.segments = parts.toArray(new String[0]);
+        this.kinds = partKinds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    String format(BigDecimal amount) {
+        BigDecimal scaled = amount.setScale(places, rounding);
+        long units = toUnits(scaled);
+        if (units == NOT_COMPACT) {
+            return formatDecimal(scaled);
+        }
+        Buffer buffer = BUFFER.get();
+        buffer.length = 0;
+        appendUnits(buffer, units);
+        return buffer.toString();
+    }
+
+    /**
+     * 直接格式化最小单位数；小数位数与配置一致时不经过 BigDecimal
+     */
+    String format(long units, int scale) {
+        if (!compact || scale != places || units == NOT_COMPACT) {
+            return format(BigDecimal.valueOf(units, scale));
+        }
+        Buffer buffer = BUFFER.get();
+        buffer.length = 0;
+        appendUnits(buffer, units);
+        return buffer.toString();
+    }
+
+    String formatDisplay(double amount) {
+        BigDecimal scaled = BigDecimal.valueOf(integerBalance ? Math.round(amount) : amount).setScale(places, rounding);
+        long units = toUnits(scaled);
+        String currencyName = Math.abs(amount - 1) < 0.001 ? singularName : pluralName;
+
+        Buffer buffer = BUFFER.get();
+        buffer.length = 0;
+        for (int i = 0; i < segments.length; i++) {
+            switch (kinds[i]) {
+                case BALANCE -> {
+                    if (units == NOT_COMPACT) {
+                        buffer.append(formatDecimal(scaled));
+                    } else {
+                        appendUnits(buffer, units);
+                    }
+                }
+                case CURRENCY_NAME -> buffer.append(currencyName);
+                default -> buffer.append(segments[i]);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private long toUnits(BigDecimal scaled) {
+        if (!compact) {
+            return NOT_COMPACT;
+        }
+        BigInteger unscaled = scaled.unscaledValue();
+        return unscaled.bitLength() < 64 ? unscaled.longValue() : NOT_COMPACT;
+    }
+
+    private void appendUnits(Buffer buffer, long units) {
+        for (int i = 0; i < thresholdUnits.length; i++) {
+            if (abbrDivisors[i] != 0 && units >= thresholdUnits[i]) {
+                long divisor = abbrDivisors[i];
+                long quotient = units / divisor;
+                long remainder = units % divisor;
+                if (remainder != 0) {
+                    if (rounding == RoundingMode.UP || (rounding == RoundingMode.HALF_UP && remainder >= divisor - remainder)) {
+                        quotient++;
+                    }
+                }
+                appendNumber(buffer, quotient, abbrPlaces, false);
+                buffer.append(suffixes[i]);
+                return;
+            }
+        }
+        appendNumber(buffer, units, places, !integerBalance);
+    }
+
+    /**
+     * 写入 value / 10^scale，小数部分补足 scale 位；grouping 时整数部分按三位插入千分位分隔符
+     */
+    private void appendNumber(Buffer buffer, long value, int scale, boolean grouping) {
+        boolean negative = value < 0;
+        long magnitude = Math.abs(value);
+
+        int digits = 1;
+        for (long v = magnitude / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int intDigits = Math.max(1, digits - scale);
+        int separators = grouping ? (intDigits - 1) / 3 : 0;
+        int total = (negative ? 1 : 0) + intDigits + separators * separator.length() + (scale > 0 ? scale + 1 : 0);
+        buffer.ensure(total);
+
+        char[] chars = buffer.chars;
+        int pos = buffer.length + total;
+        for (int i = 0; i < scale; i++) {
+            chars[--pos] = (char) ('0' + magnitude % 10);
+            magnitude /= 10;
+        }
+        if (scale > 0) {
+            chars[--pos] = '.';
+        }
+        for (int i = 0; i < intDigits; i++) {
+            if (i > 0 && i % 3 == 0 && grouping) {
+                pos -= separator.length();
+                separator.getChars(0, separator.length(), chars, pos);
+            }
+            chars[--pos] = (char) ('0' + magnitude % 10);
+            magnitude /= 10;
+        }
+        if (negative) {
+            chars[--pos] = '-';
+        }
+        buffer.length += total;
+    }
+
+    /**
+     * BigDecimal 路径，scaled 已按配置的小数位数舍入
+     */
+    private String formatDecimal(BigDecimal scaled) {
+        for (int i = 0; i < thresholds.length; i++) {
+            if (scaled.compareTo(thresholds[i]) >= 0) {
+                return scaled.divide(thresholds[i], abbrPlaces, rounding).toPlainString() + suffixes[i];
+            }
+        }
+
+        String plain = scaled.toPlainString();
+        if (integerBalance) {
+            return plain;
+        }
+
+        int start = plain.startsWith("-") ? 1 : 0;
+        int dotIdx = plain.indexOf('.');
+        int intEnd = dotIdx >= 0 ? dotIdx : plain.length();
+
+        StringBuilder sb = new StringBuilder(plain.length() + (intEnd - start) / 3 * separator.length());
+        sb.append(plain, 0, start);
+        int len = intEnd - start;
+        for (int i = 0; i < len; i++) {
+            if (i > 0 && (len - i) % 3 == 0) {
+                sb.append(separator);
+            }
+            sb.append(plain.charAt(start + i));
+        }
+        return sb.append(plain, intEnd, plain.length()).toString();
+    }
+
+    /**
+     * 可复用的字符缓冲区，每个线程一份
+     */
+    private static final class Buffer {
+        char[] chars = new char[64];
+        int length;
+
+        void ensure(int extra) {
+            if (length + extra > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + extra));
+            }
+        }
+
+        void append(String s) {
+            ensure(s.length());
+            s.getChars(0, s.length(), chars, length);
+            length += s.length();
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
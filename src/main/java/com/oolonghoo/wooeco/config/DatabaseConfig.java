@@ -30,7 +30,19 @@ public class DatabaseConfig {
     private String redisPassword;
     private String redisChannel;
     private String redisAuthKey;
+    private int redisAuthKeyGraceSeconds;
     private String serverId;
+    private int publishMaxBatch;
+    private long publishMaxDelayMs;
+    private boolean binaryWireFormat;
+    private boolean deltaSync;
+    private int deltaSeenCapacity;
+    private boolean accountCacheEnabled;
+    private String accountCacheKeyPrefix;
+    private long accountCacheTtlSeconds;
+    private long accountCacheLeaseMs;
+    private long accountCacheFlushIntervalMs;
+    private int accountCacheBatchSize;
     
     private UUIDMode uuidMode;
     private boolean usernameIgnoreCase;
@@ -87,9 +99,22 @@ public class DatabaseConfig {
                 this.redisPassword = redisSection.getString("password", "");
                 this.redisChannel = redisSection.getString("channel", "wooeco:sync");
                 this.redisAuthKey = redisSection.getString("auth-key", "");
+                this.redisAuthKeyGraceSeconds = Math.max(0, redisSection.getInt("auth-key-grace-seconds", 60));
             } else {
                 setRedisDefaults();
             }
+            
+            this.publishMaxBatch = syncSection.getInt("publish.max-batch", 500);
+            this.publishMaxDelayMs = syncSection.getLong("publish.max-delay-ms", 5);
+            this.binaryWireFormat = !"text".equalsIgnoreCase(syncSection.getString("wire-format", "binary"));
+            this.deltaSync = syncSection.getBoolean("delta.enable", false);
+            this.deltaSeenCapacity = Math.max(100, syncSection.getInt("delta.seen-capacity", 10000));
+            this.accountCacheEnabled = syncSection.getBoolean("account-cache.enable", false);
+            this.accountCacheKeyPrefix = syncSection.getString("account-cache.key-prefix", "wooeco:");
+            this.accountCacheTtlSeconds = syncSection.getLong("account-cache.ttl-seconds", 86400);
+            this.accountCacheLeaseMs = Math.max(1000L, syncSection.getLong("account-cache.writer.lease-ms", 10000));
+            this.accountCacheFlushIntervalMs = Math.max(100L, syncSection.getLong("account-cache.writer.flush-interval-ms", 1000));
+            this.accountCacheBatchSize = Math.max(1, syncSection.getInt("account-cache.writer.batch-size", 500));
         } else {
             setSyncDefaults();
         }
@@ -146,11 +171,23 @@ public class DatabaseConfig {
         this.redisPassword = "";
         this.redisChannel = "wooeco:sync";
         this.redisAuthKey = "";
+        this.redisAuthKeyGraceSeconds = 60;
     }
     
     private void setSyncDefaults() {
         this.syncEnabled = false;
         this.serverId = "server-1";
+        this.publishMaxBatch = 500;
+        this.publishMaxDelayMs = 5;
+        this.binaryWireFormat = true;
+        this.deltaSync = false;
+        this.deltaSeenCapacity = 10000;
+        this.accountCacheEnabled = false;
+        this.accountCacheKeyPrefix = "wooeco:";
+        this.accountCacheTtlSeconds = 86400;
+        this.accountCacheLeaseMs = 10000;
+        this.accountCacheFlushIntervalMs = 1000;
+        this.accountCacheBatchSize = 500;
         setRedisDefaults();
     }
     
@@ -222,10 +259,58 @@ public class DatabaseConfig {
         return redisAuthKey;
     }
     
+    public int getRedisAuthKeyGraceSeconds() {
+        return redisAuthKeyGraceSeconds;
+    }
+    
     public String getServerId() {
         return serverId;
     }
     
+    public int getPublishMaxBatch() {
+        return publishMaxBatch;
+    }
+    
+    public long getPublishMaxDelayMs() {
+        return publishMaxDelayMs;
+    }
+    
+    public boolean isBinaryWireFormat() {
+        return binaryWireFormat;
+    }
+    
+    public boolean isDeltaSync() {
+        return deltaSync;
+    }
+    
+    public int getDeltaSeenCapacity() {
+        return deltaSeenCapacity;
+    }
+    
+    public boolean isAccountCacheEnabled() {
+        return syncEnabled && accountCacheEnabled;
+    }
+    
+    public String getAccountCacheKeyPrefix() {
+        return accountCacheKeyPrefix;
+    }
+    
+    public long getAccountCacheTtlSeconds() {
+        return accountCacheTtlSeconds;
+    }
+    
+    public long getAccountCacheLeaseMs() {
+        return accountCacheLeaseMs;
+    }
+    
+    public long getAccountCacheFlushIntervalMs() {
+        return accountCacheFlushIntervalMs;
+    }
+    
+    public int getAccountCacheBatchSize() {
+        return accountCacheBatchSize;
+    }
+    
     public UUIDMode getUuidMode() {
         return uuidMode;
     }
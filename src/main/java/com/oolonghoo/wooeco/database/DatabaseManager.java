@@ -16,21 +16,41 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 数据库管理器
  * 支持 SQLite 和 MySQL，使用 HikariCP 连接池
+ * MySQL 下账户写操作按 UUID 分段加锁，不同账户可并发使用连接池；
+ * 全表操作（批量给予/重置、表结构升级）持有全局锁，与所有分段互斥
  * 
  */
 public class DatabaseManager {
     
+    /** 分段数量，必须为 2 的幂 */
+    private static final int LOCK_STRIPES = 64;
+    
     private final WooEco plugin;
     private final DatabaseConfig config;
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    
+    /** 单账户写操作持有读锁，全表操作持有写锁 */
+    private final ReentrantReadWriteLock bulkLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    
+    /** 获取锁时需要等待的次数，用于确认并发是否真正生效 */
+    private final AtomicLong lockContention = new AtomicLong();
+    private final AtomicLong lockAcquisitions = new AtomicLong();
+    private final AtomicInteger activeWriters = new AtomicInteger();
+    private final AtomicInteger peakActiveWriters = new AtomicInteger();
     
     private static final Lock NO_OP_LOCK = new Lock() {
         @Override public void lock() {}
@@ -56,6 +76,9 @@ public class DatabaseManager {
         this.plugin = plugin;
         this.config = plugin.getDatabaseConfig();
         this.tablePrefix = config.getMysqlTablePrefix();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
     }
     
     public void initialize() throws SQLException {
@@ -118,7 +141,7 @@ public class DatabaseManager {
     private void createTables() throws SQLException {
         int decimalPlaces = plugin.getConfig().getInt("currency.decimal-places", 2);
         
-        Lock writeLock = getWriteLock();
+        Lock writeLock = getBulkLock();
         writeLock.lock();
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
@@ -126,27 +149,29 @@ public class DatabaseManager {
             String accountsTable = config.isMySQL() ? 
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "accounts (" +
                 "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                "uuid VARCHAR(36) NOT NULL UNIQUE, " +
+                "uuid BINARY(16) NOT NULL UNIQUE, " +
                 "player_name VARCHAR(16) NOT NULL COLLATE utf8mb4_ci, " +
                 "balance DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
                 "daily_income DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
                 "last_income_reset BIGINT NOT NULL, " +
                 "created_at BIGINT NOT NULL, " +
                 "updated_at BIGINT NOT NULL, " +
+                "version BIGINT NOT NULL DEFAULT 0, " +
                 "INDEX idx_uuid (uuid), " +
                 "INDEX idx_balance (balance)" +
                 ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
                 :
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "accounts (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "uuid VARCHAR(36) NOT NULL UNIQUE, " +
+                "uuid BLOB NOT NULL UNIQUE, " +
                 "player_name VARCHAR(16) NOT NULL, " +
                 "player_name_lower VARCHAR(16), " +
                 "balance DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
                 "daily_income DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
                 "last_income_reset INTEGER NOT NULL, " +
                 "created_at INTEGER NOT NULL, " +
-                "updated_at INTEGER NOT NULL)";
+                "updated_at INTEGER NOT NULL, " +
+                "version INTEGER NOT NULL DEFAULT 0)";
             
             stmt.execute(accountsTable);
             
@@ -166,9 +191,9 @@ public class DatabaseManager {
             String transactionsTable = config.isMySQL() ?
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "transactions (" +
                 "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                "sender_uuid VARCHAR(36) NOT NULL, " +
+                "sender_uuid BINARY(16) NOT NULL, " +
                 "sender_name VARCHAR(16) NOT NULL, " +
-                "receiver_uuid VARCHAR(36) NOT NULL, " +
+                "receiver_uuid BINARY(16) NOT NULL, " +
                 "receiver_name VARCHAR(16) NOT NULL, " +
                 "amount DECIMAL(20," + decimalPlaces + ") NOT NULL, " +
                 "tax DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
@@ -180,9 +205,9 @@ public class DatabaseManager {
                 :
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "transactions (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "sender_uuid VARCHAR(36) NOT NULL, " +
+                "sender_uuid BLOB NOT NULL, " +
                 "sender_name VARCHAR(16) NOT NULL, " +
-                "receiver_uuid VARCHAR(36) NOT NULL, " +
+                "receiver_uuid BLOB NOT NULL, " +
                 "receiver_name VARCHAR(16) NOT NULL, " +
                 "amount DECIMAL(20," + decimalPlaces + ") NOT NULL, " +
                 "tax DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
@@ -193,7 +218,7 @@ public class DatabaseManager {
             String logsTable = config.isMySQL() ?
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "logs (" +
                 "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                "uuid VARCHAR(36) NOT NULL, " +
+                "uuid BINARY(16) NOT NULL, " +
                 "player_name VARCHAR(16) NOT NULL, " +
                 "action VARCHAR(32) NOT NULL, " +
                 "amount DECIMAL(20," + decimalPlaces + ") NOT NULL, " +
@@ -210,7 +235,7 @@ public class DatabaseManager {
                 :
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "logs (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "uuid VARCHAR(36) NOT NULL, " +
+                "uuid BLOB NOT NULL, " +
                 "player_name VARCHAR(16) NOT NULL, " +
                 "action VARCHAR(32) NOT NULL, " +
                 "amount DECIMAL(20," + decimalPlaces + ") NOT NULL, " +
@@ -223,6 +248,29 @@ public class DatabaseManager {
             
             stmt.execute(logsTable);
             
+            // 收入日汇总表：由日志刷新时同步累加，周/月收入查询只需读取至多 31 行
+            String incomeDailyTable = config.isMySQL() ?
+                "CREATE TABLE IF NOT EXISTS " + tablePrefix + "income_daily (" +
+                "uuid BINARY(16) NOT NULL, " +
+                "day INT NOT NULL, " +
+                "player_name VARCHAR(16) NOT NULL, " +
+                "amount DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (uuid, day), " +
+                "INDEX idx_income_daily_day (day)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
+                :
+                "CREATE TABLE IF NOT EXISTS " + tablePrefix + "income_daily (" +
+                "uuid BLOB NOT NULL, " +
+                "day INTEGER NOT NULL, " +
+                "player_name VARCHAR(16) NOT NULL, " +
+                "amount DECIMAL(20," + decimalPlaces + ") NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (uuid, day))";
+            
+            stmt.execute(incomeDailyTable);
+            if (!config.isMySQL()) {
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_income_daily_day ON " + tablePrefix + "income_daily(day)");
+            }
+            
             String offlineTipsTable = config.isMySQL() ?
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "offline_tips (" +
                 "id INT AUTO_INCREMENT PRIMARY KEY, " +
@@ -278,16 +326,16 @@ public class DatabaseManager {
             
             String uuidMappingTable = config.isMySQL() ?
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "uuid_mapping (" +
-                "offline_uuid VARCHAR(36) PRIMARY KEY, " +
-                "online_uuid VARCHAR(36) NOT NULL, " +
+                "offline_uuid BINARY(16) PRIMARY KEY, " +
+                "online_uuid BINARY(16) NOT NULL, " +
                 "player_name VARCHAR(16), " +
                 "updated_at BIGINT NOT NULL, " +
                 "INDEX idx_online_uuid (online_uuid)" +
                 ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
                 :
                 "CREATE TABLE IF NOT EXISTS " + tablePrefix + "uuid_mapping (" +
-                "offline_uuid VARCHAR(36) PRIMARY KEY, " +
-                "online_uuid VARCHAR(36) NOT NULL, " +
+                "offline_uuid BLOB PRIMARY KEY, " +
+                "online_uuid BLOB NOT NULL, " +
                 "player_name VARCHAR(16), " +
                 "updated_at INTEGER NOT NULL)";
             
@@ -322,7 +370,7 @@ public class DatabaseManager {
     }
 
     /**
-     * 在写锁和数据库事务内执行操作，保证原子性。
+     * 在全局锁和数据库事务内执行操作，保证原子性。
      * 事务内只应做 DB 操作，不要触发事件或记录日志。
      *
      * @param operation 接收 Connection 并返回结果的函数
@@ -331,7 +379,24 @@ public class DatabaseManager {
      * @throws SQLException 数据库异常时抛出，事务已回滚
      */
     public <T> T executeInTransaction(TransactionOperation<T> operation) throws SQLException {
-        getWriteLock().lock();
+        return executeInTransaction(getBulkLock(), operation);
+    }
+
+    /**
+     * 只锁定涉及的账户后在数据库事务内执行操作，不同账户的事务可并发执行。
+     *
+     * @param uuids     事务内会修改的账户
+     * @param operation 接收 Connection 并返回结果的函数
+     * @param <T>       返回值类型
+     * @return 操作结果
+     * @throws SQLException 数据库异常时抛出，事务已回滚
+     */
+    public <T> T executeInTransaction(Collection<UUID> uuids, TransactionOperation<T> operation) throws SQLException {
+        return executeInTransaction(getAccountsLock(uuids), operation);
+    }
+
+    private <T> T executeInTransaction(Lock lock, TransactionOperation<T> operation) throws SQLException {
+        lock.lock();
         try (Connection conn = getConnection()) {
             boolean originalAutoCommit = conn.getAutoCommit();
             try {
@@ -346,7 +411,7 @@ public class DatabaseManager {
                 conn.setAutoCommit(originalAutoCommit);
             }
         } finally {
-            getWriteLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -364,12 +429,178 @@ public class DatabaseManager {
         }
     }
     
-    public Lock getReadLock() {
-        return isMySQL() ? rwLock.readLock() : NO_OP_LOCK;
+    /**
+     * 获取单个账户的写锁（SQLite 只有一个连接，无需加锁）
+     */
+    public Lock getAccountLock(UUID uuid) {
+        if (!isMySQL()) {
+            return NO_OP_LOCK;
+        }
+        return new StripedLock(new int[] { stripeIndex(uuid) });
+    }
+    
+    /**
+     * 获取多个账户的写锁，按分段序号升序加锁，避免死锁
+     */
+    public Lock getAccountsLock(Collection<UUID> uuids) {
+        if (!isMySQL()) {
+            return NO_OP_LOCK;
+        }
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (UUID uuid : uuids) {
+            indexes.add(stripeIndex(uuid));
+            if (indexes.size() == LOCK_STRIPES) {
+                break;
+            }
+        }
+        int[] ordered = new int[indexes.size()];
+        int i = 0;
+        for (int index : indexes) {
+            ordered[i++] = index;
+        }
+        return new StripedLock(ordered);
+    }
+    
+    /**
+     * 获取全表操作锁，与所有账户锁互斥
+     */
+    public Lock getBulkLock() {
+        return isMySQL() ? bulkLock.writeLock() : NO_OP_LOCK;
+    }
+    
+    public long getLockContentionCount() {
+        return lockContention.get();
+    }
+    
+    public long getLockAcquisitionCount() {
+        return lockAcquisitions.get();
     }
     
-    public Lock getWriteLock() {
-        return isMySQL() ? rwLock.writeLock() : NO_OP_LOCK;
+    public int getPeakActiveWriters() {
+        return peakActiveWriters.get();
+    }
+    
+    private static int stripeIndex(UUID uuid) {
+        long bits = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    private void acquire(Lock lock) {
+        if (!lock.tryLock()) {
+            lockContention.incrementAndGet();
+            lock.lock();
+        }
+    }
+    
+    /**
+     * 账户分段锁：先持有全局锁的共享部分，再按升序持有各分段
+     * 任一分段获取失败或被中断时，按相反顺序释放已持有的部分；
+     * 同时持有多把锁无法对应单个条件队列，不支持 newCondition
+     */
+    private final class StripedLock implements Lock {
+        
+        private final int[] indexes;
+        
+        private StripedLock(int[] indexes) {
+            this.indexes = indexes;
+        }
+        
+        @Override
+        public void lock() {
+            acquire(bulkLock.readLock());
+            for (int index : indexes) {
+                acquire(stripes[index]);
+            }
+            onAcquired();
+        }
+        
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Lock shared = bulkLock.readLock();
+            if (!shared.tryLock()) {
+                lockContention.incrementAndGet();
+                shared.lockInterruptibly();
+            }
+            int acquired = 0;
+            try {
+                for (; acquired < indexes.length; acquired++) {
+                    ReentrantLock stripe = stripes[indexes[acquired]];
+                    if (!stripe.tryLock()) {
+                        lockContention.incrementAndGet();
+                        stripe.lockInterruptibly();
+                    }
+                }
+            } catch (InterruptedException e) {
+                release(acquired);
+                throw e;
+            }
+            onAcquired();
+        }
+        
+        @Override
+        public boolean tryLock() {
+            if (!bulkLock.readLock().tryLock()) {
+                return false;
+            }
+            for (int i = 0; i < indexes.length; i++) {
+                if (!stripes[indexes[i]].tryLock()) {
+                    release(i);
+                    return false;
+                }
+            }
+            onAcquired();
+            return true;
+        }
+        
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!bulkLock.readLock().tryLock(time, unit)) {
+                return false;
+            }
+            int acquired = 0;
+            try {
+                for (; acquired < indexes.length; acquired++) {
+                    if (!stripes[indexes[acquired]].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        release(acquired);
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                release(acquired);
+                throw e;
+            }
+            onAcquired();
+            return true;
+        }
+        
+        @Override
+        public void unlock() {
+            activeWriters.decrementAndGet();
+            release(indexes.length);
+        }
+        
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("账户分段锁不支持条件队列");
+        }
+        
+        private void onAcquired() {
+            lockAcquisitions.incrementAndGet();
+            int active = activeWriters.incrementAndGet();
+            peakActiveWriters.accumulateAndGet(active, Math::max);
+        }
+        
+        /**
+         * 释放前 acquired 个分段和全局锁的共享部分
+         */
+        private void release(int acquired) {
+            for (int i = acquired - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+            bulkLock.readLock().unlock();
+        }
     }
     
     public String getTablePrefix() {
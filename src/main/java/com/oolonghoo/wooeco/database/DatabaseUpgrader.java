@@ -5,10 +5,16 @@ import com.oolonghoo.wooeco.WooEco;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 数据库版本升级器
@@ -17,7 +23,7 @@ import java.util.logging.Level;
  */
 public class DatabaseUpgrader {
     
-    private static final int CURRENT_VERSION = 4;
+    private static final int CURRENT_VERSION = 8;
     
     private final WooEco plugin;
     private final DatabaseManager databaseManager;
@@ -30,7 +36,10 @@ public class DatabaseUpgrader {
         this.tablePrefix = databaseManager.getTablePrefix();
     }
     
-    public void checkAndUpgrade() {
+    /**
+     * 检查并执行升级；升级失败时抛出异常中止启动，避免 DAO 以新格式读写旧表结构
+     */
+    public void checkAndUpgrade() throws SQLException {
         lock.lock();
         try {
             ensureVersionTableExists();
@@ -56,6 +65,7 @@ public class DatabaseUpgrader {
             performUpgrade(currentVersion, CURRENT_VERSION);
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "数据库版本检查失败: " + e.getMessage(), e);
+            throw e;
         } finally {
             lock.unlock();
         }
@@ -130,7 +140,7 @@ public class DatabaseUpgrader {
     }
     
     private void performUpgrade(int fromVersion, int toVersion) throws SQLException {
-        databaseManager.getWriteLock().lock();
+        databaseManager.getBulkLock().lock();
         try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement()) {
             
@@ -144,7 +154,7 @@ public class DatabaseUpgrader {
             
             plugin.getLogger().info("数据库已从版本 " + fromVersion + " 升级到版本 " + toVersion);
         } finally {
-            databaseManager.getWriteLock().unlock();
+            databaseManager.getBulkLock().unlock();
         }
     }
     
@@ -153,6 +163,10 @@ public class DatabaseUpgrader {
             case 2 -> upgradeToV2(stmt);
             case 3 -> upgradeToV3(stmt);
             case 4 -> upgradeToV4(stmt);
+            case 5 -> upgradeToV5(stmt);
+            case 6 -> upgradeToV6(stmt);
+            case 7 -> upgradeToV7(stmt);
+            case 8 -> upgradeToV8(stmt);
         }
     }
     
@@ -208,6 +222,290 @@ public class DatabaseUpgrader {
         }
     }
     
+    /**
+     * 升级到 v5：账户表添加 version 列，余额写入以版本比较并交换，避免多服务器互相覆盖
+     */
+    private void upgradeToV5(Statement stmt) throws SQLException {
+        String type = databaseManager.isMySQL() ? "BIGINT" : "INTEGER";
+        // 幂等：列已存在时跳过
+        try {
+            stmt.execute("ALTER TABLE " + tablePrefix + "accounts ADD COLUMN version " + type + " NOT NULL DEFAULT 0");
+        } catch (SQLException e) {
+            if (!e.getMessage().toLowerCase().contains("duplicate column name")) {
+                throw e;
+            }
+            // 列已存在，跳过
+        }
+    }
+    
+    /**
+     * 升级到 v6：accounts、logs、transactions、uuid_mapping 的 UUID 列由 VARCHAR(36) 改为 16 字节二进制
+     * （MySQL BINARY(16)，SQLite BLOB），索引体积约减半
+     * 每张表按列的当前类型判断进度，已转换的表跳过，中途失败后重启可继续
+     */
+    private void upgradeToV6(Statement stmt) throws SQLException {
+        for (UuidTable table : UUID_TABLES) {
+            if (databaseManager.isMySQL()) {
+                convertUuidColumnsMySQL(stmt, table);
+            } else {
+                convertUuidColumnsSQLite(stmt.getConnection(), table);
+            }
+        }
+    }
+    
+    /**
+     * 升级到 v7：从现有日志回填收入日汇总表（income_daily），周/月收入排行升级后即可使用
+     * 在升级连接上执行（SQLite 连接池只有一个连接），此时日志写入尚未开始
+     */
+    private void upgradeToV7(Statement stmt) throws SQLException {
+        plugin.getLogger().info("正在从日志回填收入日汇总表，日志量大时可能需要几分钟...");
+        int rows = databaseManager.getLogDAO().backfillIncomeDaily(stmt.getConnection());
+        plugin.getLogger().info(String.format("收入日汇总表已回填 %d 行", rows));
+    }
+    
+    /**
+     * 升级到 v8：收入日汇总表的 UUID 列改为二进制，与 v6 转换的表一致
+     * v7 之前升级的数据库在建表时已是二进制，转换时跳过
+     */
+    private void upgradeToV8(Statement stmt) throws SQLException {
+        if (databaseManager.isMySQL()) {
+            convertUuidColumnsMySQL(stmt, INCOME_DAILY_TABLE);
+        } else {
+            convertUuidColumnsSQLite(stmt.getConnection(), INCOME_DAILY_TABLE);
+        }
+    }
+    
+    /** UUID 列改为二进制的表，及 MySQL 下转换后需要重建的约束和索引 */
+    private static final List<UuidTable> UUID_TABLES = List.of(
+        new UuidTable("accounts", List.of("uuid"),
+            List.of(),
+            List.of("ADD UNIQUE KEY uuid (uuid)", "ADD INDEX idx_uuid (uuid)")),
+        new UuidTable("logs", List.of("uuid"),
+            List.of("idx_logs_uuid_reason_timestamp"),
+            List.of("ADD INDEX idx_uuid (uuid)", "ADD INDEX idx_logs_uuid_reason_timestamp (uuid, reason, timestamp)")),
+        new UuidTable("transactions", List.of("sender_uuid", "receiver_uuid"),
+            List.of("idx_transactions_sender_timestamp", "idx_transactions_receiver_timestamp"),
+            List.of("ADD INDEX idx_sender (sender_uuid)", "ADD INDEX idx_receiver (receiver_uuid)",
+                "ADD INDEX idx_transactions_sender_timestamp (sender_uuid, timestamp)",
+                "ADD INDEX idx_transactions_receiver_timestamp (receiver_uuid, timestamp)")),
+        new UuidTable("uuid_mapping", List.of("offline_uuid", "online_uuid"),
+            List.of(),
+            List.of("ADD PRIMARY KEY (offline_uuid)", "ADD INDEX idx_online_uuid (online_uuid)"))
+    );
+    
+    /** 主键包含 UUID 列，删除原列前先删除主键 */
+    private static final UuidTable INCOME_DAILY_TABLE = new UuidTable("income_daily", List.of("uuid"),
+        List.of("PRIMARY"),
+        List.of("ADD PRIMARY KEY (uuid, day)"));
+    
+    private static final String BINARY_SUFFIX = "_bin";
+    
+    /**
+     * MySQL：新增 BINARY(16) 列并用 UNHEX 在服务器端转换，校验后删除原列、改名并重建索引
+     * 删除原列会把它从复合索引中移除而不是删除索引，因此先显式删除复合索引
+     */
+    private void convertUuidColumnsMySQL(Statement stmt, UuidTable table) throws SQLException {
+        Connection conn = stmt.getConnection();
+        String name = tablePrefix + table.name;
+        
+        List<String> textColumns = new ArrayList<>();
+        List<String> pendingRename = new ArrayList<>();
+        for (String column : table.columns) {
+            String type = columnType(conn, name, column);
+            if (type != null && !type.startsWith("binary")) {
+                textColumns.add(column);
+            } else if (type == null && columnType(conn, name, column + BINARY_SUFFIX) != null) {
+                pendingRename.add(column);
+            }
+        }
+        if (textColumns.isEmpty() && pendingRename.isEmpty()) {
+            return;
+        }
+        plugin.getLogger().info("正在转换 " + name + " 表的 UUID 列，数据量大时可能需要几分钟...");
+        
+        if (!textColumns.isEmpty()) {
+            StringBuilder set = new StringBuilder();
+            StringBuilder invalid = new StringBuilder();
+            for (String column : textColumns) {
+                String bin = column + BINARY_SUFFIX;
+                if (columnType(conn, name, bin) == null) {
+                    stmt.execute("ALTER TABLE " + name + " ADD COLUMN " + bin + " BINARY(16) NULL");
+                }
+                if (set.length() > 0) {
+                    set.append(", ");
+                    invalid.append(" OR ");
+                }
+                set.append(bin).append(" = UNHEX(REPLACE(").append(column).append(", '-', ''))");
+                invalid.append(bin).append(" IS NULL OR LENGTH(").append(bin).append(") <> 16");
+            }
+            stmt.executeUpdate("UPDATE " + name + " SET " + set);
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + name + " WHERE " + invalid)) {
+                long count = rs.next() ? rs.getLong(1) : 0;
+                if (count > 0) {
+                    throw new SQLException(String.format("%s 表中有 %d 行的 UUID 无法转换，请修正后重启", name, count));
+                }
+            }
+            for (String index : table.compositeIndexes) {
+                dropIndexIfExists(stmt, name, index);
+            }
+            StringBuilder drop = new StringBuilder("ALTER TABLE ").append(name);
+            for (int i = 0; i < textColumns.size(); i++) {
+                drop.append(i == 0 ? " " : ", ").append("DROP COLUMN ").append(textColumns.get(i));
+            }
+            stmt.execute(drop.toString());
+            pendingRename.addAll(textColumns);
+        }
+        
+        StringBuilder rename = new StringBuilder("ALTER TABLE ").append(name);
+        for (int i = 0; i < pendingRename.size(); i++) {
+            String column = pendingRename.get(i);
+            rename.append(i == 0 ? " " : ", ")
+                  .append("CHANGE COLUMN ").append(column).append(BINARY_SUFFIX).append(' ')
+                  .append(column).append(" BINARY(16) NOT NULL");
+        }
+        for (String clause : table.mysqlClauses) {
+            rename.append(", ").append(clause);
+        }
+        stmt.execute(rename.toString());
+    }
+    
+    private void dropIndexIfExists(Statement stmt, String table, String index) {
+        try {
+            stmt.execute("ALTER TABLE " + table + ("PRIMARY".equals(index) ? " DROP PRIMARY KEY" : " DROP INDEX " + index));
+        } catch (SQLException e) {
+            // 索引不存在，跳过
+        }
+    }
+    
+    /**
+     * SQLite：无法修改列类型，按原建表语句把 UUID 列改为 BLOB 建新表，逐行转换复制后替换原表并重建索引
+     * 在同一事务中完成，失败时回滚，原表不受影响
+     */
+    private void convertUuidColumnsSQLite(Connection conn, UuidTable table) throws SQLException {
+        String name = tablePrefix + table.name;
+        boolean converted = true;
+        for (String column : table.columns) {
+            String type = columnType(conn, name, column);
+            if (type != null && !type.equals("blob")) {
+                converted = false;
+            }
+        }
+        if (converted) {
+            return;
+        }
+        plugin.getLogger().info("正在转换 " + name + " 表的 UUID 列，数据量大时可能需要几分钟...");
+        
+        String tableSql = null;
+        List<String> indexSqls = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT type, sql FROM sqlite_master WHERE tbl_name = ? AND sql IS NOT NULL")) {
+            pstmt.setString(1, name);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                if ("table".equals(rs.getString("type"))) {
+                    tableSql = rs.getString("sql");
+                } else if ("index".equals(rs.getString("type"))) {
+                    indexSqls.add(rs.getString("sql"));
+                }
+            }
+        }
+        if (tableSql == null) {
+            return;
+        }
+        
+        String tempName = name + "_v6";
+        String newSql = Pattern.compile("^CREATE TABLE\\s+[\"`]?" + Pattern.quote(name) + "[\"`]?", Pattern.CASE_INSENSITIVE)
+            .matcher(tableSql).replaceFirst(Matcher.quoteReplacement("CREATE TABLE " + tempName));
+        for (String column : table.columns) {
+            newSql = Pattern.compile("(\\b" + Pattern.quote(column) + "\\s+)VARCHAR\\(36\\)", Pattern.CASE_INSENSITIVE)
+                .matcher(newSql).replaceFirst("$1BLOB");
+        }
+        
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + tempName);
+            stmt.execute(newSql);
+            long rows = copyConvertingUuids(conn, name, tempName, table.columns);
+            stmt.execute("DROP TABLE " + name);
+            stmt.execute("ALTER TABLE " + tempName + " RENAME TO " + name);
+            for (String indexSql : indexSqls) {
+                stmt.execute(indexSql);
+            }
+            conn.commit();
+            plugin.getLogger().info(String.format("%s 表已转换 %d 行", name, rows));
+        } catch (SQLException | IllegalArgumentException e) {
+            conn.rollback();
+            throw new SQLException(String.format("转换 %s 表的 UUID 列失败：%s", name, e.getMessage()), e);
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+    
+    private long copyConvertingUuids(Connection conn, String from, String to, List<String> uuidColumns) throws SQLException {
+        long rows = 0;
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT * FROM " + from)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int count = meta.getColumnCount();
+            boolean[] isUuid = new boolean[count + 1];
+            StringBuilder columns = new StringBuilder();
+            StringBuilder params = new StringBuilder();
+            for (int i = 1; i <= count; i++) {
+                String column = meta.getColumnName(i);
+                isUuid[i] = uuidColumns.contains(column.toLowerCase());
+                columns.append(i == 1 ? "" : ", ").append(column);
+                params.append(i == 1 ? "?" : ", ?");
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO " + to + " (" + columns + ") VALUES (" + params + ")")) {
+                while (rs.next()) {
+                    for (int i = 1; i <= count; i++) {
+                        Object value = rs.getObject(i);
+                        if (isUuid[i] && value != null && !(value instanceof byte[])) {
+                            value = UuidBinary.toBytes(UUID.fromString(value.toString().trim()));
+                        }
+                        insert.setObject(i, value);
+                    }
+                    insert.addBatch();
+                    if (++rows % 1000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * 列的类型名（小写），列不存在时返回 null
+     */
+    private String columnType(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return rs.getString("TYPE_NAME").toLowerCase();
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static final class UuidTable {
+        final String name;
+        final List<String> columns;
+        final List<String> compositeIndexes;
+        final List<String> mysqlClauses;
+        
+        UuidTable(String name, List<String> columns, List<String> compositeIndexes, List<String> mysqlClauses) {
+            this.name = name;
+            this.columns = columns;
+            this.compositeIndexes = compositeIndexes;
+            this.mysqlClauses = mysqlClauses;
+        }
+    }
+    
     public static int getCurrentDbVersion() {
         return CURRENT_VERSION;
     }
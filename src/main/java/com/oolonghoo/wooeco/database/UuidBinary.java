@@ -0,0 +1,65 @@
+package com.oolonghoo.wooeco.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * UUID 列的 16 字节二进制编码（MySQL BINARY(16)，SQLite BLOB）
+ * 高 64 位在前、大端序，与 UUID 文本形式的十六进制顺序一致，MySQL 中可用 HEX(uuid) 直接对照
+ */
+public final class UuidBinary {
+
+    public static final int LENGTH = 16;
+
+    private UuidBinary() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[LENGTH];
+        putLong(bytes, 0, uuid.getMostSignificantBits());
+        putLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    /**
+     * 解码 16 字节 UUID；兼容尚未转换的 36 字符文本值
+     */
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == LENGTH) {
+            return new UUID(getLong(bytes, 0), getLong(bytes, 8));
+        }
+        if (bytes.length == 36) {
+            return UUID.fromString(new String(bytes, StandardCharsets.US_ASCII));
+        }
+        throw new IllegalArgumentException("无效的 UUID 字节长度: " + bytes.length);
+    }
+
+    public static void set(PreparedStatement stmt, int index, UUID uuid) throws SQLException {
+        stmt.setBytes(index, toBytes(uuid));
+    }
+
+    public static UUID get(ResultSet rs, String column) throws SQLException {
+        return fromBytes(rs.getBytes(column));
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
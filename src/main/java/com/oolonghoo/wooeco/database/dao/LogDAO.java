@@ -1,25 +1,38 @@
 package com.oolonghoo.wooeco.database.dao;
 
 import com.oolonghoo.wooeco.database.DatabaseManager;
+import com.oolonghoo.wooeco.database.UuidBinary;
 import com.oolonghoo.wooeco.model.EconomyLog;
 import com.oolonghoo.wooeco.model.PlayerAccount;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * 经济日志数据访问对象
- * 使用读写锁优化并发性能
- * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 日志为追加写入，读写均不加锁，直接并发使用连接池
+ * 收入日汇总表（income_daily）与日志在同一事务中以原子 upsert 累加，回填与写入的互斥由数据库行锁保证
  *
  */
 public class LogDAO {
 
     private static final String LOG_COLUMNS = "id, uuid, player_name, action, amount, balance_before, balance_after, operator, operator_name, reason, timestamp";
 
+    /** 计入周期收入的日志原因 */
+    private static final String INCOME_REASON = "PAYMENT_RECEIVED";
+
+    /** 收入日汇总表的最短保留天数 */
+    private static final int MIN_ROLLUP_DAYS = 31;
+
     private final DatabaseManager dbManager;
     private final String tablePrefix;
 
@@ -28,40 +41,25 @@ public class LogDAO {
         this.tablePrefix = dbManager.getTablePrefix();
     }
 
+    /**
+     * 保存单条日志，与批量保存相同，在同一事务中累加收入日汇总
+     */
     public void saveLog(EconomyLog log) throws SQLException {
-        String sql = "INSERT INTO " + tablePrefix + "logs (uuid, player_name, action, amount, balance_before, balance_after, operator, operator_name, reason, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        dbManager.getWriteLock().lock();
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, log.getUuid().toString());
-            stmt.setString(2, log.getPlayerName());
-            stmt.setString(3, log.getAction());
-            stmt.setBigDecimal(4, log.getAmount());
-            stmt.setBigDecimal(5, log.getBalanceBefore());
-            stmt.setBigDecimal(6, log.getBalanceAfter());
-            stmt.setString(7, log.getOperator());
-            stmt.setString(8, log.getOperatorName());
-            stmt.setString(9, log.getReason());
-            stmt.setLong(10, log.getTimestamp());
-            stmt.executeUpdate();
-        } finally {
-            dbManager.getWriteLock().unlock();
-        }
+        saveAllBatch(Collections.singletonList(log));
     }
 
     public List<EconomyLog> getLogsByUuid(UUID uuid, int limit) throws SQLException {
         String sql = "SELECT " + LOG_COLUMNS + " FROM " + tablePrefix + "logs WHERE uuid = ? ORDER BY timestamp DESC LIMIT ?";
         List<EconomyLog> logs = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            UuidBinary.set(stmt, 1, uuid);
             stmt.setInt(2, limit);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 logs.add(new EconomyLog(
                     rs.getLong("id"),
-                    UUID.fromString(rs.getString("uuid")),
+                    UuidBinary.get(rs, "uuid"),
                     rs.getString("player_name"),
                     rs.getString("action"),
                     rs.getBigDecimal("amount"),
@@ -73,8 +71,6 @@ public class LogDAO {
                     rs.getLong("timestamp")
                 ));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return logs;
     }
@@ -82,7 +78,6 @@ public class LogDAO {
     public List<EconomyLog> getLogsByAction(String action, int limit) throws SQLException {
         String sql = "SELECT " + LOG_COLUMNS + " FROM " + tablePrefix + "logs WHERE action = ? ORDER BY timestamp DESC LIMIT ?";
         List<EconomyLog> logs = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, action);
@@ -91,7 +86,7 @@ public class LogDAO {
             while (rs.next()) {
                 logs.add(new EconomyLog(
                     rs.getLong("id"),
-                    UUID.fromString(rs.getString("uuid")),
+                    UuidBinary.get(rs, "uuid"),
                     rs.getString("player_name"),
                     rs.getString("action"),
                     rs.getBigDecimal("amount"),
@@ -103,8 +98,6 @@ public class LogDAO {
                     rs.getLong("timestamp")
                 ));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return logs;
     }
@@ -119,13 +112,12 @@ public class LogDAO {
         if (logs.isEmpty()) return;
 
         String sql = "INSERT INTO " + tablePrefix + "logs (uuid, player_name, action, amount, balance_before, balance_after, operator, operator_name, reason, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection()) {
             boolean originalAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 for (EconomyLog log : logs) {
-                    stmt.setString(1, log.getUuid().toString());
+                    UuidBinary.set(stmt, 1, log.getUuid());
                     stmt.setString(2, log.getPlayerName());
                     stmt.setString(3, log.getAction());
                     stmt.setBigDecimal(4, log.getAmount());
@@ -138,6 +130,7 @@ public class LogDAO {
                     stmt.addBatch();
                 }
                 stmt.executeBatch();
+                addIncomeRollup(conn, aggregateIncome(logs));
                 conn.commit();
             } catch (SQLException e) {
                 conn.rollback();
@@ -145,17 +138,151 @@ public class LogDAO {
             } finally {
                 conn.setAutoCommit(originalAutoCommit);
             }
+        }
+    }
+
+    /**
+     * 按 (玩家, 日) 汇总一批日志中的收入
+     */
+    private Map<IncomeKey, IncomeTotal> aggregateIncome(Iterable<EconomyLog> logs) {
+        Map<IncomeKey, IncomeTotal> totals = new HashMap<>();
+        for (EconomyLog log : logs) {
+            if (!INCOME_REASON.equals(log.getReason())) {
+                continue;
+            }
+            IncomeKey key = new IncomeKey(log.getUuid(), toEpochDay(log.getTimestamp()));
+            totals.computeIfAbsent(key, k -> new IncomeTotal()).add(log.getPlayerName(), log.getAmount());
+        }
+        return totals;
+    }
+
+    private void addIncomeRollup(Connection conn, Map<IncomeKey, IncomeTotal> totals) throws SQLException {
+        if (totals.isEmpty()) return;
+
+        String sql;
+        if (dbManager.isMySQL()) {
+            sql = "INSERT INTO " + tablePrefix + "income_daily (uuid, day, player_name, amount) VALUES (?, ?, ?, ?) AS new_val " +
+                  "ON DUPLICATE KEY UPDATE amount = amount + new_val.amount, player_name = new_val.player_name";
+        } else {
+            sql = "INSERT INTO " + tablePrefix + "income_daily (uuid, day, player_name, amount) VALUES (?, ?, ?, ?) " +
+                  "ON CONFLICT(uuid, day) DO UPDATE SET amount = amount + excluded.amount, player_name = excluded.player_name";
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<IncomeKey, IncomeTotal> entry : totals.entrySet()) {
+                UuidBinary.set(stmt, 1, entry.getKey().uuid);
+                stmt.setInt(2, entry.getKey().day);
+                stmt.setString(3, entry.getValue().playerName);
+                stmt.setBigDecimal(4, entry.getValue().amount);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * 从现有日志重建收入日汇总表（数据库升级时自动执行，数据不一致时也可手动执行），返回写入的汇总行数
+     */
+    public int backfillIncomeDaily() throws SQLException {
+        try (Connection conn = dbManager.getConnection()) {
+            return backfillIncomeDaily(conn);
+        }
+    }
+
+    /**
+     * 在给定连接上重建收入日汇总表，按天分段，每段单独提交：
+     * 不会在一个事务中读取整张日志表，也不会长时间阻塞日志刷新（MySQL 未开启 useCursorFetch 时 fetchSize 无效，结果集整体读入内存）
+     *
+     * @return 写入的汇总行数
+     */
+    public int backfillIncomeDaily(Connection conn) throws SQLException {
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT MIN(timestamp), MAX(timestamp) FROM " + tablePrefix + "logs WHERE reason = ?")) {
+            stmt.setString(1, INCOME_REASON);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next() && rs.getObject(1) != null) {
+                firstDay = toEpochDay(rs.getLong(1));
+                lastDay = toEpochDay(rs.getLong(2));
+            }
+        }
+        // 早于最早日志的汇总行同样清除，与整表重建一致
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(day), MAX(day) FROM " + tablePrefix + "income_daily")) {
+            if (rs.next() && rs.getObject(1) != null) {
+                firstDay = Math.min(firstDay, rs.getInt(1));
+                lastDay = Math.max(lastDay, rs.getInt(2));
+            }
+        }
+        int rows = 0;
+        for (int day = firstDay; day <= lastDay; day++) {
+            rows += backfillIncomeDay(conn, day);
+        }
+        return rows;
+    }
+
+    /**
+     * 重建一天的汇总：同一事务中先删除当天的汇总行再读取当天的日志，
+     * 删除持有的行锁与间隙锁（SQLite 为写锁）使并发的日志刷新在累加当天汇总前等待，
+     * 等待前已提交的日志会被本次读取计入，之后提交的由它们自己的 upsert 累加，不会重复也不会遗漏
+     */
+    private int backfillIncomeDay(Connection conn, int day) throws SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        long from = LocalDate.ofEpochDay(day).atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = LocalDate.ofEpochDay(day + 1L).atStartOfDay(zone).toInstant().toEpochMilli();
+        String selectSql = "SELECT uuid, player_name, amount, timestamp FROM " + tablePrefix + "logs " +
+                           "WHERE reason = ? AND timestamp >= ? AND timestamp < ?";
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM " + tablePrefix + "income_daily WHERE day = ?")) {
+                delete.setInt(1, day);
+                delete.executeUpdate();
+            }
+            Map<IncomeKey, IncomeTotal> totals = new HashMap<>();
+            try (PreparedStatement select = conn.prepareStatement(selectSql)) {
+                select.setString(1, INCOME_REASON);
+                select.setLong(2, from);
+                select.setLong(3, to);
+                ResultSet rs = select.executeQuery();
+                while (rs.next()) {
+                    IncomeKey key = new IncomeKey(UuidBinary.get(rs, "uuid"), day);
+                    totals.computeIfAbsent(key, k -> new IncomeTotal()).add(rs.getString("player_name"), rs.getBigDecimal("amount"));
+                }
+            }
+            addIncomeRollup(conn, totals);
+            conn.commit();
+            return totals.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
         } finally {
-            dbManager.getWriteLock().unlock();
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+
+    /**
+     * 删除早于 keepDays 天的汇总行
+     */
+    private void cleanupOldIncomeDaily(int keepDays) throws SQLException {
+        int cutoffDay = (int) LocalDate.now(ZoneId.systemDefault()).minusDays(keepDays).toEpochDay();
+        String sql = "DELETE FROM " + tablePrefix + "income_daily WHERE day < ?";
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, cutoffDay);
+            stmt.executeUpdate();
         }
     }
 
+    private static int toEpochDay(long timestamp) {
+        return (int) Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
     public void cleanupOldLogs(int retentionDays) throws SQLException {
         if (retentionDays <= 0) return;
 
         long cutoffTime = System.currentTimeMillis() - (retentionDays * 24L * 60 * 60 * 1000);
         String sql = "DELETE FROM " + tablePrefix + "logs WHERE timestamp < ?";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, cutoffTime);
@@ -163,54 +290,116 @@ public class LogDAO {
             if (deleted > 0) {
                 dbManager.getPlugin().getLogger().info("清理了 " + deleted + " 条过期日志记录");
             }
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
+        // 月收入最多回看 31 天，汇总表至少保留这么久
+        cleanupOldIncomeDaily(Math.max(retentionDays, MIN_ROLLUP_DAYS));
     }
 
+    /**
+     * 查询某玩家自 fromTimestamp 所在日起的收入（读取收入日汇总表）
+     */
     public BigDecimal getIncomeInPeriod(UUID uuid, long fromTimestamp) throws SQLException {
-        String sql = "SELECT COALESCE(SUM(amount), 0) FROM " + tablePrefix + "logs " +
-                     "WHERE uuid = ? AND reason = 'PAYMENT_RECEIVED' AND timestamp >= ?";
-        dbManager.getReadLock().lock();
+        String sql = "SELECT COALESCE(SUM(amount), 0) FROM " + tablePrefix + "income_daily " +
+                     "WHERE uuid = ? AND day >= ?";
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
-            stmt.setLong(2, fromTimestamp);
+            UuidBinary.set(stmt, 1, uuid);
+            stmt.setInt(2, toEpochDay(fromTimestamp));
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 BigDecimal total = rs.getBigDecimal(1);
                 return total != null ? total : BigDecimal.ZERO;
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return BigDecimal.ZERO;
     }
 
+    /**
+     * 一次查询某玩家的周收入和月收入（读取收入日汇总表）
+     *
+     * @return [周收入, 月收入]
+     */
+    public BigDecimal[] getWeeklyAndMonthlyIncome(UUID uuid, long weekStart, long monthStart) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(CASE WHEN day >= ? THEN amount ELSE 0 END), 0), " +
+                     "COALESCE(SUM(CASE WHEN day >= ? THEN amount ELSE 0 END), 0) " +
+                     "FROM " + tablePrefix + "income_daily WHERE uuid = ? AND day >= ?";
+        int weekDay = toEpochDay(weekStart);
+        int monthDay = toEpochDay(monthStart);
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, weekDay);
+            stmt.setInt(2, monthDay);
+            UuidBinary.set(stmt, 3, uuid);
+            stmt.setInt(4, Math.min(weekDay, monthDay));
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                BigDecimal weekly = rs.getBigDecimal(1);
+                BigDecimal monthly = rs.getBigDecimal(2);
+                return new BigDecimal[] {
+                    weekly != null ? weekly : BigDecimal.ZERO,
+                    monthly != null ? monthly : BigDecimal.ZERO
+                };
+            }
+        }
+        return new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO};
+    }
+
+    /**
+     * 查询自 fromTimestamp 所在日起的收入排行（聚合收入日汇总表）
+     */
     public List<PlayerAccount> getTopIncomesByPeriod(long fromTimestamp, int limit) throws SQLException {
-        String sql = "SELECT l.uuid, l.player_name, COALESCE(SUM(l.amount), 0) as period_income " +
-                     "FROM " + tablePrefix + "logs l " +
-                     "WHERE l.reason = 'PAYMENT_RECEIVED' AND l.timestamp >= ? " +
-                     "GROUP BY l.uuid, l.player_name " +
+        String sql = "SELECT uuid, MAX(player_name) AS player_name, COALESCE(SUM(amount), 0) AS period_income " +
+                     "FROM " + tablePrefix + "income_daily " +
+                     "WHERE day >= ? " +
+                     "GROUP BY uuid " +
                      "ORDER BY period_income DESC LIMIT ?";
         List<PlayerAccount> accounts = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, fromTimestamp);
+            stmt.setInt(1, toEpochDay(fromTimestamp));
             stmt.setInt(2, limit);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 PlayerAccount account = new PlayerAccount(
-                    UUID.fromString(rs.getString("uuid")),
+                    UuidBinary.get(rs, "uuid"),
                     rs.getString("player_name")
                 );
                 account.setDailyIncome(rs.getBigDecimal("period_income"));
                 accounts.add(account);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return accounts;
     }
+
+    private static final class IncomeKey {
+        final UUID uuid;
+        final int day;
+
+        IncomeKey(UUID uuid, int day) {
+            this.uuid = uuid;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IncomeKey other)) return false;
+            return day == other.day && uuid.equals(other.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * uuid.hashCode() + day;
+        }
+    }
+
+    private static final class IncomeTotal {
+        String playerName;
+        BigDecimal amount = BigDecimal.ZERO;
+
+        void add(String name, BigDecimal value) {
+            playerName = name;
+            amount = amount.add(value);
+        }
+    }
 }
@@ -11,8 +11,7 @@ import java.util.List;
 
 /**
  * 非玩家账户数据访问对象
- * 使用读写锁优化并发性能
- * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 单行读写不加锁，直接并发使用连接池
  *
  */
 public class NonPlayerAccountDAO {
@@ -30,7 +29,6 @@ public class NonPlayerAccountDAO {
     public NonPlayerAccount getAccount(String accountName) throws SQLException {
         String sql = "SELECT " + NPC_ACCOUNT_COLUMNS + " FROM " + tablePrefix + "non_player_accounts WHERE account_name = ?";
 
-        databaseManager.getReadLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, accountName);
@@ -43,8 +41,6 @@ public class NonPlayerAccountDAO {
                     rs.getLong("updated_at")
                 );
             }
-        } finally {
-            databaseManager.getReadLock().unlock();
         }
         return null;
     }
@@ -61,7 +57,6 @@ public class NonPlayerAccountDAO {
                   "ON CONFLICT(account_name) DO UPDATE SET balance = excluded.balance, updated_at = excluded.updated_at";
         }
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             long now = System.currentTimeMillis();
@@ -70,8 +65,6 @@ public class NonPlayerAccountDAO {
             stmt.setLong(3, now);
             stmt.setLong(4, now);
             stmt.executeUpdate();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 
@@ -87,7 +80,6 @@ public class NonPlayerAccountDAO {
                   "ON CONFLICT(account_name) DO UPDATE SET balance = excluded.balance, updated_at = excluded.updated_at";
         }
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             long now = System.currentTimeMillis();
@@ -97,21 +89,16 @@ public class NonPlayerAccountDAO {
             stmt.setLong(4, now);
             stmt.executeUpdate();
             account.markSaved();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 
     public void deleteAccount(String accountName) throws SQLException {
         String sql = "DELETE FROM " + tablePrefix + "non_player_accounts WHERE account_name = ?";
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, accountName);
             stmt.executeUpdate();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 
@@ -119,7 +106,6 @@ public class NonPlayerAccountDAO {
         List<NonPlayerAccount> accounts = new ArrayList<>();
         String sql = "SELECT " + NPC_ACCOUNT_COLUMNS + " FROM " + tablePrefix + "non_player_accounts ORDER BY balance DESC";
 
-        databaseManager.getReadLock().lock();
         try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
@@ -131,8 +117,6 @@ public class NonPlayerAccountDAO {
                     rs.getLong("updated_at")
                 ));
             }
-        } finally {
-            databaseManager.getReadLock().unlock();
         }
         return accounts;
     }
@@ -140,15 +124,12 @@ public class NonPlayerAccountDAO {
     public int countAccounts() throws SQLException {
         String sql = "SELECT COUNT(*) FROM " + tablePrefix + "non_player_accounts";
 
-        databaseManager.getReadLock().lock();
         try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
                 return rs.getInt(1);
             }
-        } finally {
-            databaseManager.getReadLock().unlock();
         }
         return 0;
     }
@@ -156,7 +137,6 @@ public class NonPlayerAccountDAO {
     public BigDecimal getTotalBalance() throws SQLException {
         String sql = "SELECT SUM(balance) FROM " + tablePrefix + "non_player_accounts";
 
-        databaseManager.getReadLock().lock();
         try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
@@ -164,8 +144,6 @@ public class NonPlayerAccountDAO {
                 BigDecimal total = rs.getBigDecimal(1);
                 return total != null ? total : BigDecimal.ZERO;
             }
-        } finally {
-            databaseManager.getReadLock().unlock();
         }
         return BigDecimal.ZERO;
     }
@@ -174,15 +152,12 @@ public class NonPlayerAccountDAO {
         String sql = "UPDATE " + tablePrefix + "non_player_accounts " +
                      "SET balance = ?, updated_at = ? WHERE account_name = ?";
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBigDecimal(1, WooEco.getInstance().getCurrencyConfig().formatInput(newBalance));
             stmt.setLong(2, System.currentTimeMillis());
             stmt.setString(3, accountName);
             stmt.executeUpdate();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 
@@ -190,15 +165,12 @@ public class NonPlayerAccountDAO {
         String sql = "UPDATE " + tablePrefix + "non_player_accounts " +
                      "SET balance = balance + ?, updated_at = ? WHERE account_name = ?";
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBigDecimal(1, amount);
             stmt.setLong(2, System.currentTimeMillis());
             stmt.setString(3, accountName);
             stmt.executeUpdate();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 
@@ -206,15 +178,12 @@ public class NonPlayerAccountDAO {
         String sql = "UPDATE " + tablePrefix + "non_player_accounts " +
                      "SET balance = balance - ?, updated_at = ? WHERE account_name = ?";
 
-        databaseManager.getWriteLock().lock();
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBigDecimal(1, amount);
             stmt.setLong(2, System.currentTimeMillis());
             stmt.setString(3, accountName);
             stmt.executeUpdate();
-        } finally {
-            databaseManager.getWriteLock().unlock();
         }
     }
 }
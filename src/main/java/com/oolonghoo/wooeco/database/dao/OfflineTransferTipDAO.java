@@ -11,8 +11,7 @@ import java.util.UUID;
 
 /**
  * 离线交易提示数据访问对象
- * 使用读写锁优化并发性能
- * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 读写均不加锁，直接并发使用连接池
  *
  */
 public class OfflineTransferTipDAO {
@@ -29,7 +28,6 @@ public class OfflineTransferTipDAO {
 
     public void saveTip(OfflineTransferTip tip) throws SQLException {
         String sql = "INSERT INTO " + tablePrefix + "offline_tips (receiver_uuid, sender_name, amount, timestamp, notified) VALUES (?, ?, ?, ?, 0)";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, tip.getReceiverUuid().toString());
@@ -37,15 +35,12 @@ public class OfflineTransferTipDAO {
             stmt.setBigDecimal(3, tip.getAmount());
             stmt.setLong(4, tip.getTimestamp());
             stmt.executeUpdate();
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 
     public List<OfflineTransferTip> getUnnotifiedTips(UUID uuid) throws SQLException {
         String sql = "SELECT " + TIP_COLUMNS + " FROM " + tablePrefix + "offline_tips WHERE receiver_uuid = ? AND notified = 0 ORDER BY timestamp ASC";
         List<OfflineTransferTip> tips = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, uuid.toString());
@@ -60,27 +55,21 @@ public class OfflineTransferTipDAO {
                     rs.getInt("notified") == 1
                 ));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return tips;
     }
 
     public void markAsNotified(UUID uuid) throws SQLException {
         String sql = "UPDATE " + tablePrefix + "offline_tips SET notified = 1 WHERE receiver_uuid = ? AND notified = 0";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, uuid.toString());
             stmt.executeUpdate();
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 
     public int getUnnotifiedCount(UUID uuid) throws SQLException {
         String sql = "SELECT COUNT(*) FROM " + tablePrefix + "offline_tips WHERE receiver_uuid = ? AND notified = 0";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, uuid.toString());
@@ -88,8 +77,6 @@ public class OfflineTransferTipDAO {
             if (rs.next()) {
                 return rs.getInt(1);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return 0;
     }
@@ -99,7 +86,6 @@ public class OfflineTransferTipDAO {
 
         long cutoffTime = System.currentTimeMillis() - (retentionDays * 24L * 60 * 60 * 1000);
         String sql = "DELETE FROM " + tablePrefix + "offline_tips WHERE timestamp < ? AND notified = 1";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, cutoffTime);
@@ -107,8 +93,6 @@ public class OfflineTransferTipDAO {
             if (deleted > 0) {
                 dbManager.getPlugin().getLogger().info("清理了 " + deleted + " 条过期离线交易提示");
             }
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 }
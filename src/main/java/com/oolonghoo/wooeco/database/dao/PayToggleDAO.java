@@ -12,7 +12,7 @@ import java.util.UUID;
 
 /**
  * 收款开关数据访问对象
- * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 单行读写不加锁，直接并发使用连接池
  */
 public class PayToggleDAO {
     private final DatabaseManager dbManager;
@@ -25,7 +25,6 @@ public class PayToggleDAO {
 
     public boolean isEnabled(UUID uuid) {
         String sql = "SELECT enabled FROM " + tablePrefix + "pay_toggle WHERE uuid = ?";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, uuid.toString());
@@ -35,8 +34,6 @@ public class PayToggleDAO {
             }
         } catch (SQLException e) {
             dbManager.getPlugin().getLogger().warning("查询收款开关失败: " + e.getMessage());
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return true;
     }
@@ -50,7 +47,6 @@ public class PayToggleDAO {
             sql = "INSERT INTO " + tablePrefix + "pay_toggle (uuid, enabled, updated_at) VALUES (?, ?, ?) " +
                   "ON CONFLICT(uuid) DO UPDATE SET enabled = excluded.enabled, updated_at = excluded.updated_at";
         }
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, uuid.toString());
@@ -59,15 +55,12 @@ public class PayToggleDAO {
             stmt.executeUpdate();
         } catch (SQLException e) {
             dbManager.getPlugin().getLogger().warning("设置收款开关失败: " + e.getMessage());
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 
     public Map<UUID, Boolean> loadAll() {
         Map<UUID, Boolean> map = new HashMap<>();
         String sql = "SELECT uuid, enabled FROM " + tablePrefix + "pay_toggle";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -77,8 +70,6 @@ public class PayToggleDAO {
             }
         } catch (SQLException e) {
             dbManager.getPlugin().getLogger().warning("加载收款开关数据失败: " + e.getMessage());
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return map;
     }
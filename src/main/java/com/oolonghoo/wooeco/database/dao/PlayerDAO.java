@@ -1,23 +1,31 @@
 package com.oolonghoo.wooeco.database.dao;
 
+import com.oolonghoo.wooeco.config.DatabaseConfig;
 import com.oolonghoo.wooeco.database.DatabaseManager;
+import com.oolonghoo.wooeco.database.UuidBinary;
 import com.oolonghoo.wooeco.model.PlayerAccount;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 玩家数据访问对象
- * 使用读写锁优化并发性能
+ * 写操作按账户 UUID 分段加锁，全表更新使用全局锁；读操作不加锁
  * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 账户行带 version 列：余额写入以版本比较并交换，批量 SQL 修改余额时版本加一
  *
  */
 public class PlayerDAO {
 
-    private static final String ACCOUNT_COLUMNS = "uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at";
+    private static final String ACCOUNT_COLUMNS = "uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at, version";
 
     private final DatabaseManager dbManager;
     private final String tablePrefix;
@@ -29,20 +37,45 @@ public class PlayerDAO {
 
     public PlayerAccount getAccount(UUID uuid) throws SQLException {
         String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts WHERE uuid = ?";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            UuidBinary.set(stmt, 1, uuid);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 return mapResultSetToPlayerAccount(rs);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return null;
     }
 
+    /**
+     * 按 UUID 批量读取账户，每 BATCH_SIZE 个 UUID 一条 IN 查询；不存在的账户不在结果中
+     */
+    public Map<UUID, PlayerAccount> getAccounts(Collection<UUID> uuids) throws SQLException {
+        Map<UUID, PlayerAccount> accounts = new HashMap<>();
+        if (uuids.isEmpty()) return accounts;
+
+        List<UUID> list = new ArrayList<>(uuids);
+        try (Connection conn = dbManager.getConnection()) {
+            for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+                List<UUID> batch = list.subList(from, Math.min(from + BATCH_SIZE, list.size()));
+                String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int i = 1;
+                    for (UUID uuid : batch) {
+                        UuidBinary.set(stmt, i++, uuid);
+                    }
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        PlayerAccount account = mapResultSetToPlayerAccount(rs);
+                        accounts.put(account.getUuid(), account);
+                    }
+                }
+            }
+        }
+        return accounts;
+    }
+
     public PlayerAccount getAccountByName(String name) throws SQLException {
         boolean ignoreCase = dbManager.getPlugin().getConfig().getBoolean("username-ignore-case", true);
         String sql;
@@ -54,7 +87,6 @@ public class PlayerDAO {
         } else {
             sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts WHERE player_name = ?";
         }
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             // SQLite ignoreCase 模式下参数需小写以匹配 player_name_lower
@@ -63,20 +95,20 @@ public class PlayerDAO {
             if (rs.next()) {
                 return mapResultSetToPlayerAccount(rs);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return null;
     }
 
     public void createAccount(PlayerAccount account) throws SQLException {
         String sql = dbManager.isMySQL()
-            ? "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)"
-            : "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, player_name_lower, balance, daily_income, last_income_reset, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        dbManager.getWriteLock().lock();
+            ? "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            : "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, player_name_lower, balance, daily_income, last_income_reset, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        long version = account.getVersion();
+        Lock lock = dbManager.getAccountLock(account.getUuid());
+        lock.lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, account.getUuid().toString());
+            UuidBinary.set(stmt, 1, account.getUuid());
             stmt.setString(2, account.getPlayerName());
             if (!dbManager.isMySQL()) {
                 stmt.setString(3, account.getPlayerName().toLowerCase());
@@ -85,93 +117,33 @@ public class PlayerDAO {
                 stmt.setLong(6, account.getLastIncomeReset());
                 stmt.setLong(7, account.getCreatedAt());
                 stmt.setLong(8, account.getUpdatedAt());
+                stmt.setLong(9, version);
             } else {
                 stmt.setBigDecimal(3, account.getBalance());
                 stmt.setBigDecimal(4, account.getDailyIncome());
                 stmt.setLong(5, account.getLastIncomeReset());
                 stmt.setLong(6, account.getCreatedAt());
                 stmt.setLong(7, account.getUpdatedAt());
+                stmt.setLong(8, version);
             }
             stmt.executeUpdate();
+            account.markPersisted(version);
         } finally {
-            dbManager.getWriteLock().unlock();
+            lock.unlock();
         }
     }
 
     public void updateAccount(PlayerAccount account) throws SQLException {
-        String sql = dbManager.isMySQL()
-            ? "UPDATE " + tablePrefix + "accounts SET player_name = ?, balance = ?, daily_income = ?, last_income_reset = ?, updated_at = ? WHERE uuid = ?"
-            : "UPDATE " + tablePrefix + "accounts SET player_name = ?, player_name_lower = ?, balance = ?, daily_income = ?, last_income_reset = ?, updated_at = ? WHERE uuid = ?";
-        dbManager.getWriteLock().lock();
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, account.getPlayerName());
-            if (!dbManager.isMySQL()) {
-                stmt.setString(2, account.getPlayerName().toLowerCase());
-                stmt.setBigDecimal(3, account.getBalance());
-                stmt.setBigDecimal(4, account.getDailyIncome());
-                stmt.setLong(5, account.getLastIncomeReset());
-                stmt.setLong(6, System.currentTimeMillis());
-                stmt.setString(7, account.getUuid().toString());
-            } else {
-                stmt.setBigDecimal(2, account.getBalance());
-                stmt.setBigDecimal(3, account.getDailyIncome());
-                stmt.setLong(4, account.getLastIncomeReset());
-                stmt.setLong(5, System.currentTimeMillis());
-                stmt.setString(6, account.getUuid().toString());
-            }
-            stmt.executeUpdate();
-            account.markSaved();
-        } finally {
-            dbManager.getWriteLock().unlock();
-        }
+        saveAllBatch(Collections.singletonList(account));
     }
 
     public void saveOrUpdateAccount(PlayerAccount account) throws SQLException {
-        String sql;
-        if (dbManager.isMySQL()) {
-            sql = "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at) " +
-                  "VALUES (?, ?, ?, ?, ?, ?, ?) AS new_val " +
-                  "ON DUPLICATE KEY UPDATE player_name = new_val.player_name, balance = new_val.balance, " +
-                  "daily_income = new_val.daily_income, last_income_reset = new_val.last_income_reset, updated_at = new_val.updated_at";
-        } else {
-            sql = "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, player_name_lower, balance, daily_income, last_income_reset, created_at, updated_at) " +
-                  "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
-                  "ON CONFLICT(uuid) DO UPDATE SET player_name = excluded.player_name, player_name_lower = excluded.player_name_lower, balance = excluded.balance, " +
-                  "daily_income = excluded.daily_income, last_income_reset = excluded.last_income_reset, updated_at = excluded.updated_at";
-        }
-
-        dbManager.getWriteLock().lock();
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            long now = System.currentTimeMillis();
-            stmt.setString(1, account.getUuid().toString());
-            stmt.setString(2, account.getPlayerName());
-            if (!dbManager.isMySQL()) {
-                stmt.setString(3, account.getPlayerName().toLowerCase());
-                stmt.setBigDecimal(4, account.getBalance());
-                stmt.setBigDecimal(5, account.getDailyIncome());
-                stmt.setLong(6, account.getLastIncomeReset());
-                stmt.setLong(7, account.getCreatedAt());
-                stmt.setLong(8, now);
-            } else {
-                stmt.setBigDecimal(3, account.getBalance());
-                stmt.setBigDecimal(4, account.getDailyIncome());
-                stmt.setLong(5, account.getLastIncomeReset());
-                stmt.setLong(6, account.getCreatedAt());
-                stmt.setLong(7, now);
-            }
-            stmt.executeUpdate();
-            account.markSaved();
-        } finally {
-            dbManager.getWriteLock().unlock();
-        }
+        saveAllBatch(Collections.singletonList(account));
     }
 
     public List<PlayerAccount> getTopBalances(int limit) throws SQLException {
         String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts ORDER BY balance DESC LIMIT ?";
         List<PlayerAccount> accounts = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, limit);
@@ -179,8 +151,6 @@ public class PlayerDAO {
             while (rs.next()) {
                 accounts.add(mapResultSetToPlayerAccount(rs));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return accounts;
     }
@@ -188,7 +158,6 @@ public class PlayerDAO {
     public List<PlayerAccount> getTopIncomes(int limit) throws SQLException {
         String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts ORDER BY daily_income DESC LIMIT ?";
         List<PlayerAccount> accounts = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, limit);
@@ -196,8 +165,6 @@ public class PlayerDAO {
             while (rs.next()) {
                 accounts.add(mapResultSetToPlayerAccount(rs));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return accounts;
     }
@@ -205,57 +172,52 @@ public class PlayerDAO {
     public List<PlayerAccount> getAllAccounts() throws SQLException {
         String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM " + tablePrefix + "accounts";
         List<PlayerAccount> accounts = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 accounts.add(mapResultSetToPlayerAccount(rs));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return accounts;
     }
 
     public int countAccounts() throws SQLException {
         String sql = "SELECT COUNT(*) FROM " + tablePrefix + "accounts";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 return rs.getInt(1);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return 0;
     }
 
     public void resetAllDailyIncome() throws SQLException {
         String sql = "UPDATE " + tablePrefix + "accounts SET daily_income = 0, last_income_reset = ?";
-        dbManager.getWriteLock().lock();
+        dbManager.getBulkLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, System.currentTimeMillis());
             stmt.executeUpdate();
         } finally {
-            dbManager.getWriteLock().unlock();
+            dbManager.getBulkLock().unlock();
         }
     }
 
     public void updateBalance(UUID uuid, BigDecimal newBalance) throws SQLException {
-        String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ? WHERE uuid = ?";
-        dbManager.getWriteLock().lock();
+        String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ?, version = version + 1 WHERE uuid = ?";
+        Lock lock = dbManager.getAccountLock(uuid);
+        lock.lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBigDecimal(1, newBalance);
             stmt.setLong(2, System.currentTimeMillis());
-            stmt.setString(3, uuid.toString());
+            UuidBinary.set(stmt, 3, uuid);
             stmt.executeUpdate();
         } finally {
-            dbManager.getWriteLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -263,31 +225,31 @@ public class PlayerDAO {
      * 事务内直接更新余额（不获取锁、不管理连接，由外层 executeInTransaction 管理）
      */
     public void updateBalanceInTransaction(Connection conn, UUID uuid, BigDecimal newBalance) throws SQLException {
-        String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ? WHERE uuid = ?";
+        String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ?, version = version + 1 WHERE uuid = ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBigDecimal(1, newBalance);
             stmt.setLong(2, System.currentTimeMillis());
-            stmt.setString(3, uuid.toString());
+            UuidBinary.set(stmt, 3, uuid);
             stmt.executeUpdate();
         }
     }
 
     public void resetDailyIncome(UUID uuid) throws SQLException {
         String sql = "UPDATE " + tablePrefix + "accounts SET daily_income = 0, last_income_reset = ? WHERE uuid = ?";
-        dbManager.getWriteLock().lock();
+        Lock lock = dbManager.getAccountLock(uuid);
+        lock.lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, System.currentTimeMillis());
-            stmt.setString(2, uuid.toString());
+            UuidBinary.set(stmt, 2, uuid);
             stmt.executeUpdate();
         } finally {
-            dbManager.getWriteLock().unlock();
+            lock.unlock();
         }
     }
 
     public java.math.BigDecimal getTotalBalance() throws SQLException {
         String sql = "SELECT SUM(balance) FROM " + tablePrefix + "accounts";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             ResultSet rs = stmt.executeQuery();
@@ -295,15 +257,12 @@ public class PlayerDAO {
                 java.math.BigDecimal total = rs.getBigDecimal(1);
                 return total != null ? total : java.math.BigDecimal.ZERO;
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return java.math.BigDecimal.ZERO;
     }
 
     public java.math.BigDecimal getTotalDailyIncome() throws SQLException {
         String sql = "SELECT SUM(daily_income) FROM " + tablePrefix + "accounts";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             ResultSet rs = stmt.executeQuery();
@@ -311,21 +270,20 @@ public class PlayerDAO {
                 java.math.BigDecimal total = rs.getBigDecimal(1);
                 return total != null ? total : java.math.BigDecimal.ZERO;
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return java.math.BigDecimal.ZERO;
     }
 
     private PlayerAccount mapResultSetToPlayerAccount(ResultSet rs) throws SQLException {
         return new PlayerAccount(
-            UUID.fromString(rs.getString("uuid")),
+            UuidBinary.get(rs, "uuid"),
             rs.getString("player_name"),
             rs.getBigDecimal("balance"),
             rs.getBigDecimal("daily_income"),
             rs.getLong("last_income_reset"),
             rs.getLong("created_at"),
-            rs.getLong("updated_at")
+            rs.getLong("updated_at"),
+            rs.getLong("version")
         );
     }
 
@@ -342,44 +300,44 @@ public class PlayerDAO {
 
     public int depositAllBatch(BigDecimal amount, boolean onlineOnly, List<UUID> onlineUuids) throws SQLException {
         if (!onlineOnly || onlineUuids == null || onlineUuids.isEmpty()) {
-            String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance + ?, updated_at = ?";
-            dbManager.getWriteLock().lock();
+            String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance + ?, updated_at = ?, version = version + 1";
+            dbManager.getBulkLock().lock();
             try (Connection conn = dbManager.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setBigDecimal(1, amount);
                 stmt.setLong(2, System.currentTimeMillis());
                 return stmt.executeUpdate();
             } finally {
-                dbManager.getWriteLock().unlock();
+                dbManager.getBulkLock().unlock();
             }
         }
 
         int total = 0;
-        dbManager.getWriteLock().lock();
+        dbManager.getBulkLock().lock();
         try (Connection conn = dbManager.getConnection()) {
             for (int i = 0; i < onlineUuids.size(); i += BATCH_SIZE) {
                 List<UUID> batch = onlineUuids.subList(i, Math.min(i + BATCH_SIZE, onlineUuids.size()));
-                String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance + ?, updated_at = ? WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
+                String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance + ?, updated_at = ?, version = version + 1 WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
                 try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                     int paramIndex = 1;
                     stmt.setBigDecimal(paramIndex++, amount);
                     stmt.setLong(paramIndex++, System.currentTimeMillis());
                     for (UUID uuid : batch) {
-                        stmt.setString(paramIndex++, uuid.toString());
+                        UuidBinary.set(stmt, paramIndex++, uuid);
                     }
                     total += stmt.executeUpdate();
                 }
             }
         } finally {
-            dbManager.getWriteLock().unlock();
+            dbManager.getBulkLock().unlock();
         }
         return total;
     }
 
     public int withdrawAllBatch(BigDecimal amount, boolean onlineOnly, List<UUID> onlineUuids) throws SQLException {
         if (!onlineOnly || onlineUuids == null || onlineUuids.isEmpty()) {
-            String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance - ?, updated_at = ? WHERE balance >= ?";
-            dbManager.getWriteLock().lock();
+            String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance - ?, updated_at = ?, version = version + 1 WHERE balance >= ?";
+            dbManager.getBulkLock().lock();
             try (Connection conn = dbManager.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setBigDecimal(1, amount);
@@ -387,29 +345,29 @@ public class PlayerDAO {
                 stmt.setBigDecimal(3, amount);
                 return stmt.executeUpdate();
             } finally {
-                dbManager.getWriteLock().unlock();
+                dbManager.getBulkLock().unlock();
             }
         }
 
         int total = 0;
-        dbManager.getWriteLock().lock();
+        dbManager.getBulkLock().lock();
         try (Connection conn = dbManager.getConnection()) {
             for (int i = 0; i < onlineUuids.size(); i += BATCH_SIZE) {
                 List<UUID> batch = onlineUuids.subList(i, Math.min(i + BATCH_SIZE, onlineUuids.size()));
-                String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance - ?, updated_at = ? WHERE balance >= ? AND uuid IN (" + buildPlaceholders(batch.size()) + ")";
+                String sql = "UPDATE " + tablePrefix + "accounts SET balance = balance - ?, updated_at = ?, version = version + 1 WHERE balance >= ? AND uuid IN (" + buildPlaceholders(batch.size()) + ")";
                 try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                     int paramIndex = 1;
                     stmt.setBigDecimal(paramIndex++, amount);
                     stmt.setLong(paramIndex++, System.currentTimeMillis());
                     stmt.setBigDecimal(paramIndex++, amount);
                     for (UUID uuid : batch) {
-                        stmt.setString(paramIndex++, uuid.toString());
+                        UuidBinary.set(stmt, paramIndex++, uuid);
                     }
                     total += stmt.executeUpdate();
                 }
             }
         } finally {
-            dbManager.getWriteLock().unlock();
+            dbManager.getBulkLock().unlock();
         }
         return total;
     }
@@ -417,53 +375,99 @@ public class PlayerDAO {
     /**
      * 批量保存或更新账户（JDBC batch）
      * 一次获取连接、一次获取锁、一次提交，避免逐条操作的开销
+     * 按版本比较并交换：先以 WHERE version = 已持久化版本 批量更新，未命中的账户再查询数据库版本处理：
+     * 不存在则插入；数据库版本落后（发布方尚未写库）则以数据库版本为条件覆盖；
+     * 数据库中已有其他服务器写入的更新版本时视为冲突，采用版本较高的一方
+     * 跨服增量同步模式下，已知数据库状态的账户改为累加本服务器产生的增量，各服务器的写入互不覆盖
      */
     public void saveAllBatch(List<PlayerAccount> accounts) throws SQLException {
         if (accounts.isEmpty()) return;
 
-        String sql;
-        if (dbManager.isMySQL()) {
-            sql = "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at) " +
-                  "VALUES (?, ?, ?, ?, ?, ?, ?) AS new_val " +
-                  "ON DUPLICATE KEY UPDATE player_name = new_val.player_name, balance = new_val.balance, " +
-                  "daily_income = new_val.daily_income, last_income_reset = new_val.last_income_reset, updated_at = new_val.updated_at";
-        } else {
-            sql = "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, player_name_lower, balance, daily_income, last_income_reset, created_at, updated_at) " +
-                  "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
-                  "ON CONFLICT(uuid) DO UPDATE SET player_name = excluded.player_name, player_name_lower = excluded.player_name_lower, balance = excluded.balance, " +
-                  "daily_income = excluded.daily_income, last_income_reset = excluded.last_income_reset, updated_at = excluded.updated_at";
+        List<AccountSnapshot> snapshots = new ArrayList<>(accounts.size());
+        List<UUID> uuids = new ArrayList<>(accounts.size());
+        for (PlayerAccount account : accounts) {
+            // 占位账户余额不是真实余额，绝不写库
+            if (account.isPlaceholder()) {
+                continue;
+            }
+            snapshots.add(new AccountSnapshot(account));
+            uuids.add(account.getUuid());
         }
-
-        dbManager.getWriteLock().lock();
+        if (snapshots.isEmpty()) return;
+        Lock lock = dbManager.getAccountsLock(uuids);
+        lock.lock();
         try (Connection conn = dbManager.getConnection()) {
             boolean originalAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try {
                 long now = System.currentTimeMillis();
-                for (PlayerAccount account : accounts) {
-                    stmt.setString(1, account.getUuid().toString());
-                    stmt.setString(2, account.getPlayerName());
-                    if (!dbManager.isMySQL()) {
-                        stmt.setString(3, account.getPlayerName().toLowerCase());
-                        stmt.setBigDecimal(4, account.getBalance());
-                        stmt.setBigDecimal(5, account.getDailyIncome());
-                        stmt.setLong(6, account.getLastIncomeReset());
-                        stmt.setLong(7, account.getCreatedAt());
-                        stmt.setLong(8, now);
+                List<AccountSnapshot> saved = new ArrayList<>(snapshots.size());
+                List<AccountSnapshot> unresolved = new ArrayList<>();
+                List<AccountSnapshot> deltas = new ArrayList<>();
+                boolean deltaSync = isDeltaSync();
+
+                List<AccountSnapshot> known = new ArrayList<>(snapshots.size());
+                for (AccountSnapshot snapshot : snapshots) {
+                    if (deltaSync && snapshot.expectedVersion >= 0) {
+                        deltas.add(snapshot);
+                    } else if (snapshot.expectedVersion >= 0) {
+                        known.add(snapshot);
+                    } else {
+                        unresolved.add(snapshot);
+                    }
+                }
+                int[] counts = compareAndSetBatch(conn, known, now);
+                for (int i = 0; i < known.size(); i++) {
+                    if (counts[i] == 1) {
+                        saved.add(known.get(i));
                     } else {
-                        stmt.setBigDecimal(3, account.getBalance());
-                        stmt.setBigDecimal(4, account.getDailyIncome());
-                        stmt.setLong(5, account.getLastIncomeReset());
-                        stmt.setLong(6, account.getCreatedAt());
-                        stmt.setLong(7, now);
+                        unresolved.add(known.get(i));
                     }
-                    stmt.addBatch();
                 }
-                stmt.executeBatch();
+
+                List<AccountSnapshot> deltaSaved = new ArrayList<>(deltas.size());
+                counts = addDeltaBatch(conn, deltas, now);
+                for (int i = 0; i < deltas.size(); i++) {
+                    if (counts[i] == 0) {
+                        // 数据库中没有该行，按完整余额插入
+                        unresolved.add(deltas.get(i));
+                    } else {
+                        deltaSaved.add(deltas.get(i));
+                    }
+                }
+
+                List<AccountSnapshot> adopted = new ArrayList<>();
+                if (!unresolved.isEmpty()) {
+                    resolveUnmatched(conn, unresolved, saved, adopted, now);
+                }
                 conn.commit();
-                // 全部成功后标记为已保存
-                for (PlayerAccount account : accounts) {
-                    account.markSaved();
+
+                // 提交成功后才改动内存中的账户，回滚时账户保持快照前的版本与余额
+                for (AccountSnapshot snapshot : saved) {
+                    PlayerAccount account = snapshot.account;
+                    if (snapshot.rewritten) {
+                        // 冲突处理改写了写入的余额或版本，以写入的状态为基准叠加快照之后的本地变动
+                        if (account.rebaseOnPersisted(snapshot.balance, snapshot.version, snapshot.delta, snapshot.snapshotVersion)) {
+                            account.markSaved();
+                        }
+                    } else {
+                        account.markPersisted(snapshot.version);
+                        account.commitDelta(snapshot.delta);
+                        account.markSaved();
+                    }
+                }
+                for (AccountSnapshot snapshot : adopted) {
+                    // 采用数据库中的余额，快照之后的本地变动保留为未写入增量
+                    if (snapshot.account.rebaseOnPersisted(snapshot.balance, snapshot.version, BigDecimal.ZERO, snapshot.snapshotVersion)) {
+                        snapshot.account.markSaved();
+                    }
+                }
+                for (AccountSnapshot snapshot : deltaSaved) {
+                    snapshot.account.markPersisted(snapshot.version);
+                    // 写库期间又有本地变动时保持为脏，剩余增量留给下一次保存
+                    if (snapshot.account.commitDelta(snapshot.delta)) {
+                        snapshot.account.markSaved();
+                    }
                 }
             } catch (SQLException e) {
                 conn.rollback();
@@ -472,43 +476,334 @@ public class PlayerDAO {
                 conn.setAutoCommit(originalAutoCommit);
             }
         } finally {
-            dbManager.getWriteLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    private int[] compareAndSetBatch(Connection conn, List<AccountSnapshot> snapshots, long now) throws SQLException {
+        if (snapshots.isEmpty()) return new int[0];
+
+        String sql = dbManager.isMySQL()
+            ? "UPDATE " + tablePrefix + "accounts SET player_name = ?, balance = ?, daily_income = ?, last_income_reset = ?, updated_at = ?, version = ? WHERE uuid = ? AND version = ?"
+            : "UPDATE " + tablePrefix + "accounts SET player_name = ?, player_name_lower = ?, balance = ?, daily_income = ?, last_income_reset = ?, updated_at = ?, version = ? WHERE uuid = ? AND version = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (AccountSnapshot snapshot : snapshots) {
+                int i = 1;
+                stmt.setString(i++, snapshot.playerName);
+                if (!dbManager.isMySQL()) {
+                    stmt.setString(i++, snapshot.playerName.toLowerCase());
+                }
+                stmt.setBigDecimal(i++, snapshot.balance);
+                stmt.setBigDecimal(i++, snapshot.dailyIncome);
+                stmt.setLong(i++, snapshot.lastIncomeReset);
+                stmt.setLong(i++, now);
+                stmt.setLong(i++, snapshot.version);
+                UuidBinary.set(stmt, i++, snapshot.account.getUuid());
+                stmt.setLong(i, snapshot.expectedVersion);
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        }
+    }
+
+    /**
+     * 累加写入本服务器产生的余额增量，返回每个账户的更新行数
+     */
+    private int[] addDeltaBatch(Connection conn, List<AccountSnapshot> snapshots, long now) throws SQLException {
+        if (snapshots.isEmpty()) return new int[0];
+
+        String sql = dbManager.isMySQL()
+            ? "UPDATE " + tablePrefix + "accounts SET player_name = ?, balance = balance + ?, daily_income = ?, last_income_reset = ?, updated_at = ?, version = version + 1 WHERE uuid = ?"
+            : "UPDATE " + tablePrefix + "accounts SET player_name = ?, player_name_lower = ?, balance = balance + ?, daily_income = ?, last_income_reset = ?, updated_at = ?, version = version + 1 WHERE uuid = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (AccountSnapshot snapshot : snapshots) {
+                int i = 1;
+                stmt.setString(i++, snapshot.playerName);
+                if (!dbManager.isMySQL()) {
+                    stmt.setString(i++, snapshot.playerName.toLowerCase());
+                }
+                stmt.setBigDecimal(i++, snapshot.delta);
+                stmt.setBigDecimal(i++, snapshot.dailyIncome);
+                stmt.setLong(i++, snapshot.lastIncomeReset);
+                stmt.setLong(i++, now);
+                UuidBinary.set(stmt, i, snapshot.account.getUuid());
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        }
+    }
+
+    private boolean isDeltaSync() {
+        DatabaseConfig config = dbManager.getPlugin().getDatabaseConfig();
+        return config.isSyncEnabled() && config.isDeltaSync();
+    }
+
+    /**
+     * 处理比较并交换未命中的账户（含批量驱动不返回行数的情况）
+     * 只改写快照，不改动内存中的账户；写入成功的快照放入 saved，采用数据库状态的快照放入 adopted，由调用方在提交后应用
+     */
+    private void resolveUnmatched(Connection conn, List<AccountSnapshot> unresolved, List<AccountSnapshot> saved,
+                                  List<AccountSnapshot> adopted, long now) throws SQLException {
+        Map<UUID, PersistedState> persisted = loadPersistedStates(conn, unresolved);
+        List<AccountSnapshot> inserts = new ArrayList<>();
+        List<AccountSnapshot> overwrites = new ArrayList<>();
+
+        for (AccountSnapshot snapshot : unresolved) {
+            PlayerAccount account = snapshot.account;
+            PersistedState state = persisted.get(account.getUuid());
+            long localVersion = snapshot.version;
+            BigDecimal localBalance = snapshot.balance;
+            switch (resolve(snapshot, state, account.getPersistedVersion())) {
+                case INSERT -> inserts.add(snapshot);
+                case SAVED -> saved.add(snapshot);
+                case OVERWRITE -> overwrites.add(snapshot);
+                case CONFLICT_OVERWRITE -> {
+                    reportConflict(account, state, localVersion, localBalance, false);
+                    overwrites.add(snapshot);
+                }
+                case STALE -> dbManager.getPlugin().getDebugManager().incrementCounter("account_stale_snapshot");
+                case ADOPT -> {
+                    reportConflict(account, state, localVersion, localBalance, true);
+                    adopted.add(snapshot);
+                }
+                case REBASE -> {
+                    reportRebase(account, state, localVersion, localBalance, snapshot.delta);
+                    overwrites.add(snapshot);
+                }
+            }
+        }
+
+        int[] counts = compareAndSetBatch(conn, overwrites, now);
+        List<AccountSnapshot> unknown = new ArrayList<>();
+        for (int i = 0; i < overwrites.size(); i++) {
+            // 查询之后又被并发修改的账户保持为脏，留给下一次保存
+            if (counts[i] == 1) {
+                saved.add(overwrites.get(i));
+            } else if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(overwrites.get(i));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            // 驱动不返回行数时重新读取，只有数据库中正是本次写入的版本与余额才算写入成功
+            Map<UUID, PersistedState> written = loadPersistedStates(conn, unknown);
+            for (AccountSnapshot snapshot : unknown) {
+                PersistedState state = written.get(snapshot.account.getUuid());
+                if (state != null && state.version == snapshot.version && state.balance.compareTo(snapshot.balance) == 0) {
+                    saved.add(snapshot);
+                }
+            }
+        }
+        insertBatch(conn, inserts, now);
+        saved.addAll(inserts);
+    }
+
+    /**
+     * 比较快照与数据库中的状态，决定如何处理未命中的账户；需要写入时把目标余额、版本和期望版本写入快照
+     *
+     * @param persistedVersion 处理时账户已知的数据库版本，可能比快照新（如快照之后的转账组提交）
+     */
+    static Resolution resolve(AccountSnapshot snapshot, PersistedState state, long persistedVersion) {
+        if (state == null) {
+            return Resolution.INSERT;
         }
+        if (state.version == snapshot.version && state.balance.compareTo(snapshot.balance) == 0) {
+            // 已由第一轮更新写入
+            return Resolution.SAVED;
+        }
+        if (snapshot.expectedVersion < 0 || state.version < snapshot.expectedVersion) {
+            // 版本未知（新建或从日志恢复）以本地为准；数据库落后说明发布方尚未写库，本地是更新的版本
+            long newVersion = Math.max(snapshot.version, state.version + 1);
+            if (newVersion != snapshot.version) {
+                snapshot.version = newVersion;
+                snapshot.rewritten = true;
+            }
+            snapshot.expectedVersion = state.version;
+            return Resolution.OVERWRITE;
+        }
+        if (state.version < snapshot.version) {
+            // 其他服务器写入了本地未见过的版本，本地版本更高，以本地为准
+            snapshot.expectedVersion = state.version;
+            return Resolution.CONFLICT_OVERWRITE;
+        }
+        if (persistedVersion >= state.version) {
+            // 快照之后本服务器已写入该版本（如转账组提交），快照已过期，剩余变动留给下一次保存
+            return Resolution.STALE;
+        }
+        if (snapshot.delta.signum() == 0) {
+            // 数据库版本不低于本地且本地没有未写入的变动：采用数据库中的余额
+            snapshot.balance = state.balance;
+            snapshot.version = state.version;
+            return Resolution.ADOPT;
+        }
+        // 数据库版本不低于本地且本地有未写入的变动：把本地增量叠加到数据库余额上，以数据库版本为期望重新写入
+        snapshot.balance = state.balance.add(snapshot.delta);
+        snapshot.version = state.version + 1;
+        snapshot.expectedVersion = state.version;
+        snapshot.rewritten = true;
+        return Resolution.REBASE;
+    }
+
+    private Map<UUID, PersistedState> loadPersistedStates(Connection conn, List<AccountSnapshot> snapshots) throws SQLException {
+        Map<UUID, PersistedState> states = new HashMap<>();
+        for (int from = 0; from < snapshots.size(); from += BATCH_SIZE) {
+            List<AccountSnapshot> batch = snapshots.subList(from, Math.min(from + BATCH_SIZE, snapshots.size()));
+            String sql = "SELECT uuid, balance, version FROM " + tablePrefix + "accounts WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int i = 1;
+                for (AccountSnapshot snapshot : batch) {
+                    UuidBinary.set(stmt, i++, snapshot.account.getUuid());
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    states.put(UuidBinary.get(rs, "uuid"),
+                        new PersistedState(rs.getBigDecimal("balance"), rs.getLong("version")));
+                }
+            }
+        }
+        return states;
+    }
+
+    private void insertBatch(Connection conn, List<AccountSnapshot> snapshots, long now) throws SQLException {
+        if (snapshots.isEmpty()) return;
+
+        String sql = dbManager.isMySQL()
+            ? "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, balance, daily_income, last_income_reset, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            : "INSERT INTO " + tablePrefix + "accounts (uuid, player_name, player_name_lower, balance, daily_income, last_income_reset, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (AccountSnapshot snapshot : snapshots) {
+                int i = 1;
+                UuidBinary.set(stmt, i++, snapshot.account.getUuid());
+                stmt.setString(i++, snapshot.playerName);
+                if (!dbManager.isMySQL()) {
+                    stmt.setString(i++, snapshot.playerName.toLowerCase());
+                }
+                stmt.setBigDecimal(i++, snapshot.balance);
+                stmt.setBigDecimal(i++, snapshot.dailyIncome);
+                stmt.setLong(i++, snapshot.lastIncomeReset);
+                stmt.setLong(i++, snapshot.account.getCreatedAt());
+                stmt.setLong(i++, now);
+                stmt.setLong(i, snapshot.version);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void reportConflict(PlayerAccount account, PersistedState state, long localVersion, BigDecimal localBalance,
+                                boolean adopted) {
+        dbManager.getPlugin().getDebugManager().incrementCounter("account_version_conflict");
+        dbManager.getPlugin().getLogger().warning(String.format(
+            "账户版本冲突 [%s]：本地 v%d (%s)，数据库 v%d (%s)，已采用%s",
+            account.getPlayerName(), localVersion, localBalance.toPlainString(),
+            state.version, state.balance.toPlainString(), adopted ? "数据库" : "本地"));
+    }
+
+    private void reportRebase(PlayerAccount account, PersistedState state, long localVersion, BigDecimal localBalance,
+                              BigDecimal delta) {
+        dbManager.getPlugin().getDebugManager().incrementCounter("account_version_rebase");
+        dbManager.getPlugin().getLogger().warning(String.format(
+            "账户版本冲突 [%s]：本地 v%d (%s)，数据库 v%d (%s)，已将本地未写入的 %s 叠加到数据库余额",
+            account.getPlayerName(), localVersion, localBalance.toPlainString(),
+            state.version, state.balance.toPlainString(), delta.toPlainString()));
     }
 
     public int setAllBatch(BigDecimal amount, boolean onlineOnly, List<UUID> onlineUuids) throws SQLException {
         if (!onlineOnly || onlineUuids == null || onlineUuids.isEmpty()) {
-            String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ?";
-            dbManager.getWriteLock().lock();
+            String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ?, version = version + 1";
+            dbManager.getBulkLock().lock();
             try (Connection conn = dbManager.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setBigDecimal(1, amount);
                 stmt.setLong(2, System.currentTimeMillis());
                 return stmt.executeUpdate();
             } finally {
-                dbManager.getWriteLock().unlock();
+                dbManager.getBulkLock().unlock();
             }
         }
 
         int total = 0;
-        dbManager.getWriteLock().lock();
+        dbManager.getBulkLock().lock();
         try (Connection conn = dbManager.getConnection()) {
             for (int i = 0; i < onlineUuids.size(); i += BATCH_SIZE) {
                 List<UUID> batch = onlineUuids.subList(i, Math.min(i + BATCH_SIZE, onlineUuids.size()));
-                String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ? WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
+                String sql = "UPDATE " + tablePrefix + "accounts SET balance = ?, updated_at = ?, version = version + 1 WHERE uuid IN (" + buildPlaceholders(batch.size()) + ")";
                 try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                     int paramIndex = 1;
                     stmt.setBigDecimal(paramIndex++, amount);
                     stmt.setLong(paramIndex++, System.currentTimeMillis());
                     for (UUID uuid : batch) {
-                        stmt.setString(paramIndex++, uuid.toString());
+                        UuidBinary.set(stmt, paramIndex++, uuid);
                     }
                     total += stmt.executeUpdate();
                 }
             }
         } finally {
-            dbManager.getWriteLock().unlock();
+            dbManager.getBulkLock().unlock();
         }
         return total;
     }
+
+    /**
+     * 未命中比较并交换的账户的处理方式
+     */
+    enum Resolution {
+        /** 数据库中没有该行，插入 */
+        INSERT,
+        /** 第一轮更新已写入 */
+        SAVED,
+        /** 以本地为准覆盖 */
+        OVERWRITE,
+        /** 与其他服务器冲突，本地版本更高，以本地为准覆盖 */
+        CONFLICT_OVERWRITE,
+        /** 快照已过期，留给下一次保存 */
+        STALE,
+        /** 采用数据库中的状态 */
+        ADOPT,
+        /** 本地增量叠加到数据库余额上重新写入 */
+        REBASE
+    }
+
+    /**
+     * 保存时刻的账户快照，余额与版本在账户锁内一并读取
+     * 冲突处理会改写余额、版本和期望版本，账户本身在提交后才按快照更新
+     */
+    static final class AccountSnapshot {
+        final PlayerAccount account;
+        final String playerName;
+        BigDecimal balance;
+        final BigDecimal dailyIncome;
+        final BigDecimal delta;
+        final long lastIncomeReset;
+        /** 快照时账户的版本，提交后据此判断快照之后是否有本地变动 */
+        final long snapshotVersion;
+        long version;
+        long expectedVersion;
+        /** 写入的余额或版本已被冲突处理改写，提交后需以写入的状态为基准更新账户 */
+        boolean rewritten;
+
+        AccountSnapshot(PlayerAccount account) {
+            this.account = account;
+            synchronized (account) {
+                // 定点账户的存取款不进入账户锁，先读版本号保证余额不旧于版本号
+                this.version = account.getVersion();
+                this.expectedVersion = account.getPersistedVersion();
+                this.playerName = account.getPlayerName();
+                this.balance = account.getBalance();
+                this.dailyIncome = account.getDailyIncome();
+                this.delta = account.getUnpersistedDelta();
+                this.lastIncomeReset = account.getLastIncomeReset();
+            }
+            this.snapshotVersion = this.version;
+        }
+    }
+
+    static final class PersistedState {
+        final BigDecimal balance;
+        final long version;
+
+        PersistedState(BigDecimal balance, long version) {
+            this.balance = balance;
+            this.version = version;
+        }
+    }
 }
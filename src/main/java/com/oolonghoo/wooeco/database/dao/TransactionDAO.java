@@ -1,6 +1,7 @@
 package com.oolonghoo.wooeco.database.dao;
 
 import com.oolonghoo.wooeco.database.DatabaseManager;
+import com.oolonghoo.wooeco.database.UuidBinary;
 import com.oolonghoo.wooeco.model.Transaction;
 
 import java.math.BigDecimal;
@@ -11,8 +12,7 @@ import java.util.UUID;
 
 /**
  * 交易记录数据访问对象
- * 使用读写锁优化并发性能
- * 先获取锁再获取连接，与 executeInTransaction 保持一致，避免 MySQL 下死锁
+ * 交易记录为追加写入，读写均不加锁，直接并发使用连接池
  *
  */
 public class TransactionDAO {
@@ -29,19 +29,16 @@ public class TransactionDAO {
 
     public void saveTransaction(Transaction transaction) throws SQLException {
         String sql = "INSERT INTO " + tablePrefix + "transactions (sender_uuid, sender_name, receiver_uuid, receiver_name, amount, tax, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, transaction.getSenderUuid().toString());
+            UuidBinary.set(stmt, 1, transaction.getSenderUuid());
             stmt.setString(2, transaction.getSenderName());
-            stmt.setString(3, transaction.getReceiverUuid().toString());
+            UuidBinary.set(stmt, 3, transaction.getReceiverUuid());
             stmt.setString(4, transaction.getReceiverName());
             stmt.setBigDecimal(5, transaction.getAmount());
             stmt.setBigDecimal(6, transaction.getTaxDecimal());
             stmt.setLong(7, transaction.getTimestamp());
             stmt.executeUpdate();
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 
@@ -57,26 +54,23 @@ public class TransactionDAO {
 
     private List<Transaction> getTransactions(UUID uuid, int limit, String sql) throws SQLException {
         List<Transaction> transactions = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            UuidBinary.set(stmt, 1, uuid);
             stmt.setInt(2, limit);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 transactions.add(new Transaction(
                     rs.getLong("id"),
-                    UUID.fromString(rs.getString("sender_uuid")),
+                    UuidBinary.get(rs, "sender_uuid"),
                     rs.getString("sender_name"),
-                    UUID.fromString(rs.getString("receiver_uuid")),
+                    UuidBinary.get(rs, "receiver_uuid"),
                     rs.getString("receiver_name"),
                     rs.getBigDecimal("amount"),
                     rs.getBigDecimal("tax"),
                     rs.getLong("timestamp")
                 ));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return transactions;
     }
@@ -86,7 +80,6 @@ public class TransactionDAO {
 
         long cutoffTime = System.currentTimeMillis() - (retentionDays * 24L * 60 * 60 * 1000);
         String sql = "DELETE FROM " + tablePrefix + "transactions WHERE timestamp < ?";
-        dbManager.getWriteLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, cutoffTime);
@@ -94,8 +87,6 @@ public class TransactionDAO {
             if (deleted > 0) {
                 dbManager.getPlugin().getLogger().info("清理了 " + deleted + " 条过期交易记录");
             }
-        } finally {
-            dbManager.getWriteLock().unlock();
         }
     }
 
@@ -107,28 +98,25 @@ public class TransactionDAO {
                      "SELECT " + TRANSACTION_COLUMNS + " FROM " + tablePrefix + "transactions WHERE receiver_uuid = ?" +
                      ") combined ORDER BY timestamp DESC LIMIT ? OFFSET ?";
         List<Transaction> transactions = new ArrayList<>();
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
-            stmt.setString(2, uuid.toString());
+            UuidBinary.set(stmt, 1, uuid);
+            UuidBinary.set(stmt, 2, uuid);
             stmt.setInt(3, limit);
             stmt.setInt(4, offset);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 transactions.add(new Transaction(
                     rs.getLong("id"),
-                    UUID.fromString(rs.getString("sender_uuid")),
+                    UuidBinary.get(rs, "sender_uuid"),
                     rs.getString("sender_name"),
-                    UUID.fromString(rs.getString("receiver_uuid")),
+                    UuidBinary.get(rs, "receiver_uuid"),
                     rs.getString("receiver_name"),
                     rs.getBigDecimal("amount"),
                     rs.getBigDecimal("tax"),
                     rs.getLong("timestamp")
                 ));
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return transactions;
     }
@@ -140,17 +128,14 @@ public class TransactionDAO {
                      "UNION ALL " +
                      "SELECT id FROM " + tablePrefix + "transactions WHERE receiver_uuid = ?" +
                      ") combined";
-        dbManager.getReadLock().lock();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
-            stmt.setString(2, uuid.toString());
+            UuidBinary.set(stmt, 1, uuid);
+            UuidBinary.set(stmt, 2, uuid);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 return rs.getInt(1);
             }
-        } finally {
-            dbManager.getReadLock().unlock();
         }
         return 0;
     }
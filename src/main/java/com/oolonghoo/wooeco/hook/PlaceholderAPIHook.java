@@ -2,9 +2,12 @@ package com.oolonghoo.wooeco.hook;
 
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.manager.EconomyManager;
+import com.oolonghoo.wooeco.manager.EconomySnapshotManager;
 import com.oolonghoo.wooeco.manager.GlobalStatsManager;
 import com.oolonghoo.wooeco.manager.LeaderboardManager;
 import com.oolonghoo.wooeco.model.IncomePeriod;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.model.PlayerEconomySnapshot;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
@@ -12,18 +15,33 @@ import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * PlaceholderAPI 变量扩展
+ * 每个标识符首次请求时解析为处理函数并缓存，之后的请求只需一次哈希查找
+ * 余额和每日收入类变量的渲染结果按玩家缓存，账户变动后才重新格式化；
+ * 格式化余额、周/月收入和排名优先读取每 tick 更新的经济快照
  */
 public class PlaceholderAPIHook extends PlaceholderExpansion {
     
+    /** 最多缓存的标识符数，超出后新标识符每次现场解析，避免 top_rank_<玩家名> 之类的任意后缀撑大缓存 */
+    private static final int MAX_CACHED_RESOLVERS = 1024;
+    private static final Resolver UNKNOWN = player -> null;
+    
     private final WooEco plugin;
+    private final ConcurrentHashMap<String, Resolver> resolvers = new ConcurrentHashMap<>();
+    private final PlaceholderRenderCache renderCache = new PlaceholderRenderCache();
     
     public PlaceholderAPIHook(WooEco plugin) {
         this.plugin = plugin;
     }
     
+    public PlaceholderRenderCache getRenderCache() {
+        return renderCache;
+    }
+    
     @Override
     public @NotNull String getAuthor() {
         return "oolongho";
@@ -72,160 +90,203 @@ public class PlaceholderAPIHook extends PlaceholderExpansion {
     }
     
     private String handleRequest(OfflinePlayer player, String identifier) {
-        EconomyManager economy = plugin.getEconomyManager();
-        if (economy == null) {
+        if (plugin.getEconomyManager() == null) {
             return "0";
         }
         
-        if (identifier.equals("balance")) {
-            if (player == null) return "0";
-            return String.valueOf(economy.getBalance(player.getUniqueId()));
-        }
-        
-        if (identifier.equals("balance_formatted")) {
-            if (player == null) return "0";
-            double balance = economy.getBalance(player.getUniqueId());
-            return plugin.getCurrencyConfig().format(balance);
-        }
-        
-        if (identifier.equals("balance_value")) {
-            if (player == null) return "0";
-            double balance = economy.getBalance(player.getUniqueId());
-            return plugin.getCurrencyConfig().formatInput(BigDecimal.valueOf(balance)).toString();
-        }
-        
-        if (identifier.equals("daily_income")) {
-            if (player == null) return "0";
-            return String.valueOf(economy.getDailyIncome(player.getUniqueId()));
-        }
-        
-        if (identifier.equals("daily_income_formatted")) {
-            if (player == null) return "0";
-            return plugin.getCurrencyConfig().format(economy.getDailyIncomeDecimal(player.getUniqueId()));
-        }
-        
-        if (identifier.equals("weekly_income")) {
-            if (player == null) return "0";
-            return economy.getWeeklyIncomeDecimalCached(player.getUniqueId()).toString();
-        }
-        
-        if (identifier.equals("weekly_income_formatted")) {
-            if (player == null) return "0";
-            return plugin.getCurrencyConfig().format(economy.getWeeklyIncomeDecimalCached(player.getUniqueId()));
-        }
-        
-        if (identifier.equals("monthly_income")) {
-            if (player == null) return "0";
-            return economy.getMonthlyIncomeDecimalCached(player.getUniqueId()).toString();
-        }
-        
-        if (identifier.equals("monthly_income_formatted")) {
-            if (player == null) return "0";
-            return plugin.getCurrencyConfig().format(economy.getMonthlyIncomeDecimalCached(player.getUniqueId()));
+        Resolver resolver = resolvers.get(identifier);
+        if (resolver == null) {
+            resolver = compile(identifier);
+            if (resolvers.size() < MAX_CACHED_RESOLVERS) {
+                resolvers.putIfAbsent(identifier, resolver);
+            }
         }
-        
-        if (identifier.equals("top_rank")) {
-            if (player == null) return "-";
-            return String.valueOf(getPlayerRank(player.getUniqueId()));
+        return resolver.resolve(player);
+    }
+    
+    /**
+     * 把标识符解析为处理函数，后缀中的周期和排名在此一次解析完毕
+     */
+    private Resolver compile(String identifier) {
+        switch (identifier) {
+            case "balance":
+                return forAccount(identifier, account -> String.valueOf(account.getBalanceDouble()),
+                    uuid -> String.valueOf(economy().getBalance(uuid)));
+            case "balance_formatted":
+                return forSnapshot(PlayerEconomySnapshot::getBalanceFormatted,
+                    forAccount(identifier, account -> account.isFixedPoint()
+                            ? plugin.getCurrencyConfig().formatUnits(account.getBalanceUnits(), account.getScale())
+                            : plugin.getCurrencyConfig().format(account.getBalanceDouble()),
+                        uuid -> plugin.getCurrencyConfig().format(economy().getBalance(uuid))));
+            case "balance_value":
+                return forAccount(identifier, account -> plugin.getCurrencyConfig()
+                        .formatInput(BigDecimal.valueOf(account.getBalanceDouble())).toString(),
+                    uuid -> plugin.getCurrencyConfig()
+                        .formatInput(BigDecimal.valueOf(economy().getBalance(uuid))).toString());
+            case "daily_income":
+                return forAccount(identifier, account -> String.valueOf(account.getDailyIncomeDouble()),
+                    uuid -> String.valueOf(economy().getDailyIncome(uuid)));
+            case "daily_income_formatted":
+                return forAccount(identifier, account -> plugin.getCurrencyConfig().format(account.getDailyIncome()),
+                    uuid -> plugin.getCurrencyConfig().format(economy().getDailyIncomeDecimal(uuid)));
+            case "weekly_income":
+                return forSnapshot(snapshot -> snapshot.getWeeklyIncome().toString(),
+                    forPlayer("0", uuid -> economy().getWeeklyIncomeDecimalCached(uuid).toString()));
+            case "weekly_income_formatted":
+                return forSnapshot(snapshot -> plugin.getCurrencyConfig().format(snapshot.getWeeklyIncome()),
+                    forPlayer("0", uuid -> plugin.getCurrencyConfig().format(economy().getWeeklyIncomeDecimalCached(uuid))));
+            case "monthly_income":
+                return forSnapshot(snapshot -> snapshot.getMonthlyIncome().toString(),
+                    forPlayer("0", uuid -> economy().getMonthlyIncomeDecimalCached(uuid).toString()));
+            case "monthly_income_formatted":
+                return forSnapshot(snapshot -> plugin.getCurrencyConfig().format(snapshot.getMonthlyIncome()),
+                    forPlayer("0", uuid -> plugin.getCurrencyConfig().format(economy().getMonthlyIncomeDecimalCached(uuid))));
+            case "top_rank":
+                return forSnapshot(snapshot -> String.valueOf(snapshot.getRank()),
+                    forPlayer("-", uuid -> String.valueOf(getPlayerRank(uuid))));
+            case "sum_balance":
+                return player -> {
+                    GlobalStatsManager stats = plugin.getGlobalStatsManager();
+                    return stats != null ? stats.getTotalBalance().toString() : "0";
+                };
+            case "sum_balance_formatted":
+                return player -> {
+                    GlobalStatsManager stats = plugin.getGlobalStatsManager();
+                    return stats != null ? plugin.getCurrencyConfig().format(stats.getTotalBalance()) : "0";
+                };
+            case "player_count":
+                return player -> {
+                    GlobalStatsManager stats = plugin.getGlobalStatsManager();
+                    return stats != null ? String.valueOf(stats.getAccountCount()) : "0";
+                };
+            case "pay_toggle":
+                return forPlayer("true", uuid -> String.valueOf(plugin.getPayToggleManager().isPayEnabled(uuid)));
+            default:
+                break;
         }
         
         if (identifier.startsWith("top_rank_")) {
             String playerName = identifier.substring(9);
-            LeaderboardManager lm = plugin.getLeaderboardManager();
-            if (lm == null) return "-";
-            return String.valueOf(lm.getBalanceRankByName(playerName));
+            return player -> {
+                LeaderboardManager lm = plugin.getLeaderboardManager();
+                return lm != null ? String.valueOf(lm.getBalanceRankByName(playerName)) : "-";
+            };
         }
         
         if (identifier.startsWith("top_player_")) {
-            String indexStr = identifier.substring(11);
-            return getTopPlayer(indexStr, IncomePeriod.DAY);
+            int index = parseIndex(identifier.substring(11));
+            return player -> getTopPlayer(index);
         }
         
         if (identifier.startsWith("top_balance_formatted_")) {
-            String indexStr = identifier.substring(22);
-            return getTopBalance(indexStr, IncomePeriod.DAY, true);
+            int index = parseIndex(identifier.substring(22));
+            return player -> getTopBalance(index, true);
         }
         
         if (identifier.startsWith("top_balance_")) {
-            String indexStr = identifier.substring(12);
-            return getTopBalance(indexStr, IncomePeriod.DAY, false);
+            int index = parseIndex(identifier.substring(12));
+            return player -> getTopBalance(index, false);
         }
         
         if (identifier.startsWith("top_income_formatted_")) {
             String rest = identifier.substring(21);
-            IncomePeriod period = IncomePeriod.DAY;
-            String indexStr = rest;
-            if (rest.startsWith("week_")) {
-                period = IncomePeriod.WEEK;
-                indexStr = rest.substring(5);
-            } else if (rest.startsWith("month_")) {
-                period = IncomePeriod.MONTH;
-                indexStr = rest.substring(6);
-            } else if (rest.startsWith("day_")) {
-                period = IncomePeriod.DAY;
-                indexStr = rest.substring(4);
-            }
-            return getTopIncome(indexStr, period, true);
+            IncomePeriod period = parsePeriod(rest);
+            int index = parseIndex(stripPeriod(rest));
+            return player -> getTopIncome(index, period, true);
         }
         
         if (identifier.startsWith("top_income_player_")) {
             String rest = identifier.substring(18);
-            IncomePeriod period = IncomePeriod.DAY;
-            String indexStr = rest;
-            if (rest.startsWith("week_")) {
-                period = IncomePeriod.WEEK;
-                indexStr = rest.substring(5);
-            } else if (rest.startsWith("month_")) {
-                period = IncomePeriod.MONTH;
-                indexStr = rest.substring(6);
-            } else if (rest.startsWith("day_")) {
-                period = IncomePeriod.DAY;
-                indexStr = rest.substring(4);
-            }
-            return getTopIncomePlayer(indexStr, period);
+            IncomePeriod period = parsePeriod(rest);
+            int index = parseIndex(stripPeriod(rest));
+            return player -> getTopIncomePlayer(index, period);
         }
         
         if (identifier.startsWith("top_income_")) {
             String rest = identifier.substring(11);
-            IncomePeriod period = IncomePeriod.DAY;
-            String indexStr = rest;
-            if (rest.startsWith("week_")) {
-                period = IncomePeriod.WEEK;
-                indexStr = rest.substring(5);
-            } else if (rest.startsWith("month_")) {
-                period = IncomePeriod.MONTH;
-                indexStr = rest.substring(6);
-            } else if (rest.startsWith("day_")) {
-                period = IncomePeriod.DAY;
-                indexStr = rest.substring(4);
-            }
-            return getTopIncome(indexStr, period, false);
+            IncomePeriod period = parsePeriod(rest);
+            int index = parseIndex(stripPeriod(rest));
+            return player -> getTopIncome(index, period, false);
         }
         
-        if (identifier.equals("sum_balance")) {
-            GlobalStatsManager stats = plugin.getGlobalStatsManager();
-            if (stats == null) return "0";
-            return stats.getTotalBalance().toString();
+        return UNKNOWN;
+    }
+    
+    private EconomyManager economy() {
+        return plugin.getEconomyManager();
+    }
+    
+    /**
+     * 需要玩家的变量，没有玩家时返回 fallback
+     */
+    private static Resolver forPlayer(String fallback, Function<UUID, String> resolver) {
+        return player -> player == null ? fallback : resolver.apply(player.getUniqueId());
+    }
+    
+    /**
+     * 在线玩家从经济快照读取（一次 volatile 读，无同步），快照未启用或尚未包含该玩家时走 fallback
+     */
+    private Resolver forSnapshot(Function<PlayerEconomySnapshot, String> reader, Resolver fallback) {
+        return player -> {
+            EconomySnapshotManager snapshots = plugin.getEconomySnapshotManager();
+            PlayerEconomySnapshot snapshot = player != null && snapshots != null ? snapshots.get(player.getUniqueId()) : null;
+            return snapshot != null ? reader.apply(snapshot) : fallback.resolve(player);
+        };
+    }
+    
+    /**
+     * 只由账户余额和每日收入决定的变量，在线玩家的结果存入渲染缓存；
+     * 离线玩家走 uncached 的原计算，缓存大小因此以在线人数为上限
+     */
+    private Resolver forAccount(String identifier, Function<PlayerAccount, String> renderer, Function<UUID, String> uncached) {
+        return player -> {
+            if (player == null) {
+                return "0";
+            }
+            UUID uuid = player.getUniqueId();
+            PlayerAccount account = plugin.getPlayerDataManager().getOnlineAccount(uuid);
+            if (account == null) {
+                return uncached.apply(uuid);
+            }
+            return renderCache.get(uuid, identifier, account, renderer);
+        };
+    }
+    
+    /**
+     * 解析 [day_|week_|month_] 周期前缀，缺省为日
+     */
+    private static IncomePeriod parsePeriod(String rest) {
+        if (rest.startsWith("week_")) {
+            return IncomePeriod.WEEK;
         }
-        
-        if (identifier.equals("sum_balance_formatted")) {
-            GlobalStatsManager stats = plugin.getGlobalStatsManager();
-            if (stats == null) return "0";
-            return plugin.getCurrencyConfig().format(stats.getTotalBalance());
+        if (rest.startsWith("month_")) {
+            return IncomePeriod.MONTH;
         }
-        
-        if (identifier.equals("player_count")) {
-            GlobalStatsManager stats = plugin.getGlobalStatsManager();
-            if (stats == null) return "0";
-            return String.valueOf(stats.getAccountCount());
+        return IncomePeriod.DAY;
+    }
+    
+    private static String stripPeriod(String rest) {
+        if (rest.startsWith("week_")) {
+            return rest.substring(5);
         }
-        
-        if (identifier.equals("pay_toggle")) {
-            if (player == null) return "true";
-            return String.valueOf(plugin.getPayToggleManager().isPayEnabled(player.getUniqueId()));
+        if (rest.startsWith("month_")) {
+            return rest.substring(6);
+        }
+        if (rest.startsWith("day_")) {
+            return rest.substring(4);
+        }
+        return rest;
+    }
+    
+    /**
+     * 解析排名，无效时返回 0
+     */
+    private static int parseIndex(String indexStr) {
+        try {
+            return Math.max(0, Integer.parseInt(indexStr));
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        
-        return null;
     }
     
     private int getPlayerRank(UUID uuid) {
@@ -235,74 +296,62 @@ public class PlaceholderAPIHook extends PlaceholderExpansion {
         return lm.getBalanceRank(uuid);
     }
     
-    private String getTopPlayer(String indexStr, IncomePeriod period) {
-        try {
-            int index = Integer.parseInt(indexStr);
-            if (index < 1) return "-";
-            
-            LeaderboardManager lm = plugin.getLeaderboardManager();
-            if (lm == null) return "-";
-            
-            String name = lm.getTopBalancePlayer(index);
-            return name != null ? name : "-";
-        } catch (NumberFormatException e) {
-            return "-";
-        }
+    private String getTopPlayer(int index) {
+        if (index < 1) return "-";
+        
+        LeaderboardManager lm = plugin.getLeaderboardManager();
+        if (lm == null) return "-";
+        
+        String name = lm.getTopBalancePlayer(index);
+        return name != null ? name : "-";
     }
     
-    private String getTopBalance(String indexStr, IncomePeriod period, boolean formatted) {
-        try {
-            int index = Integer.parseInt(indexStr);
-            if (index < 1) return "0";
-            
-            LeaderboardManager lm = plugin.getLeaderboardManager();
-            if (lm == null) return "0";
-            
-            double balance = lm.getTopBalanceAt(index);
-            if (balance < 0) return "0";
-            
-            if (formatted) {
-                return plugin.getCurrencyConfig().format(balance);
-            }
-            return String.valueOf(balance);
-        } catch (NumberFormatException e) {
-            return "0";
+    private String getTopBalance(int index, boolean formatted) {
+        if (index < 1) return "0";
+        
+        LeaderboardManager lm = plugin.getLeaderboardManager();
+        if (lm == null) return "0";
+        
+        double balance = lm.getTopBalanceAt(index);
+        if (balance < 0) return "0";
+        
+        if (formatted) {
+            return plugin.getCurrencyConfig().format(balance);
         }
+        return String.valueOf(balance);
     }
     
-    private String getTopIncomePlayer(String indexStr, IncomePeriod period) {
-        try {
-            int index = Integer.parseInt(indexStr);
-            if (index < 1) return "-";
-            
-            LeaderboardManager lm = plugin.getLeaderboardManager();
-            if (lm == null) return "-";
-            
-            String name = lm.getTopIncomePlayerByPeriod(period, index);
-            return name != null ? name : "-";
-        } catch (NumberFormatException e) {
-            return "-";
-        }
+    private String getTopIncomePlayer(int index, IncomePeriod period) {
+        if (index < 1) return "-";
+        
+        LeaderboardManager lm = plugin.getLeaderboardManager();
+        if (lm == null) return "-";
+        
+        String name = lm.getTopIncomePlayerByPeriod(period, index);
+        return name != null ? name : "-";
     }
     
-    private String getTopIncome(String indexStr, IncomePeriod period, boolean formatted) {
-        try {
-            int index = Integer.parseInt(indexStr);
-            if (index < 1) return "0";
-            
-            LeaderboardManager lm = plugin.getLeaderboardManager();
-            if (lm == null) return "0";
-            
-            // dailyIncome 字段在周/月排行上下文中存储的是对应周期的收入汇总值
-            double income = lm.getTopIncomeAt(period, index);
-            if (income < 0) return "0";
-            
-            if (formatted) {
-                return plugin.getCurrencyConfig().format(income);
-            }
-            return String.valueOf(income);
-        } catch (NumberFormatException e) {
-            return "0";
+    private String getTopIncome(int index, IncomePeriod period, boolean formatted) {
+        if (index < 1) return "0";
+        
+        LeaderboardManager lm = plugin.getLeaderboardManager();
+        if (lm == null) return "0";
+        
+        // dailyIncome 字段在周/月排行上下文中存储的是对应周期的收入汇总值
+        double income = lm.getTopIncomeAt(period, index);
+        if (income < 0) return "0";
+        
+        if (formatted) {
+            return plugin.getCurrencyConfig().format(income);
         }
+        return String.valueOf(income);
+    }
+    
+    /**
+     * 解析后的变量处理函数
+     */
+    @FunctionalInterface
+    private interface Resolver {
+        String resolve(OfflinePlayer player);
     }
 }
@@ -0,0 +1,96 @@
+package com.oolonghoo.wooeco.hook;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按玩家缓存渲染好的变量值
+ * 缓存项记录渲染时的账户对象、账户版本和玩家失效代数，三者都未变化时直接返回：
+ * 本地余额或每日收入变动后由 EconomyManager、TransactionManager 等调用 invalidate 使代数加一，
+ * 其他服务器同步来的余额会改变账户版本，占位账户被替换或重新加载会改变账户对象
+ * 渲染前先读取代数，渲染期间发生的失效会使刚写入的缓存项立即过期，不会留下旧值
+ */
+public class PlaceholderRenderCache {
+
+    private final ConcurrentHashMap<UUID, PlayerRenders> players = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 返回缓存的渲染结果，过期或不存在时调用 renderer 重新渲染
+     */
+    public String get(UUID uuid, String identifier, PlayerAccount account, Function<PlayerAccount, String> renderer) {
+        PlayerRenders renders = players.computeIfAbsent(uuid, k -> new PlayerRenders());
+        long generation = renders.generation.get();
+        long version = account.getVersion();
+        Rendered cached = renders.values.get(identifier);
+        if (cached != null && cached.generation == generation && cached.version == version && cached.account == account) {
+            hits.increment();
+            return cached.value;
+        }
+        misses.increment();
+        String value = renderer.apply(account);
+        renders.values.put(identifier, new Rendered(account, version, generation, value));
+        return value;
+    }
+
+    /**
+     * 玩家余额或收入变动后调用
+     */
+    public void invalidate(UUID uuid) {
+        PlayerRenders renders = players.get(uuid);
+        if (renders != null) {
+            renders.generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * 玩家下线时释放其缓存
+     */
+    public void remove(UUID uuid) {
+        players.remove(uuid);
+    }
+
+    /**
+     * 货币格式重载或批量改动余额后清空全部缓存
+     */
+    public void clear() {
+        players.clear();
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class PlayerRenders {
+        final AtomicLong generation = new AtomicLong();
+        final ConcurrentHashMap<String, Rendered> values = new ConcurrentHashMap<>();
+    }
+
+    private static final class Rendered {
+        final PlayerAccount account;
+        final long version;
+        final long generation;
+        final String value;
+
+        Rendered(PlayerAccount account, long version, long generation, String value) {
+            this.account = account;
+            this.version = version;
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+}
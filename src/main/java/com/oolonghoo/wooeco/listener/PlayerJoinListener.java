@@ -5,6 +5,7 @@ import com.oolonghoo.wooeco.util.SchedulerUtils;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
@@ -20,9 +21,25 @@ public class PlayerJoinListener implements Listener {
         this.plugin = plugin;
     }
     
+    /**
+     * 登录线程上预加载账户，加入时无需占位账户；其他插件拒绝登录后不再加载
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED
+                || !plugin.getConfig().getBoolean("performance.preload.enabled", true)) {
+            return;
+        }
+        long timeoutMs = plugin.getConfig().getLong("performance.preload.timeout-ms", 3000);
+        plugin.getPlayerDataManager().preloadPlayer(event.getUniqueId(), event.getName(), timeoutMs);
+        plugin.getEconomyManager().getIncomeCache().preload(event.getUniqueId());
+    }
+    
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerJoin(PlayerJoinEvent event) {
         plugin.getPlayerDataManager().loadPlayer(event.getPlayer().getUniqueId());
+        // 未启用预加载时在加入时加载；登录时已开始的加载不会重复查询
+        plugin.getEconomyManager().getIncomeCache().preload(event.getPlayer().getUniqueId());
 
         SchedulerUtils.runForEntityDelayed(plugin, event.getPlayer(), () -> {
             plugin.getOfflineTransferManager().checkAndNotifyPlayer(event.getPlayer());
@@ -35,5 +52,8 @@ public class PlayerJoinListener implements Listener {
         plugin.getCooldownManager().clearCooldown(event.getPlayer());
         plugin.getPayToggleManager().removeFromCache(event.getPlayer().getUniqueId());
         plugin.getEconomyManager().clearIncomeCache(event.getPlayer().getUniqueId());
+        if (plugin.getPlaceholderRenderCache() != null) {
+            plugin.getPlaceholderRenderCache().remove(event.getPlayer().getUniqueId());
+        }
     }
 }
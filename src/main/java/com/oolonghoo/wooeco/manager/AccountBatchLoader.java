@@ -0,0 +1,226 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.util.LatencySampler;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 账户批量加载器
+ * 玩家集中加入（重启、代理重连）时，加载请求只入队，由单个加载线程每隔几毫秒取出一批，
+ * 用 WHERE uuid IN (...) 一次读出整批账户，缺失的账户在同一批次中批量创建
+ */
+public class AccountBatchLoader {
+
+    private final WooEco plugin;
+    private final PlayerDAO playerDAO;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<PendingLoad> queue = new LinkedBlockingQueue<>();
+    private final Thread loaderThread;
+    /** 从入队到完成的延迟 */
+    private final LatencySampler latency = new LatencySampler(1024);
+
+    private volatile boolean running = true;
+    private volatile int lastBatchSize;
+    private volatile int peakBatchSize;
+
+    public AccountBatchLoader(WooEco plugin) {
+        this.plugin = plugin;
+        this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
+        this.maxBatch = Math.max(1, plugin.getConfig().getInt("performance.batch-load.max-batch", 200));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(0L, plugin.getConfig().getLong("performance.batch-load.max-delay-ms", 5)));
+
+        this.loaderThread = new Thread(this::runLoop, "WooEco-AccountLoader");
+        this.loaderThread.setDaemon(true);
+        this.loaderThread.start();
+    }
+
+    /**
+     * 提交一次加载，返回的 Future 在其所在批次读取完成后完成
+     *
+     * @param createName 不为 null 时，账户不存在则以此名字创建；为 null 时不存在返回 null
+     */
+    public CompletableFuture<PlayerAccount> load(UUID uuid, String createName) {
+        PendingLoad load = new PendingLoad(uuid, createName);
+        queue.add(load);
+        // 关闭后提交的请求可能错过 shutdown 的最后一次处理，直接在调用线程加载
+        if (!running && queue.remove(load)) {
+            loadBatch(List.of(load));
+        }
+        return load.future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getPeakBatchSize() {
+        return peakBatchSize;
+    }
+
+    /**
+     * 加载延迟的百分位（纳秒）
+     */
+    public long[] getLatencyPercentiles(double... percents) {
+        return latency.percentiles(percents);
+    }
+
+    public long getLoadCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * 停止加载线程，并在当前线程处理队列中剩余的请求
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            loaderThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingLoad> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            loadBatch(remaining);
+        }
+    }
+
+    private void runLoop() {
+        List<PendingLoad> batch = new ArrayList<>();
+        while (running) {
+            try {
+                PendingLoad first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+
+                // 等待最多 maxDelay 让同一时段加入的玩家合并到同一批次
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingLoad next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                loadBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void loadBatch(List<PendingLoad> batch) {
+        lastBatchSize = batch.size();
+        if (batch.size() > peakBatchSize) {
+            peakBatchSize = batch.size();
+        }
+
+        // 同一玩家的多个请求只查询一次，只要有一个请求允许创建就创建
+        Set<UUID> uuids = new LinkedHashSet<>();
+        Map<UUID, String> createNames = new LinkedHashMap<>();
+        for (PendingLoad load : batch) {
+            uuids.add(load.uuid);
+            if (load.createName != null) {
+                createNames.putIfAbsent(load.uuid, load.createName);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<UUID, PlayerAccount> accounts = new LinkedHashMap<>();
+        List<UUID> toQuery = new ArrayList<>();
+        WriteBehindManager writeBehindManager = plugin.getWriteBehindManager();
+        for (UUID uuid : uuids) {
+            // 优先使用尚未写入数据库的账户，避免读到旧余额
+            PlayerAccount pending = writeBehindManager != null ? writeBehindManager.getPending(uuid) : null;
+            if (pending != null) {
+                accounts.put(uuid, pending);
+            } else {
+                toQuery.add(uuid);
+            }
+        }
+
+        try {
+            plugin.getPlayerDataManager().awaitRemoteDeltas(toQuery);
+            accounts.putAll(playerDAO.getAccounts(toQuery));
+        } catch (SQLException | RuntimeException e) {
+            plugin.getLogger().severe(String.format("批量加载玩家账户失败：%s", e.getMessage()));
+            for (PendingLoad load : batch) {
+                load.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        List<PlayerAccount> created = new ArrayList<>();
+        for (Map.Entry<UUID, String> entry : createNames.entrySet()) {
+            if (!accounts.containsKey(entry.getKey())) {
+                created.add(plugin.getPlayerDataManager().newAccount(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (!created.isEmpty()) {
+            try {
+                playerDAO.saveAllBatch(created);
+                for (PlayerAccount account : created) {
+                    accounts.put(account.getUuid(), account);
+                }
+                plugin.getLogger().info(String.format("为 %d 名新玩家创建账户", created.size()));
+            } catch (SQLException e) {
+                plugin.getLogger().severe(String.format("批量创建玩家账户失败：%s", e.getMessage()));
+            }
+        }
+        plugin.getDebugManager().incrementCounter("batch_load");
+        plugin.getDebugManager().database("BATCH_LOAD",
+            "requests=" + batch.size() + ", queried=" + toQuery.size() + ", created=" + created.size(),
+            System.nanoTime() - start);
+
+        long now = System.nanoTime();
+        for (PendingLoad load : batch) {
+            latency.record(now - load.enqueuedAt);
+            load.future.complete(accounts.get(load.uuid));
+        }
+    }
+
+    private static final class PendingLoad {
+        final UUID uuid;
+        final String createName;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<PlayerAccount> future = new CompletableFuture<>();
+
+        PendingLoad(UUID uuid, String createName) {
+            this.uuid = uuid;
+            this.createName = createName;
+        }
+    }
+}
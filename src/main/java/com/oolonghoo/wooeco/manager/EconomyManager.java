@@ -12,14 +12,21 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.api.events.BalanceChangeEvent;
 import com.oolonghoo.wooeco.api.events.BalanceChangeReason;
+import com.oolonghoo.wooeco.hook.PlaceholderRenderCache;
+import com.oolonghoo.wooeco.model.IncomePeriod;
 import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.util.AsyncUtils;
+import com.oolonghoo.wooeco.util.FixedPoint;
 import com.oolonghoo.wooeco.util.SchedulerUtils;
+import org.bukkit.event.EventPriority;
+import org.bukkit.plugin.RegisteredListener;
 
 /**
  * 经济管理器
@@ -32,17 +39,13 @@ public class EconomyManager {
     private final PlayerDataManager playerDataManager;
     private final LogManager logManager;
     
-    private final ConcurrentHashMap<UUID, BigDecimal> weeklyIncomeCache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, BigDecimal> monthlyIncomeCache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, Long> weeklyIncomeRefreshTime = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, Long> monthlyIncomeRefreshTime = new ConcurrentHashMap<>();
-    private final long incomeCacheRefreshInterval; // in milliseconds
+    private final PeriodIncomeCache incomeCache;
     
     public EconomyManager(WooEco plugin) {
         this.plugin = plugin;
         this.playerDataManager = plugin.getPlayerDataManager();
         this.logManager = plugin.getLogManager();
-        this.incomeCacheRefreshInterval = plugin.getConfig().getLong("leaderboard.cache-refresh", 60) * 1000L;
+        this.incomeCache = new PeriodIncomeCache(plugin, plugin.getConfig().getLong("leaderboard.cache-refresh", 60) * 1000L);
     }
     
     public double getBalance(UUID uuid) {
@@ -128,9 +131,84 @@ public class EconomyManager {
             amt -> amt.compareTo(BigDecimal.ZERO) < 0 ? "金额不能为负数" : null);
     }
     
-    private void publishSync(UUID uuid, String playerName, BigDecimal newBalance) {
+    public CompletableFuture<EconomyResult> getBalanceAsync(UUID uuid) {
+        return playerDataManager.loadOfflineAccount(uuid)
+            .thenApplyAsync(preloaded -> {
+                PlayerAccount account = preloaded != null ? preloaded : playerDataManager.getAccount(uuid);
+                if (account == null) {
+                    return new EconomyResult(false, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "账户不存在");
+                }
+                BigDecimal balance = account.getBalance();
+                return new EconomyResult(true, BigDecimal.ZERO, balance, BigDecimal.ZERO, null);
+            }, AsyncUtils.getEconomyExecutor())
+            .exceptionally(this::asyncFailure);
+    }
+    
+    public CompletableFuture<EconomyResult> depositAsync(UUID uuid, BigDecimal amount) {
+        return depositAsync(uuid, amount, BalanceChangeReason.ADMIN, null, null);
+    }
+    
+    public CompletableFuture<EconomyResult> depositAsync(UUID uuid, BigDecimal amount, BalanceChangeReason reason,
+                                                         String operator, String operatorName) {
+        return runAfterPreload(uuid, () -> deposit(uuid, amount, reason, operator, operatorName));
+    }
+    
+    public CompletableFuture<EconomyResult> withdrawAsync(UUID uuid, BigDecimal amount) {
+        return withdrawAsync(uuid, amount, BalanceChangeReason.ADMIN, null, null);
+    }
+    
+    public CompletableFuture<EconomyResult> withdrawAsync(UUID uuid, BigDecimal amount, BalanceChangeReason reason,
+                                                          String operator, String operatorName) {
+        return runAfterPreload(uuid, () -> withdraw(uuid, amount, reason, operator, operatorName));
+    }
+    
+    public CompletableFuture<EconomyResult> setAsync(UUID uuid, BigDecimal amount) {
+        return setAsync(uuid, amount, BalanceChangeReason.ADMIN_SET, null, null);
+    }
+    
+    public CompletableFuture<EconomyResult> setAsync(UUID uuid, BigDecimal amount, BalanceChangeReason reason,
+                                                     String operator, String operatorName) {
+        return runAfterPreload(uuid, () -> set(uuid, amount, reason, operator, operatorName));
+    }
+    
+    /**
+     * 先异步把账户加载进缓存，再在经济线程池上执行同步操作
+     * 同步操作此时只读写内存，持久化由 markDirty 交给后台完成，任何线程都不会被数据库阻塞
+     */
+    private CompletableFuture<EconomyResult> runAfterPreload(UUID uuid, Supplier<EconomyResult> operation) {
+        return playerDataManager.loadOfflineAccount(uuid)
+            .thenApplyAsync(account -> operation.get(), AsyncUtils.getEconomyExecutor())
+            .exceptionally(this::asyncFailure);
+    }
+    
+    private EconomyResult asyncFailure(Throwable error) {
+        plugin.getLogger().warning(String.format("异步经济操作失败：%s", error.getMessage()));
+        return new EconomyResult(false, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "操作失败，请稍后重试");
+    }
+    
+    private void updateLeaderboard(PlayerAccount account) {
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onAccountChanged(account);
+        }
+    }
+    
+    /**
+     * 余额和每日收入都已写入后调用；每日收入不改变账户版本，快照需要显式通知
+     */
+    private void invalidatePlaceholders(UUID uuid) {
+        PlaceholderRenderCache renderCache = plugin.getPlaceholderRenderCache();
+        if (renderCache != null) {
+            renderCache.invalidate(uuid);
+        }
+        EconomySnapshotManager snapshotManager = plugin.getEconomySnapshotManager();
+        if (snapshotManager != null) {
+            snapshotManager.markChanged(uuid);
+        }
+    }
+    
+    private void publishSync(UUID uuid, String playerName, BigDecimal newBalance, BigDecimal delta, long version) {
         if (plugin.getRedisSyncManager() != null) {
-            plugin.getRedisSyncManager().publishBalanceUpdate(uuid, playerName, newBalance);
+            plugin.getRedisSyncManager().publishBalanceChange(uuid, playerName, newBalance, delta, version);
         }
     }
     
@@ -184,21 +262,62 @@ public class EconomyManager {
         }
         
         BigDecimal maxBalance = plugin.getCurrencyConfig().getMaxBalanceBigDecimal();
+        // 定点账户的增减直接以最小货币单位计算；金额有多余小数位时走 BigDecimal 计算，保持原有舍入结果
+        boolean isWithdraw = "WITHDRAW".equals(operationType);
+        long amountUnits = account.isFixedPoint() && (isWithdraw || "DEPOSIT".equals(operationType))
+            ? FixedPoint.toUnitsExact(amount, account.getScale()) : FixedPoint.NOT_EXACT;
+        
+        RegisteredListener[] listeners = BalanceChangeEvent.getHandlerList().getRegisteredListeners();
+        if (amountUnits != FixedPoint.NOT_EXACT && !hasInterceptingListeners(listeners)) {
+            EconomyResult result = executeLockFree(account, amount, amountUnits, isWithdraw, reason,
+                operator, operatorName, operationType, listeners.length > 0);
+            if (result != null) {
+                return result;
+            }
+            // 取到占位账户后真实账户已加载完成，改在真实账户上执行
+            return executeBalanceOperation(uuid, amount, reason, operator, operatorName, operationType,
+                calculationStrategy, validator);
+        }
+        plugin.getDebugManager().incrementCounter("economy_locked");
+        
         BigDecimal oldBalance;
         BigDecimal newBalance;
         BigDecimal changeAmount;
+        long newVersion;
         
         synchronized (account) {
-            oldBalance = account.getBalance();
-            BalanceCalculationResult calculation = calculationStrategy.calculate(oldBalance, amount, maxBalance);
-            
-            if (!calculation.isSuccess()) {
-                return new EconomyResult(false, BigDecimal.ZERO, oldBalance, BigDecimal.ZERO, calculation.errorMessage);
+            if (account.isReplaced()) {
+                // 取到占位账户后真实账户已加载完成，改在真实账户上执行
+                return executeBalanceOperation(uuid, amount, reason, operator, operatorName, operationType,
+                    calculationStrategy, validator);
+            }
+            if (account.isLoading() && !"DEPOSIT".equals(operationType)) {
+                // 真实余额未知，无法校验扣款或覆盖余额
+                return new EconomyResult(false, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "账户数据加载中，请稍后重试");
+            }
+            if (amountUnits != FixedPoint.NOT_EXACT) {
+                long deltaUnits = isWithdraw ? -amountUnits : amountUnits;
+                long oldUnits = account.addBalanceUnits(deltaUnits,
+                    plugin.getCurrencyConfig().getMaxBalanceUnits());
+                if (oldUnits == PlayerAccount.REJECTED) {
+                    return new EconomyResult(false, BigDecimal.ZERO, account.getBalance(), BigDecimal.ZERO,
+                        isWithdraw ? "余额不足" : "余额已达上限");
+                }
+                oldBalance = FixedPoint.toDecimal(oldUnits, account.getScale());
+                newBalance = FixedPoint.toDecimal(oldUnits + deltaUnits, account.getScale());
+                changeAmount = isWithdraw ? amount.negate() : amount;
+            } else {
+                oldBalance = account.getBalance();
+                BalanceCalculationResult calculation = calculationStrategy.calculate(oldBalance, amount, maxBalance);
+                
+                if (!calculation.isSuccess()) {
+                    return new EconomyResult(false, BigDecimal.ZERO, oldBalance, BigDecimal.ZERO, calculation.errorMessage);
+                }
+                
+                newBalance = calculation.newBalance;
+                changeAmount = calculation.changeAmount;
+                account.setBalance(newBalance);
             }
-            
-            newBalance = calculation.newBalance;
-            changeAmount = calculation.changeAmount;
-            account.setBalance(newBalance);
         
             // 在锁内触发事件，防止锁释放后其他线程修改余额导致不一致
             BalanceChangeEvent event = new BalanceChangeEvent(uuid, oldBalance, newBalance, changeAmount, reason);
@@ -212,16 +331,91 @@ public class EconomyManager {
             
             BigDecimal eventBalance = plugin.getCurrencyConfig().formatInput(event.getNewBalanceDecimal());
             eventBalance = eventBalance.max(BigDecimal.ZERO).min(maxBalance);
-            account.setBalance(eventBalance);
+            if (eventBalance.compareTo(newBalance) != 0 || !account.isFixedPoint()) {
+                account.setBalance(eventBalance);
+            }
             // 余额增加且非管理员 set 操作时计入每日收入
             BigDecimal actualChange = eventBalance.subtract(oldBalance);
             if (actualChange.compareTo(BigDecimal.ZERO) > 0 && reason != BalanceChangeReason.ADMIN_SET) {
                 account.addDailyIncome(actualChange);
             }
             newBalance = eventBalance;
+            newVersion = account.getVersion();
         }
         
-        playerDataManager.saveAccount(account);
+        return completeBalanceOperation(account, amount, oldBalance, newBalance, newBalance, newVersion,
+            reason, operator, operatorName, operationType);
+    }
+    
+    /**
+     * 无锁执行定点账户的存取款，不进入账户锁
+     * 仅在没有可取消或修改 BalanceChangeEvent 的监听器时使用；只有 MONITOR 监听器时在余额更新后补发事件，
+     * 其取消状态不再生效
+     * 
+     * @return 操作结果；占位账户已被真实账户取代时返回 null，由调用方在真实账户上重试
+     */
+    private EconomyResult executeLockFree(PlayerAccount account, BigDecimal amount, long amountUnits,
+                                          boolean isWithdraw, BalanceChangeReason reason,
+                                          String operator, String operatorName, String operationType,
+                                          boolean fireEvent) {
+        UUID uuid = account.getUuid();
+        if (account.isLoading() && isWithdraw) {
+            return new EconomyResult(false, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "账户数据加载中，请稍后重试");
+        }
+        long deltaUnits = isWithdraw ? -amountUnits : amountUnits;
+        long oldUnits = account.addBalanceUnits(deltaUnits, plugin.getCurrencyConfig().getMaxBalanceUnits());
+        if (oldUnits == PlayerAccount.REJECTED) {
+            if (account.isReplaced()) {
+                return null;
+            }
+            return new EconomyResult(false, BigDecimal.ZERO, account.getBalance(), BigDecimal.ZERO,
+                isWithdraw ? "余额不足" : "余额已达上限");
+        }
+        if (!isWithdraw && reason != BalanceChangeReason.ADMIN_SET) {
+            account.addDailyIncomeUnits(amountUnits);
+        }
+        // 先读版本号再读余额：并发更新时版本号最大的一次发布总带着最终余额
+        long newVersion = account.getVersion();
+        BigDecimal publishBalance = account.getBalance();
+        plugin.getDebugManager().incrementCounter("economy_lock_free");
+        
+        BigDecimal oldBalance = FixedPoint.toDecimal(oldUnits, account.getScale());
+        BigDecimal newBalance = FixedPoint.toDecimal(oldUnits + deltaUnits, account.getScale());
+        if (fireEvent) {
+            SchedulerUtils.callEvent(plugin, new BalanceChangeEvent(uuid, oldBalance, newBalance,
+                isWithdraw ? amount.negate() : amount, reason));
+            plugin.getDebugManager().event("BalanceChangeEvent", "UUID: " + uuid + " | Amount: " + amount);
+        }
+        return completeBalanceOperation(account, amount, oldBalance, newBalance, publishBalance, newVersion,
+            reason, operator, operatorName, operationType);
+    }
+    
+    /**
+     * BalanceChangeEvent 是否有可能取消或修改余额的监听器（MONITOR 以外的优先级）
+     */
+    private static boolean hasInterceptingListeners(RegisteredListener[] listeners) {
+        for (RegisteredListener listener : listeners) {
+            if (listener.getPriority() != EventPriority.MONITOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 余额已更新后的持久化、排行榜、日志、同步和兼容事件
+     */
+    private EconomyResult completeBalanceOperation(PlayerAccount account, BigDecimal amount,
+                                                   BigDecimal oldBalance, BigDecimal newBalance,
+                                                   BigDecimal publishBalance, long newVersion,
+                                                   BalanceChangeReason reason, String operator,
+                                                   String operatorName, String operationType) {
+        UUID uuid = account.getUuid();
+        playerDataManager.markDirty(account);
+        invalidatePlaceholders(uuid);
+        if (!account.isPlaceholder()) {
+            updateLeaderboard(account);
+        }
         
         plugin.getDebugManager().economy(operationType, uuid, account.getPlayerName(), amount, oldBalance, newBalance);
         
@@ -232,7 +426,10 @@ public class EconomyManager {
                                     newBalance, operator, operatorName,
                                     reason != null ? reason.name() : null);
         
-        publishSync(uuid, account.getPlayerName(), newBalance);
+        // 占位账户的余额不是真实余额，由加载完成后的重放发布同步
+        if (!account.isPlaceholder()) {
+            publishSync(uuid, account.getPlayerName(), publishBalance, newBalance.subtract(oldBalance), newVersion);
+        }
 
         // 触发 XConomy 兼容事件
         fireXConomyEvent(uuid, account.getPlayerName(), oldBalance, amount, operationType, reason);
@@ -272,92 +469,29 @@ public class EconomyManager {
         }
     }
     
+    /**
+     * 缓存的周收入，不阻塞；在线玩家登录时已预加载
+     */
     public BigDecimal getWeeklyIncomeDecimalCached(UUID uuid) {
-        BigDecimal cached = weeklyIncomeCache.get(uuid);
-        Long lastRefresh = weeklyIncomeRefreshTime.get(uuid);
-        
-        if (cached != null && lastRefresh != null) {
-            if (System.currentTimeMillis() - lastRefresh < incomeCacheRefreshInterval) {
-                return cached;
-            }
-            // Cache expired: return old value, async refresh
-            SchedulerUtils.runAsync(plugin, () -> {
-                try {
-                    long fromTimestamp = getStartOfWeekTimestamp();
-                    BigDecimal result = plugin.getDatabaseManager().getLogDAO().getIncomeInPeriod(uuid, fromTimestamp);
-                    weeklyIncomeCache.put(uuid, result);
-                    weeklyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-                } catch (SQLException e) {
-                    plugin.getLogger().warning("异步刷新周收入缓存失败: " + e.getMessage());
-                    weeklyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-                }
-            });
-            return cached;
-        }
-        
-        // No cache: return ZERO immediately, async load for next request
-        SchedulerUtils.runAsync(plugin, () -> {
-            try {
-                long fromTimestamp = getStartOfWeekTimestamp();
-                BigDecimal result = plugin.getDatabaseManager().getLogDAO().getIncomeInPeriod(uuid, fromTimestamp);
-                weeklyIncomeCache.put(uuid, result);
-                weeklyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-            } catch (SQLException e) {
-                plugin.getLogger().warning("异步加载周收入缓存失败: " + e.getMessage());
-                weeklyIncomeCache.put(uuid, BigDecimal.ZERO);
-                weeklyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-            }
-        });
-        return BigDecimal.ZERO;
+        return incomeCache.getCached(uuid, IncomePeriod.WEEK);
     }
     
+    /**
+     * 缓存的月收入，不阻塞；在线玩家登录时已预加载
+     */
     public BigDecimal getMonthlyIncomeDecimalCached(UUID uuid) {
-        BigDecimal cached = monthlyIncomeCache.get(uuid);
-        Long lastRefresh = monthlyIncomeRefreshTime.get(uuid);
-        
-        if (cached != null && lastRefresh != null) {
-            if (System.currentTimeMillis() - lastRefresh < incomeCacheRefreshInterval) {
-                return cached;
-            }
-            // Cache expired: return old value, async refresh
-            SchedulerUtils.runAsync(plugin, () -> {
-                try {
-                    long fromTimestamp = getStartOfMonthTimestamp();
-                    BigDecimal result = plugin.getDatabaseManager().getLogDAO().getIncomeInPeriod(uuid, fromTimestamp);
-                    monthlyIncomeCache.put(uuid, result);
-                    monthlyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-                } catch (SQLException e) {
-                    plugin.getLogger().warning("异步刷新月收入缓存失败: " + e.getMessage());
-                    monthlyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-                }
-            });
-            return cached;
-        }
-        
-        // No cache: return ZERO immediately, async load for next request
-        SchedulerUtils.runAsync(plugin, () -> {
-            try {
-                long fromTimestamp = getStartOfMonthTimestamp();
-                BigDecimal result = plugin.getDatabaseManager().getLogDAO().getIncomeInPeriod(uuid, fromTimestamp);
-                monthlyIncomeCache.put(uuid, result);
-                monthlyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-            } catch (SQLException e) {
-                plugin.getLogger().warning("异步加载月收入缓存失败: " + e.getMessage());
-                monthlyIncomeCache.put(uuid, BigDecimal.ZERO);
-                monthlyIncomeRefreshTime.put(uuid, System.currentTimeMillis());
-            }
-        });
-        return BigDecimal.ZERO;
+        return incomeCache.getCached(uuid, IncomePeriod.MONTH);
+    }
+    
+    public PeriodIncomeCache getIncomeCache() {
+        return incomeCache;
     }
     
     /**
      * 清理指定玩家的收入缓存，防止内存泄漏
      */
     public void clearIncomeCache(UUID uuid) {
-        weeklyIncomeCache.remove(uuid);
-        monthlyIncomeCache.remove(uuid);
-        weeklyIncomeRefreshTime.remove(uuid);
-        monthlyIncomeRefreshTime.remove(uuid);
+        incomeCache.remove(uuid);
     }
 
     private long getStartOfDayTimestamp() {
@@ -367,7 +501,7 @@ public class EconomyManager {
                 .toEpochMilli();
     }
     
-    private long getStartOfWeekTimestamp() {
+    static long getStartOfWeekTimestamp() {
         return LocalDate.now(ZoneId.systemDefault())
                 .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
                 .atStartOfDay(ZoneId.systemDefault())
@@ -375,7 +509,7 @@ public class EconomyManager {
                 .toEpochMilli();
     }
     
-    private long getStartOfMonthTimestamp() {
+    static long getStartOfMonthTimestamp() {
         return LocalDate.now(ZoneId.systemDefault())
                 .with(TemporalAdjusters.firstDayOfMonth())
                 .atStartOfDay(ZoneId.systemDefault())
@@ -415,7 +549,7 @@ public class EconomyManager {
         return ctx;
     }
     
-    private void processBatchResult(BatchContext ctx, BigDecimal amount, String logType,
+    private void processBatchResult(BatchContext ctx, BigDecimal amount, String logType, boolean onlineOnly,
                                      boolean isWithdraw, boolean isSet, String operator, String operatorName) {
         playerDataManager.invalidateAllCache(false);
         for (UUID uuid : ctx.allowedUuids) {
@@ -435,9 +569,32 @@ public class EconomyManager {
                     account.addDailyIncome(newBalance.subtract(oldBalance));
                 }
             }
+            invalidatePlaceholders(uuid);
 
+            // 批量 SQL 已在数据库中递增版本，本地不知道结果版本，以 0 发布由接收方按数据库刷新；
+            // 增量同步模式下 give/take 全体发布增量（数据库已累加），set 全体仍发布最终余额
             if (plugin.getRedisSyncManager() != null) {
-                plugin.getRedisSyncManager().publishBalanceUpdate(uuid, playerName, newBalance);
+                if (isSet) {
+                    plugin.getRedisSyncManager().publishBalanceUpdate(uuid, playerName, newBalance, 0L);
+                } else {
+                    plugin.getRedisSyncManager().publishBalanceChange(uuid, playerName, newBalance, newBalance.subtract(oldBalance), 0L);
+                }
+            }
+        }
+        // 排行索引按与 SQL 相同的规则原地更新，不再从数据库全量重建
+        LeaderboardManager leaderboardManager = plugin.getLeaderboardManager();
+        if (leaderboardManager != null) {
+            if (!onlineOnly) {
+                leaderboardManager.onAllBalancesChanged(isSet ? balance -> amount
+                    : isWithdraw ? balance -> balance.compareTo(amount) >= 0 ? balance.subtract(amount) : balance
+                    : balance -> balance.add(amount));
+            } else {
+                for (UUID uuid : ctx.allowedUuids) {
+                    BigDecimal oldBalance = ctx.oldBalances.get(uuid);
+                    BigDecimal newBalance = isSet ? amount : (isWithdraw ? oldBalance.subtract(amount) : oldBalance.add(amount));
+                    leaderboardManager.onBalanceChanged(uuid, ctx.nameMap.get(uuid),
+                        plugin.getCurrencyConfig().formatInput(newBalance));
+                }
             }
         }
     }
@@ -459,8 +616,10 @@ public class EconomyManager {
         }
 
         try {
+            // 先写入延迟队列，防止批量 SQL 更新后被旧的内存余额覆盖
+            playerDataManager.flushPendingWrites();
             int updated = plugin.getPlayerDataManager().getPlayerDAO().depositAllBatch(amount, onlineOnly, ctx.allowedUuids);
-            processBatchResult(ctx, amount, "DEPOSIT_ALL", false, false, operator, operatorName);
+            processBatchResult(ctx, amount, "DEPOSIT_ALL", onlineOnly, false, false, operator, operatorName);
             return new BatchResult(updated, ctx.totalAccounts - updated, amount);
         } catch (SQLException e) {
             plugin.getLogger().severe(String.format("批量存款失败：%s", e.getMessage()));
@@ -485,8 +644,9 @@ public class EconomyManager {
         }
 
         try {
+            playerDataManager.flushPendingWrites();
             int updated = plugin.getPlayerDataManager().getPlayerDAO().withdrawAllBatch(amount, onlineOnly, ctx.allowedUuids);
-            processBatchResult(ctx, amount, "WITHDRAW_ALL", true, false, operator, operatorName);
+            processBatchResult(ctx, amount, "WITHDRAW_ALL", onlineOnly, true, false, operator, operatorName);
             return new BatchResult(updated, ctx.totalAccounts - updated, amount);
         } catch (SQLException e) {
             plugin.getLogger().severe(String.format("批量扣款失败：%s", e.getMessage()));
@@ -511,8 +671,9 @@ public class EconomyManager {
         }
 
         try {
+            playerDataManager.flushPendingWrites();
             int updated = plugin.getPlayerDataManager().getPlayerDAO().setAllBatch(amount, onlineOnly, ctx.allowedUuids);
-            processBatchResult(ctx, amount, "SET_ALL", false, true, operator, operatorName);
+            processBatchResult(ctx, amount, "SET_ALL", onlineOnly, false, true, operator, operatorName);
             return new BatchResult(updated, ctx.totalAccounts - updated, amount);
         } catch (SQLException e) {
             plugin.getLogger().severe(String.format("批量设置余额失败：%s", e.getMessage()));
@@ -537,9 +698,10 @@ public class EconomyManager {
 
         SchedulerUtils.runAsync(plugin, () -> {
             try {
+                playerDataManager.flushPendingWrites();
                 int updated = plugin.getPlayerDataManager().getPlayerDAO().depositAllBatch(amount, onlineOnly, ctx.allowedUuids);
                 SchedulerUtils.runGlobal(plugin, () -> {
-                    processBatchResult(ctx, amount, "DEPOSIT_ALL", false, false, operator, operatorName);
+                    processBatchResult(ctx, amount, "DEPOSIT_ALL", onlineOnly, false, false, operator, operatorName);
                     callback.accept(new BatchResult(updated, ctx.totalAccounts - updated, amount));
                 });
             } catch (SQLException e) {
@@ -566,9 +728,10 @@ public class EconomyManager {
 
         SchedulerUtils.runAsync(plugin, () -> {
             try {
+                playerDataManager.flushPendingWrites();
                 int updated = plugin.getPlayerDataManager().getPlayerDAO().withdrawAllBatch(amount, onlineOnly, ctx.allowedUuids);
                 SchedulerUtils.runGlobal(plugin, () -> {
-                    processBatchResult(ctx, amount, "WITHDRAW_ALL", true, false, operator, operatorName);
+                    processBatchResult(ctx, amount, "WITHDRAW_ALL", onlineOnly, true, false, operator, operatorName);
                     callback.accept(new BatchResult(updated, ctx.totalAccounts - updated, amount));
                 });
             } catch (SQLException e) {
@@ -595,9 +758,10 @@ public class EconomyManager {
 
         SchedulerUtils.runAsync(plugin, () -> {
             try {
+                playerDataManager.flushPendingWrites();
                 int updated = plugin.getPlayerDataManager().getPlayerDAO().setAllBatch(amount, onlineOnly, ctx.allowedUuids);
                 SchedulerUtils.runGlobal(plugin, () -> {
-                    processBatchResult(ctx, amount, "SET_ALL", false, true, operator, operatorName);
+                    processBatchResult(ctx, amount, "SET_ALL", onlineOnly, false, true, operator, operatorName);
                     callback.accept(new BatchResult(updated, ctx.totalAccounts - updated, amount));
                 });
             } catch (SQLException e) {
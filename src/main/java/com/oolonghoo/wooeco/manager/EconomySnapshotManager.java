@@ -0,0 +1,199 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.config.CurrencyConfig;
+import com.oolonghoo.wooeco.model.IncomePeriod;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.model.PlayerEconomySnapshot;
+import com.oolonghoo.wooeco.util.SchedulerUtils;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线玩家经济快照
+ * 异步定时任务每个间隔检查一次在线账户并提前刷新其周/月收入缓存，只为账户对象或版本变化、收到变动通知、周/月收入刷新或排名变化的玩家生成新快照，
+ * 有变化时整体替换为新的不可变 Map；读取方只读一次 volatile 引用，不需要任何同步
+ */
+public class EconomySnapshotManager {
+
+    private final WooEco plugin;
+
+    private volatile Map<UUID, PlayerEconomySnapshot> snapshots = Collections.emptyMap();
+    /** 不改变账户版本的变动（每日收入重置等），下次构建时重新生成这些玩家的快照 */
+    private final Set<UUID> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong allChanged = new AtomicLong();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private ScheduledTask task;
+
+    /** 以下字段只在构建线程中访问 */
+    private final Map<UUID, Tracked> tracked = new HashMap<>();
+    private long lastRankVersion = -1;
+    private long lastAllChanged;
+
+    private volatile long builds;
+    private volatile long rebuiltEntries;
+
+    public EconomySnapshotManager(WooEco plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start(long intervalMs) {
+        task = SchedulerUtils.runAsyncTimer(plugin, this::rebuild, intervalMs, intervalMs);
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * 当前快照，键为在线玩家 UUID；返回的 Map 不可修改，之后的构建不会改变它
+     */
+    public Map<UUID, PlayerEconomySnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    public PlayerEconomySnapshot get(UUID uuid) {
+        return snapshots.get(uuid);
+    }
+
+    /**
+     * 不改变账户版本的变动后调用（每日收入变化）
+     */
+    public void markChanged(UUID uuid) {
+        changed.add(uuid);
+    }
+
+    /**
+     * 货币格式重载或全体每日收入重置后调用，下次构建时重新生成所有快照
+     */
+    public void markAllChanged() {
+        allChanged.incrementAndGet();
+    }
+
+    public int size() {
+        return snapshots.size();
+    }
+
+    public long getBuilds() {
+        return builds;
+    }
+
+    public long getRebuiltEntries() {
+        return rebuiltEntries;
+    }
+
+    void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            build();
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private void build() {
+        PlayerDataManager playerDataManager = plugin.getPlayerDataManager();
+        EconomyManager economyManager = plugin.getEconomyManager();
+        // 禁用缓存时在线账户需要查库，不构建快照
+        if (playerDataManager == null || economyManager == null || playerDataManager.isCacheDisabled()) {
+            return;
+        }
+        LeaderboardManager leaderboardManager = plugin.getLeaderboardManager();
+        long rankVersion = leaderboardManager != null ? leaderboardManager.getBalanceIndexVersion() : 0;
+        boolean ranksChanged = rankVersion != lastRankVersion;
+        lastRankVersion = rankVersion;
+        long allChangedNow = allChanged.get();
+        boolean rebuildAll = allChangedNow != lastAllChanged;
+        lastAllChanged = allChangedNow;
+
+        PeriodIncomeCache incomeCache = economyManager.getIncomeCache();
+        CurrencyConfig currencyConfig = plugin.getCurrencyConfig();
+        Map<UUID, PlayerEconomySnapshot> current = snapshots;
+        Map<UUID, PlayerEconomySnapshot> updated = null;
+        Collection<PlayerAccount> online = playerDataManager.getOnlineAccounts();
+        int count = 0;
+
+        for (PlayerAccount account : online) {
+            // 占位账户的余额不是真实余额，加载完成后再生成
+            if (account.isPlaceholder()) {
+                continue;
+            }
+            count++;
+            UUID uuid = account.getUuid();
+            boolean marked = changed.remove(uuid);
+            PlayerEconomySnapshot old = current.get(uuid);
+            Tracked last = tracked.get(uuid);
+            // 先读版本再读余额，读取期间的变动会在下次构建时被发现
+            long version = account.getVersion();
+            // 同步读取只看缓存；快照是在线玩家收入的主要读取方，缓存项接近过期时由这里在后台提前刷新，
+            // 刷新结果在之后的构建中生效
+            incomeCache.preload(uuid);
+            BigDecimal weekly = incomeCache.peek(uuid, IncomePeriod.WEEK);
+            BigDecimal monthly = incomeCache.peek(uuid, IncomePeriod.MONTH);
+            int rank = old != null && !ranksChanged ? old.getRank()
+                : leaderboardManager != null ? leaderboardManager.getBalanceRank(uuid) : -1;
+
+            if (old != null && !marked && !rebuildAll && last != null && last.account == account
+                    && last.version == version && old.getWeeklyIncome() == weekly
+                    && old.getMonthlyIncome() == monthly && old.getRank() == rank) {
+                continue;
+            }
+            String formatted = account.isFixedPoint()
+                ? currencyConfig.formatUnits(account.getBalanceUnits(), account.getScale())
+                : currencyConfig.format(account.getBalanceDouble());
+            PlayerEconomySnapshot snapshot = new PlayerEconomySnapshot(uuid, account.getPlayerName(),
+                account.getBalance(), formatted, account.getDailyIncome(), weekly, monthly, rank);
+            if (updated == null) {
+                updated = new HashMap<>();
+            }
+            updated.put(uuid, snapshot);
+            tracked.put(uuid, new Tracked(account, version));
+        }
+
+        if (updated == null && count == current.size()) {
+            return;
+        }
+
+        Map<UUID, PlayerEconomySnapshot> next = new HashMap<>(Math.max(16, count * 2));
+        for (PlayerAccount account : online) {
+            UUID uuid = account.getUuid();
+            PlayerEconomySnapshot snapshot = updated != null ? updated.get(uuid) : null;
+            if (snapshot == null && !account.isPlaceholder()) {
+                snapshot = current.get(uuid);
+            }
+            if (snapshot != null) {
+                next.put(uuid, snapshot);
+            }
+        }
+        tracked.keySet().retainAll(next.keySet());
+        // 离线玩家的通知不再需要
+        changed.retainAll(next.keySet());
+        snapshots = Collections.unmodifiableMap(next);
+        builds++;
+        rebuiltEntries += updated != null ? updated.size() : 0;
+    }
+
+    private static final class Tracked {
+        final PlayerAccount account;
+        final long version;
+
+        Tracked(PlayerAccount account, long version) {
+            this.account = account;
+            this.version = version;
+        }
+    }
+}
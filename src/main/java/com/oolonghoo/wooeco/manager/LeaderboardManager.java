@@ -7,6 +7,7 @@ import com.oolonghoo.wooeco.model.PlayerAccount;
 import com.oolonghoo.wooeco.util.AsyncUtils;
 import com.oolonghoo.wooeco.util.SchedulerUtils;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
@@ -22,9 +23,12 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 /**
  * 排行榜管理器 (线程安全)
+ * 余额与日收入排行使用内存排名索引：启动时从数据库全量加载一次，之后随每次余额变动增量更新
+ * 周/月收入排行按日志聚合，仍定时刷新
  * 支持黑名单过滤
  * 
  */
@@ -33,21 +37,25 @@ public class LeaderboardManager {
     private final WooEco plugin;
     private final PlayerDAO playerDAO;
     
-    private volatile List<PlayerAccount> balanceTopCache;
-    private volatile List<PlayerAccount> incomeTopCache;
+    /** 余额排名索引，包含所有非黑名单账户 */
+    private final RankIndex balanceIndex = new RankIndex();
+    /** 日收入排名索引 */
+    private final RankIndex incomeIndex = new RankIndex();
+    /** 索引完成首次加载前，排行查询返回空结果 */
+    private volatile boolean indexReady = false;
+    /** 防止重复触发全量重建 */
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean(false);
+    /** 重建进行中又收到请求时，结束后再重建一次（合并为一次） */
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(false);
+    
     private volatile List<PlayerAccount> weeklyIncomeTopCache;
     private volatile List<PlayerAccount> monthlyIncomeTopCache;
     private final int cacheSize;
     private final Object cacheLock = new Object();
     
-    private volatile Map<UUID, Integer> balanceRankCache;
-    private volatile Map<UUID, Integer> incomeRankCache;
     private volatile Map<UUID, Integer> weeklyIncomeRankCache;
     private volatile Map<UUID, Integer> monthlyIncomeRankCache;
 
-    /** 玩家名(小写) -> 余额排名，O(1) 查找 */
-    private volatile Map<String, Integer> balanceNameRankIndex;
-
     /** 防止缓存为空时重复触发刷新 */
     private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
 
@@ -59,18 +67,14 @@ public class LeaderboardManager {
         this.plugin = plugin;
         this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
         this.cacheSize = plugin.getConfig().getInt("leaderboard.per-page", 10) * 10;
-        this.balanceTopCache = Collections.emptyList();
-        this.incomeTopCache = Collections.emptyList();
         this.weeklyIncomeTopCache = Collections.emptyList();
         this.monthlyIncomeTopCache = Collections.emptyList();
-        this.balanceRankCache = Collections.emptyMap();
-        this.incomeRankCache = Collections.emptyMap();
         this.weeklyIncomeRankCache = Collections.emptyMap();
         this.monthlyIncomeRankCache = Collections.emptyMap();
-        this.balanceNameRankIndex = Collections.emptyMap();
         this.blacklistNames = ConcurrentHashMap.newKeySet();
         this.blacklistUUIDs = ConcurrentHashMap.newKeySet();
         loadBlacklist();
+        rebuildIndexAsync();
     }
     
     private void loadBlacklist() {
@@ -99,7 +103,8 @@ public class LeaderboardManager {
     
     public void reloadBlacklist() {
         loadBlacklist();
-        refreshCache();
+        rebuildIndexAsync();
+        refreshCacheAsync();
     }
     
     private boolean isBlacklisted(PlayerAccount account) {
@@ -114,74 +119,168 @@ public class LeaderboardManager {
         return blacklistUUIDs.contains(account.getUuid());
     }
     
+    /**
+     * 刷新周/月收入排行（余额与日收入排行由索引增量维护，无需刷新）
+     */
     public void refreshCache() {
         try {
             int fetchSize = cacheSize * 2;
             long weekStart = getStartOfWeekTimestamp();
             long monthStart = getStartOfMonthTimestamp();
 
-            // 4 个独立 DB 查询并行执行
-            CompletableFuture<List<PlayerAccount>> balanceFuture = AsyncUtils.supplyAsync(() -> safeGetTopBalances(fetchSize));
-            CompletableFuture<List<PlayerAccount>> incomeFuture = AsyncUtils.supplyAsync(() -> safeGetTopIncomes(fetchSize));
+            // 2 个独立 DB 查询并行执行
             CompletableFuture<List<PlayerAccount>> weeklyFuture = AsyncUtils.supplyAsync(() -> safeGetTopIncomesByPeriod(weekStart, fetchSize));
             CompletableFuture<List<PlayerAccount>> monthlyFuture = AsyncUtils.supplyAsync(() -> safeGetTopIncomesByPeriod(monthStart, fetchSize));
 
             // 等待全部完成
-            CompletableFuture.allOf(balanceFuture, incomeFuture, weeklyFuture, monthlyFuture).join();
+            CompletableFuture.allOf(weeklyFuture, monthlyFuture).join();
 
-            List<PlayerAccount> rawBalanceTop = balanceFuture.join();
-            List<PlayerAccount> rawIncomeTop = incomeFuture.join();
-            List<PlayerAccount> rawWeeklyIncomeTop = weeklyFuture.join();
-            List<PlayerAccount> rawMonthlyIncomeTop = monthlyFuture.join();
+            List<PlayerAccount> filteredWeeklyIncomeTop = filterBlacklist(weeklyFuture.join());
+            List<PlayerAccount> filteredMonthlyIncomeTop = filterBlacklist(monthlyFuture.join());
 
-            List<PlayerAccount> filteredBalanceTop = filterBlacklist(rawBalanceTop);
-            List<PlayerAccount> filteredIncomeTop = filterBlacklist(rawIncomeTop);
-            List<PlayerAccount> filteredWeeklyIncomeTop = filterBlacklist(rawWeeklyIncomeTop);
-            List<PlayerAccount> filteredMonthlyIncomeTop = filterBlacklist(rawMonthlyIncomeTop);
-
-            Map<UUID, Integer> newBalanceRankCache = buildRankCache(filteredBalanceTop);
-            Map<UUID, Integer> newIncomeRankCache = buildRankCache(filteredIncomeTop);
             Map<UUID, Integer> newWeeklyIncomeRankCache = buildRankCache(filteredWeeklyIncomeTop);
             Map<UUID, Integer> newMonthlyIncomeRankCache = buildRankCache(filteredMonthlyIncomeTop);
 
-            // 构建玩家名 -> 余额排名索引
-            Map<String, Integer> newNameRankIndex = new HashMap<>();
-            for (int i = 0; i < filteredBalanceTop.size(); i++) {
-                newNameRankIndex.put(filteredBalanceTop.get(i).getPlayerName().toLowerCase(), i + 1);
-            }
-
             synchronized (cacheLock) {
-                this.balanceTopCache = Collections.unmodifiableList(filteredBalanceTop);
-                this.incomeTopCache = Collections.unmodifiableList(filteredIncomeTop);
                 this.weeklyIncomeTopCache = Collections.unmodifiableList(filteredWeeklyIncomeTop);
                 this.monthlyIncomeTopCache = Collections.unmodifiableList(filteredMonthlyIncomeTop);
-                this.balanceRankCache = Collections.unmodifiableMap(newBalanceRankCache);
-                this.incomeRankCache = Collections.unmodifiableMap(newIncomeRankCache);
                 this.weeklyIncomeRankCache = Collections.unmodifiableMap(newWeeklyIncomeRankCache);
                 this.monthlyIncomeRankCache = Collections.unmodifiableMap(newMonthlyIncomeRankCache);
-                this.balanceNameRankIndex = Collections.unmodifiableMap(newNameRankIndex);
             }
         } catch (Exception e) {
             plugin.getLogger().severe("刷新排行榜缓存失败: " + e.getMessage());
         }
     }
 
-    private List<PlayerAccount> safeGetTopBalances(int size) {
+    /**
+     * 从数据库全量重建余额/日收入索引
+     * 启动和黑名单重载时调用；批量 SQL 更新和每日收入重置在内存索引上原地应用
+     */
+    public void rebuildIndex() {
+        List<PlayerAccount> accounts;
         try {
-            return playerDAO.getTopBalances(size);
+            accounts = playerDAO.getAllAccounts();
         } catch (SQLException e) {
-            plugin.getLogger().severe("查询余额排行榜失败: " + e.getMessage());
-            return Collections.emptyList();
+            plugin.getLogger().severe("加载排行榜索引失败: " + e.getMessage());
+            return;
+        }
+
+        // 内存中的账户可能比数据库更新（延迟写入），以内存为准
+        Map<UUID, PlayerAccount> latest = new HashMap<>();
+        for (PlayerAccount account : accounts) {
+            latest.put(account.getUuid(), account);
+        }
+        PlayerDataManager playerDataManager = plugin.getPlayerDataManager();
+        for (PlayerAccount account : playerDataManager.getOnlineAccounts()) {
+            latest.put(account.getUuid(), account);
         }
+        if (playerDataManager.getOfflineCache() != null) {
+            for (PlayerAccount account : playerDataManager.getOfflineCache().getAccounts()) {
+                latest.put(account.getUuid(), account);
+            }
+        }
+
+        // 未加载的账户在数据库中可能保留着昨天的日收入，按今日为 0 计入
+        long todayStart = LocalDate.now(ZoneId.systemDefault()).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<RankIndex.Entry> balances = new ArrayList<>(latest.size());
+        List<RankIndex.Entry> incomes = new ArrayList<>(latest.size());
+        for (PlayerAccount account : latest.values()) {
+            if (isBlacklisted(account)) {
+                continue;
+            }
+            BigDecimal dailyIncome = account.getLastIncomeReset() < todayStart ? BigDecimal.ZERO : account.getDailyIncome();
+            balances.add(new RankIndex.Entry(account.getUuid(), account.getPlayerName(), account.getBalance()));
+            incomes.add(new RankIndex.Entry(account.getUuid(), account.getPlayerName(), dailyIncome));
+        }
+        balanceIndex.rebuild(balances);
+        incomeIndex.rebuild(incomes);
+
+        // 重建期间在线账户的变动可能被快照覆盖，重新应用一次
+        for (PlayerAccount account : playerDataManager.getOnlineAccounts()) {
+            onAccountChanged(account);
+        }
+        indexReady = true;
     }
 
-    private List<PlayerAccount> safeGetTopIncomes(int size) {
-        try {
-            return playerDAO.getTopIncomes(size);
-        } catch (SQLException e) {
-            plugin.getLogger().severe("查询日收入排行榜失败: " + e.getMessage());
-            return Collections.emptyList();
+    public void rebuildIndexAsync() {
+        rebuildRequested.set(true);
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        SchedulerUtils.runAsync(plugin, () -> {
+            try {
+                while (rebuildRequested.getAndSet(false)) {
+                    rebuildIndex();
+                }
+            } finally {
+                rebuildInProgress.set(false);
+            }
+            // 释放标记前到达的请求
+            if (rebuildRequested.get()) {
+                rebuildIndexAsync();
+            }
+        });
+    }
+
+    /**
+     * 查询时索引尚未加载：已有重建在进行就等待它，不追加一次重建
+     */
+    private void ensureIndexLoading() {
+        if (!rebuildInProgress.get()) {
+            rebuildIndexAsync();
+        }
+    }
+
+    /**
+     * 全体余额批量更新（giveall/takeall/setall 不限在线）后调用，按与 SQL 相同的规则原地更新余额索引，不查库
+     */
+    public void onAllBalancesChanged(UnaryOperator<BigDecimal> function) {
+        if (!indexReady) {
+            // 首次加载尚未完成，加载时会读到数据库中的新余额
+            return;
+        }
+        balanceIndex.applyAll(function);
+        // 进行中的重建可能读到批量更新前的数据库，结束后再重建一次
+        if (rebuildInProgress.get()) {
+            rebuildIndexAsync();
+        }
+    }
+
+    /**
+     * 全体每日收入重置后调用，原地清零日收入索引
+     */
+    public void onAllDailyIncomeReset() {
+        if (!indexReady) {
+            return;
+        }
+        incomeIndex.applyAll(value -> BigDecimal.ZERO);
+        if (rebuildInProgress.get()) {
+            rebuildIndexAsync();
+        }
+    }
+
+    /**
+     * 账户余额或日收入变化后调用，增量更新索引（O(log n)）
+     */
+    public void onAccountChanged(PlayerAccount account) {
+        if (isBlacklisted(account)) {
+            balanceIndex.remove(account.getUuid());
+            incomeIndex.remove(account.getUuid());
+            return;
+        }
+        balanceIndex.update(account.getUuid(), account.getPlayerName(), account.getBalance());
+        incomeIndex.update(account.getUuid(), account.getPlayerName(), account.getDailyIncome());
+    }
+
+    /**
+     * 其他服务器同步来的余额变化（本服可能未加载该账户），只更新余额索引
+     */
+    public void onBalanceChanged(UUID uuid, String playerName, BigDecimal balance) {
+        if (blacklistEnabled && (blacklistUUIDs.contains(uuid)
+                || (playerName != null && blacklistNames.contains(playerName.toLowerCase())))) {
+            return;
         }
+        balanceIndex.update(uuid, playerName, balance);
     }
 
     private List<PlayerAccount> safeGetTopIncomesByPeriod(long startTimestamp, int size) {
@@ -228,7 +327,18 @@ public class LeaderboardManager {
     }
 
     public List<PlayerAccount> getBalanceTop(int page, int perPage) {
-        List<PlayerAccount> cache = balanceTopCache;
+        return getIndexPage(balanceIndex, page, perPage, false);
+    }
+
+    public List<PlayerAccount> getIncomeTop(int page, int perPage) {
+        return getIncomeTopByPeriod(IncomePeriod.DAY, page, perPage);
+    }
+    
+    public List<PlayerAccount> getIncomeTopByPeriod(IncomePeriod period, int page, int perPage) {
+        if (period == IncomePeriod.DAY) {
+            return getIndexPage(incomeIndex, page, perPage, true);
+        }
+        List<PlayerAccount> cache = getIncomeCache(period);
         
         if (cache.isEmpty()) {
             refreshCacheAsync();
@@ -245,34 +355,35 @@ public class LeaderboardManager {
         return Collections.unmodifiableList(cache.subList(start, end));
     }
 
-    public List<PlayerAccount> getIncomeTop(int page, int perPage) {
-        return getIncomeTopByPeriod(IncomePeriod.DAY, page, perPage);
-    }
-    
-    public List<PlayerAccount> getIncomeTopByPeriod(IncomePeriod period, int page, int perPage) {
-        List<PlayerAccount> cache = switch (period) {
-            case WEEK -> weeklyIncomeTopCache;
-            case MONTH -> monthlyIncomeTopCache;
-            default -> incomeTopCache;
-        };
-        
-        if (cache.isEmpty()) {
-            refreshCacheAsync();
+    /**
+     * 从索引取一页，转换为账户快照（income 为 true 时数值写入 dailyIncome 字段）
+     * 分页范围与原缓存一致，限制在前 cacheSize 名
+     */
+    private List<PlayerAccount> getIndexPage(RankIndex index, int page, int perPage, boolean income) {
+        if (!indexReady) {
+            ensureIndexLoading();
             return Collections.emptyList();
         }
-
         int start = (page - 1) * perPage;
-        int end = Math.min(start + perPage, cache.size());
-
-        if (start >= cache.size()) {
+        int count = Math.min(perPage, cacheSize - start);
+        if (start < 0 || count <= 0) {
             return Collections.emptyList();
         }
+        List<PlayerAccount> result = new ArrayList<>();
+        for (RankIndex.Entry entry : index.range(start + 1, count)) {
+            BigDecimal balance = income ? BigDecimal.ZERO : entry.getValue();
+            BigDecimal dailyIncome = income ? entry.getValue() : BigDecimal.ZERO;
+            result.add(new PlayerAccount(entry.getUuid(), entry.getPlayerName(), balance, dailyIncome, 0L, 0L, 0L));
+        }
+        return Collections.unmodifiableList(result);
+    }
 
-        return Collections.unmodifiableList(cache.subList(start, end));
+    private int getIndexPageCount(RankIndex index, int perPage) {
+        return (int) Math.ceil((double) Math.min(index.size(), cacheSize) / perPage);
     }
 
     public int getTotalBalancePages(int perPage) {
-        return (int) Math.ceil((double) balanceTopCache.size() / perPage);
+        return getIndexPageCount(balanceIndex, perPage);
     }
     
     public int getTotalIncomePages(int perPage) {
@@ -280,11 +391,10 @@ public class LeaderboardManager {
     }
     
     public int getTotalIncomePagesByPeriod(IncomePeriod period, int perPage) {
-        List<PlayerAccount> cache = switch (period) {
-            case WEEK -> weeklyIncomeTopCache;
-            case MONTH -> monthlyIncomeTopCache;
-            default -> incomeTopCache;
-        };
+        if (period == IncomePeriod.DAY) {
+            return getIndexPageCount(incomeIndex, perPage);
+        }
+        List<PlayerAccount> cache = getIncomeCache(period);
         return (int) Math.ceil((double) cache.size() / perPage);
     }
     
@@ -300,49 +410,59 @@ public class LeaderboardManager {
         return blacklistNames.size() + blacklistUUIDs.size();
     }
     
+    /**
+     * 获取玩家余额排名（O(log n)，任意玩家均有精确排名，零DB调用）
+     */
     public int getBalanceRank(UUID uuid) {
-        Map<UUID, Integer> cache = balanceRankCache;
-        if (cache.isEmpty()) {
-            refreshCacheAsync();
+        if (!indexReady) {
+            ensureIndexLoading();
             return -1;
         }
-        return cache.getOrDefault(uuid, -1);
+        return balanceIndex.getRank(uuid);
     }
 
     /**
-     * 按玩家名查找余额排名（O(1)，零DB调用）
+     * 余额索引的修改次数，未变化时所有玩家的余额排名都不变
+     */
+    public long getBalanceIndexVersion() {
+        return balanceIndex.getModificationCount();
+    }
+    
+    /**
+     * 按玩家名查找余额排名（O(log n)，零DB调用）
      */
     public int getBalanceRankByName(String playerName) {
-        Map<String, Integer> index = balanceNameRankIndex;
-        if (index.isEmpty()) {
-            refreshCacheAsync();
+        if (!indexReady) {
+            ensureIndexLoading();
             return -1;
         }
-        return index.getOrDefault(playerName.toLowerCase(), -1);
+        return balanceIndex.getRankByName(playerName);
     }
 
     /**
-     * 直接从缓存获取指定排名的余额排行玩家名（O(1)，零DB调用）
+     * 获取指定排名的余额排行玩家名（O(log n)，零DB调用）
      */
     public String getTopBalancePlayer(int rank) {
-        List<PlayerAccount> cache = balanceTopCache;
-        if (rank < 1 || rank > cache.size()) return null;
-        return cache.get(rank - 1).getPlayerName();
+        RankIndex.Entry entry = balanceIndex.getAt(rank);
+        return entry != null ? entry.getPlayerName() : null;
     }
 
     /**
-     * 直接从缓存获取指定排名的余额（O(1)，零DB调用）
+     * 获取指定排名的余额（O(log n)，零DB调用）
      */
     public double getTopBalanceAt(int rank) {
-        List<PlayerAccount> cache = balanceTopCache;
-        if (rank < 1 || rank > cache.size()) return -1;
-        return cache.get(rank - 1).getBalanceDouble();
+        RankIndex.Entry entry = balanceIndex.getAt(rank);
+        return entry != null ? entry.getValue().doubleValue() : -1;
     }
 
     /**
      * 直接从缓存获取指定排名的收入排行玩家名（O(1)，零DB调用）
      */
     public String getTopIncomePlayerByPeriod(IncomePeriod period, int rank) {
+        if (period == IncomePeriod.DAY) {
+            RankIndex.Entry entry = incomeIndex.getAt(rank);
+            return entry != null ? entry.getPlayerName() : null;
+        }
         List<PlayerAccount> cache = getIncomeCache(period);
         if (rank < 1 || rank > cache.size()) return null;
         return cache.get(rank - 1).getPlayerName();
@@ -353,17 +473,17 @@ public class LeaderboardManager {
      * 注意：dailyIncome 字段在周/月排行上下文中存储的是对应周期的收入汇总值
      */
     public double getTopIncomeAt(IncomePeriod period, int rank) {
+        if (period == IncomePeriod.DAY) {
+            RankIndex.Entry entry = incomeIndex.getAt(rank);
+            return entry != null ? entry.getValue().doubleValue() : -1;
+        }
         List<PlayerAccount> cache = getIncomeCache(period);
         if (rank < 1 || rank > cache.size()) return -1;
         return cache.get(rank - 1).getDailyIncomeDouble();
     }
 
     private List<PlayerAccount> getIncomeCache(IncomePeriod period) {
-        return switch (period) {
-            case WEEK -> weeklyIncomeTopCache;
-            case MONTH -> monthlyIncomeTopCache;
-            default -> incomeTopCache;
-        };
+        return period == IncomePeriod.MONTH ? monthlyIncomeTopCache : weeklyIncomeTopCache;
     }
 
     public int getIncomeRank(UUID uuid) {
@@ -371,11 +491,14 @@ public class LeaderboardManager {
     }
     
     public int getIncomeRankByPeriod(IncomePeriod period, UUID uuid) {
-        Map<UUID, Integer> cache = switch (period) {
-            case WEEK -> weeklyIncomeRankCache;
-            case MONTH -> monthlyIncomeRankCache;
-            default -> incomeRankCache;
-        };
+        if (period == IncomePeriod.DAY) {
+            if (!indexReady) {
+                ensureIndexLoading();
+                return -1;
+            }
+            return incomeIndex.getRank(uuid);
+        }
+        Map<UUID, Integer> cache = period == IncomePeriod.MONTH ? monthlyIncomeRankCache : weeklyIncomeRankCache;
         if (cache.isEmpty()) {
             refreshCacheAsync();
             return -1;
@@ -5,8 +5,15 @@ import com.oolonghoo.wooeco.database.dao.LogDAO;
 import com.oolonghoo.wooeco.model.EconomyLog;
 import com.oolonghoo.wooeco.util.SchedulerUtils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -16,32 +23,77 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 日志管理器
  * 使用队列 + 定时批量写入，减少 DB 连接和文件 IO 开销
+ * 队列满或写库失败时日志溢写到本地分段文件，下次刷新时重放入库，保证审计日志不丢失
  */
 public class LogManager {
 
     private static final long FLUSH_INTERVAL_MS = 5000; // 5秒刷新一次
 
+    private static final String SPILL_FILE = "spill.dat";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    /** 已提交到数据库、等待删除的分段 */
+    private static final String COMMITTED_SUFFIX = ".done";
+
+    /** 单个溢写分段的最大条数，重放时一个分段对应一次事务 */
+    private static final int SEGMENT_MAX_RECORDS = 5000;
+
     private final WooEco plugin;
     private final LogDAO logDAO;
     private final File logFolder;
     private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final DateTimeFormatter fileDateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    private final File spillFolder;
+    private final int queueCapacity;
+    private final int flushThreshold;
+
     /** 日志队列，logBalanceChange 入队，定时任务消费 */
-    private final LinkedBlockingQueue<EconomyLog> logQueue = new LinkedBlockingQueue<>(10000);
+    private final LinkedBlockingQueue<EconomyLog> logQueue;
+
+    /** 队列满时等待溢写的日志，由异步任务成批写入溢写文件，调用线程不做文件 IO */
+    private final ConcurrentLinkedQueue<EconomyLog> overflow = new ConcurrentLinkedQueue<>();
+
+    /** 避免重复提交溢写任务 */
+    private final AtomicBoolean spillRequested = new AtomicBoolean(false);
 
     /** 按日期+类型缓存的 BufferedWriter，避免每次写入都打开关闭文件 */
     private final Map<String, BufferedWriter> writerCache = new ConcurrentHashMap<>();
 
+    /** 保护溢写文件的写入与分段切换 */
+    private final Object spillLock = new Object();
+
+    /** 保证同一时刻只有一个刷新在执行 */
+    private final Object flushLock = new Object();
+
+    /** 队列积压达到阈值时避免重复提交刷新任务 */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    /** 已提交但无法标记或删除的分段名，本进程内跳过 */
+    private final Set<String> committedSegments = ConcurrentHashMap.newKeySet();
+
+    /** 分段序号，启动时从已有分段的最大序号继续，不受系统时钟回拨影响 */
+    private final AtomicLong segmentSequence = new AtomicLong();
+
+    /** 当前溢写文件，首次溢写时打开 */
+    private DataOutputStream spillOut;
+    private int spillRecords;
+
     /** 插件禁用时置为 true，停止递归调度 */
     private volatile boolean shutdown = false;
 
@@ -49,9 +101,23 @@ public class LogManager {
         this.plugin = plugin;
         this.logDAO = plugin.getDatabaseManager().getLogDAO();
         this.logFolder = new File(plugin.getDataFolder(), "logs");
+        this.spillFolder = new File(plugin.getDataFolder(), "log-spill");
+        this.queueCapacity = Math.max(100, plugin.getConfig().getInt("logging.queue-capacity", 10000));
+        this.flushThreshold = Math.max(1, Math.min(queueCapacity,
+            plugin.getConfig().getInt("logging.flush-threshold", 2000)));
+        this.logQueue = new LinkedBlockingQueue<>(queueCapacity);
         if (!logFolder.exists()) {
             logFolder.mkdirs();
         }
+        if (!spillFolder.exists()) {
+            spillFolder.mkdirs();
+        }
+        // 上次异常退出残留的溢写文件转为分段，由下一次刷新重放
+        synchronized (spillLock) {
+            segmentSequence.set(highestSegmentSequence());
+            deleteCommittedSegments();
+            rotateSpill();
+        }
         scheduleNextFlush();
     }
 
@@ -83,47 +149,330 @@ public class LogManager {
         );
 
         if (!logQueue.offer(log)) {
-            plugin.getLogger().warning("日志队列已满，丢弃日志: " + log.getAction());
+            // 队列已满：交给异步任务溢写到本地文件而不是丢弃
+            overflow.add(log);
+            requestSpill();
         }
+        requestFlushIfFull();
     }
 
     /**
-     * 刷新：从队列中取出所有日志，批量写入 DB 和文件
-     * 插件禁用时也会调用此方法确保日志不丢失
+     * 提交溢写任务，任务执行前到达的溢写日志合并为一次文件写入
      */
-    public void flush() {
-        List<EconomyLog> batch = new ArrayList<>();
-        EconomyLog log;
-        while ((log = logQueue.poll()) != null) {
-            batch.add(log);
+    private void requestSpill() {
+        if (spillRequested.compareAndSet(false, true)) {
+            SchedulerUtils.runAsync(plugin, () -> {
+                spillRequested.set(false);
+                spillOverflow();
+            });
         }
+    }
 
-        if (batch.isEmpty()) {
-            return;
+    private void spillOverflow() {
+        List<EconomyLog> logs = new ArrayList<>();
+        EconomyLog log;
+        while ((log = overflow.poll()) != null) {
+            logs.add(log);
+        }
+        if (!logs.isEmpty()) {
+            spill(logs, false);
         }
+    }
 
-        // 批量写入 DB
-        try {
-            logDAO.saveAllBatch(batch);
-        } catch (SQLException e) {
-            plugin.getLogger().severe(String.format("批量保存日志失败：%s", e.getMessage()));
+    /**
+     * 队列积压达到阈值时提前刷新，不必等待固定刷新间隔
+     */
+    private void requestFlushIfFull() {
+        if (logQueue.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            SchedulerUtils.runAsync(plugin, () -> {
+                flushRequested.set(false);
+                flush();
+            });
         }
+    }
+
+    /**
+     * 刷新：先重放溢写分段，再从队列中取出所有日志，批量写入 DB 和文件
+     * 插件禁用时也会调用此方法确保日志不丢失
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            // 尚未由溢写任务写出的日志先写入溢写文件，随本次重放入库（关闭时不再有异步任务）
+            spillOverflow();
+            replaySpill();
+
+            List<EconomyLog> batch = new ArrayList<>();
+            logQueue.drainTo(batch);
 
-        // 批量写入文件
-        writeToFileBatch(batch);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // 批量写入 DB，失败时溢写到本地，下次刷新重试
+            long start = System.nanoTime();
+            try {
+                logDAO.saveAllBatch(batch);
+                plugin.getDebugManager().database("LOG_FLUSH", "logs=" + batch.size(), System.nanoTime() - start);
+            } catch (SQLException e) {
+                plugin.getLogger().severe(String.format("批量保存日志失败，已溢写到本地等待重试：%s", e.getMessage()));
+                spill(batch, true);
+            }
+
+            // 批量写入文件
+            writeToFileBatch(batch);
+        }
     }
 
     /**
      * 插件禁用时调用：停止定时任务、刷新剩余日志并关闭所有 BufferedWriter
+     * 仍未入库的溢写分段保留在磁盘上，下次启动后重放
      */
     public void shutdown() {
         shutdown = true;
         // 刷新剩余日志
         flush();
+        synchronized (spillLock) {
+            closeSpillWriter();
+        }
         // 关闭所有 BufferedWriter
         closeAllWriters();
     }
 
+    public int getQueueSize() {
+        return logQueue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 追加日志到溢写文件
+     * fileWritten 表示是否已写入文本日志，重放时避免重复写文件
+     */
+    private void spill(List<EconomyLog> logs, boolean fileWritten) {
+        synchronized (spillLock) {
+            try {
+                if (spillOut == null) {
+                    spillOut = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(spillFolder, SPILL_FILE), true)));
+                }
+                for (EconomyLog log : logs) {
+                    writeRecord(spillOut, log, fileWritten);
+                    spillRecords++;
+                    if (spillRecords >= SEGMENT_MAX_RECORDS) {
+                        rotateSpill();
+                        spillOut = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(new File(spillFolder, SPILL_FILE), true)));
+                    }
+                }
+                // 进程崩溃时最多丢失缓冲区中的少量记录，与内存队列的保证一致
+                spillOut.flush();
+            } catch (IOException e) {
+                plugin.getLogger().severe(String.format("溢写日志失败，%d 条日志丢失：%s", logs.size(), e.getMessage()));
+                return;
+            }
+        }
+        plugin.getDebugManager().incrementCounter("log_spill", logs.size());
+    }
+
+    /**
+     * 将当前溢写文件切换为只读分段，之后的溢写写入新文件
+     */
+    private void rotateSpill() {
+        closeSpillWriter();
+        spillRecords = 0;
+        File spill = new File(spillFolder, SPILL_FILE);
+        if (spill.exists() && spill.length() > 0) {
+            File segment = new File(spillFolder, SEGMENT_PREFIX + segmentSequence.incrementAndGet() + SEGMENT_SUFFIX);
+            if (!spill.renameTo(segment)) {
+                plugin.getLogger().warning(String.format("切换日志溢写文件失败：%s", spill.getName()));
+            }
+        }
+    }
+
+    private void closeSpillWriter() {
+        if (spillOut == null) {
+            return;
+        }
+        try {
+            spillOut.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning(String.format("关闭日志溢写文件失败：%s", e.getMessage()));
+        }
+        spillOut = null;
+    }
+
+    /**
+     * 按顺序把溢写分段写入数据库，每个分段一次事务
+     * 提交后先把分段改名为已提交标记再删除，删除失败的分段不会被再次重放
+     * 遇到失败立即停止，剩余分段留给下一次刷新
+     */
+    private void replaySpill() {
+        List<File> segments;
+        synchronized (spillLock) {
+            if (spillRecords > 0) {
+                rotateSpill();
+            }
+            segments = listSegments();
+        }
+
+        for (File segment : segments) {
+            List<EconomyLog> logs = new ArrayList<>();
+            List<EconomyLog> fileLogs = new ArrayList<>();
+            readSegment(segment, logs, fileLogs);
+
+            if (!logs.isEmpty()) {
+                try {
+                    logDAO.saveAllBatch(logs);
+                } catch (SQLException e) {
+                    plugin.getLogger().severe(String.format("重放溢写日志失败，将在下次刷新时重试：%s", e.getMessage()));
+                    return;
+                }
+                File committed = committedMarker(segment);
+                if (segment.renameTo(committed)) {
+                    segment = committed;
+                } else if (!segment.delete()) {
+                    // 既不能标记也不能删除：本进程内不再重放，重启前需要人工删除
+                    committedSegments.add(segment.getName());
+                    plugin.getLogger().severe(String.format("已提交的日志溢写分段无法标记或删除，请手动删除 %s 以免重启后重复写入", segment.getName()));
+                }
+                writeToFileBatch(fileLogs);
+                plugin.getDebugManager().incrementCounter("log_spill_replay", logs.size());
+            }
+            // 已标记的分段删除失败时留给下次启动清理，不会被重放
+            if (segment.exists() && !committedSegments.contains(segment.getName()) && !segment.delete()) {
+                plugin.getLogger().warning(String.format("删除日志溢写分段失败：%s", segment.getName()));
+            }
+        }
+    }
+
+    private File committedMarker(File segment) {
+        String name = segment.getName();
+        return new File(spillFolder, name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + COMMITTED_SUFFIX);
+    }
+
+    /**
+     * 删除上次运行中已提交但未能删除的分段
+     */
+    private void deleteCommittedSegments() {
+        File[] files = spillFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(COMMITTED_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                plugin.getLogger().warning(String.format("删除日志溢写分段失败：%s", file.getName()));
+            }
+        }
+    }
+
+    private long highestSegmentSequence() {
+        File[] files = spillFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX));
+        long highest = 0L;
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                int end = name.lastIndexOf('.');
+                try {
+                    highest = Math.max(highest, Long.parseLong(name.substring(SEGMENT_PREFIX.length(), end)));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    // 非分段文件，忽略
+                }
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * 按写入顺序列出所有分段
+     */
+    private List<File> listSegments() {
+        File[] files = spillFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+            && !committedSegments.contains(name));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort(Comparator.comparingLong(this::getSegmentSequence));
+        return segments;
+    }
+
+    private long getSegmentSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private void readSegment(File segment, List<EconomyLog> logs, List<EconomyLog> fileLogs) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            int flag;
+            while ((flag = in.read()) != -1) {
+                EconomyLog log = readRecord(in);
+                logs.add(log);
+                if (flag == 0) {
+                    fileLogs.add(log);
+                }
+            }
+        } catch (EOFException e) {
+            // 崩溃时写了一半的末尾记录，之前的记录仍然有效
+            plugin.getLogger().warning(String.format("日志溢写分段末尾不完整，已忽略：%s", segment.getName()));
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().warning(String.format("读取日志溢写分段失败 [%s]：%s", segment.getName(), e.getMessage()));
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, EconomyLog log, boolean fileWritten) throws IOException {
+        out.writeByte(fileWritten ? 1 : 0);
+        out.writeLong(log.getTimestamp());
+        out.writeUTF(log.getUuid().toString());
+        writeNullable(out, log.getPlayerName());
+        writeNullable(out, log.getAction());
+        writeNullable(out, toPlain(log.getAmount()));
+        writeNullable(out, toPlain(log.getBalanceBefore()));
+        writeNullable(out, toPlain(log.getBalanceAfter()));
+        writeNullable(out, log.getOperator());
+        writeNullable(out, log.getOperatorName());
+        writeNullable(out, log.getReason());
+    }
+
+    private static EconomyLog readRecord(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        UUID uuid = UUID.fromString(in.readUTF());
+        String playerName = readNullable(in);
+        String action = readNullable(in);
+        BigDecimal amount = toDecimal(readNullable(in));
+        BigDecimal balanceBefore = toDecimal(readNullable(in));
+        BigDecimal balanceAfter = toDecimal(readNullable(in));
+        String operator = readNullable(in);
+        String operatorName = readNullable(in);
+        String reason = readNullable(in);
+        return new EconomyLog(-1, uuid, playerName, action, amount, balanceBefore, balanceAfter,
+            operator, operatorName, reason, timestamp);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String toPlain(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+
+    private static BigDecimal toDecimal(String value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+
     private boolean shouldLog(String action) {
         if ("TRANSACTION".equals(action) || "PAYMENT".equals(action) || "PAYMENT_RECEIVED".equals(action)) {
             return plugin.getConfig().getBoolean("logging.transaction", true);
@@ -0,0 +1,201 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 离线玩家账户缓存
+ * 按访问顺序淘汰（LRU），并淘汰空闲超时的账户；被淘汰的脏账户交给回写函数保存
+ */
+public class OfflineAccountCache {
+
+    private final int maxSize;
+    private final long idleTtlMs;
+    private final Consumer<PlayerAccount> writeBack;
+
+    /** accessOrder=true 的 LinkedHashMap，头部为最久未访问的账户 */
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** 正在从数据库加载的账户，同一玩家并发未命中只查询一次 */
+    private final Map<UUID, CompletableFuture<PlayerAccount>> loading = new ConcurrentHashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public OfflineAccountCache(int maxSize, long idleTtlMs, Consumer<PlayerAccount> writeBack) {
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTtlMs = idleTtlMs;
+        this.writeBack = writeBack;
+    }
+
+    public PlayerAccount get(UUID uuid) {
+        PlayerAccount expired = null;
+        PlayerAccount result = null;
+        synchronized (entries) {
+            Entry entry = entries.get(uuid);
+            if (entry != null) {
+                long now = System.currentTimeMillis();
+                if (isExpired(entry, now)) {
+                    entries.remove(uuid);
+                    evictions++;
+                    expired = entry.account;
+                } else {
+                    entry.lastAccess = now;
+                    result = entry.account;
+                }
+            }
+            if (result != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (expired != null) {
+            writeBackIfDirty(expired);
+        }
+        return result;
+    }
+
+    public void put(PlayerAccount account) {
+        List<PlayerAccount> evicted = new ArrayList<>();
+        synchronized (entries) {
+            entries.put(account.getUuid(), new Entry(account, System.currentTimeMillis()));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                evicted.add(iterator.next().account);
+                iterator.remove();
+                evictions++;
+            }
+        }
+        for (PlayerAccount evictedAccount : evicted) {
+            writeBackIfDirty(evictedAccount);
+        }
+    }
+
+    /**
+     * 移除账户但不回写（玩家上线转入在线缓存，或远端已有更新的数据）
+     */
+    public PlayerAccount remove(UUID uuid) {
+        synchronized (entries) {
+            Entry entry = entries.remove(uuid);
+            return entry != null ? entry.account : null;
+        }
+    }
+
+    /**
+     * 单飞加载：同一账户已有加载任务时复用同一个 Future
+     */
+    public CompletableFuture<PlayerAccount> load(UUID uuid, Function<UUID, CompletableFuture<PlayerAccount>> loader) {
+        CompletableFuture<PlayerAccount> future = loading.computeIfAbsent(uuid, loader);
+        future.whenComplete((account, error) -> loading.remove(uuid, future));
+        return future;
+    }
+
+    /**
+     * 淘汰所有空闲超时的账户
+     */
+    public int evictExpired() {
+        List<PlayerAccount> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (isExpired(entry, now)) {
+                    expired.add(entry.account);
+                    iterator.remove();
+                    evictions++;
+                }
+            }
+        }
+        for (PlayerAccount account : expired) {
+            writeBackIfDirty(account);
+        }
+        return expired.size();
+    }
+
+    public List<PlayerAccount> getAccounts() {
+        synchronized (entries) {
+            List<PlayerAccount> accounts = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                accounts.add(entry.account);
+            }
+            return accounts;
+        }
+    }
+
+    public List<PlayerAccount> getDirtyAccounts() {
+        List<PlayerAccount> dirty = new ArrayList<>();
+        for (PlayerAccount account : getAccounts()) {
+            if (account.isDirty()) {
+                dirty.add(account);
+            }
+        }
+        return dirty;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    public long getEvictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return idleTtlMs > 0 && now - entry.lastAccess > idleTtlMs;
+    }
+
+    private void writeBackIfDirty(PlayerAccount account) {
+        if (account.isDirty()) {
+            writeBack.accept(account);
+        }
+    }
+
+    private static final class Entry {
+        final PlayerAccount account;
+        long lastAccess;
+
+        Entry(PlayerAccount account, long lastAccess) {
+            this.account = account;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.model.IncomePeriod;
+import com.oolonghoo.wooeco.util.AsyncUtils;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 玩家周/月收入缓存
+ * 周收入和月收入由同一条查询一起加载；每个玩家同一时间最多一次加载，并发的读取共用同一个 Future。
+ * 玩家登录时预加载，缓存项在刷新间隔的 3/4 之后被读取就提前在后台刷新，经常读取的值不会过期
+ */
+public class PeriodIncomeCache {
+
+    private final WooEco plugin;
+    private final long refreshIntervalMillis;
+    private final long refreshAheadMillis;
+
+    private final ConcurrentHashMap<UUID, IncomeTotals> values = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, CompletableFuture<IncomeTotals>> loading = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    public PeriodIncomeCache(WooEco plugin, long refreshIntervalMillis) {
+        this.plugin = plugin;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.refreshAheadMillis = refreshIntervalMillis * 3 / 4;
+    }
+
+    /**
+     * 立即返回缓存的收入，不阻塞；从未加载过的玩家开始加载并返回 0
+     */
+    public BigDecimal getCached(UUID uuid, IncomePeriod period) {
+        IncomeTotals totals = values.get(uuid);
+        if (totals == null) {
+            CompletableFuture<IncomeTotals> future = load(uuid);
+            return future.isDone() ? future.join().get(period) : BigDecimal.ZERO;
+        }
+        if (System.currentTimeMillis() - totals.loadedAt >= refreshAheadMillis) {
+            load(uuid);
+        }
+        return totals.get(period);
+    }
+
+    /**
+     * 只读取缓存中的值，未缓存时返回 0；不触发加载或提前刷新，供快照构建等后台遍历使用
+     */
+    public BigDecimal peek(UUID uuid, IncomePeriod period) {
+        IncomeTotals totals = values.get(uuid);
+        return totals != null ? totals.get(period) : BigDecimal.ZERO;
+    }
+
+    /**
+     * 缓存未过期时立即完成，否则在加载完成后完成（与进行中的加载共用）
+     */
+    public CompletableFuture<BigDecimal> get(UUID uuid, IncomePeriod period) {
+        IncomeTotals totals = values.get(uuid);
+        if (totals != null && System.currentTimeMillis() - totals.loadedAt < refreshIntervalMillis) {
+            return CompletableFuture.completedFuture(totals.get(period));
+        }
+        return load(uuid).thenApply(loaded -> loaded.get(period));
+    }
+
+    /**
+     * 登录时和快照构建时调用，缓存项未到提前刷新时间或已在加载时不重复查询
+     */
+    public void preload(UUID uuid) {
+        IncomeTotals totals = values.get(uuid);
+        if (totals == null || System.currentTimeMillis() - totals.loadedAt >= refreshAheadMillis) {
+            load(uuid);
+        }
+    }
+
+    public void remove(UUID uuid) {
+        values.remove(uuid);
+    }
+
+    /**
+     * 清理离线玩家的过期缓存项，离线玩家的值只在被读取时保留一个刷新周期
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        PlayerDataManager playerDataManager = plugin.getPlayerDataManager();
+        values.entrySet().removeIf(entry -> now - entry.getValue().loadedAt >= refreshIntervalMillis
+            && !playerDataManager.isOnline(entry.getKey()));
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getJoined() {
+        return joined.sum();
+    }
+
+    private CompletableFuture<IncomeTotals> load(UUID uuid) {
+        CompletableFuture<IncomeTotals> existing = loading.get(uuid);
+        if (existing != null) {
+            joined.increment();
+            return existing;
+        }
+        CompletableFuture<IncomeTotals> future = new CompletableFuture<>();
+        existing = loading.putIfAbsent(uuid, future);
+        if (existing != null) {
+            joined.increment();
+            return existing;
+        }
+        loads.increment();
+        try {
+            AsyncUtils.runAsync(() -> {
+                IncomeTotals totals = query(uuid);
+                values.put(uuid, totals);
+                loading.remove(uuid, future);
+                future.complete(totals);
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭（插件停用中）
+            loading.remove(uuid, future);
+            future.complete(new IncomeTotals(BigDecimal.ZERO, BigDecimal.ZERO, System.currentTimeMillis()));
+        }
+        return future;
+    }
+
+    /**
+     * 查询失败时沿用旧值（没有则为 0）并记为已刷新，数据库故障期间不会每次读取都重新查询
+     */
+    private IncomeTotals query(UUID uuid) {
+        long weekStart = EconomyManager.getStartOfWeekTimestamp();
+        long monthStart = EconomyManager.getStartOfMonthTimestamp();
+        try {
+            BigDecimal[] income = plugin.getDatabaseManager().getLogDAO()
+                .getWeeklyAndMonthlyIncome(uuid, weekStart, monthStart);
+            return new IncomeTotals(income[0], income[1], System.currentTimeMillis());
+        } catch (SQLException | RuntimeException e) {
+            plugin.getLogger().warning("加载周/月收入缓存失败: " + e.getMessage());
+            IncomeTotals previous = values.get(uuid);
+            return previous != null
+                ? new IncomeTotals(previous.weekly, previous.monthly, System.currentTimeMillis())
+                : new IncomeTotals(BigDecimal.ZERO, BigDecimal.ZERO, System.currentTimeMillis());
+        }
+    }
+
+    private static final class IncomeTotals {
+        final BigDecimal weekly;
+        final BigDecimal monthly;
+        final long loadedAt;
+
+        IncomeTotals(BigDecimal weekly, BigDecimal monthly, long loadedAt) {
+            this.weekly = weekly;
+            this.monthly = monthly;
+            this.loadedAt = loadedAt;
+        }
+
+        BigDecimal get(IncomePeriod period) {
+            return period == IncomePeriod.MONTH ? monthly : weekly;
+        }
+    }
+}
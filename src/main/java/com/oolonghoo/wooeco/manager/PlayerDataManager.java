@@ -10,19 +10,27 @@ import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 玩家数据管理器
- * 管理在线玩家的内存缓存
+ * 管理在线玩家的内存缓存，以及容量受限的离线玩家账户缓存
  * 支持缓存禁用模式（直接读写数据库）
  * 
  */
@@ -34,6 +42,28 @@ public class PlayerDataManager {
     private final PlayerDAO playerDAO;
     private final boolean usernameIgnoreCase;
     private final boolean disableCache;
+    private final WriteBehindManager writeBehindManager;
+    private final OfflineAccountCache offlineCache;
+    private final SharedAccountCache sharedCache;
+    private final AccountBatchLoader batchLoader;
+    
+    /** 未启用延迟写入时已提交异步保存、尚未执行的账户 */
+    private final Set<UUID> pendingSaves = ConcurrentHashMap.newKeySet();
+    
+    /** 服务器线程上冷未命中、正在后台加载的离线账户的占位账户 */
+    private final Map<UUID, PlayerAccount> offlineLoading = new ConcurrentHashMap<>();
+    
+    /** 离线账户加载失败或在线账户仍在加载时的重试次数上限（每秒一次） */
+    private static final int LOADING_RETRY_LIMIT = 30;
+    
+    /** 登录前预加载的账户，玩家加入时由 loadPlayer 取走；与离线缓存无关 */
+    private final Map<UUID, CompletableFuture<PlayerAccount>> preloaded = new ConcurrentHashMap<>();
+    
+    /** 预加载后玩家未加入（登录被后续流程拒绝等）时，超过该时间丢弃 */
+    private static final long PRELOAD_TTL_MS = 60_000;
+    
+    /** 未缓存或仍在加载的账户收到的远程增量，加载时补记 */
+    private final RemoteDeltaBuffer remoteDeltas;
     
     public PlayerDataManager(WooEco plugin) {
         this.plugin = plugin;
@@ -42,12 +72,31 @@ public class PlayerDataManager {
         this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
         this.usernameIgnoreCase = plugin.getConfig().getBoolean("settings.username-ignore-case", false);
         this.disableCache = plugin.getConfig().getBoolean("performance.disable-cache", false);
+        this.writeBehindManager = plugin.getWriteBehindManager();
+        this.sharedCache = plugin.getSharedAccountCache();
+        this.batchLoader = plugin.getAccountBatchLoader();
+        // 发布方的延迟写入间隔按本服务器的配置估计，留一倍余量
+        this.remoteDeltas = new RemoteDeltaBuffer(
+            2 * Math.max(100L, plugin.getConfig().getLong("database.write-behind.flush-interval-ms", 2000)));
         
         if (disableCache) {
             plugin.getLogger().warning("缓存已禁用！所有操作将直接读写数据库，性能可能下降。");
         }
+        
+        if (!disableCache && plugin.getConfig().getBoolean("performance.offline-cache.enabled", true)) {
+            int maxSize = plugin.getConfig().getInt("performance.offline-cache.max-size", 1000);
+            long idleTtlMs = plugin.getConfig().getLong("performance.offline-cache.idle-ttl", 600) * 1000L;
+            this.offlineCache = new OfflineAccountCache(maxSize, idleTtlMs, this::writeBack);
+        } else {
+            this.offlineCache = null;
+        }
     }
     
+    /**
+     * 同步获取账户，服务器线程（主线程/区域线程）上从不等待数据库
+     * 离线账户未缓存时：服务器线程上返回加载中的占位账户，入账在加载完成后补记，扣款和设置余额被拒绝；
+     * 其他线程最多等待 performance.async-timeout 秒。需要准确结果的调用方应使用 loadOfflineAccount
+     */
     public PlayerAccount getAccount(UUID uuid) {
         if (disableCache) {
             return getAccountDirectFromDB(uuid);
@@ -60,9 +109,294 @@ public class PlayerDataManager {
         }
         
         // 缓存未命中：loadPlayer 已在 PlayerJoinEvent 中预先放入占位账户，
-        // 此处未命中说明玩家不在线，返回 null
+        // 此处未命中说明玩家不在线，尝试离线账户缓存
         plugin.getDebugManager().cacheMiss(uuid);
-        return null;
+        if (offlineCache == null) {
+            return null;
+        }
+        
+        account = offlineCache.get(uuid);
+        if (account != null) {
+            return account;
+        }
+        if (Bukkit.isPrimaryThread()) {
+            return getLoadingAccount(uuid);
+        }
+        return AsyncUtils.getWithTimeout(loadOfflineAccountFromDB(uuid), null);
+    }
+    
+    /**
+     * 取得或创建离线账户的占位账户并在后台加载，与玩家加入时的占位账户流程相同
+     */
+    private PlayerAccount getLoadingAccount(UUID uuid) {
+        PlayerAccount existing = offlineLoading.get(uuid);
+        if (existing != null) {
+            return existing;
+        }
+        String name = Bukkit.getOfflinePlayer(uuid).getName();
+        PlayerAccount placeholder = PlayerAccount.placeholder(uuid, name != null ? name : uuid.toString().substring(0, 8));
+        existing = offlineLoading.putIfAbsent(uuid, placeholder);
+        if (existing != null) {
+            return existing;
+        }
+        plugin.getDebugManager().incrementCounter("offline_deferred");
+        loadOfflineAccountFromDB(uuid).whenComplete((account, error) ->
+            SchedulerUtils.runAsync(plugin, () -> completeLoading(uuid, placeholder, account, error, 0)));
+        return placeholder;
+    }
+    
+    /**
+     * 离线账户加载完成后把占位账户期间的入账重放到真实账户
+     * 真实账户此时已在离线或在线缓存中，占位账户被取代后的重试直接取到真实账户
+     */
+    private void completeLoading(UUID uuid, PlayerAccount placeholder, PlayerAccount loaded, Throwable error, int attempt) {
+        // 加载失败，或加载期间玩家上线而在线账户仍在加载
+        if (error != null || (loaded != null && loaded.isPlaceholder())) {
+            if (attempt < LOADING_RETRY_LIMIT) {
+                SchedulerUtils.runAsyncDelayed(plugin, () -> {
+                    PlayerAccount online = onlineCache.get(uuid);
+                    if (online != null && !online.isPlaceholder()) {
+                        completeLoading(uuid, placeholder, online, null, attempt + 1);
+                        return;
+                    }
+                    loadOfflineAccountFromDB(uuid).whenComplete((account, retryError) ->
+                        SchedulerUtils.runAsync(plugin, () -> completeLoading(uuid, placeholder, account, retryError, attempt + 1)));
+                }, 1000L);
+                return;
+            }
+            offlineLoading.remove(uuid, placeholder);
+            BigDecimal delta;
+            synchronized (placeholder) {
+                delta = placeholder.markReplaced();
+            }
+            plugin.getLogger().severe(String.format("离线玩家 %s 的账户多次加载失败，加载期间的入账 %s 未能补记",
+                placeholder.getPlayerName(), delta.toPlainString()));
+            return;
+        }
+        if (loaded != null) {
+            replayPlaceholder(placeholder, loaded);
+            offlineLoading.remove(uuid, placeholder);
+            return;
+        }
+        // 数据库中没有该账户：先移除占位账户，之后的操作重新开始加载；加载期间有入账时创建账户接收
+        offlineLoading.remove(uuid, placeholder);
+        BigDecimal delta;
+        BigDecimal income;
+        synchronized (placeholder) {
+            delta = placeholder.markReplaced();
+            income = placeholder.getDailyIncome();
+        }
+        if (delta.signum() == 0 && income.signum() <= 0) {
+            return;
+        }
+        loadOfflineAccountFromDB(uuid, placeholder.getPlayerName()).whenComplete((account, createError) -> {
+            if (account == null || account.isPlaceholder()) {
+                plugin.getLogger().severe(String.format("无法为离线玩家 %s 创建账户，加载期间的入账 %s 未能补记",
+                    placeholder.getPlayerName(), delta.toPlainString()));
+                return;
+            }
+            applyPlaceholderChanges(account, delta, income);
+        });
+    }
+    
+    /**
+     * 异步加载离线玩家账户到离线缓存，同一玩家并发加载只查询一次数据库
+     * 玩家在线时直接返回在线账户；数据库中不存在时返回 null
+     */
+    public CompletableFuture<PlayerAccount> loadOfflineAccount(UUID uuid) {
+        PlayerAccount online = onlineCache.get(uuid);
+        if (online != null || offlineCache == null) {
+            return CompletableFuture.completedFuture(online);
+        }
+        PlayerAccount cached = offlineCache.get(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loadOfflineAccountFromDB(uuid);
+    }
+    
+    private CompletableFuture<PlayerAccount> loadOfflineAccountFromDB(UUID uuid) {
+        return loadOfflineAccountFromDB(uuid, null);
+    }
+    
+    /**
+     * @param createName 不为 null 时，数据库中不存在则以此名字创建账户
+     */
+    private CompletableFuture<PlayerAccount> loadOfflineAccountFromDB(UUID uuid, String createName) {
+        return offlineCache.load(uuid, key -> loadOrCreate(key, createName).handle((account, error) -> {
+            // 加载失败以异常完成，与账户不存在（null）区分
+            if (error != null) {
+                plugin.getLogger().severe(String.format("加载离线玩家账户失败：%s", rootMessage(error)));
+                throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+            }
+            if (account == null) {
+                return null;
+            }
+            checkAndResetDailyIncome(account);
+            // 加载期间玩家上线，以在线账户为准
+            PlayerAccount current = onlineCache.get(key);
+            if (current != null) {
+                return current;
+            }
+            offlineCache.put(account);
+            drainRemoteDeltas(account);
+            return account;
+        }));
+    }
+    
+    /**
+     * 异步读取账户（优先取尚未写入数据库的账户）；启用批量加载时与同一时段的其他请求合并查询
+     *
+     * @param createName 不为 null 时，账户不存在则以此名字创建
+     */
+    private CompletableFuture<PlayerAccount> loadOrCreate(UUID uuid, String createName) {
+        if (batchLoader != null) {
+            return batchLoader.load(uuid, createName);
+        }
+        return AsyncUtils.supplyAsync(() -> {
+            try {
+                PlayerAccount account = writeBehindManager != null ? writeBehindManager.getPending(uuid) : null;
+                if (account == null) {
+                    remoteDeltas.awaitSettled(Collections.singletonList(uuid));
+                    account = loadAccount(uuid);
+                }
+                if (account == null && createName != null) {
+                    account = createNewAccount(uuid, createName);
+                }
+                return account;
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
+    }
+    
+    /**
+     * 淘汰空闲超时的离线账户（由定时任务调用）
+     */
+    public void evictIdleOfflineAccounts() {
+        if (offlineCache != null) {
+            offlineCache.evictExpired();
+        }
+        remoteDeltas.evictSettled();
+    }
+    
+    /**
+     * 应用其他服务器发布的余额增量；账户未缓存或仍在加载时暂存，
+     * 之后的加载先等待发布方写库再读取，读取之后收到的增量在账户放入缓存时补记
+     *
+     * @return 已应用增量的账户，暂存时返回 null
+     */
+    public PlayerAccount applyRemoteDelta(UUID uuid, BigDecimal delta) {
+        if (disableCache) {
+            return null;
+        }
+        return remoteDeltas.applyOrBuffer(uuid, delta, key -> {
+            PlayerAccount account = onlineCache.get(key);
+            if (account == null && offlineCache != null) {
+                account = offlineCache.get(key);
+            }
+            return account != null && !account.isLoading() ? account : null;
+        });
+    }
+    
+    /**
+     * 读取数据库前调用：等待这些账户最近收到的远程增量由发布方写库
+     */
+    void awaitRemoteDeltas(Collection<UUID> uuids) {
+        remoteDeltas.awaitSettled(uuids);
+    }
+    
+    /**
+     * 账户放入缓存后调用，补记暂存的远程增量
+     */
+    private void drainRemoteDeltas(PlayerAccount account) {
+        BigDecimal delta = remoteDeltas.drain(account);
+        if (delta.signum() == 0) {
+            return;
+        }
+        plugin.getDebugManager().incrementCounter("sync_delta_replayed");
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onAccountChanged(account);
+        }
+    }
+    
+    /**
+     * 丢弃离线缓存中的账户（跨服同步收到更新的余额时调用，下次访问重新加载）
+     */
+    public void invalidateOfflineAccount(UUID uuid) {
+        if (offlineCache != null) {
+            offlineCache.remove(uuid);
+        }
+    }
+    
+    /**
+     * 异步从数据库刷新账户余额（收到不带版本的同步消息时调用）
+     * 数据库版本更新时直接应用；版本相同但余额不同说明是未升级的服务器写入的，本地无未保存变动时采用
+     */
+    public void refreshBalanceFromDatabase(PlayerAccount account) {
+        SchedulerUtils.runAsync(plugin, () -> {
+            try {
+                PlayerAccount persisted = loadAccount(account.getUuid());
+                if (persisted == null) {
+                    return;
+                }
+                boolean applied;
+                synchronized (account) {
+                    long localVersion = account.getVersion();
+                    if (persisted.getVersion() > localVersion) {
+                        applied = account.applyRemoteBalance(persisted.getBalance(), persisted.getVersion());
+                    } else if (persisted.getVersion() == localVersion && !account.isDirty()
+                            && persisted.getBalance().compareTo(account.getBalance()) != 0) {
+                        applied = account.adoptPersistedBalance(persisted.getBalance(), localVersion, localVersion);
+                    } else {
+                        applied = false;
+                    }
+                }
+                if (applied && plugin.getLeaderboardManager() != null) {
+                    plugin.getLeaderboardManager().onAccountChanged(account);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().warning(String.format("刷新玩家余额失败：%s", e.getMessage()));
+            }
+        });
+    }
+    
+    /**
+     * 读取账户：启用共享账户缓存时先查共享缓存，否则直接查数据库
+     */
+    private PlayerAccount loadAccount(UUID uuid) throws SQLException {
+        return sharedCache != null ? sharedCache.load(uuid) : playerDAO.getAccount(uuid);
+    }
+    
+    /**
+     * 保存账户：启用共享账户缓存时写入共享缓存，由写库节点写回数据库
+     */
+    public void persistAccounts(List<PlayerAccount> accounts) throws SQLException {
+        if (sharedCache != null) {
+            sharedCache.saveAll(accounts);
+        } else {
+            playerDAO.saveAllBatch(accounts);
+        }
+    }
+    
+    public OfflineAccountCache getOfflineCache() {
+        return offlineCache;
+    }
+    
+    /**
+     * 离线缓存淘汰脏账户时回写，不阻塞调用线程
+     */
+    private void writeBack(PlayerAccount account) {
+        if (writeBehindManager != null) {
+            writeBehindManager.enqueue(account);
+        } else {
+            SchedulerUtils.runAsync(plugin, () -> saveAccount(account));
+        }
     }
     
     public PlayerAccount getOrCreateAccount(UUID uuid, String playerName) {
@@ -185,10 +519,18 @@ public class PlayerDataManager {
         return onlineCache.get(uuid);
     }
     
-    public PlayerAccount createNewAccount(UUID uuid, String playerName) {
+    /**
+     * 构造带初始余额的新账户，不写库
+     */
+    PlayerAccount newAccount(UUID uuid, String playerName) {
         PlayerAccount account = new PlayerAccount(uuid, playerName);
         account.setBalance(plugin.getCurrencyConfig().formatInput(plugin.getCurrencyConfig().getStartingBalance()));
         account.setLastIncomeReset(getTodayStart());
+        return account;
+    }
+    
+    public PlayerAccount createNewAccount(UUID uuid, String playerName) {
+        PlayerAccount account = newAccount(uuid, playerName);
         
         try {
             playerDAO.saveOrUpdateAccount(account);
@@ -200,38 +542,131 @@ public class PlayerDataManager {
         }
     }
     
+    /**
+     * 在 AsyncPlayerPreLoginEvent 中调用（登录线程，可阻塞）：提前加载账户放入预加载表，
+     * 玩家加入时 loadPlayer 直接转入在线缓存，不再经过占位账户；不依赖离线缓存是否启用
+     * 最多等待 timeoutMs，超时后加载在后台继续，加入时以占位账户等待同一次加载完成
+     */
+    public void preloadPlayer(UUID uuid, String name, long timeoutMs) {
+        if (disableCache || onlineCache.containsKey(uuid)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            PlayerAccount account = offlineCache != null ? offlineCache.get(uuid) : null;
+            if (account == null) {
+                CompletableFuture<PlayerAccount> future = preloaded.computeIfAbsent(uuid, key -> {
+                    CompletableFuture<PlayerAccount> loading = loadOrCreate(key, name);
+                    SchedulerUtils.runAsyncDelayed(plugin, () -> preloaded.remove(key, loading), PRELOAD_TTL_MS);
+                    return loading;
+                });
+                account = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            plugin.getDebugManager().incrementCounter(account != null ? "preload_hit" : "preload_failed");
+        } catch (TimeoutException e) {
+            plugin.getDebugManager().incrementCounter("preload_timeout");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().warning(String.format("预加载玩家账户失败：%s", rootMessage(e.getCause())));
+            plugin.getDebugManager().incrementCounter("preload_failed");
+        }
+        plugin.getDebugManager().incrementCounter("preload");
+        plugin.getDebugManager().incrementCounter("preload_nanos", System.nanoTime() - start);
+    }
+    
     public void loadPlayer(UUID uuid) {
         if (disableCache) {
             return;
         }
 
-        // 先放入占位账户（余额为0），避免后续操作因缓存未命中而阻塞主线程
         Player player = Bukkit.getPlayer(uuid);
         String name = player != null ? player.getName() : uuid.toString().substring(0, 8);
-        PlayerAccount placeholder = new PlayerAccount(uuid, name);
+
+        // 离线缓存中已有账户时直接转入在线缓存；它可能比预加载的账户更新（离线期间有变动）
+        CompletableFuture<PlayerAccount> preload = preloaded.remove(uuid);
+        PlayerAccount offlineAccount = offlineCache != null ? offlineCache.remove(uuid) : null;
+        if (offlineAccount == null && preload != null && preload.isDone() && !preload.isCompletedExceptionally()) {
+            offlineAccount = preload.join();
+        }
+        if (offlineAccount != null) {
+            checkAndResetDailyIncome(offlineAccount);
+            onlineCache.put(uuid, offlineAccount);
+            updateNameIndex(offlineAccount.getPlayerName(), uuid);
+            drainRemoteDeltas(offlineAccount);
+            return;
+        }
+
+        // 先放入占位账户，避免后续操作因缓存未命中而阻塞主线程；
+        // 加载期间的入账记在占位账户上，真实账户加载后重放，扣款和设置余额会被拒绝
+        PlayerAccount placeholder = PlayerAccount.placeholder(uuid, name);
         onlineCache.put(uuid, placeholder);
         updateNameIndex(name, uuid);
+        plugin.getDebugManager().incrementCounter("preload_miss");
 
-        // 异步加载真实数据并替换占位账户
-        SchedulerUtils.runAsync(plugin, () -> {
-            try {
-                PlayerAccount account = playerDAO.getAccount(uuid);
-                if (account == null) {
-                    account = createNewAccount(uuid, name);
-                    if (account == null) {
-                        plugin.getLogger().severe(String.format("无法为玩家 %s 创建账户", name));
-                        return;
-                    }
-                }
-                checkAndResetDailyIncome(account);
-                onlineCache.put(uuid, account);
+        // 异步加载真实数据并替换占位账户；预加载仍在进行时等待同一次加载，不重复查询
+        CompletableFuture<PlayerAccount> loading = preload != null && !preload.isDone() ? preload : loadOrCreate(uuid, name);
+        loading.whenComplete((account, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe(String.format("加载玩家数据失败：%s", rootMessage(error)));
+                return;
+            }
+            if (account == null) {
+                plugin.getLogger().severe(String.format("无法为玩家 %s 创建账户", name));
+                return;
+            }
+            checkAndResetDailyIncome(account);
+            // 加载期间玩家已退出时不再放入在线缓存，但仍需重放占位期间的变动
+            if (onlineCache.replace(uuid, placeholder, account)) {
                 updateNameIndex(account.getPlayerName(), uuid);
-            } catch (SQLException e) {
-                plugin.getLogger().severe(String.format("加载玩家数据失败：%s", e.getMessage()));
+            } else if (offlineCache != null) {
+                offlineCache.put(account);
             }
+            drainRemoteDeltas(account);
+            replayPlaceholder(placeholder, account);
         });
     }
     
+    /**
+     * 把占位账户期间的入账（余额增量与每日收入）重放到真实账户，并按常规流程保存和同步
+     */
+    private void replayPlaceholder(PlayerAccount placeholder, PlayerAccount account) {
+        BigDecimal delta;
+        BigDecimal income;
+        synchronized (placeholder) {
+            delta = placeholder.markReplaced();
+            income = placeholder.getDailyIncome();
+        }
+        if (delta.signum() == 0 && income.signum() <= 0) {
+            return;
+        }
+        applyPlaceholderChanges(account, delta, income);
+    }
+    
+    private void applyPlaceholderChanges(PlayerAccount account, BigDecimal delta, BigDecimal income) {
+        BigDecimal newBalance;
+        long newVersion;
+        synchronized (account) {
+            BigDecimal maxBalance = plugin.getCurrencyConfig().getMaxBalanceBigDecimal();
+            newBalance = account.getBalance().add(delta).max(BigDecimal.ZERO).min(maxBalance);
+            delta = newBalance.subtract(account.getBalance());
+            account.setBalance(newBalance);
+            if (income.signum() > 0) {
+                account.addDailyIncome(income);
+            }
+            newVersion = account.getVersion();
+        }
+        plugin.getDebugManager().incrementCounter("preload_replayed");
+        markDirty(account);
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onAccountChanged(account);
+        }
+        if (plugin.getRedisSyncManager() != null) {
+            plugin.getRedisSyncManager().publishBalanceChange(account.getUuid(), account.getPlayerName(),
+                newBalance, delta, newVersion);
+        }
+    }
+    
     public void unloadPlayer(UUID uuid) {
         if (disableCache) {
             return;
@@ -241,19 +676,93 @@ public class PlayerDataManager {
         if (account != null) {
             removeFromNameIndex(account.getPlayerName());
             if (account.isDirty()) {
-                saveAccount(account);
+                markDirty(account);
+            }
+            // 保留在离线缓存中，离线期间的 Vault 发放无需查询数据库
+            if (offlineCache != null) {
+                offlineCache.put(account);
             }
         }
     }
     
+    /**
+     * 余额变动后调用：启用延迟写入时只入队，否则提交到异步线程保存，调用线程不访问数据库
+     * 禁用缓存时每次读取都直接查库，只能同步保存以保证下一次读取看到最新值
+     */
+    public void markDirty(PlayerAccount account) {
+        if (account.isPlaceholder()) {
+            // 占位账户不写库，其变动在真实账户加载后重放
+            return;
+        }
+        if (disableCache) {
+            saveAccount(account);
+        } else if (writeBehindManager != null) {
+            writeBehindManager.enqueue(account);
+        } else if (pendingSaves.add(account.getUuid())) {
+            // 同一账户已有保存任务排队时不再重复提交，任务执行时读取最新余额
+            SchedulerUtils.runAsync(plugin, () -> {
+                pendingSaves.remove(account.getUuid());
+                saveAccount(account);
+            });
+        }
+    }
+    
+    /**
+     * 同一操作涉及多个账户时调用（如转账），保证这些账户在同一批次中写入
+     */
+    public void markDirty(List<PlayerAccount> accounts) {
+        // 占位账户不写库，尤其不能进入延迟写入队列覆盖真实账户
+        List<PlayerAccount> toSave = accounts.stream().anyMatch(PlayerAccount::isPlaceholder)
+            ? accounts.stream().filter(account -> !account.isPlaceholder()).toList()
+            : accounts;
+        if (disableCache) {
+            saveAccountsBatch(toSave);
+        } else if (writeBehindManager != null) {
+            writeBehindManager.enqueueAll(toSave);
+        } else {
+            SchedulerUtils.runAsync(plugin, () -> saveAccountsBatch(toSave));
+        }
+    }
+    
+    private void saveAccountsBatch(List<PlayerAccount> accounts) {
+        try {
+            persistAccounts(accounts);
+        } catch (SQLException e) {
+            plugin.getLogger().severe(String.format("保存玩家数据失败：%s", e.getMessage()));
+        }
+    }
+    
     public void saveAccount(PlayerAccount account) {
         try {
-            playerDAO.saveOrUpdateAccount(account);
+            persistAccounts(Collections.singletonList(account));
         } catch (SQLException e) {
             plugin.getLogger().severe(String.format("保存玩家数据失败：%s", e.getMessage()));
         }
     }
 
+    /**
+     * 立即写入延迟队列中的所有账户（批量 SQL 更新前调用）
+     */
+    public void flushPendingWrites() {
+        List<PlayerAccount> dirtyOffline = offlineCache != null ? offlineCache.getDirtyAccounts() : List.of();
+        if (writeBehindManager != null) {
+            for (PlayerAccount account : dirtyOffline) {
+                writeBehindManager.enqueue(account);
+            }
+            writeBehindManager.flush();
+        } else if (!dirtyOffline.isEmpty()) {
+            try {
+                persistAccounts(dirtyOffline);
+            } catch (SQLException e) {
+                plugin.getLogger().severe(String.format("批量保存离线玩家数据失败：%s", e.getMessage()));
+            }
+        }
+        // 批量 SQL 直接修改数据库，先把共享缓存中待写库的账户写回
+        if (sharedCache != null) {
+            sharedCache.drain();
+        }
+    }
+
     public void saveAccountSync(PlayerAccount account) {
         saveAccount(account);
     }
@@ -265,15 +774,27 @@ public class PlayerDataManager {
 
         List<PlayerAccount> dirtyAccounts = new ArrayList<>();
         for (PlayerAccount account : onlineCache.values()) {
-            if (account.isDirty()) {
+            if (account.isDirty() && !account.isPlaceholder()) {
                 dirtyAccounts.add(account);
             }
         }
+        if (offlineCache != null) {
+            dirtyAccounts.addAll(offlineCache.getDirtyAccounts());
+        }
+
+        // 延迟写入模式下合并到同一批次，避免同一账户被写两次
+        if (writeBehindManager != null) {
+            for (PlayerAccount account : dirtyAccounts) {
+                writeBehindManager.enqueue(account);
+            }
+            writeBehindManager.flush();
+            return;
+        }
 
         if (dirtyAccounts.isEmpty()) return;
 
         try {
-            playerDAO.saveAllBatch(dirtyAccounts);
+            persistAccounts(dirtyAccounts);
         } catch (SQLException e) {
             plugin.getLogger().severe(String.format("批量保存玩家数据失败：%s", e.getMessage()));
         }
@@ -288,6 +809,11 @@ public class PlayerDataManager {
         for (PlayerAccount account : onlineCache.values()) {
             checkAndResetDailyIncome(account, todayStart);
         }
+        if (offlineCache != null) {
+            for (PlayerAccount account : offlineCache.getAccounts()) {
+                checkAndResetDailyIncome(account, todayStart);
+            }
+        }
     }
     
     public void resetAllDailyIncome() {
@@ -297,6 +823,23 @@ public class PlayerDataManager {
             account.setDailyIncome(0);
             account.setLastIncomeReset(todayStart);
         }
+        // 每日收入不参与账户版本，需要显式清空渲染缓存并通知快照
+        if (plugin.getPlaceholderRenderCache() != null) {
+            plugin.getPlaceholderRenderCache().clear();
+        }
+        if (plugin.getEconomySnapshotManager() != null) {
+            plugin.getEconomySnapshotManager().markAllChanged();
+        }
+        if (offlineCache != null) {
+            for (PlayerAccount account : offlineCache.getAccounts()) {
+                account.setDailyIncome(0);
+                account.setLastIncomeReset(todayStart);
+            }
+        }
+        // 日收入排行原地清零，不从数据库重建
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onAllDailyIncomeReset();
+        }
         
         SchedulerUtils.runAsync(plugin, () -> {
             try {
@@ -315,6 +858,12 @@ public class PlayerDataManager {
         if (account.getLastIncomeReset() < todayStart) {
             account.setDailyIncome(0);
             account.setLastIncomeReset(todayStart);
+            if (plugin.getPlaceholderRenderCache() != null) {
+                plugin.getPlaceholderRenderCache().invalidate(account.getUuid());
+            }
+            if (plugin.getEconomySnapshotManager() != null) {
+                plugin.getEconomySnapshotManager().markChanged(account.getUuid());
+            }
         }
     }
     
@@ -377,6 +926,9 @@ public class PlayerDataManager {
         saveAll();
         onlineCache.clear();
         nameIndex.clear();
+        if (offlineCache != null) {
+            offlineCache.clear();
+        }
     }
     
     public Map<String, UUID> getNameIndex() {
@@ -406,15 +958,24 @@ public class PlayerDataManager {
         if (saveDirty) {
             saveAll();
         }
+        // 离线账户与预加载的账户直接丢弃，下次访问时从数据库重新加载
+        if (offlineCache != null) {
+            offlineCache.clear();
+        }
+        preloaded.clear();
+        if (sharedCache != null) {
+            sharedCache.invalidateAll();
+        }
 
         // 异步刷新所有在线玩家数据，而非清空缓存，避免缓存雪崩
         SchedulerUtils.runAsync(plugin, () -> {
             for (UUID uuid : new ArrayList<>(onlineCache.keySet())) {
                 try {
-                    PlayerAccount freshAccount = playerDAO.getAccount(uuid);
+                    PlayerAccount freshAccount = loadAccount(uuid);
                     if (freshAccount != null) {
                         onlineCache.put(uuid, freshAccount);
                         updateNameIndex(freshAccount.getPlayerName(), uuid);
+                        drainRemoteDeltas(freshAccount);
                     }
                 } catch (SQLException e) {
                     // 忽略单个玩家刷新失败
@@ -0,0 +1,324 @@
+package com.oolonghoo.wooeco.manager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * 内存排名索引 (线程安全)
+ * 基于带子树大小的 Treap（顺序统计树），按数值降序、UUID 升序排列
+ * 更新、按玩家查排名、按排名取玩家均为 O(log n)，取前 N 名为 O(log n + N)
+ */
+public class RankIndex {
+
+    /** 数值降序，相同数值按 UUID 升序，保证排名稳定且唯一 */
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparing(Entry::getValue, Comparator.reverseOrder())
+        .thenComparing(Entry::getUuid);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    /** 玩家名(小写) -> UUID，用于按名字查排名 */
+    private final Map<String, UUID> nameIndex = new HashMap<>();
+    private Node root;
+    /** 每次修改加一（在写锁内），读者据此判断排名是否可能变化 */
+    private volatile long modifications;
+
+    /**
+     * 插入或更新玩家的数值，数值未变化时只更新名字
+     */
+    public void update(UUID uuid, String playerName, BigDecimal value) {
+        Entry entry = new Entry(uuid, playerName, value);
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.put(uuid, entry);
+            if (old != null) {
+                root = delete(root, old);
+                if (old.playerName != null && !old.playerName.equalsIgnoreCase(playerName)) {
+                    nameIndex.remove(old.playerName.toLowerCase(), uuid);
+                }
+            }
+            root = insert(root, new Node(entry));
+            if (playerName != null) {
+                nameIndex.put(playerName.toLowerCase(), uuid);
+            }
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(uuid);
+            if (old != null) {
+                root = delete(root, old);
+                if (old.playerName != null) {
+                    nameIndex.remove(old.playerName.toLowerCase(), uuid);
+                }
+                modifications++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用全量数据替换索引内容
+     */
+    public void rebuild(Collection<Entry> snapshot) {
+        Map<UUID, Entry> newEntries = new HashMap<>();
+        for (Entry entry : snapshot) {
+            newEntries.put(entry.uuid, entry);
+        }
+        Node newRoot = null;
+        Map<String, UUID> newNameIndex = new HashMap<>();
+        for (Entry entry : newEntries.values()) {
+            newRoot = insert(newRoot, new Node(entry));
+            if (entry.playerName != null) {
+                newNameIndex.put(entry.playerName.toLowerCase(), entry.uuid);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            entries.putAll(newEntries);
+            nameIndex.clear();
+            nameIndex.putAll(newNameIndex);
+            root = newRoot;
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 对所有条目的数值应用同一变换并在内存中重排（批量 SQL 更新后使用，无需查库），O(n log n)
+     */
+    public void applyAll(UnaryOperator<BigDecimal> function) {
+        lock.writeLock().lock();
+        try {
+            Node newRoot = null;
+            for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+                Entry old = e.getValue();
+                Entry entry = new Entry(old.uuid, old.playerName, function.apply(old.value));
+                e.setValue(entry);
+                newRoot = insert(newRoot, new Node(entry));
+            }
+            root = newRoot;
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取玩家排名（从 1 开始），不在索引中返回 -1
+     */
+    public int getRank(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(uuid);
+            return entry != null ? countBefore(root, entry) + 1 : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getRankByName(String playerName) {
+        lock.readLock().lock();
+        try {
+            UUID uuid = nameIndex.get(playerName.toLowerCase());
+            if (uuid == null) {
+                return -1;
+            }
+            Entry entry = entries.get(uuid);
+            return entry != null ? countBefore(root, entry) + 1 : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取指定排名（从 1 开始）的条目，超出范围返回 null
+     */
+    public Entry getAt(int rank) {
+        lock.readLock().lock();
+        try {
+            if (rank < 1 || rank > size(root)) {
+                return null;
+            }
+            return select(root, rank - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取从 fromRank（从 1 开始）起的最多 count 个条目
+     */
+    public List<Entry> range(int fromRank, int count) {
+        List<Entry> result = new ArrayList<>(Math.max(0, count));
+        lock.readLock().lock();
+        try {
+            if (fromRank >= 1 && count > 0) {
+                collect(root, fromRank - 1, fromRank - 1 + count, 0, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public long getModificationCount() {
+        return modifications;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    /**
+     * 按 key 拆分：左树为小于 key（inclusive 时为小于等于）的节点，右树为其余节点
+     */
+    private static Node[] split(Node node, Entry key, boolean inclusive) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+        int cmp = ORDER.compare(node.entry, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node[] parts = split(node.right, key, inclusive);
+            node.right = parts[0];
+            return new Node[] {update(node), parts[1]};
+        }
+        Node[] parts = split(node.left, key, inclusive);
+        node.left = parts[1];
+        return new Node[] {parts[0], update(node)};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node insert(Node root, Node node) {
+        Node[] parts = split(root, node.entry, false);
+        return merge(merge(parts[0], node), parts[1]);
+    }
+
+    private static Node delete(Node root, Entry entry) {
+        Node[] lower = split(root, entry, false);
+        Node[] upper = split(lower[1], entry, true);
+        return merge(lower[0], upper[1]);
+    }
+
+    private static int countBefore(Node node, Entry entry) {
+        int count = 0;
+        while (node != null) {
+            int cmp = ORDER.compare(node.entry, entry);
+            if (cmp < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private static Entry select(Node node, int index) {
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.entry;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 中序遍历收集 [from, to) 区间的条目，offset 为当前子树首个节点的全局序号
+     */
+    private static void collect(Node node, int from, int to, int offset, List<Entry> result) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return;
+        }
+        collect(node.left, from, to, offset, result);
+        int index = offset + size(node.left);
+        if (index >= from && index < to) {
+            result.add(node.entry);
+        }
+        collect(node.right, from, to, index + 1, result);
+    }
+
+    public static final class Entry {
+        private final UUID uuid;
+        private final String playerName;
+        private final BigDecimal value;
+
+        public Entry(UUID uuid, String playerName, BigDecimal value) {
+            this.uuid = uuid;
+            this.playerName = playerName;
+            this.value = value;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    private static final class Node {
+        final Entry entry;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(Entry entry) {
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 本服务器尚未缓存（或仍在加载）的账户收到的远程余额增量 (线程安全)
+ * 发布方延迟写库，增量发布后要过一个写入周期才进入数据库：
+ * 读取数据库前等待窗口内收到的增量写库，之后数据库已包含它们；读取之后收到的增量在账户放入缓存时补记。
+ * 同一账户的暂存与补记在同一个键锁内执行，账户可见前后到达的增量都只应用一次
+ */
+final class RemoteDeltaBuffer {
+
+    private final long settleMillis;
+    private final ConcurrentHashMap<UUID, List<Pending>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param settleMillis 增量发布后发布方写库所需的最长时间
+     */
+    RemoteDeltaBuffer(long settleMillis) {
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * lookup 返回已缓存的账户时直接应用增量，否则暂存
+     *
+     * @return 已应用增量的账户，暂存时返回 null
+     */
+    PlayerAccount applyOrBuffer(UUID uuid, BigDecimal delta, Function<UUID, PlayerAccount> lookup) {
+        PlayerAccount[] applied = new PlayerAccount[1];
+        pending.compute(uuid, (key, list) -> {
+            PlayerAccount account = lookup.apply(key);
+            if (account != null) {
+                account.applyRemoteDelta(delta);
+                applied[0] = account;
+                return list;
+            }
+            List<Pending> next = list != null ? list : new ArrayList<>();
+            next.add(new Pending(delta, System.currentTimeMillis()));
+            return next;
+        });
+        return applied[0];
+    }
+
+    /**
+     * 读取数据库前调用：等待窗口内收到的增量写库（最多两个窗口），已写库的增量随后由这次读取带回，不再补记
+     */
+    void awaitSettled(Collection<UUID> uuids) {
+        long deadline = System.currentTimeMillis() + settleMillis * 2;
+        long wait;
+        while ((wait = Math.min(unsettledUntil(uuids), deadline) - System.currentTimeMillis()) > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long settledBefore = System.currentTimeMillis() - settleMillis;
+        for (UUID uuid : uuids) {
+            pending.computeIfPresent(uuid, (key, list) -> {
+                list.removeIf(entry -> entry.receivedAt <= settledBefore);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    /**
+     * 账户放入缓存后调用，补记暂存的增量
+     *
+     * @return 补记的增量合计
+     */
+    BigDecimal drain(PlayerAccount account) {
+        BigDecimal[] total = {BigDecimal.ZERO};
+        pending.computeIfPresent(account.getUuid(), (key, list) -> {
+            for (Pending entry : list) {
+                account.applyRemoteDelta(entry.delta);
+                total[0] = total[0].add(entry.delta);
+            }
+            return null;
+        });
+        return total[0];
+    }
+
+    /**
+     * 丢弃已写库的增量：没有被读取的账户之后的加载会从数据库读到它们
+     */
+    void evictSettled() {
+        long settledBefore = System.currentTimeMillis() - settleMillis;
+        for (UUID uuid : pending.keySet()) {
+            pending.computeIfPresent(uuid, (key, list) -> {
+                list.removeIf(entry -> entry.receivedAt <= settledBefore);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private long unsettledUntil(Collection<UUID> uuids) {
+        long[] until = {0L};
+        for (UUID uuid : uuids) {
+            // 在键锁内遍历，与并发的暂存互斥
+            pending.computeIfPresent(uuid, (key, list) -> {
+                for (Pending entry : list) {
+                    until[0] = Math.max(until[0], entry.receivedAt + settleMillis);
+                }
+                return list;
+            });
+        }
+        return until[0];
+    }
+
+    private static final class Pending {
+        final BigDecimal delta;
+        final long receivedAt;
+
+        Pending(BigDecimal delta, long receivedAt) {
+            this.delta = delta;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
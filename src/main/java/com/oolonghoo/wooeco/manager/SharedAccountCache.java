@@ -0,0 +1,408 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.config.DatabaseConfig;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.sync.AccountStore;
+import com.oolonghoo.wooeco.sync.AccountStore.DeltaResult;
+import com.oolonghoo.wooeco.sync.AccountStore.DeltaStatus;
+import com.oolonghoo.wooeco.sync.StoredAccount;
+import com.oolonghoo.wooeco.util.SchedulerUtils;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 多服共享账户缓存层
+ * 加载先查共享缓存，未命中再查数据库并回填；保存只写共享缓存，
+ * 由持有写库租约的单个节点定时把待写库的账户批量写回数据库，切换服务器时不再访问数据库
+ * 共享缓存不可用时直接读写数据库
+ */
+public class SharedAccountCache {
+
+    private final WooEco plugin;
+    private final AccountStore store;
+    private final Backend backend;
+    private final Logger logger;
+    private final String serverId;
+    private final long leaseMs;
+    private final int batchSize;
+    private final boolean deltaSync;
+
+    /** 保证同一时刻只有一个写库过程 */
+    private final Object drainLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private volatile boolean writer;
+    private ScheduledTask writerTask;
+
+    public SharedAccountCache(WooEco plugin, AccountStore store) {
+        this(plugin, store, new PluginBackend(plugin), plugin.getLogger(), plugin.getDatabaseConfig());
+    }
+
+    private SharedAccountCache(WooEco plugin, AccountStore store, Backend backend, Logger logger, DatabaseConfig config) {
+        this(plugin, store, backend, logger, config.getServerId(), config.getAccountCacheLeaseMs(),
+            config.getAccountCacheBatchSize(), config.isDeltaSync());
+    }
+
+    /**
+     * 测试用：不依赖插件实例，不启动定时写库
+     */
+    SharedAccountCache(AccountStore store, Backend backend, Logger logger, String serverId,
+                       int batchSize, boolean deltaSync) {
+        this(null, store, backend, logger, serverId, 0L, batchSize, deltaSync);
+    }
+
+    private SharedAccountCache(WooEco plugin, AccountStore store, Backend backend, Logger logger, String serverId,
+                               long leaseMs, int batchSize, boolean deltaSync) {
+        this.plugin = plugin;
+        this.store = store;
+        this.backend = backend;
+        this.logger = logger;
+        this.serverId = serverId;
+        this.leaseMs = leaseMs;
+        this.batchSize = batchSize;
+        this.deltaSync = deltaSync;
+    }
+
+    /**
+     * 启动写库租约竞争：持有租约的节点每个周期把待写库账户写回数据库
+     */
+    public void start() {
+        try {
+            int recovered = store.recoverInFlight(serverId);
+            if (recovered > 0) {
+                logger.warning(String.format("上次退出时有 %d 个共享缓存账户未确认写库，已放回待写库集合", recovered));
+            }
+        } catch (RuntimeException e) {
+            logger.warning(String.format("恢复共享缓存写库中账户失败：%s", e.getMessage()));
+        }
+        long intervalMs = plugin.getDatabaseConfig().getAccountCacheFlushIntervalMs();
+        writerTask = SchedulerUtils.runAsyncTimer(plugin, this::tick, intervalMs, intervalMs);
+    }
+
+    private void tick() {
+        try {
+            writer = store.tryAcquireWriter(serverId, leaseMs);
+        } catch (RuntimeException e) {
+            writer = false;
+            logger.warning(String.format("获取共享缓存写库租约失败：%s", e.getMessage()));
+            return;
+        }
+        if (writer) {
+            drain();
+        }
+    }
+
+    /**
+     * 读取账户：共享缓存命中时不访问数据库
+     */
+    public PlayerAccount load(UUID uuid) throws SQLException {
+        try {
+            StoredAccount stored = store.load(uuid);
+            if (stored != null) {
+                hits.incrementAndGet();
+                return stored.toAccount();
+            }
+        } catch (RuntimeException e) {
+            logger.warning(String.format("读取共享账户缓存失败，改为查询数据库：%s", e.getMessage()));
+            return backend.loadAccount(uuid);
+        }
+        misses.incrementAndGet();
+        PlayerAccount account = backend.loadAccount(uuid);
+        if (account != null) {
+            try {
+                store.putIfAbsent(StoredAccount.of(account));
+            } catch (RuntimeException e) {
+                logger.warning(String.format("回填共享账户缓存失败：%s", e.getMessage()));
+            }
+        }
+        return account;
+    }
+
+    /**
+     * 保存账户到共享缓存，写库由租约持有者完成
+     * 缓存中已有其他服务器写入的更高版本时采用缓存中的状态；共享缓存不可用的账户直接写数据库
+     */
+    public void saveAll(List<PlayerAccount> accounts) throws SQLException {
+        List<PlayerAccount> fallback = new ArrayList<>();
+        for (int i = 0; i < accounts.size(); i++) {
+            PlayerAccount account = accounts.get(i);
+            if (account.isPlaceholder()) {
+                continue;
+            }
+            try {
+                if (deltaSync && account.getPersistedVersion() >= 0 && saveDelta(account)) {
+                    continue;
+                }
+                saveAbsolute(account);
+            } catch (RuntimeException e) {
+                logger.warning(String.format("写入共享账户缓存失败，改为直接写数据库：%s", e.getMessage()));
+                fallback.addAll(accounts.subList(i, accounts.size()));
+                break;
+            }
+        }
+        if (!fallback.isEmpty()) {
+            backend.saveAccounts(fallback);
+        }
+    }
+
+    private void saveAbsolute(PlayerAccount account) {
+        StoredAccount snapshot = StoredAccount.of(account);
+        StoredAccount newer = store.saveIfNewer(snapshot);
+        if (newer == null) {
+            account.markPersisted(snapshot.getVersion());
+            account.markSaved();
+            return;
+        }
+        reportConflict(account, snapshot, newer);
+        if (account.adoptPersistedBalance(newer.getBalance(), newer.getVersion(), snapshot.getVersion())) {
+            account.markSaved();
+        }
+    }
+
+    /**
+     * 增量同步模式：累加本服务器产生的增量，扣减由脚本检查余额，避免多服同时消费透支
+     *
+     * @return 缓存中没有该账户时返回 false，由调用方按完整状态写入
+     */
+    private boolean saveDelta(PlayerAccount account) {
+        String playerName;
+        BigDecimal delta;
+        BigDecimal dailyIncome;
+        long lastIncomeReset;
+        long version;
+        synchronized (account) {
+            version = account.getVersion();
+            playerName = account.getPlayerName();
+            delta = account.getUnpersistedDelta();
+            dailyIncome = account.getDailyIncome();
+            lastIncomeReset = account.getLastIncomeReset();
+        }
+        DeltaResult result = store.applyDelta(account.getUuid(), delta, playerName, dailyIncome, lastIncomeReset);
+        if (result.getStatus() == DeltaStatus.MISSING) {
+            return false;
+        }
+        StoredAccount state = result.getState();
+        if (result.getStatus() == DeltaStatus.INSUFFICIENT) {
+            // 其他服务器已先扣减，本地扣减无法完成，采用缓存中的余额
+            reportConflict(account, StoredAccount.of(account), state);
+            if (account.adoptPersistedBalance(state.getBalance(), state.getVersion(), version)) {
+                account.markSaved();
+            }
+            return true;
+        }
+        account.markPersisted(state.getVersion());
+        if (account.commitDelta(delta)) {
+            account.markSaved();
+        }
+        return true;
+    }
+
+    private void reportConflict(PlayerAccount account, StoredAccount local, StoredAccount stored) {
+        backend.incrementCounter("account_version_conflict", 1);
+        logger.warning(String.format(
+            "共享缓存账户冲突 [%s]：本地 v%d (%s)，缓存 v%d (%s)，已采用缓存",
+            account.getPlayerName(), local.getVersion(), local.getBalance().toPlainString(),
+            stored.getVersion(), stored.getBalance().toPlainString()));
+    }
+
+    /**
+     * 把待写库账户批量写回数据库；任何节点都可以调用（批量 SQL 前、关闭时），
+     * 定时写库只由租约持有者执行，避免多个节点重复写入
+     * 账户先认领到本服务器的写库中集合，数据库提交后才确认移除，写库前崩溃不会丢失待写库标记
+     * 写库以缓存记录的数据库版本比较并交换，数据库被其他途径修改过时叠加而不是覆盖，提交后把写入的状态记回缓存
+     */
+    public void drain() {
+        synchronized (drainLock) {
+            pruneIndex();
+            while (true) {
+                List<UUID> uuids;
+                try {
+                    uuids = store.claimDirty(serverId, batchSize);
+                } catch (RuntimeException e) {
+                    logger.warning(String.format("读取共享缓存待写库账户失败：%s", e.getMessage()));
+                    return;
+                }
+                if (uuids.isEmpty()) {
+                    return;
+                }
+                List<StoredAccount> states = new ArrayList<>(uuids.size());
+                List<PlayerAccount> batch = new ArrayList<>(uuids.size());
+                List<UUID> expired = new ArrayList<>();
+                try {
+                    for (UUID uuid : uuids) {
+                        StoredAccount stored = store.load(uuid);
+                        if (stored == null) {
+                            expired.add(uuid);
+                            continue;
+                        }
+                        states.add(stored);
+                        batch.add(stored.toDrainedAccount());
+                    }
+                    long start = System.nanoTime();
+                    backend.saveAccounts(batch);
+                    drained.addAndGet(batch.size());
+                    backend.databaseTiming("SHARED_CACHE_DRAIN", "accounts=" + batch.size(), System.nanoTime() - start);
+                } catch (SQLException | RuntimeException e) {
+                    logger.severe(String.format("共享缓存写回数据库失败，将在下次重试：%s", e.getMessage()));
+                    release(uuids);
+                    return;
+                }
+                if (!expired.isEmpty()) {
+                    // 待写库的账户不会过期，出现说明缓存被外部删除或来自旧版本，变动已无法写回
+                    backend.incrementCounter("account_cache_expired_dirty", expired.size());
+                    logger.warning(String.format("%d 个待写库账户在写库前已从共享缓存消失，无法写回数据库：%s",
+                        expired.size(), expired));
+                }
+                if (!acknowledge(uuids, expired, states, batch) || uuids.size() < batchSize) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录提交后的数据库状态并确认写库；仍有未写入变动的账户（写库时发现快照已过期）放回待写库集合
+     *
+     * @return 全部确认时返回 true
+     */
+    private boolean acknowledge(List<UUID> uuids, List<UUID> expired, List<StoredAccount> states, List<PlayerAccount> batch) {
+        List<UUID> done = new ArrayList<>(expired);
+        List<UUID> retry = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                PlayerAccount account = batch.get(i);
+                if (account.isDirty()) {
+                    retry.add(account.getUuid());
+                    continue;
+                }
+                BigDecimal adjustment = account.getBalance().subtract(states.get(i).getBalance());
+                store.markPersisted(account.getUuid(), account.getPersistedVersion(), account.getBalance(), adjustment);
+                done.add(account.getUuid());
+            }
+            store.ackDirty(serverId, done);
+        } catch (RuntimeException e) {
+            // 未确认的账户留在写库中集合，之后恢复时会再写一次：比较并交换发现数据库已是写入的状态，不会重复叠加
+            logger.warning(String.format("确认共享缓存写库失败，%d 个账户留在写库中集合：%s",
+                uuids.size() - done.size(), e.getMessage()));
+            return false;
+        }
+        if (retry.isEmpty()) {
+            return true;
+        }
+        // 放回后本轮不再继续认领，避免反复认领同一批账户
+        release(retry);
+        return false;
+    }
+
+    private void release(List<UUID> uuids) {
+        try {
+            store.releaseDirty(serverId, uuids);
+        } catch (RuntimeException e) {
+            logger.severe(String.format("放回待写库集合失败，%d 个账户留在写库中集合，重启或租约换手时恢复：%s", uuids.size(), e.getMessage()));
+        }
+    }
+
+    private void pruneIndex() {
+        try {
+            int pruned = store.pruneIndex(batchSize);
+            if (pruned > 0) {
+                backend.incrementCounter("account_cache_index_pruned", pruned);
+            }
+        } catch (RuntimeException e) {
+            logger.warning(String.format("清理共享缓存账户索引失败：%s", e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量 SQL 修改数据库后丢弃共享缓存，之后的加载从数据库重新回填
+     * 尚未写回数据库的账户保留在缓存中，不丢弃其他服务器的变动
+     */
+    public void invalidateAll() {
+        try {
+            int kept = store.invalidateAll();
+            if (kept > 0) {
+                logger.warning(String.format("清空共享账户缓存时有 %d 个账户尚未写回数据库，已保留", kept));
+            }
+        } catch (RuntimeException e) {
+            logger.warning(String.format("清空共享账户缓存失败：%s", e.getMessage()));
+        }
+    }
+
+    public void shutdown() {
+        if (writerTask != null) {
+            writerTask.cancel();
+        }
+        drain();
+        store.close();
+    }
+
+    public boolean isWriter() {
+        return writer;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getDrained() {
+        return drained.get();
+    }
+
+    /**
+     * 共享缓存之外的依赖：数据库读写与调试计数，测试中替换为内存实现
+     */
+    interface Backend {
+        PlayerAccount loadAccount(UUID uuid) throws SQLException;
+
+        void saveAccounts(List<PlayerAccount> accounts) throws SQLException;
+
+        void incrementCounter(String name, long delta);
+
+        void databaseTiming(String operation, String detail, long nanos);
+    }
+
+    private static final class PluginBackend implements Backend {
+        private final WooEco plugin;
+        private final PlayerDAO playerDAO;
+
+        PluginBackend(WooEco plugin) {
+            this.plugin = plugin;
+            this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
+        }
+
+        @Override
+        public PlayerAccount loadAccount(UUID uuid) throws SQLException {
+            return playerDAO.getAccount(uuid);
+        }
+
+        @Override
+        public void saveAccounts(List<PlayerAccount> accounts) throws SQLException {
+            playerDAO.saveAllBatch(accounts);
+        }
+
+        @Override
+        public void incrementCounter(String name, long delta) {
+            plugin.getDebugManager().incrementCounter(name, delta);
+        }
+
+        @Override
+        public void databaseTiming(String operation, String detail, long nanos) {
+            plugin.getDebugManager().database(operation, detail, nanos);
+        }
+    }
+}
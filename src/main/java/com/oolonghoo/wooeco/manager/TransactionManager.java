@@ -11,16 +11,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.api.events.BalanceChangeEvent;
 import com.oolonghoo.wooeco.api.events.BalanceChangeReason;
 import com.oolonghoo.wooeco.api.events.TransactionEvent;
-import com.oolonghoo.wooeco.database.dao.PlayerDAO;
 import com.oolonghoo.wooeco.database.dao.TransactionDAO;
+import com.oolonghoo.wooeco.hook.PlaceholderRenderCache;
 import com.oolonghoo.wooeco.model.PlayerAccount;
 import com.oolonghoo.wooeco.model.Transaction;
+import com.oolonghoo.wooeco.util.AsyncUtils;
 import com.oolonghoo.wooeco.util.SchedulerUtils;
 
 /**
@@ -48,6 +50,14 @@ public class TransactionManager {
     }
     
     public TransactionResult transfer(UUID senderUuid, UUID receiverUuid, BigDecimal amount) {
+        return transfer(senderUuid, receiverUuid, amount, null);
+    }
+    
+    /**
+     * @param commitHolder 非 null 时接收本次转账的持久化 Future，批次提交后完成
+     */
+    private TransactionResult transfer(UUID senderUuid, UUID receiverUuid, BigDecimal amount,
+                                       AtomicReference<CompletableFuture<Void>> commitHolder) {
         if (senderUuid.equals(receiverUuid)) {
             return new TransactionResult(false, "不能给自己转账", BigDecimal.ZERO, BigDecimal.ZERO);
         }
@@ -62,6 +72,10 @@ public class TransactionManager {
             return new TransactionResult(false, "接收方账户不存在", BigDecimal.ZERO, BigDecimal.ZERO);
         }
         
+        if (senderAccount.isLoading()) {
+            return new TransactionResult(false, "账户数据加载中，请稍后重试", BigDecimal.ZERO, BigDecimal.ZERO);
+        }
+        
         if (!plugin.getPayToggleManager().isPayEnabled(receiverUuid)) {
             return new TransactionResult(false, "paytoggle.cannot-pay", BigDecimal.ZERO, BigDecimal.ZERO);
         }
@@ -143,23 +157,31 @@ public class TransactionManager {
             orderedAccounts.add(accountMap.get(uuid));
         }
 
-        // 事务提交后需要触发的后置操作数据（使用数组作为可变持有者，以便在 lambda 中赋值）
+        // 锁内操作完成后需要触发的后置操作数据（使用数组作为可变持有者，以便在 lambda 中赋值）
         final BigDecimal[] senderOldBalance = new BigDecimal[1];
         final BigDecimal[] receiverOldBalance = new BigDecimal[1];
         final BigDecimal[] senderNewBalance = new BigDecimal[1];
         final BigDecimal[] receiverNewBalance = new BigDecimal[1];
         final BigDecimal[] taxReceiverOldBalance = new BigDecimal[1];
         final BigDecimal[] taxReceiverNewBalance = new BigDecimal[1];
+        // 锁内记录的账户版本：sender, receiver, taxReceiver
+        final long[] newVersions = new long[3];
         final AtomicReference<TransactionResult> failureResult = new AtomicReference<>();
 
         final BigDecimal fAmount = amount;
         final BigDecimal fTax = tax;
         final BigDecimal fTotalCost = totalCost;
-        final UUID fTaxReceiverUuid = taxReceiverUuid;
         final PlayerAccount fTaxReceiverAccount = taxReceiverAccount;
 
         // 4. 按排序顺序依次获取锁，在最内层执行所有操作
         executeWithOrderedLocks(orderedAccounts, 0, () -> {
+            // 占位账户已被真实账户取代时，在占位账户上的修改不会再被保存
+            for (PlayerAccount account : orderedAccounts) {
+                if (account.isReplaced()) {
+                    failureResult.set(new TransactionResult(false, "账户数据加载中，请稍后重试", BigDecimal.ZERO, BigDecimal.ZERO));
+                    return;
+                }
+            }
             // 事件可能修改了金额，需在锁内重新校验余额
             if (!economyManager.has(senderUuid, fTotalCost)) {
                 failureResult.set(new TransactionResult(false, "余额不足", BigDecimal.ZERO, BigDecimal.ZERO));
@@ -178,25 +200,7 @@ public class TransactionManager {
                 taxReceiverNewBalance[0] = taxReceiverOldBalance[0].add(fTax);
             }
 
-            // 在单一 DB 事务中原子更新所有余额
-            final BigDecimal fTaxReceiverNewBal = taxReceiverNewBalance[0];
-            try {
-                PlayerDAO playerDAO = plugin.getDatabaseManager().getPlayerDAO();
-                plugin.getDatabaseManager().executeInTransaction(conn -> {
-                    playerDAO.updateBalanceInTransaction(conn, senderUuid, senderNewBalance[0]);
-                    playerDAO.updateBalanceInTransaction(conn, receiverUuid, receiverNewBalance[0]);
-                    if (fTaxReceiverUuid != null && fTaxReceiverNewBal != null) {
-                        playerDAO.updateBalanceInTransaction(conn, fTaxReceiverUuid, fTaxReceiverNewBal);
-                    }
-                    return null;
-                });
-            } catch (SQLException e) {
-                plugin.getLogger().severe(String.format("转账事务执行失败：%s", e.getMessage()));
-                failureResult.set(new TransactionResult(false, "转账失败，请稍后重试", BigDecimal.ZERO, BigDecimal.ZERO));
-                return;
-            }
-
-            // DB 事务提交成功，更新内存中的 PlayerAccount
+            // 在账户锁内更新内存中的 PlayerAccount
             senderAccount.setBalance(senderNewBalance[0]);
             receiverAccount.setBalance(receiverNewBalance[0]);
             receiverAccount.addDailyIncome(fAmount);
@@ -208,6 +212,11 @@ public class TransactionManager {
                     fTaxReceiverAccount.addDailyIncome(taxIncome);
                 }
             }
+            newVersions[0] = senderAccount.getVersion();
+            newVersions[1] = receiverAccount.getVersion();
+            if (fTaxReceiverAccount != null) {
+                newVersions[2] = fTaxReceiverAccount.getVersion();
+            }
         });
 
         // 检查锁内操作是否失败
@@ -216,7 +225,37 @@ public class TransactionManager {
             return earlyFailure;
         }
 
-        // ---- 事务已提交，以下为后置操作（事件、日志、同步等） ----
+        // 涉及的账户交给组提交写入器，与其他转账合并为一个 JDBC 事务；调用线程不访问数据库
+        TransferCommitWriter commitWriter = plugin.getTransferCommitWriter();
+        if (commitWriter != null) {
+            CompletableFuture<Void> commit = commitWriter.submit(orderedAccounts);
+            if (commitHolder != null) {
+                commitHolder.set(commit);
+            }
+        } else {
+            playerDataManager.markDirty(orderedAccounts);
+        }
+        if (plugin.getLeaderboardManager() != null) {
+            for (PlayerAccount account : orderedAccounts) {
+                if (!account.isPlaceholder()) {
+                    plugin.getLeaderboardManager().onAccountChanged(account);
+                }
+            }
+        }
+        PlaceholderRenderCache renderCache = plugin.getPlaceholderRenderCache();
+        if (renderCache != null) {
+            for (PlayerAccount account : orderedAccounts) {
+                renderCache.invalidate(account.getUuid());
+            }
+        }
+        EconomySnapshotManager snapshotManager = plugin.getEconomySnapshotManager();
+        if (snapshotManager != null) {
+            for (PlayerAccount account : orderedAccounts) {
+                snapshotManager.markChanged(account.getUuid());
+            }
+        }
+
+        // ---- 余额已更新，以下为后置操作（事件、日志、同步等） ----
 
         // 触发 BalanceChangeEvent
         SchedulerUtils.callEvent(plugin, new BalanceChangeEvent(
@@ -240,10 +279,16 @@ public class TransactionManager {
 
         // Redis 同步
         if (plugin.getRedisSyncManager() != null) {
-            plugin.getRedisSyncManager().publishBalanceUpdate(senderUuid, senderAccount.getPlayerName(), senderNewBalance[0]);
-            plugin.getRedisSyncManager().publishBalanceUpdate(receiverUuid, receiverAccount.getPlayerName(), receiverNewBalance[0]);
-            if (taxReceiverAccount != null) {
-                plugin.getRedisSyncManager().publishBalanceUpdate(taxReceiverUuid, taxReceiverAccount.getPlayerName(), taxReceiverNewBalance[0]);
+            plugin.getRedisSyncManager().publishBalanceChange(senderUuid, senderAccount.getPlayerName(),
+                senderNewBalance[0], senderNewBalance[0].subtract(senderOldBalance[0]), newVersions[0]);
+            // 占位账户的入账由加载完成后的重放发布
+            if (!receiverAccount.isPlaceholder()) {
+                plugin.getRedisSyncManager().publishBalanceChange(receiverUuid, receiverAccount.getPlayerName(),
+                    receiverNewBalance[0], receiverNewBalance[0].subtract(receiverOldBalance[0]), newVersions[1]);
+            }
+            if (taxReceiverAccount != null && !taxReceiverAccount.isPlaceholder()) {
+                plugin.getRedisSyncManager().publishBalanceChange(taxReceiverUuid, taxReceiverAccount.getPlayerName(),
+                    taxReceiverNewBalance[0], taxReceiverNewBalance[0].subtract(taxReceiverOldBalance[0]), newVersions[2]);
             }
         }
 
@@ -268,6 +313,28 @@ public class TransactionManager {
         return new TransactionResult(true, null, amount, tax);
     }
     
+    /**
+     * 异步转账：并行预加载双方账户后在经济线程池上执行，调用线程立即返回
+     * 启用组提交时，返回的 Future 在转账所在批次写入数据库后才完成；
+     * 批次提交失败时以 TransferCommitWriter.CommitFailedException 异常完成，此时转账已生效，不应重试
+     */
+    public CompletableFuture<TransactionResult> transferAsync(UUID senderUuid, UUID receiverUuid, BigDecimal amount) {
+        CompletableFuture<PlayerAccount> senderLoad = playerDataManager.loadOfflineAccount(senderUuid);
+        CompletableFuture<PlayerAccount> receiverLoad = playerDataManager.loadOfflineAccount(receiverUuid);
+        AtomicReference<CompletableFuture<Void>> commitHolder = new AtomicReference<>();
+        return CompletableFuture.allOf(senderLoad, receiverLoad)
+            .thenApplyAsync(ignored -> transfer(senderUuid, receiverUuid, amount, commitHolder),
+                AsyncUtils.getEconomyExecutor())
+            .exceptionally(error -> {
+                plugin.getLogger().warning(String.format("异步转账失败：%s", error.getMessage()));
+                return new TransactionResult(false, "转账失败，请稍后重试", BigDecimal.ZERO, BigDecimal.ZERO);
+            })
+            .thenCompose(result -> {
+                CompletableFuture<Void> commit = commitHolder.get();
+                return commit != null ? commit.thenApply(v -> result) : CompletableFuture.completedFuture(result);
+            });
+    }
+    
     /**
      * 按排序顺序依次获取锁，防止死锁。
      * 递归地在每个账户上 synchronized，最内层执行 action。
@@ -0,0 +1,196 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转账组提交写入器
+ * 转账在账户锁内只更新内存，随后把涉及的账户交给本写入器；
+ * 写入线程把一段时间内的多笔转账合并为一次 saveAllBatch（一个 JDBC 事务、一次提交），
+ * 启用延迟写入时账户同时进入延迟写入队列并记入本地日志，批次提交前进程崩溃也能在启动时恢复；
+ * 提交成功后完成每笔转账的 Future；提交失败时账户转入常规持久化路径，Future 以 CommitFailedException 异常完成
+ */
+public class TransferCommitWriter {
+
+    private final WooEco plugin;
+    private final PlayerDAO playerDAO;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<PendingCommit> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    public TransferCommitWriter(WooEco plugin) {
+        this.plugin = plugin;
+        this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
+        this.maxBatch = Math.max(1, plugin.getConfig().getInt("transaction.group-commit.max-batch", 256));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(0L, plugin.getConfig().getLong("transaction.group-commit.max-delay-ms", 5)));
+
+        this.writerThread = new Thread(this::runLoop, "WooEco-GroupCommit");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 提交一笔转账涉及的账户，返回的 Future 在其所在批次提交后完成
+     */
+    public CompletableFuture<Void> submit(List<PlayerAccount> accounts) {
+        // 先记入延迟写入日志；批次提交后这些账户已是干净的，延迟写入刷新时跳过
+        WriteBehindManager writeBehindManager = plugin.getWriteBehindManager();
+        if (writeBehindManager != null) {
+            List<PlayerAccount> journaled = accounts.stream().filter(account -> !account.isPlaceholder()).toList();
+            if (!journaled.isEmpty()) {
+                writeBehindManager.enqueueGroupCommitted(journaled);
+            }
+        }
+        PendingCommit commit = new PendingCommit(accounts);
+        queue.add(commit);
+        // 关闭后提交的转账可能错过 shutdown 的最后一次排空，交给常规持久化路径
+        if (!running && queue.remove(commit)) {
+            plugin.getPlayerDataManager().markDirty(accounts);
+            commit.future.complete(null);
+            return commit.future;
+        }
+        plugin.getDebugManager().incrementCounter("group_commit_transfer");
+        return commit.future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 停止写入线程，并在当前线程提交队列中剩余的转账
+     */
+    public void shutdown() {
+        // 不中断写入线程，避免打断正在执行的 JDBC 提交；轮询超时后线程自行退出
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingCommit> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commitBatch(remaining);
+        }
+    }
+
+    private void runLoop() {
+        List<PendingCommit> batch = new ArrayList<>();
+        while (running) {
+            try {
+                PendingCommit first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+
+                // 等待最多 maxDelay 让并发转账加入同一批次
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingCommit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // 已取出的批次仍需提交，剩余队列由 shutdown 处理
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    commitBatch(batch);
+                } catch (RuntimeException e) {
+                    // 回退路径本身失败（如 markDirty 抛出）时仍需完成 Future 并保持线程存活
+                    plugin.getLogger().severe(String.format("转账批量提交异常：%s", e.getMessage()));
+                    CommitFailedException failure = new CommitFailedException(e);
+                    for (PendingCommit commit : batch) {
+                        commit.future.completeExceptionally(failure);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void commitBatch(List<PendingCommit> batch) {
+        // 多笔转账涉及同一账户时只写一次，写入时读取的是最新余额
+        Map<UUID, PlayerAccount> accounts = new LinkedHashMap<>();
+        for (PendingCommit commit : batch) {
+            for (PlayerAccount account : commit.accounts) {
+                accounts.put(account.getUuid(), account);
+            }
+        }
+        List<PlayerAccount> toSave = new ArrayList<>(accounts.values());
+
+        long start = System.nanoTime();
+        try {
+            SharedAccountCache sharedCache = plugin.getSharedAccountCache();
+            if (sharedCache != null) {
+                sharedCache.saveAll(toSave);
+            } else {
+                playerDAO.saveAllBatch(toSave);
+            }
+            plugin.getDebugManager().incrementCounter("group_commit_batch");
+            plugin.getDebugManager().database("GROUP_COMMIT",
+                "transfers=" + batch.size() + ", accounts=" + toSave.size(), System.nanoTime() - start);
+        } catch (SQLException | RuntimeException e) {
+            // 内存余额已生效，交给常规持久化路径（延迟写入日志或异步保存）继续重试；
+            // 运行时异常同样在此处理，不能让它结束写入线程
+            plugin.getLogger().severe(String.format("转账批量提交失败，已转入常规保存：%s", e.getMessage()));
+            plugin.getPlayerDataManager().markDirty(toSave);
+            CommitFailedException failure = new CommitFailedException(e);
+            for (PendingCommit commit : batch) {
+                commit.future.completeExceptionally(failure);
+            }
+            return;
+        }
+        for (PendingCommit commit : batch) {
+            commit.future.complete(null);
+        }
+    }
+
+    /**
+     * 转账已在内存中生效，但所在批次未能提交；账户已转入常规持久化路径，调用方不应重试转账
+     */
+    public static class CommitFailedException extends RuntimeException {
+
+        CommitFailedException(Throwable cause) {
+            super("转账已生效，但批量提交失败，已转入常规保存：" + cause.getMessage(), cause);
+        }
+    }
+
+    private static final class PendingCommit {
+        final List<PlayerAccount> accounts;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingCommit(List<PlayerAccount> accounts) {
+            this.accounts = accounts;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.util.SchedulerUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 账户延迟写入管理器
+ * 余额变动只标记为待写入，由刷新任务按数量/时间合并为 saveAllBatch 批量写入
+ * 每次入队同时生成一行本地日志，异常退出后启动时重放，保证两次刷新之间的数据不丢失。
+ * 日志行放入有界缓冲区后由独立的日志线程批量写出，调用线程不做文件 I/O；
+ * 进程崩溃时只可能丢失缓冲区中尚未写出的最后几行（通常在毫秒级以内），缓冲区写满时入队方等待日志线程
+ */
+public class WriteBehindManager {
+
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** 日志线程收到后关闭日志文件并退出 */
+    private static final Object STOP = new Object();
+
+    private final WooEco plugin;
+    private final PlayerDAO playerDAO;
+    private final File journalFolder;
+    private final long flushIntervalMs;
+    private final int batchSize;
+
+    /**
+     * 待写入账户，同一玩家多次变动只保留一项，刷新时读取最新值
+     * 每次入队生成新的 Entry，提交成功后只移除提交期间没有再次入队的项
+     */
+    private final Map<UUID, Entry> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 保护 pending 与日志分段的一致性：入队取读锁（可并发），刷新取写锁拍快照并请求切换日志，
+     * 快照之前入队的日志行必然写入被切换的分段
+     */
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+
+    /** 待写出的日志行与切换请求，按入队顺序由日志线程处理 */
+    private final BlockingQueue<Object> journalQueue;
+    private final Thread journalThread;
+
+    /** 保证同一时刻只有一个刷新在执行 */
+    private final Object flushLock = new Object();
+
+    /** 达到批量阈值时避免重复提交刷新任务 */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final AtomicLong segmentSequence = new AtomicLong(System.currentTimeMillis());
+
+    /** 只在日志线程中访问（启动重放除外） */
+    private BufferedWriter journalWriter;
+
+    /** 插件禁用时置为 true，停止递归调度 */
+    private volatile boolean shutdown = false;
+
+    public WriteBehindManager(WooEco plugin) {
+        this.plugin = plugin;
+        this.playerDAO = plugin.getDatabaseManager().getPlayerDAO();
+        this.journalFolder = new File(plugin.getDataFolder(), "write-behind");
+        this.flushIntervalMs = Math.max(100L, plugin.getConfig().getLong("database.write-behind.flush-interval-ms", 2000));
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("database.write-behind.batch-size", 200));
+        this.journalQueue = new ArrayBlockingQueue<>(
+            Math.max(64, plugin.getConfig().getInt("database.write-behind.journal-buffer", 8192)));
+        if (!journalFolder.exists()) {
+            journalFolder.mkdirs();
+        }
+
+        replayJournal();
+        openJournalWriter();
+        this.journalThread = new Thread(this::runJournal, "WooEco-Journal");
+        this.journalThread.setDaemon(true);
+        this.journalThread.start();
+        scheduleNextFlush();
+    }
+
+    /**
+     * 递归调度下一次刷新，确保上一次执行完毕后再调度下一次
+     */
+    private void scheduleNextFlush() {
+        if (shutdown) return;
+        SchedulerUtils.runAsyncDelayed(plugin, () -> {
+            flush();
+            scheduleNextFlush();
+        }, flushIntervalMs);
+    }
+
+    /**
+     * 标记账户待写入（只写内存和日志缓冲区，不访问数据库和文件）
+     */
+    public void enqueue(PlayerAccount account) {
+        String line = formatJournalLine(account);
+        journalLock.readLock().lock();
+        try {
+            pending.put(account.getUuid(), new Entry(account, false));
+            appendJournal(line);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        plugin.getDebugManager().incrementCounter("write_behind_enqueue");
+        requestFlushIfFull();
+    }
+
+    /**
+     * 一次性标记多个账户待写入，刷新时这些账户必然落在同一批次中
+     */
+    public void enqueueAll(List<PlayerAccount> accounts) {
+        enqueueAll(accounts, false);
+    }
+
+    /**
+     * 记录由转账组提交写库的账户：同样入队并记入日志，组提交成功且之后没有新变动时刷新会跳过它们，
+     * 组提交失败或进程崩溃时由延迟写入照常写库
+     */
+    public void enqueueGroupCommitted(List<PlayerAccount> accounts) {
+        enqueueAll(accounts, true);
+    }
+
+    private void enqueueAll(List<PlayerAccount> accounts, boolean groupCommitted) {
+        List<String> lines = new ArrayList<>(accounts.size());
+        for (PlayerAccount account : accounts) {
+            lines.add(formatJournalLine(account));
+        }
+        journalLock.readLock().lock();
+        try {
+            for (int i = 0; i < accounts.size(); i++) {
+                PlayerAccount account = accounts.get(i);
+                pending.put(account.getUuid(), new Entry(account, groupCommitted));
+                appendJournal(lines.get(i));
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        plugin.getDebugManager().incrementCounter("write_behind_enqueue");
+        requestFlushIfFull();
+    }
+
+    private void requestFlushIfFull() {
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            SchedulerUtils.runAsync(plugin, () -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * 获取尚未写入数据库的账户，玩家重新加入时应优先使用它而非数据库中的旧值
+     */
+    public PlayerAccount getPending(UUID uuid) {
+        Entry entry = pending.get(uuid);
+        return entry != null ? entry.account : null;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 刷新：把所有待写入账户合并为一次批量写入
+     * 提交前账户一直留在待写入表中，期间离线重载的账户仍能读到未写入的余额；
+     * 写入成功后删除对应的日志分段并移除本批次的项，失败则保留等待下次刷新
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Entry> batch;
+            CompletableFuture<Void> rotation = new CompletableFuture<>();
+            journalLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+                requestRotation(rotation);
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+            // 切换未完成时本批次的日志行可能还在当前日志文件中，提交后不删除任何分段
+            List<File> segments = awaitRotation(rotation) ? listSegments() : new ArrayList<>();
+
+            // 转账组提交已写入、之后没有再入队也没有变动的账户不再重复写入
+            List<PlayerAccount> accounts = new ArrayList<>(batch.size());
+            for (Entry entry : batch) {
+                PlayerAccount account = entry.account;
+                if (!entry.groupCommitted || account.isDirty() || account.getPersistedVersion() != account.getVersion()) {
+                    accounts.add(account);
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                if (!accounts.isEmpty()) {
+                    persist(accounts);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe(String.format("延迟写入玩家数据失败，将在下次刷新时重试：%s", e.getMessage()));
+                return;
+            }
+
+            // 提交期间再次入队的账户已替换为新的 Entry，留给下次刷新
+            for (Entry entry : batch) {
+                pending.remove(entry.account.getUuid(), entry);
+            }
+            for (File segment : segments) {
+                if (!segment.delete()) {
+                    plugin.getLogger().warning(String.format("删除延迟写入日志分段失败：%s", segment.getName()));
+                }
+            }
+            plugin.getDebugManager().incrementCounter("write_behind_flush");
+            plugin.getDebugManager().database("WRITE_BEHIND_FLUSH", "accounts=" + batch.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 插件禁用时调用：停止定时任务、刷新剩余数据并关闭日志文件
+     * 若最终刷新失败，日志文件保留在磁盘上，下次启动时重放
+     */
+    public void shutdown() {
+        shutdown = true;
+        flush();
+        offerJournal(STOP);
+        try {
+            journalThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void appendJournal(String line) {
+        offerJournal(line);
+    }
+
+    /**
+     * 放入日志缓冲区；缓冲区已满时等待日志线程写出，日志线程已退出时放弃
+     */
+    private boolean offerJournal(Object item) {
+        try {
+            while (!journalQueue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (!journalThread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void requestRotation(CompletableFuture<Void> rotation) {
+        if (!offerJournal(rotation)) {
+            rotation.complete(null);
+        }
+    }
+
+    private boolean awaitRotation(CompletableFuture<Void> rotation) {
+        try {
+            rotation.get(10, TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning(String.format("等待延迟写入日志切换超时：%s", e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * 日志线程：一次取出缓冲区中的所有行，写完后只 flush 一次；
+     * 写入操作系统缓冲即可在进程崩溃后保留
+     */
+    @SuppressWarnings("unchecked")
+    private void runJournal() {
+        List<Object> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(journalQueue.take());
+            } catch (InterruptedException e) {
+                closeJournalWriter();
+                return;
+            }
+            journalQueue.drainTo(batch);
+            boolean stop = false;
+            for (Object item : batch) {
+                if (item instanceof String line) {
+                    writeJournalLine(line);
+                } else if (item instanceof CompletableFuture<?> rotation) {
+                    rotateJournal();
+                    ((CompletableFuture<Void>) rotation).complete(null);
+                } else if (item == STOP) {
+                    stop = true;
+                }
+            }
+            batch.clear();
+            flushJournalWriter();
+            if (stop) {
+                closeJournalWriter();
+                return;
+            }
+        }
+    }
+
+    private void writeJournalLine(String line) {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.write(line);
+            journalWriter.newLine();
+        } catch (IOException e) {
+            plugin.getLogger().warning(String.format("写入延迟写入日志失败：%s", e.getMessage()));
+        }
+    }
+
+    private void flushJournalWriter() {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.flush();
+        } catch (IOException e) {
+            plugin.getLogger().warning(String.format("写入延迟写入日志失败：%s", e.getMessage()));
+        }
+    }
+
+    /**
+     * 将当前日志文件切换为只读分段，之后的入队写入新的日志文件
+     */
+    private void rotateJournal() {
+        closeJournalWriter();
+        File journal = new File(journalFolder, JOURNAL_FILE);
+        if (journal.exists() && journal.length() > 0) {
+            File segment = new File(journalFolder, SEGMENT_PREFIX + segmentSequence.incrementAndGet() + SEGMENT_SUFFIX);
+            if (!journal.renameTo(segment)) {
+                plugin.getLogger().warning(String.format("切换延迟写入日志失败：%s", journal.getName()));
+            }
+        }
+        openJournalWriter();
+    }
+
+    private void openJournalWriter() {
+        try {
+            journalWriter = new BufferedWriter(new FileWriter(new File(journalFolder, JOURNAL_FILE), true));
+        } catch (IOException e) {
+            journalWriter = null;
+            plugin.getLogger().severe(String.format("打开延迟写入日志失败，崩溃时可能丢失未写入的数据：%s", e.getMessage()));
+        }
+    }
+
+    private void closeJournalWriter() {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning(String.format("关闭延迟写入日志失败：%s", e.getMessage()));
+        }
+        journalWriter = null;
+    }
+
+    /**
+     * 按写入顺序列出所有分段
+     */
+    private List<File> listSegments() {
+        File[] files = journalFolder.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort(Comparator.comparingLong(this::getSegmentSequence));
+        return segments;
+    }
+
+    private long getSegmentSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 启动时重放上次未刷新的日志：同一玩家以最后一条记录为准，批量写回数据库
+     * 恢复的账户带有崩溃前的版本和未写入增量，数据库中已有更新的版本时按冲突处理叠加增量，不会以旧余额覆盖
+     */
+    private void replayJournal() {
+        List<File> files = listSegments();
+        File journal = new File(journalFolder, JOURNAL_FILE);
+        if (journal.exists()) {
+            files.add(journal);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, PlayerAccount> recovered = new LinkedHashMap<>();
+        for (File file : files) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    PlayerAccount account;
+                    try {
+                        account = parseJournalLine(line);
+                    } catch (IllegalArgumentException e) {
+                        account = null;
+                    }
+                    if (account != null) {
+                        recovered.put(account.getUuid(), account);
+                    } else {
+                        plugin.getLogger().warning(String.format("跳过无效的延迟写入日志行：%s", line));
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning(String.format("读取延迟写入日志失败 [%s]：%s", file.getName(), e.getMessage()));
+            }
+        }
+
+        if (recovered.isEmpty()) {
+            deleteFiles(files);
+            return;
+        }
+
+        try {
+            persist(new ArrayList<>(recovered.values()));
+            deleteFiles(files);
+            plugin.getLogger().info(String.format("已从延迟写入日志恢复 %d 个账户", recovered.size()));
+        } catch (SQLException e) {
+            // 保留日志文件，交给刷新任务继续重试
+            for (PlayerAccount account : recovered.values()) {
+                pending.put(account.getUuid(), new Entry(account, false));
+            }
+            if (journal.exists()) {
+                File segment = new File(journalFolder, SEGMENT_PREFIX + segmentSequence.incrementAndGet() + SEGMENT_SUFFIX);
+                journal.renameTo(segment);
+            }
+            plugin.getLogger().severe(String.format("恢复延迟写入日志失败：%s", e.getMessage()));
+        }
+    }
+
+    private void deleteFiles(List<File> files) {
+        for (File file : files) {
+            if (!file.delete()) {
+                plugin.getLogger().warning(String.format("删除延迟写入日志失败：%s", file.getName()));
+            }
+        }
+    }
+
+    /**
+     * 启用共享账户缓存时写入共享缓存，否则直接写数据库
+     */
+    private void persist(List<PlayerAccount> accounts) throws SQLException {
+        SharedAccountCache sharedCache = plugin.getSharedAccountCache();
+        if (sharedCache != null) {
+            sharedCache.saveAll(accounts);
+        } else {
+            playerDAO.saveAllBatch(accounts);
+        }
+    }
+
+    /**
+     * 日志行：uuid|名称|余额|每日收入|收入重置时间|创建时间|版本|已持久化版本|未写入增量
+     * 版本与余额在账户锁内一并读取，先读版本号保证余额不旧于版本号
+     */
+    static String formatJournalLine(PlayerAccount account) {
+        synchronized (account) {
+            long version = account.getVersion();
+            long persistedVersion = account.getPersistedVersion();
+            BigDecimal delta = account.getUnpersistedDelta();
+            return account.getUuid() + "|" +
+                   account.getPlayerName() + "|" +
+                   account.getBalance().toPlainString() + "|" +
+                   account.getDailyIncome().toPlainString() + "|" +
+                   account.getLastIncomeReset() + "|" +
+                   account.getCreatedAt() + "|" +
+                   version + "|" +
+                   persistedVersion + "|" +
+                   delta.toPlainString();
+        }
+    }
+
+    /**
+     * 解析日志行；旧格式（6 列，不含版本）恢复为版本未知的账户
+     *
+     * @return 列数不符时返回 null
+     * @throws IllegalArgumentException 字段无法解析
+     */
+    static PlayerAccount parseJournalLine(String line) {
+        String[] parts = line.split("\\|", -1);
+        if (parts.length != 6 && parts.length != 9) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(parts[0]);
+        BigDecimal balance = new BigDecimal(parts[2]);
+        BigDecimal dailyIncome = new BigDecimal(parts[3]);
+        long lastIncomeReset = Long.parseLong(parts[4]);
+        long createdAt = Long.parseLong(parts[5]);
+        if (parts.length == 6) {
+            return new PlayerAccount(uuid, parts[1], balance, dailyIncome, lastIncomeReset, createdAt, now);
+        }
+        return PlayerAccount.recovered(uuid, parts[1], balance, dailyIncome, lastIncomeReset, createdAt, now,
+            Long.parseLong(parts[6]), Long.parseLong(parts[7]), new BigDecimal(parts[8]));
+    }
+
+    /**
+     * 一次入队；用对象身份区分同一账户的多次入队
+     */
+    private static final class Entry {
+        final PlayerAccount account;
+        /** 由转账组提交写库 */
+        final boolean groupCommitted;
+
+        Entry(PlayerAccount account, boolean groupCommitted) {
+            this.account = account;
+            this.groupCommitted = groupCommitted;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.oolonghoo.wooeco.model;
 
+import com.oolonghoo.wooeco.util.FixedPoint;
+
 import java.math.BigDecimal;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 玩家账户模型 (线程安全)
  * 使用 BigDecimal 确保金额精度
+ * 余额每次变动版本号加一，跨服同步只应用更新的版本，写库时以已持久化的版本做比较并交换
+ * 增量同步模式下另记录本服务器产生、尚未写库的余额增量，写库时以 balance = balance + 增量 累加
+ * 占位账户在真实账户加载完成前接收变动，变动以待写增量的形式累积，加载后重放到真实账户
+ * 
+ * 定点模式下余额、每日收入和待写增量以最小货币单位（long）存储：
+ * addBalanceUnits 以 CAS 无锁增减余额，其余改动在 this 锁内独占执行，期间等待并阻止无锁写入
  * 
  */
 public class PlayerAccount {
     
+    /** addBalanceUnits 被拒绝（余额不足、超出上限或溢出）时的返回值 */
+    public static final long REJECTED = Long.MIN_VALUE;
+    
     private final UUID uuid;
     private volatile String playerName;
     private volatile BigDecimal balance;
@@ -20,9 +32,31 @@ public class PlayerAccount {
     private final AtomicLong createdAt;
     private final AtomicLong updatedAt;
     private final AtomicBoolean dirty;
-
+    private final AtomicLong version;
+    /** 已知数据库中的版本，-1 表示未知（新建账户或从旧格式本地日志恢复的账户） */
+    private final AtomicLong persistedVersion;
+    /** 本服务器产生、尚未写入数据库的余额增量（不含其他服务器同步来的增量），受 this 锁保护 */
+    private BigDecimal unpersistedDelta = BigDecimal.ZERO;
+    /** 玩家加入时真实账户尚未加载完成而放入在线缓存的占位账户，永不写库 */
+    private final boolean placeholder;
+    /** 占位账户已被真实账户取代，之后的操作应改在真实账户上执行 */
+    private volatile boolean replaced;
+    
+    /** 定点模式的小数位数，创建时确定；-1 表示使用上面的 BigDecimal 字段 */
+    private final int scale;
+    private final AtomicLong balanceUnits = new AtomicLong();
+    private final AtomicLong dailyIncomeUnits = new AtomicLong();
+    private final AtomicLong unpersistedDeltaUnits = new AtomicLong();
+    /** 正在执行的无锁写入数 */
+    private final AtomicInteger writers = new AtomicInteger();
+    /** 锁内独占改动进行中，无锁写入需等待 */
+    private volatile boolean exclusive;
     
     public PlayerAccount(UUID uuid, String playerName) {
+        this(uuid, playerName, false);
+    }
+    
+    private PlayerAccount(UUID uuid, String playerName, boolean placeholder) {
         this.uuid = uuid;
         this.playerName = playerName;
         this.balance = BigDecimal.ZERO;
@@ -31,6 +65,17 @@ public class PlayerAccount {
         this.createdAt = new AtomicLong(System.currentTimeMillis());
         this.updatedAt = new AtomicLong(System.currentTimeMillis());
         this.dirty = new AtomicBoolean(false);
+        this.version = new AtomicLong(0);
+        this.persistedVersion = new AtomicLong(-1);
+        this.placeholder = placeholder;
+        this.scale = FixedPoint.getScale();
+    }
+    
+    /**
+     * 创建加载中的占位账户（余额为 0）
+     */
+    public static PlayerAccount placeholder(UUID uuid, String playerName) {
+        return new PlayerAccount(uuid, playerName, true);
     }
     
     public PlayerAccount(UUID uuid, String playerName, double balance, double dailyIncome, 
@@ -41,6 +86,36 @@ public class PlayerAccount {
     
     public PlayerAccount(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome, 
                          long lastIncomeReset, long createdAt, long updatedAt) {
+        this(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt, updatedAt, 0L, -1L);
+    }
+    
+    /**
+     * 从数据库加载的账户，persistedVersion 即数据库中的版本
+     */
+    public PlayerAccount(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome, 
+                         long lastIncomeReset, long createdAt, long updatedAt, long version) {
+        this(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt, updatedAt, version, version);
+    }
+    
+    /**
+     * 从本地日志恢复的账户：恢复崩溃前的版本、已持久化版本和未写入增量，写库时照常比较并交换或累加增量
+     */
+    public static PlayerAccount recovered(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome,
+                                          long lastIncomeReset, long createdAt, long updatedAt,
+                                          long version, long persistedVersion, BigDecimal unpersistedDelta) {
+        PlayerAccount account = new PlayerAccount(uuid, playerName, balance, dailyIncome,
+            lastIncomeReset, createdAt, updatedAt, version, persistedVersion);
+        if (account.scale >= 0) {
+            account.unpersistedDeltaUnits.set(FixedPoint.toUnits(unpersistedDelta, account.scale));
+        } else {
+            account.unpersistedDelta = unpersistedDelta;
+        }
+        account.dirty.set(true);
+        return account;
+    }
+    
+    private PlayerAccount(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome, 
+                          long lastIncomeReset, long createdAt, long updatedAt, long version, long persistedVersion) {
         this.uuid = uuid;
         this.playerName = playerName;
         this.balance = balance != null ? balance : BigDecimal.ZERO;
@@ -49,6 +124,14 @@ public class PlayerAccount {
         this.createdAt = new AtomicLong(createdAt);
         this.updatedAt = new AtomicLong(updatedAt);
         this.dirty = new AtomicBoolean(false);
+        this.version = new AtomicLong(version);
+        this.persistedVersion = new AtomicLong(persistedVersion);
+        this.placeholder = false;
+        this.scale = FixedPoint.getScale();
+        if (scale >= 0) {
+            this.balanceUnits.set(FixedPoint.toUnits(this.balance, scale));
+            this.dailyIncomeUnits.set(FixedPoint.toUnits(this.dailyIncome, scale));
+        }
     }
     
     public UUID getUuid() {
@@ -65,37 +148,247 @@ public class PlayerAccount {
         this.dirty.set(true);
     }
     
+    /**
+     * 是否以最小货币单位存储余额
+     */
+    public boolean isFixedPoint() {
+        return scale >= 0;
+    }
+    
+    /**
+     * 定点模式的小数位数，未使用定点模式时为 -1
+     */
+    public int getScale() {
+        return scale;
+    }
+    
     public BigDecimal getBalance() {
-        return balance;
+        return scale >= 0 ? FixedPoint.toDecimal(balanceUnits.get(), scale) : balance;
     }
     
     public double getBalanceDouble() {
-        return getBalance().doubleValue();
+        return scale >= 0 ? FixedPoint.toDouble(balanceUnits.get(), scale) : balance.doubleValue();
+    }
+    
+    /**
+     * 以最小货币单位表示的余额，仅定点模式可用
+     */
+    public long getBalanceUnits() {
+        requireFixedPoint();
+        return balanceUnits.get();
     }
     
     public void setBalance(BigDecimal newBalance) {
         synchronized (this) {
-            this.balance = newBalance;
+            if (scale >= 0) {
+                long units = FixedPoint.toUnits(newBalance, scale);
+                beginExclusive();
+                try {
+                    long old = balanceUnits.getAndSet(units);
+                    unpersistedDeltaUnits.addAndGet(units - old);
+                } finally {
+                    endExclusive();
+                }
+            } else {
+                this.unpersistedDelta = this.unpersistedDelta.add(newBalance.subtract(this.balance));
+                this.balance = newBalance;
+            }
+            this.version.incrementAndGet();
             this.updatedAt.set(System.currentTimeMillis());
             this.dirty.set(true);
         }
     }
     
+    /**
+     * 无锁增减余额（仅定点模式）：新余额小于 0，或增加后超过 maxUnits，或溢出时拒绝；
+     * 占位账户已被取代时也拒绝，调用方应通过 isReplaced 判断并改在真实账户上执行
+     * 成功后版本号加一；需要发布余额时应先读版本号再读余额，版本号最大的发布者总能读到最终余额
+     *
+     * @return 变动前的余额，被拒绝时返回 REJECTED
+     */
+    public long addBalanceUnits(long deltaUnits, long maxUnits) {
+        requireFixedPoint();
+        beginWrite();
+        try {
+            if (replaced) {
+                return REJECTED;
+            }
+            long old;
+            long next;
+            do {
+                old = balanceUnits.get();
+                next = old + deltaUnits;
+                // 同号相加结果变号即溢出
+                if (((old ^ next) & (deltaUnits ^ next)) < 0 || next < 0
+                        || (deltaUnits > 0 && next > maxUnits)) {
+                    return REJECTED;
+                }
+            } while (!balanceUnits.compareAndSet(old, next));
+            unpersistedDeltaUnits.addAndGet(deltaUnits);
+            version.incrementAndGet();
+            updatedAt.set(System.currentTimeMillis());
+            dirty.set(true);
+            return old;
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+    
+    /**
+     * 应用其他服务器发布的余额：仅当版本更新时生效
+     * 发布方负责持久化，因此不标记为脏，接收方不会重复写库；
+     * 版本相同但余额不同时返回 false，由调用方以数据库为准刷新
+     *
+     * @return 是否已应用
+     */
+    public boolean applyRemoteBalance(BigDecimal newBalance, long newVersion) {
+        synchronized (this) {
+            beginExclusive();
+            try {
+                if (newVersion <= this.version.get()) {
+                    return false;
+                }
+                if (scale >= 0) {
+                    this.balanceUnits.set(FixedPoint.toUnits(newBalance, scale));
+                } else {
+                    this.balance = newBalance;
+                }
+                this.version.set(newVersion);
+                this.persistedVersion.accumulateAndGet(newVersion, Math::max);
+                this.updatedAt.set(System.currentTimeMillis());
+                return true;
+            } finally {
+                endExclusive();
+            }
+        }
+    }
+    
+    /**
+     * 写库冲突时采用数据库中的状态；expectedVersion 之后本地又有变动则放弃，留给下一次保存处理
+     *
+     * @return 是否已采用
+     */
+    public boolean adoptPersistedBalance(BigDecimal persistedBalance, long persistedVersion, long expectedVersion) {
+        synchronized (this) {
+            beginExclusive();
+            try {
+                if (this.version.get() != expectedVersion) {
+                    return false;
+                }
+                if (scale >= 0) {
+                    this.balanceUnits.set(FixedPoint.toUnits(persistedBalance, scale));
+                    this.unpersistedDeltaUnits.set(0);
+                } else {
+                    this.balance = persistedBalance;
+                    this.unpersistedDelta = BigDecimal.ZERO;
+                }
+                this.version.set(persistedVersion);
+                this.persistedVersion.set(persistedVersion);
+                this.updatedAt.set(System.currentTimeMillis());
+                return true;
+            } finally {
+                endExclusive();
+            }
+        }
+    }
+    
+    /**
+     * 写库冲突处理并提交后调用：数据库中的余额为 persistedBalance、版本为 persistedVersion，其中已包含本次写入的增量 persistedDelta
+     * 扣除 persistedDelta 后剩余的未写入增量（快照之后的本地变动）叠加到数据库余额上；
+     * 快照之后有本地变动时版本号相应高于 persistedVersion，下一次保存以本地为准
+     *
+     * @return 没有剩余的未写入增量时返回 true
+     */
+    public boolean rebaseOnPersisted(BigDecimal persistedBalance, long persistedVersion, BigDecimal persistedDelta,
+                                     long snapshotVersion) {
+        synchronized (this) {
+            beginExclusive();
+            try {
+                boolean settled;
+                if (scale >= 0) {
+                    long remaining = this.unpersistedDeltaUnits.addAndGet(-FixedPoint.toUnits(persistedDelta, scale));
+                    this.balanceUnits.set(FixedPoint.toUnits(persistedBalance, scale) + remaining);
+                    settled = remaining == 0;
+                } else {
+                    this.unpersistedDelta = this.unpersistedDelta.subtract(persistedDelta);
+                    this.balance = persistedBalance.add(this.unpersistedDelta);
+                    settled = this.unpersistedDelta.signum() == 0;
+                }
+                long changes = Math.max(0L, this.version.get() - snapshotVersion);
+                this.version.set(persistedVersion + changes);
+                this.persistedVersion.accumulateAndGet(persistedVersion, Math::max);
+                this.updatedAt.set(System.currentTimeMillis());
+                return settled;
+            } finally {
+                endExclusive();
+            }
+        }
+    }
+    
+    /**
+     * 应用其他服务器发布的余额增量，发布方负责把增量写库，因此不标记为脏、不计入待写增量
+     */
+    public void applyRemoteDelta(BigDecimal delta) {
+        synchronized (this) {
+            if (scale >= 0) {
+                long units = FixedPoint.toUnits(delta, scale);
+                beginExclusive();
+                try {
+                    this.balanceUnits.addAndGet(units);
+                } finally {
+                    endExclusive();
+                }
+            } else {
+                this.balance = this.balance.add(delta);
+            }
+            this.version.incrementAndGet();
+            this.updatedAt.set(System.currentTimeMillis());
+        }
+    }
+    
+    public BigDecimal getUnpersistedDelta() {
+        if (scale >= 0) {
+            return FixedPoint.toDecimal(unpersistedDeltaUnits.get(), scale);
+        }
+        synchronized (this) {
+            return unpersistedDelta;
+        }
+    }
+    
+    /**
+     * 扣除已累加写入数据库的增量
+     *
+     * @return 写库期间没有新的本地变动时返回 true
+     */
+    public boolean commitDelta(BigDecimal persistedDelta) {
+        if (scale >= 0) {
+            return unpersistedDeltaUnits.addAndGet(-FixedPoint.toUnits(persistedDelta, scale)) == 0;
+        }
+        synchronized (this) {
+            this.unpersistedDelta = this.unpersistedDelta.subtract(persistedDelta);
+            return this.unpersistedDelta.signum() == 0;
+        }
+    }
+    
     public void setBalance(double newBalance) {
         setBalance(BigDecimal.valueOf(newBalance));
     }
     
     public BigDecimal getDailyIncome() {
-        return dailyIncome;
+        return scale >= 0 ? FixedPoint.toDecimal(dailyIncomeUnits.get(), scale) : dailyIncome;
     }
     
     public double getDailyIncomeDouble() {
-        return getDailyIncome().doubleValue();
+        return scale >= 0 ? FixedPoint.toDouble(dailyIncomeUnits.get(), scale) : dailyIncome.doubleValue();
     }
     
     public void setDailyIncome(BigDecimal income) {
         synchronized (this) {
-            this.dailyIncome = income;
+            if (scale >= 0) {
+                this.dailyIncomeUnits.set(FixedPoint.toUnits(income, scale));
+            } else {
+                this.dailyIncome = income;
+            }
             this.updatedAt.set(System.currentTimeMillis());
             this.dirty.set(true);
         }
@@ -106,6 +399,10 @@ public class PlayerAccount {
     }
     
     public void addDailyIncome(BigDecimal amount) {
+        if (scale >= 0) {
+            addDailyIncomeUnits(FixedPoint.toUnits(amount, scale));
+            return;
+        }
         synchronized (this) {
             this.dailyIncome = this.dailyIncome.add(amount);
             this.updatedAt.set(System.currentTimeMillis());
@@ -117,6 +414,16 @@ public class PlayerAccount {
         addDailyIncome(BigDecimal.valueOf(amount));
     }
     
+    /**
+     * 无锁累加每日收入（仅定点模式）
+     */
+    public void addDailyIncomeUnits(long units) {
+        requireFixedPoint();
+        this.dailyIncomeUnits.addAndGet(units);
+        this.updatedAt.set(System.currentTimeMillis());
+        this.dirty.set(true);
+    }
+    
     public long getLastIncomeReset() {
         return lastIncomeReset.get();
     }
@@ -138,8 +445,101 @@ public class PlayerAccount {
         return dirty.get();
     }
     
+    public long getVersion() {
+        return version.get();
+    }
+    
+    public long getPersistedVersion() {
+        return persistedVersion.get();
+    }
+    
+    /**
+     * 记录已写入数据库的版本（只增不减）
+     */
+    public void markPersisted(long savedVersion) {
+        this.persistedVersion.accumulateAndGet(savedVersion, Math::max);
+    }
+    
+    public boolean isPlaceholder() {
+        return placeholder;
+    }
+    
+    /**
+     * 占位账户仍在等待真实账户加载
+     */
+    public boolean isLoading() {
+        return placeholder && !replaced;
+    }
+    
+    public boolean isReplaced() {
+        return replaced;
+    }
+    
+    /**
+     * 标记占位账户已被真实账户取代，并取出加载期间累积的余额增量
+     */
+    public BigDecimal markReplaced() {
+        synchronized (this) {
+            BigDecimal delta;
+            if (scale >= 0) {
+                beginExclusive();
+                try {
+                    this.replaced = true;
+                    delta = FixedPoint.toDecimal(this.unpersistedDeltaUnits.getAndSet(0), scale);
+                } finally {
+                    endExclusive();
+                }
+            } else {
+                this.replaced = true;
+                delta = this.unpersistedDelta;
+                this.unpersistedDelta = BigDecimal.ZERO;
+            }
+            this.dirty.set(false);
+            return delta;
+        }
+    }
+    
     public void markSaved() {
         this.dirty.set(false);
         this.updatedAt.set(System.currentTimeMillis());
     }
+    
+    private void requireFixedPoint() {
+        if (scale < 0) {
+            throw new IllegalStateException("账户未使用定点余额");
+        }
+    }
+    
+    /**
+     * 进入无锁写入；有独占改动进行时等待其结束
+     */
+    private void beginWrite() {
+        while (true) {
+            writers.incrementAndGet();
+            if (!exclusive) {
+                return;
+            }
+            writers.decrementAndGet();
+            while (exclusive) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+    
+    /**
+     * 开始独占改动并等待进行中的无锁写入完成，调用方需持有 this 锁
+     */
+    private void beginExclusive() {
+        if (scale < 0) {
+            return;
+        }
+        exclusive = true;
+        while (writers.get() != 0) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    private void endExclusive() {
+        exclusive = false;
+    }
 }
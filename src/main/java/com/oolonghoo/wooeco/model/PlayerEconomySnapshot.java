@@ -0,0 +1,70 @@
+package com.oolonghoo.wooeco.model;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 在线玩家经济数据的不可变快照
+ * 由 EconomySnapshotManager 每 tick 为数据有变化的玩家重新生成，最多落后实际余额一个刷新间隔
+ */
+public final class PlayerEconomySnapshot {
+
+    private final UUID uuid;
+    private final String playerName;
+    private final BigDecimal balance;
+    private final String balanceFormatted;
+    private final BigDecimal dailyIncome;
+    private final BigDecimal weeklyIncome;
+    private final BigDecimal monthlyIncome;
+    private final int rank;
+
+    public PlayerEconomySnapshot(UUID uuid, String playerName, BigDecimal balance, String balanceFormatted,
+                                 BigDecimal dailyIncome, BigDecimal weeklyIncome, BigDecimal monthlyIncome, int rank) {
+        this.uuid = uuid;
+        this.playerName = playerName;
+        this.balance = balance;
+        this.balanceFormatted = balanceFormatted;
+        this.dailyIncome = dailyIncome;
+        this.weeklyIncome = weeklyIncome;
+        this.monthlyIncome = monthlyIncome;
+        this.rank = rank;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    /**
+     * 按货币配置格式化后的余额
+     */
+    public String getBalanceFormatted() {
+        return balanceFormatted;
+    }
+
+    public BigDecimal getDailyIncome() {
+        return dailyIncome;
+    }
+
+    public BigDecimal getWeeklyIncome() {
+        return weeklyIncome;
+    }
+
+    public BigDecimal getMonthlyIncome() {
+        return monthlyIncome;
+    }
+
+    /**
+     * 余额排名（从 1 开始），不在排行中为 -1
+     */
+    public int getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,121 @@
+package com.oolonghoo.wooeco.sync;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 多服共享的账户缓存层，位于玩家数据管理器与数据库之间
+ * 各服务器读写缓存，写入的账户记入待写库集合，由选举出的单个节点批量写回数据库
+ * 实现：{@link RedisAccountStore}（Redis 哈希 + Lua 脚本）；测试中使用进程内模拟 MemoryAccountStore
+ */
+public interface AccountStore {
+
+    /**
+     * 读取账户，不存在时返回 null
+     */
+    StoredAccount load(UUID uuid);
+
+    /**
+     * 缓存未命中、从数据库加载后回填；已存在时不覆盖
+     * 回填的版本与余额同时记为数据库中的状态，写库时以此为期望版本
+     */
+    void putIfAbsent(StoredAccount account);
+
+    /**
+     * 缓存中的版本不高于 account 时写入并记入待写库集合；待写库的账户在写库前不会过期
+     *
+     * @return 写入成功返回 null，否则返回缓存中版本更高的账户
+     */
+    StoredAccount saveIfNewer(StoredAccount account);
+
+    /**
+     * 原子累加余额增量；负增量在余额不足时不扣减（检查并扣减在同一脚本内完成）
+     * 同时更新玩家名与每日收入，版本加一并记入待写库集合
+     */
+    DeltaResult applyDelta(UUID uuid, BigDecimal delta, String playerName, BigDecimal dailyIncome, long lastIncomeReset);
+
+    /**
+     * 获取或续约写库节点租约；租约换手时把上一个持有者写库中的账户放回待写库集合
+     *
+     * @return 当前服务器持有租约时返回 true
+     */
+    boolean tryAcquireWriter(String serverId, long leaseMs);
+
+    /**
+     * 认领最多 max 个待写库的账户：从待写库集合移入本服务器的写库中集合，写库提交后再确认
+     * 认领后进程崩溃时账户留在写库中集合，由 {@link #recoverInFlight} 或租约换手时放回
+     */
+    List<UUID> claimDirty(String serverId, int max);
+
+    /**
+     * 写库提交后记录数据库中的版本与余额（版本只增不减），之后的写库以此计算期望版本与未写入增量；
+     * 写库的冲突处理叠加了数据库中的其他变动时，把差额 adjustment 同样计入缓存余额
+     * 账户不在待写库集合时恢复过期时间
+     */
+    void markPersisted(UUID uuid, long persistedVersion, BigDecimal persistedBalance, BigDecimal adjustment);
+
+    /**
+     * 写库提交后从写库中集合移除
+     */
+    void ackDirty(String serverId, Collection<UUID> uuids);
+
+    /**
+     * 写库失败时从写库中集合放回待写库集合
+     */
+    void releaseDirty(String serverId, Collection<UUID> uuids);
+
+    /**
+     * 把本服务器写库中集合里的全部账户放回待写库集合（启动时处理上次崩溃残留）
+     *
+     * @return 放回的账户数
+     */
+    int recoverInFlight(String serverId);
+
+    /**
+     * 丢弃缓存账户（批量 SQL 修改数据库之后调用）；仍在待写库或写库中集合的账户保留，
+     * 否则其他服务器尚未写回数据库的变动会随缓存一起丢失
+     *
+     * @return 因尚未写库而保留的账户数
+     */
+    int invalidateAll();
+
+    /**
+     * 抽查最多 sample 个账户索引成员，移除缓存已过期的成员，避免索引随过期账户无限增长
+     *
+     * @return 移除的成员数
+     */
+    int pruneIndex(int sample);
+
+    void close();
+
+    enum DeltaStatus {
+        APPLIED,
+        /** 扣减后余额为负，未修改 */
+        INSUFFICIENT,
+        /** 缓存中没有该账户 */
+        MISSING
+    }
+
+    final class DeltaResult {
+        private final DeltaStatus status;
+        private final StoredAccount state;
+
+        public DeltaResult(DeltaStatus status, StoredAccount state) {
+            this.status = status;
+            this.state = state;
+        }
+
+        public DeltaStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * 脚本执行后缓存中的账户状态，MISSING 时为 null
+         */
+        public StoredAccount getState() {
+            return state;
+        }
+    }
+}
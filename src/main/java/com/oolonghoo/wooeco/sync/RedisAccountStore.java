@@ -0,0 +1,414 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.config.DatabaseConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 基于 Redis 哈希的共享账户缓存
+ * 每个账户一个哈希 {prefix}account:{uuid}，余额按货币小数位存为整数（最小货币单位），
+ * 以便 Lua 脚本用 HINCRBY 精确加减；所有写操作都是单个脚本，在 Redis 内原子执行
+ * 哈希同时记录最近一次写库后数据库中的版本 persisted 与余额 pbalance；待写库的账户不设过期时间，写库后恢复
+ */
+public class RedisAccountStore implements AccountStore {
+
+    /** 版本不低于缓存时写入，否则返回缓存中的账户；不修改记录的数据库状态 */
+    private static final Script SAVE_IF_NEWER = new Script(
+        "local current = redis.call('HGET', KEYS[1], 'version')\n" +
+        "if current and tonumber(current) > tonumber(ARGV[7]) then\n" +
+        "  return redis.call('HGETALL', KEYS[1])\n" +
+        "end\n" +
+        "redis.call('HSET', KEYS[1], 'name', ARGV[2], 'balance', ARGV[3], 'daily', ARGV[4], 'reset', ARGV[5], 'created', ARGV[6], 'version', ARGV[7])\n" +
+        "redis.call('PERSIST', KEYS[1])\n" +
+        "redis.call('SADD', KEYS[2], ARGV[1])\n" +
+        "redis.call('SADD', KEYS[3], ARGV[1])\n" +
+        "return false");
+
+    /** 从数据库回填，版本与余额即数据库中的状态 */
+    private static final Script PUT_IF_ABSENT = new Script(
+        "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+        "redis.call('HSET', KEYS[1], 'name', ARGV[2], 'balance', ARGV[3], 'daily', ARGV[4], 'reset', ARGV[5], 'created', ARGV[6], 'version', ARGV[7], 'persisted', ARGV[7], 'pbalance', ARGV[3])\n" +
+        "redis.call('EXPIRE', KEYS[1], ARGV[8])\n" +
+        "redis.call('SADD', KEYS[2], ARGV[1])\n" +
+        "return 1");
+
+    /** 检查并扣减：负增量使余额小于 0 时不修改 */
+    private static final Script APPLY_DELTA = new Script(
+        "local balance = redis.call('HGET', KEYS[1], 'balance')\n" +
+        "if not balance then return {'missing'} end\n" +
+        "local delta = tonumber(ARGV[2])\n" +
+        "local status = 'applied'\n" +
+        "if delta < 0 and tonumber(balance) + delta < 0 then\n" +
+        "  status = 'insufficient'\n" +
+        "else\n" +
+        "  redis.call('HINCRBY', KEYS[1], 'balance', ARGV[2])\n" +
+        "  redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+        "  redis.call('HSET', KEYS[1], 'name', ARGV[3], 'daily', ARGV[4], 'reset', ARGV[5])\n" +
+        "  redis.call('PERSIST', KEYS[1])\n" +
+        "  redis.call('SADD', KEYS[2], ARGV[1])\n" +
+        "end\n" +
+        "local result = redis.call('HGETALL', KEYS[1])\n" +
+        "table.insert(result, 1, status)\n" +
+        "return result");
+
+    /**
+     * 写库提交后记录数据库状态：冲突处理叠加的差额计入缓存余额；版本只增不减，缓存版本不低于数据库版本；
+     * 不再待写库时恢复过期时间
+     */
+    private static final Script MARK_PERSISTED = new Script(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+        "if tonumber(ARGV[4]) ~= 0 then\n" +
+        "  redis.call('HINCRBY', KEYS[1], 'balance', ARGV[4])\n" +
+        "  redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+        "end\n" +
+        "local persisted = redis.call('HGET', KEYS[1], 'persisted')\n" +
+        "if not persisted or tonumber(persisted) <= tonumber(ARGV[2]) then\n" +
+        "  redis.call('HSET', KEYS[1], 'persisted', ARGV[2], 'pbalance', ARGV[3])\n" +
+        "  if tonumber(redis.call('HGET', KEYS[1], 'version')) < tonumber(ARGV[2]) then\n" +
+        "    redis.call('HSET', KEYS[1], 'version', ARGV[2])\n" +
+        "  end\n" +
+        "end\n" +
+        "if redis.call('SISMEMBER', KEYS[2], ARGV[1]) == 0 then\n" +
+        "  redis.call('EXPIRE', KEYS[1], ARGV[5])\n" +
+        "end\n" +
+        "return 1");
+
+    /** 随机抽查索引成员，移除缓存已过期的账户 */
+    private static final Script PRUNE_INDEX = new Script(
+        "local sample = redis.call('SRANDMEMBER', KEYS[1], ARGV[1])\n" +
+        "local removed = 0\n" +
+        "for _, id in ipairs(sample) do\n" +
+        "  if redis.call('EXISTS', ARGV[2] .. id) == 0 then\n" +
+        "    redis.call('SREM', KEYS[1], id)\n" +
+        "    removed = removed + 1\n" +
+        "  end\n" +
+        "end\n" +
+        "return removed");
+
+    /** 租约持有者续约，无人持有时获取；换手时上一个持有者写库中的账户放回待写库集合 */
+    private static final Script ACQUIRE_LEASE = new Script(
+        "local owner = redis.call('GET', KEYS[1])\n" +
+        "if owner == ARGV[1] then\n" +
+        "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+        "  return 1\n" +
+        "end\n" +
+        "if not owner then\n" +
+        "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+        "  local last = redis.call('GET', KEYS[2])\n" +
+        "  if last and last ~= ARGV[1] then\n" +
+        "    local inflight = ARGV[3] .. last\n" +
+        "    redis.call('SUNIONSTORE', KEYS[3], KEYS[3], inflight)\n" +
+        "    redis.call('DEL', inflight)\n" +
+        "  end\n" +
+        "  redis.call('SET', KEYS[2], ARGV[1])\n" +
+        "  return 1\n" +
+        "end\n" +
+        "return 0");
+
+    /** 随机认领最多 ARGV[1] 个待写库账户，逐个 SMOVE 到写库中集合，并登记本服务器 */
+    private static final Script CLAIM_DIRTY = new Script(
+        "redis.call('SADD', KEYS[3], ARGV[2])\n" +
+        "local claimed = redis.call('SRANDMEMBER', KEYS[1], ARGV[1])\n" +
+        "for _, id in ipairs(claimed) do\n" +
+        "  redis.call('SMOVE', KEYS[1], KEYS[2], id)\n" +
+        "end\n" +
+        "return claimed");
+
+    private static final Script RELEASE_DIRTY = new Script(
+        "for _, id in ipairs(ARGV) do\n" +
+        "  redis.call('SMOVE', KEYS[1], KEYS[2], id)\n" +
+        "end\n" +
+        "return #ARGV");
+
+    private static final Script RECOVER_IN_FLIGHT = new Script(
+        "local count = redis.call('SCARD', KEYS[1])\n" +
+        "if count > 0 then\n" +
+        "  redis.call('SUNIONSTORE', KEYS[2], KEYS[2], KEYS[1])\n" +
+        "  redis.call('DEL', KEYS[1])\n" +
+        "end\n" +
+        "return count");
+
+    /** 删除不在待写库集合、也不在任何服务器写库中集合的缓存账户，返回保留的账户数 */
+    private static final Script INVALIDATE_ALL = new Script(
+        "local servers = redis.call('SMEMBERS', KEYS[3])\n" +
+        "local members = redis.call('SMEMBERS', KEYS[1])\n" +
+        "local kept = 0\n" +
+        "for _, id in ipairs(members) do\n" +
+        "  local pending = redis.call('SISMEMBER', KEYS[2], id) == 1\n" +
+        "  if not pending then\n" +
+        "    for _, server in ipairs(servers) do\n" +
+        "      if redis.call('SISMEMBER', ARGV[2] .. server, id) == 1 then\n" +
+        "        pending = true\n" +
+        "        break\n" +
+        "      end\n" +
+        "    end\n" +
+        "  end\n" +
+        "  if pending then\n" +
+        "    kept = kept + 1\n" +
+        "  else\n" +
+        "    redis.call('DEL', ARGV[1] .. id)\n" +
+        "    redis.call('SREM', KEYS[1], id)\n" +
+        "  end\n" +
+        "end\n" +
+        "return kept");
+
+    private final JedisPool jedisPool;
+    private final String accountPrefix;
+    private final String dirtyKey;
+    private final String indexKey;
+    private final String writerKey;
+    private final String lastWriterKey;
+    private final String inFlightPrefix;
+    /** 认领过待写库账户的服务器，清空缓存时检查它们的写库中集合 */
+    private final String inFlightServersKey;
+    private final int scale;
+    private final String ttlSeconds;
+
+    /**
+     * @param scale 货币小数位数，余额以该精度的整数保存
+     */
+    public RedisAccountStore(JedisPool jedisPool, String keyPrefix, int scale, long ttlSeconds) {
+        this.jedisPool = jedisPool;
+        this.accountPrefix = keyPrefix + "account:";
+        this.dirtyKey = keyPrefix + "account-dirty";
+        this.indexKey = keyPrefix + "account-index";
+        this.writerKey = keyPrefix + "account-writer";
+        this.lastWriterKey = keyPrefix + "account-writer-last";
+        this.inFlightPrefix = keyPrefix + "account-inflight:";
+        this.inFlightServersKey = keyPrefix + "account-inflight-servers";
+        this.scale = scale;
+        this.ttlSeconds = String.valueOf(Math.max(60L, ttlSeconds));
+    }
+
+    /**
+     * 按同步配置创建独立的连接池，与消息同步的连接池互不影响（同步重载时不会断开缓存）
+     */
+    public static RedisAccountStore create(DatabaseConfig config, int scale) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(16);
+        poolConfig.setMaxIdle(8);
+        poolConfig.setMinIdle(1);
+        poolConfig.setTestWhileIdle(true);
+
+        String password = config.getRedisPassword();
+        JedisPool pool = password != null && !password.isEmpty()
+            ? new JedisPool(poolConfig, config.getRedisHost(), config.getRedisPort(), 2000, password)
+            : new JedisPool(poolConfig, config.getRedisHost(), config.getRedisPort(), 2000);
+        return new RedisAccountStore(pool, config.getAccountCacheKeyPrefix(), scale, config.getAccountCacheTtlSeconds());
+    }
+
+    @Override
+    public StoredAccount load(UUID uuid) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Map<String, String> fields = jedis.hgetAll(accountPrefix + uuid);
+            return fields == null || fields.isEmpty() ? null : fromFields(uuid, fields);
+        }
+    }
+
+    @Override
+    public void putIfAbsent(StoredAccount account) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            PUT_IF_ABSENT.run(jedis, List.of(accountPrefix + account.getUuid(), indexKey), accountArgs(account));
+        }
+    }
+
+    @Override
+    public StoredAccount saveIfNewer(StoredAccount account) {
+        List<String> args = accountArgs(account);
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = SAVE_IF_NEWER.run(jedis,
+                List.of(accountPrefix + account.getUuid(), dirtyKey, indexKey), args);
+            if (!(result instanceof List<?> list) || list.isEmpty()) {
+                return null;
+            }
+            return fromFields(account.getUuid(), toMap(list, 0));
+        }
+    }
+
+    @Override
+    public DeltaResult applyDelta(UUID uuid, BigDecimal delta, String playerName,
+                                  BigDecimal dailyIncome, long lastIncomeReset) {
+        List<String> args = List.of(uuid.toString(), String.valueOf(toUnits(delta)), playerName,
+            dailyIncome.toPlainString(), String.valueOf(lastIncomeReset));
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<?> result = (List<?>) APPLY_DELTA.run(jedis, List.of(accountPrefix + uuid, dirtyKey), args);
+            String status = String.valueOf(result.get(0));
+            if ("missing".equals(status)) {
+                return new DeltaResult(DeltaStatus.MISSING, null);
+            }
+            StoredAccount state = fromFields(uuid, toMap(result, 1));
+            return new DeltaResult("applied".equals(status) ? DeltaStatus.APPLIED : DeltaStatus.INSUFFICIENT, state);
+        }
+    }
+
+    @Override
+    public boolean tryAcquireWriter(String serverId, long leaseMs) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = ACQUIRE_LEASE.run(jedis, List.of(writerKey, lastWriterKey, dirtyKey),
+                List.of(serverId, String.valueOf(leaseMs), inFlightPrefix));
+            return result instanceof Long value && value == 1L;
+        }
+    }
+
+    @Override
+    public List<UUID> claimDirty(String serverId, int max) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<?> claimed = (List<?>) CLAIM_DIRTY.run(jedis,
+                List.of(dirtyKey, inFlightPrefix + serverId, inFlightServersKey), List.of(String.valueOf(max), serverId));
+            List<UUID> result = new ArrayList<>(claimed.size());
+            for (Object member : claimed) {
+                result.add(UUID.fromString(String.valueOf(member)));
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void markPersisted(UUID uuid, long persistedVersion, BigDecimal persistedBalance, BigDecimal adjustment) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            MARK_PERSISTED.run(jedis, List.of(accountPrefix + uuid, dirtyKey),
+                List.of(uuid.toString(), String.valueOf(persistedVersion), String.valueOf(toUnits(persistedBalance)),
+                    String.valueOf(toUnits(adjustment)), ttlSeconds));
+        }
+    }
+
+    @Override
+    public void ackDirty(String serverId, Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return;
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.srem(inFlightPrefix + serverId, toMembers(uuids));
+        }
+    }
+
+    @Override
+    public void releaseDirty(String serverId, Collection<UUID> uuids) {
+        if (uuids.isEmpty()) return;
+        try (Jedis jedis = jedisPool.getResource()) {
+            RELEASE_DIRTY.run(jedis, List.of(inFlightPrefix + serverId, dirtyKey), List.of(toMembers(uuids)));
+        }
+    }
+
+    @Override
+    public int recoverInFlight(String serverId) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = RECOVER_IN_FLIGHT.run(jedis, List.of(inFlightPrefix + serverId, dirtyKey), List.of());
+            return result instanceof Long value ? value.intValue() : 0;
+        }
+    }
+
+    private static String[] toMembers(Collection<UUID> uuids) {
+        String[] members = new String[uuids.size()];
+        int i = 0;
+        for (UUID uuid : uuids) {
+            members[i++] = uuid.toString();
+        }
+        return members;
+    }
+
+    @Override
+    public int invalidateAll() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = INVALIDATE_ALL.run(jedis, List.of(indexKey, dirtyKey, inFlightServersKey),
+                List.of(accountPrefix, inFlightPrefix));
+            return result instanceof Long value ? value.intValue() : 0;
+        }
+    }
+
+    @Override
+    public int pruneIndex(int sample) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = PRUNE_INDEX.run(jedis, List.of(indexKey), List.of(String.valueOf(sample), accountPrefix));
+            return result instanceof Long value ? value.intValue() : 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!jedisPool.isClosed()) {
+            jedisPool.close();
+        }
+    }
+
+    private List<String> accountArgs(StoredAccount account) {
+        return List.of(
+            account.getUuid().toString(),
+            account.getPlayerName(),
+            String.valueOf(toUnits(account.getBalance())),
+            account.getDailyIncome().toPlainString(),
+            String.valueOf(account.getLastIncomeReset()),
+            String.valueOf(account.getCreatedAt()),
+            String.valueOf(account.getVersion()),
+            ttlSeconds
+        );
+    }
+
+    private long toUnits(BigDecimal amount) {
+        return amount.setScale(scale, RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+
+    private StoredAccount fromFields(UUID uuid, Map<String, String> fields) {
+        String persisted = fields.get("persisted");
+        String persistedBalance = fields.get("pbalance");
+        return new StoredAccount(
+            uuid,
+            fields.get("name"),
+            BigDecimal.valueOf(Long.parseLong(fields.get("balance")), scale),
+            new BigDecimal(fields.get("daily")),
+            Long.parseLong(fields.get("reset")),
+            Long.parseLong(fields.get("created")),
+            Long.parseLong(fields.get("version")),
+            persisted != null ? Long.parseLong(persisted) : -1L,
+            persistedBalance != null ? BigDecimal.valueOf(Long.parseLong(persistedBalance), scale) : null
+        );
+    }
+
+    /**
+     * HGETALL 在脚本中返回扁平的 [field, value, ...] 列表
+     */
+    private static Map<String, String> toMap(List<?> flat, int offset) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = offset; i + 1 < flat.size(); i += 2) {
+            map.put(String.valueOf(flat.get(i)), String.valueOf(flat.get(i + 1)));
+        }
+        return map;
+    }
+
+    /**
+     * Lua 脚本：首次执行时 SCRIPT LOAD，之后以 EVALSHA 只发送摘要；Redis 重启丢失脚本缓存时退回 EVAL 并重新加载
+     */
+    private static final class Script {
+        private final String source;
+        private volatile String sha;
+
+        Script(String source) {
+            this.source = source;
+        }
+
+        Object run(Jedis jedis, List<String> keys, List<String> args) {
+            String current = sha;
+            if (current == null) {
+                current = jedis.scriptLoad(source);
+                sha = current;
+            }
+            try {
+                return jedis.evalsha(current, keys, args);
+            } catch (RuntimeException e) {
+                if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                    throw e;
+                }
+                sha = null;
+                return jedis.eval(source, keys, args);
+            }
+        }
+    }
+}
@@ -3,22 +3,22 @@ package com.oolonghoo.wooeco.sync;
 import com.oolonghoo.wooeco.WooEco;
 import com.oolonghoo.wooeco.config.DatabaseConfig;
 import com.oolonghoo.wooeco.model.PlayerAccount;
-import com.oolonghoo.wooeco.util.SchedulerUtils;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
-import redis.clients.jedis.JedisPubSub;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Redis 跨服同步管理器
+ * 发送端按 sync.wire-format 使用二进制（默认）或文本格式，接收端两种格式都接受，便于滚动升级
+ * 开启 sync.delta 时余额变动以带操作 ID 的增量发布，接收端按操作 ID 去重后累加
  * 
  */
 public class RedisSyncManager {
@@ -26,17 +26,24 @@ public class RedisSyncManager {
     private final WooEco plugin;
     private final DatabaseConfig config;
     
+    /** 跨重载保留，更换密钥后旧密钥在宽限期内仍可验签 */
+    private final SyncSigner signer;
+    
     private JedisPool jedisPool;
-    private JedisPubSub subscriber;
+    private volatile RedisSyncPublisher publisher;
+    private BinaryJedisPubSub subscriber;
     private Thread subscribeThread;
     private String serverId;
     private String channel;
+    private byte[] channelBytes;
+    private volatile SeenOperations seenOperations;
     
     private volatile boolean running = false;
     
     public RedisSyncManager(WooEco plugin) {
         this.plugin = plugin;
         this.config = plugin.getDatabaseConfig();
+        this.signer = new SyncSigner(plugin);
     }
     
     public void initialize() {
@@ -46,6 +53,9 @@ public class RedisSyncManager {
         
         this.serverId = config.getServerId();
         this.channel = config.getRedisChannel();
+        this.channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        signer.updateKey(config.getRedisAuthKey(), config.getRedisAuthKeyGraceSeconds() * 1000L);
+        this.seenOperations = new SeenOperations(config.getDeltaSeenCapacity());
         
         try {
             JedisPoolConfig poolConfig = new JedisPoolConfig();
@@ -66,6 +76,8 @@ public class RedisSyncManager {
                 jedisPool = new JedisPool(poolConfig, config.getRedisHost(), config.getRedisPort(), 2000);
             }
             
+            publisher = new RedisSyncPublisher(plugin, jedisPool, channelBytes, this::encodeBatch,
+                config.getPublishMaxBatch(), config.getPublishMaxDelayMs());
             running = true;
             startSubscriber();
             
@@ -76,9 +88,9 @@ public class RedisSyncManager {
     }
     
     private void startSubscriber() {
-        subscriber = new JedisPubSub() {
+        subscriber = new BinaryJedisPubSub() {
             @Override
-            public void onMessage(String channel, String message) {
+            public void onMessage(byte[] channel, byte[] message) {
                 try {
                     processMessage(message);
                 } catch (Exception e) {
@@ -90,7 +102,7 @@ public class RedisSyncManager {
         subscribeThread = new Thread(() -> {
             while (running && !Thread.currentThread().isInterrupted()) {
                 try (Jedis jedis = jedisPool.getResource()) {
-                    jedis.subscribe(subscriber, channel);
+                    jedis.subscribe(subscriber, channelBytes);
                 } catch (Exception e) {
                     if (running) {
                         plugin.getLogger().warning("Redis 订阅断开，正在重连...");
@@ -107,7 +119,12 @@ public class RedisSyncManager {
         subscribeThread.start();
     }
     
-    public void publishBalanceUpdate(UUID uuid, String playerName, BigDecimal newBalance) {
+    /**
+     * 发布余额变动
+     * 
+     * @param version 变动后的账户版本，接收方只应用比本地更新的版本；0 表示未知（批量 SQL 修改），接收方直接覆盖
+     */
+    public void publishBalanceUpdate(UUID uuid, String playerName, BigDecimal newBalance, long version) {
         if (!running || jedisPool == null) return;
         
         SyncMessage message = new SyncMessage(
@@ -115,9 +132,35 @@ public class RedisSyncManager {
             serverId,
             uuid,
             playerName,
-            newBalance.toPlainString(),
-            BigDecimal.ZERO.toPlainString(),
-            System.currentTimeMillis()
+            newBalance,
+            BigDecimal.ZERO,
+            System.currentTimeMillis(),
+            version
+        );
+        
+        publish(message);
+    }
+    
+    /**
+     * 发布本服务器产生的余额变动：开启增量同步时发布增量，否则发布最终余额
+     */
+    public void publishBalanceChange(UUID uuid, String playerName, BigDecimal newBalance, BigDecimal delta, long version) {
+        if (!config.isDeltaSync()) {
+            publishBalanceUpdate(uuid, playerName, newBalance, version);
+            return;
+        }
+        if (!running || jedisPool == null || delta.signum() == 0) return;
+        
+        SyncMessage message = new SyncMessage(
+            SyncType.BALANCE_DELTA,
+            serverId,
+            uuid,
+            playerName,
+            delta,
+            BigDecimal.ZERO,
+            System.currentTimeMillis(),
+            version,
+            UUID.randomUUID()
         );
         
         publish(message);
@@ -131,42 +174,50 @@ public class RedisSyncManager {
             serverId,
             uuid,
             null,
-            BigDecimal.ZERO.toPlainString(),
-            BigDecimal.ZERO.toPlainString(),
-            System.currentTimeMillis()
+            BigDecimal.ZERO,
+            BigDecimal.ZERO,
+            System.currentTimeMillis(),
+            0L
         );
         
         publish(message);
     }
     
+    /**
+     * 交给发布线程合并后批量发布，不在调用线程访问 Redis
+     */
     private void publish(SyncMessage message) {
-        SchedulerUtils.runAsync(plugin, () -> {
-            try (Jedis jedis = jedisPool.getResource()) {
-                jedis.publish(channel, serialize(message));
-            } catch (Exception e) {
-                plugin.getLogger().warning("发布同步消息失败: " + e.getMessage());
-            }
-        });
+        RedisSyncPublisher current = publisher;
+        if (current != null) {
+            current.submit(message);
+        }
     }
     
-    private void processMessage(String message) {
+    private void processMessage(byte[] message) {
+        List<SyncMessage> messages;
         try {
-            SyncMessage sync = deserialize(message);
-            
+            messages = decode(message);
+        } catch (Exception e) {
+            plugin.getLogger().warning("解析同步消息失败: " + e.getMessage());
+            return;
+        }
+        
+        for (SyncMessage sync : messages) {
             if (sync.getServerId().equals(serverId)) {
-                return;
+                continue;
             }
             
             switch (sync.getType()) {
                 case BALANCE_UPDATE:
                     handleBalanceUpdate(sync);
                     break;
+                case BALANCE_DELTA:
+                    handleBalanceDelta(sync);
+                    break;
                 case DAILY_INCOME_RESET:
                     handleDailyIncomeReset(sync);
                     break;
             }
-        } catch (Exception e) {
-            plugin.getLogger().warning("解析同步消息失败: " + e.getMessage());
         }
     }
     
@@ -174,12 +225,54 @@ public class RedisSyncManager {
         UUID uuid = sync.getUuid();
         PlayerAccount account = plugin.getPlayerDataManager().getOnlineAccount(uuid);
         
-        if (account != null) {
-            BigDecimal newBalance = plugin.getCurrencyConfig().formatInput(new BigDecimal(sync.getBalance()));
-            synchronized (account) {
-                account.setBalance(newBalance);
+        BigDecimal newBalance = plugin.getCurrencyConfig().formatInput(sync.getBalance());
+        if (sync.getVersion() > 0) {
+            // 带版本的消息：乱序或重复到达的旧版本直接丢弃
+            if (account == null && plugin.getPlayerDataManager().getOfflineCache() != null) {
+                account = plugin.getPlayerDataManager().getOfflineCache().get(uuid);
             }
-            plugin.getLogger().fine("从 Redis 同步余额: " + sync.getPlayerName() + " -> " + newBalance.toPlainString());
+            if (account != null && !account.applyRemoteBalance(newBalance, sync.getVersion())) {
+                if (sync.getVersion() == account.getVersion() && newBalance.compareTo(account.getBalance()) != 0) {
+                    // 同一版本两边余额不同，说明两台服务器从同一版本各自修改过，以数据库为准
+                    plugin.getDebugManager().incrementCounter("sync_version_diverged");
+                    plugin.getPlayerDataManager().refreshBalanceFromDatabase(account);
+                    return;
+                }
+                plugin.getDebugManager().incrementCounter("sync_stale_ignored");
+                return;
+            }
+            plugin.getLogger().fine("从 Redis 同步余额: " + sync.getPlayerName() + " -> " + newBalance.toPlainString() + " (v" + sync.getVersion() + ")");
+        } else if (account != null) {
+            // 旧版本服务器或批量操作发出的消息不带版本，以数据库中的余额与版本为准
+            plugin.getPlayerDataManager().refreshBalanceFromDatabase(account);
+            return;
+        } else {
+            // 离线缓存中的余额已过期，下次访问时重新加载
+            plugin.getPlayerDataManager().invalidateOfflineAccount(uuid);
+        }
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onBalanceChanged(uuid, sync.getPlayerName(), newBalance);
+        }
+    }
+    
+    /**
+     * 按操作 ID 去重后把增量原子累加到本服务器缓存的账户；
+     * 未缓存或仍在加载时暂存，发布方可能尚未写库，由加载流程等待写库或在加载后补记
+     */
+    private void handleBalanceDelta(SyncMessage sync) {
+        if (sync.getOperationId() == null || !seenOperations.add(sync.getOperationId())) {
+            plugin.getDebugManager().incrementCounter("sync_delta_duplicate");
+            return;
+        }
+        PlayerAccount account = plugin.getPlayerDataManager().applyRemoteDelta(sync.getUuid(), sync.getBalance());
+        if (account == null) {
+            plugin.getDebugManager().incrementCounter("sync_delta_buffered");
+            return;
+        }
+        plugin.getDebugManager().incrementCounter("sync_delta_applied");
+        plugin.getLogger().fine("从 Redis 同步余额增量: " + sync.getPlayerName() + " " + sync.getBalance().toPlainString());
+        if (plugin.getLeaderboardManager() != null) {
+            plugin.getLeaderboardManager().onAccountChanged(account);
         }
     }
     
@@ -189,33 +282,69 @@ public class RedisSyncManager {
         
         if (account != null) {
             account.setDailyIncome(BigDecimal.ZERO);
+            if (plugin.getPlaceholderRenderCache() != null) {
+                plugin.getPlaceholderRenderCache().invalidate(uuid);
+            }
+            if (plugin.getEconomySnapshotManager() != null) {
+                plugin.getEconomySnapshotManager().markChanged(uuid);
+            }
+        } else {
+            plugin.getPlayerDataManager().invalidateOfflineAccount(uuid);
+        }
+    }
+    
+    /**
+     * 编码一批待发布的消息：二进制格式整批一帧，文本格式每条一条消息
+     */
+    List<byte[]> encodeBatch(List<SyncMessage> messages) {
+        if (config.isBinaryWireFormat()) {
+            return List.of(SyncCodec.encode(serverId, messages, signer));
+        }
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        for (SyncMessage message : messages) {
+            payloads.add(serialize(message).getBytes(StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+    
+    /**
+     * 按首字节识别格式后解码，兼容升级前服务器发送的文本消息
+     */
+    List<SyncMessage> decode(byte[] data) {
+        if (SyncCodec.isBinary(data)) {
+            return SyncCodec.decode(data, signer);
         }
+        return List.of(deserialize(new String(data, StandardCharsets.UTF_8)));
     }
     
     /**
      * 使用安全的分隔符格式序列化，避免 Java 反序列化漏洞 (RCE)
-     * 格式: type|serverId|uuid|playerName|balance|dailyIncome|timestamp|hmac
+     * 格式: type|serverId|uuid|playerName|balance|dailyIncome|timestamp|version[|operationId]|hmac
+     * version 追加在旧格式之后，升级前的服务器按旧字段解析时会忽略它；operationId 仅增量消息携带
      */
-    private String serialize(SyncMessage message) {
+    String serialize(SyncMessage message) {
         String playerName = message.getPlayerName() != null ? message.getPlayerName().replace("|", "_") : "";
         String payload = message.getType().name() + "|" +
                 message.getServerId().replace("|", "_") + "|" +
                 message.getUuid() + "|" +
                 playerName + "|" +
-                message.getBalance() + "|" +
-                message.getDailyIncome() + "|" +
-                message.getTimestamp();
-        String authKey = config.getRedisAuthKey();
-        if (authKey != null && !authKey.isEmpty()) {
-            payload += "|" + hmacSha256(payload, authKey);
+                message.getBalance().toPlainString() + "|" +
+                message.getDailyIncome().toPlainString() + "|" +
+                message.getTimestamp() + "|" +
+                message.getVersion();
+        if (message.getOperationId() != null) {
+            payload += "|" + message.getOperationId();
+        }
+        if (signer.isEnabled()) {
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            payload += "|" + Base64.getEncoder().encodeToString(signer.sign(bytes, 0, bytes.length));
         }
         return payload;
     }
     
-    private SyncMessage deserialize(String data) {
+    SyncMessage deserialize(String data) {
         String[] parts = data.split("\\|", -1);
-        String authKey = config.getRedisAuthKey();
-        boolean hasAuth = authKey != null && !authKey.isEmpty();
+        boolean hasAuth = signer.isEnabled();
         int expectedParts = hasAuth ? 8 : 7;
         
         if (parts.length < expectedParts) {
@@ -223,10 +352,14 @@ public class RedisSyncManager {
         }
         
         if (hasAuth) {
-            String payload = data.substring(0, data.lastIndexOf('|'));
-            String signature = parts[parts.length - 1];
-            String expected = hmacSha256(payload, authKey);
-            if (!MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8))) {
+            byte[] payload = data.substring(0, data.lastIndexOf('|')).getBytes(StandardCharsets.UTF_8);
+            byte[] signature;
+            try {
+                signature = Base64.getDecoder().decode(parts[parts.length - 1]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("同步消息签名验证失败");
+            }
+            if (!signer.verify(payload, 0, payload.length, signature)) {
                 throw new IllegalArgumentException("同步消息签名验证失败");
             }
         }
@@ -245,21 +378,21 @@ public class RedisSyncManager {
             throw new IllegalArgumentException("无效的 UUID: " + parts[2]);
         }
         String playerName = parts[3].isEmpty() ? null : parts[3];
-        String balance = parts[4];
-        String dailyIncome = parts[5];
+        BigDecimal balance = new BigDecimal(parts[4]);
+        BigDecimal dailyIncome = new BigDecimal(parts[5]);
         long timestamp = Long.parseLong(parts[6]);
-        return new SyncMessage(type, serverId, uuid, playerName, balance, dailyIncome, timestamp);
-    }
-    
-    private String hmacSha256(String data, String key) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("HMAC 计算失败", e);
+        // 升级前的服务器不发送版本字段
+        int fields = hasAuth ? parts.length - 1 : parts.length;
+        long version = fields > 7 ? Long.parseLong(parts[7]) : 0L;
+        UUID operationId = null;
+        if (fields > 8) {
+            try {
+                operationId = UUID.fromString(parts[8]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("无效的操作 ID: " + parts[8]);
+            }
         }
+        return new SyncMessage(type, serverId, uuid, playerName, balance, dailyIncome, timestamp, version, operationId);
     }
     
     public void reload() {
@@ -278,6 +411,11 @@ public class RedisSyncManager {
             subscribeThread.interrupt();
         }
         
+        if (publisher != null) {
+            publisher.shutdown();
+            publisher = null;
+        }
+        
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.close();
         }
@@ -289,9 +427,19 @@ public class RedisSyncManager {
         return running;
     }
     
+    public int getSeenOperationCount() {
+        SeenOperations seen = seenOperations;
+        return seen != null ? seen.size() : 0;
+    }
+    
+    public RedisSyncPublisher getPublisher() {
+        return publisher;
+    }
+    
     public enum SyncType {
         BALANCE_UPDATE,
-        DAILY_INCOME_RESET
+        DAILY_INCOME_RESET,
+        BALANCE_DELTA
     }
     
     public static class SyncMessage {
@@ -299,12 +447,23 @@ public class RedisSyncManager {
         private final String serverId;
         private final UUID uuid;
         private final String playerName;
-        private final String balance;
-        private final String dailyIncome;
+        private final BigDecimal balance;
+        private final BigDecimal dailyIncome;
         private final long timestamp;
+        private final long version;
+        /** 增量消息的操作 ID，用于接收端去重；其他消息为 null */
+        private final UUID operationId;
+        
+        public SyncMessage(SyncType type, String serverId, UUID uuid, String playerName,
+                          BigDecimal balance, BigDecimal dailyIncome, long timestamp, long version) {
+            this(type, serverId, uuid, playerName, balance, dailyIncome, timestamp, version, null);
+        }
         
+        /**
+         * @param balance 增量消息中为余额增量
+         */
         public SyncMessage(SyncType type, String serverId, UUID uuid, String playerName,
-                          String balance, String dailyIncome, long timestamp) {
+                          BigDecimal balance, BigDecimal dailyIncome, long timestamp, long version, UUID operationId) {
             this.type = type;
             this.serverId = serverId;
             this.uuid = uuid;
@@ -312,14 +471,18 @@ public class RedisSyncManager {
             this.balance = balance;
             this.dailyIncome = dailyIncome;
             this.timestamp = timestamp;
+            this.version = version;
+            this.operationId = operationId;
         }
         
         public SyncType getType() { return type; }
         public String getServerId() { return serverId; }
         public UUID getUuid() { return uuid; }
         public String getPlayerName() { return playerName; }
-        public String getBalance() { return balance; }
-        public String getDailyIncome() { return dailyIncome; }
+        public BigDecimal getBalance() { return balance; }
+        public BigDecimal getDailyIncome() { return dailyIncome; }
         public long getTimestamp() { return timestamp; }
+        public long getVersion() { return version; }
+        public UUID getOperationId() { return operationId; }
     }
 }
@@ -0,0 +1,189 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.sync.RedisSyncManager.SyncMessage;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Redis 同步消息发布器
+ * 余额变动只入队，由单个发布线程每隔几毫秒取出一批，
+ * 同一玩家同类型的多条消息只保留账户版本（其次时间戳）最新的一条；增量消息各自独立，不合并，再通过 Pipeline 一次往返全部发布
+ * 二进制格式下整批编码为一条多记录消息，文本格式下每条记录一条消息
+ */
+public class RedisSyncPublisher {
+
+    private final WooEco plugin;
+    private final JedisPool jedisPool;
+    private final byte[] channel;
+    private final Function<List<SyncMessage>, List<byte[]>> encoder;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<SyncMessage> queue = new LinkedBlockingQueue<>();
+    private final Thread publisherThread;
+
+    private volatile boolean running = true;
+    private volatile int lastBatchSize;
+    private volatile int peakBatchSize;
+
+    public RedisSyncPublisher(WooEco plugin, JedisPool jedisPool, byte[] channel,
+                              Function<List<SyncMessage>, List<byte[]>> encoder, int maxBatch, long maxDelayMs) {
+        this.plugin = plugin;
+        this.jedisPool = jedisPool;
+        this.channel = channel;
+        this.encoder = encoder;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxDelayMs));
+
+        this.publisherThread = new Thread(this::runLoop, "WooEco-Redis-Publisher");
+        this.publisherThread.setDaemon(true);
+        this.publisherThread.start();
+    }
+
+    public void submit(SyncMessage message) {
+        if (!running) return;
+        queue.add(message);
+        plugin.getDebugManager().incrementCounter("redis_publish_enqueued");
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getPeakBatchSize() {
+        return peakBatchSize;
+    }
+
+    /**
+     * 停止发布线程，并在连接池关闭前发布队列中剩余的消息
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            publisherThread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<SyncMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            publishBatch(remaining);
+        }
+    }
+
+    private void runLoop() {
+        List<SyncMessage> batch = new ArrayList<>();
+        while (running) {
+            try {
+                SyncMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+
+                // 等待最多 maxDelay 让同一时段的变动合并到同一批次
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    SyncMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                publishBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<SyncMessage> batch) {
+        List<SyncMessage> coalesced = coalesce(batch);
+        lastBatchSize = coalesced.size();
+        if (coalesced.size() > peakBatchSize) {
+            peakBatchSize = coalesced.size();
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (byte[] payload : encoder.apply(coalesced)) {
+                pipeline.publish(channel, payload);
+            }
+            pipeline.sync();
+            plugin.getDebugManager().incrementCounter("redis_publish_batch");
+            plugin.getDebugManager().incrementCounter("redis_publish_sent", coalesced.size());
+        } catch (Exception e) {
+            plugin.getLogger().warning("发布同步消息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 同一玩家同类型的消息只保留版本最新的一条；版本相同（均未知）时比较时间戳，再相同时以后入队的为准
+     */
+    private static List<SyncMessage> coalesce(List<SyncMessage> batch) {
+        Map<Key, SyncMessage> latest = new LinkedHashMap<>();
+        for (SyncMessage message : batch) {
+            latest.merge(new Key(message.getType(), message.getUuid(), message.getOperationId()), message,
+                (old, candidate) -> isNewer(candidate, old) ? candidate : old);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static boolean isNewer(SyncMessage candidate, SyncMessage old) {
+        if (candidate.getVersion() != old.getVersion()) {
+            return candidate.getVersion() > old.getVersion();
+        }
+        return candidate.getTimestamp() >= old.getTimestamp();
+    }
+
+    private static final class Key {
+        final RedisSyncManager.SyncType type;
+        final UUID uuid;
+        final UUID operationId;
+
+        Key(RedisSyncManager.SyncType type, UUID uuid, UUID operationId) {
+            this.type = type;
+            this.uuid = uuid;
+            this.operationId = operationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return type == other.type && uuid.equals(other.uuid) && Objects.equals(operationId, other.operationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, uuid, operationId);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.oolonghoo.wooeco.sync;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 已应用的增量操作 ID 集合 (线程安全)
+ * 容量有限，超出后按插入顺序淘汰最早的记录；重复投递通常在几毫秒内到达，远小于淘汰窗口
+ */
+final class SeenOperations {
+
+    private final Map<UUID, Boolean> seen;
+
+    SeenOperations(int capacity) {
+        this.seen = new LinkedHashMap<>(Math.min(capacity, 1024) * 2, 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 记录操作 ID
+     *
+     * @return 首次出现时返回 true，重复时返回 false
+     */
+    synchronized boolean add(UUID operationId) {
+        return seen.putIfAbsent(operationId, Boolean.TRUE) == null;
+    }
+
+    synchronized int size() {
+        return seen.size();
+    }
+}
@@ -0,0 +1,113 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 共享账户缓存中保存的账户状态（不可变）
+ */
+public final class StoredAccount {
+
+    private final UUID uuid;
+    private final String playerName;
+    private final BigDecimal balance;
+    private final BigDecimal dailyIncome;
+    private final long lastIncomeReset;
+    private final long createdAt;
+    private final long version;
+    /** 最近一次写库后数据库中的版本，未知时为 -1 */
+    private final long persistedVersion;
+    /** 最近一次写库后数据库中的余额，未知时为 null */
+    private final BigDecimal persistedBalance;
+
+    public StoredAccount(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome,
+                         long lastIncomeReset, long createdAt, long version) {
+        this(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt, version, -1L, null);
+    }
+
+    public StoredAccount(UUID uuid, String playerName, BigDecimal balance, BigDecimal dailyIncome,
+                         long lastIncomeReset, long createdAt, long version,
+                         long persistedVersion, BigDecimal persistedBalance) {
+        this.uuid = uuid;
+        this.playerName = playerName;
+        this.balance = balance;
+        this.dailyIncome = dailyIncome;
+        this.lastIncomeReset = lastIncomeReset;
+        this.createdAt = createdAt;
+        this.version = version;
+        this.persistedVersion = persistedVersion;
+        this.persistedBalance = persistedBalance;
+    }
+
+    /**
+     * 在账户锁内读取一份一致的快照
+     */
+    public static StoredAccount of(PlayerAccount account) {
+        synchronized (account) {
+            // 定点账户的存取款不进入账户锁，先读版本号保证余额不旧于版本号
+            long version = account.getVersion();
+            return new StoredAccount(account.getUuid(), account.getPlayerName(), account.getBalance(),
+                account.getDailyIncome(), account.getLastIncomeReset(), account.getCreatedAt(), version);
+        }
+    }
+
+    /**
+     * 转换为内存账户，缓存中的版本即视为已持久化的版本
+     */
+    public PlayerAccount toAccount() {
+        return new PlayerAccount(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt,
+            System.currentTimeMillis(), version);
+    }
+
+    /**
+     * 转换为写回数据库的账户：以缓存记录的数据库版本为期望版本，与数据库余额的差额为未写入增量，
+     * 数据库被其他途径修改过时由写库的冲突处理叠加差额，而不是以缓存余额覆盖；
+     * 未记录数据库状态（缓存过期后由保存重建）时按未知版本写入
+     */
+    public PlayerAccount toDrainedAccount() {
+        long now = System.currentTimeMillis();
+        if (persistedVersion < 0 || persistedBalance == null) {
+            return new PlayerAccount(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt, now);
+        }
+        return PlayerAccount.recovered(uuid, playerName, balance, dailyIncome, lastIncomeReset, createdAt, now,
+            version, persistedVersion, balance.subtract(persistedBalance));
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public BigDecimal getDailyIncome() {
+        return dailyIncome;
+    }
+
+    public long getLastIncomeReset() {
+        return lastIncomeReset;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPersistedVersion() {
+        return persistedVersion;
+    }
+
+    public BigDecimal getPersistedBalance() {
+        return persistedBalance;
+    }
+}
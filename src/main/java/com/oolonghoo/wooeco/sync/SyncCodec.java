@@ -0,0 +1,262 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.sync.RedisSyncManager.SyncMessage;
+import com.oolonghoo.wooeco.sync.RedisSyncManager.SyncType;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 同步消息二进制编解码
+ * 一帧可包含同一服务器发出的多条记录：
+ * <pre>
+ * 魔数(1) 版本(1) 标志(1) 服务器ID(varint 长度 + UTF-8) 记录数(varint)
+ * 记录: 类型(1) UUID(2 x long) 玩家名(varint 长度+1，0 表示 null) 余额 日收入 时间戳(varint) 账户版本(varint，v2 起) [操作 ID(2 x long)，仅增量记录]
+ * 金额: 0 + 精度(1) + 非标度值(long)，超出 long 范围时为 1 + 精度(zigzag varint) + 字节数(varint) + 补码字节
+ * 标志位 0 置位时帧尾追加 32 字节 HMAC-SHA256，覆盖之前的全部字节
+ * </pre>
+ * 仍可解码 v1 帧（无账户版本，按 0 处理）
+ * 文本格式以枚举名开头（ASCII 大写字母），不会与魔数冲突
+ */
+final class SyncCodec {
+
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 2;
+    private static final byte VERSION_UNVERSIONED_ACCOUNTS = 1;
+
+    private static final int FLAG_SIGNED = 1;
+    private static final int HMAC_LENGTH = SyncSigner.SIGNATURE_LENGTH;
+
+    private static final byte AMOUNT_LONG = 0;
+    private static final byte AMOUNT_BIG = 1;
+
+    private SyncCodec() {
+    }
+
+    static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * 编码一帧；signer 为 null 或未配置密钥时不签名
+     */
+    static byte[] encode(String serverId, List<SyncMessage> messages, SyncSigner signer) {
+        boolean signed = signer != null && signer.isEnabled();
+        Writer out = new Writer(32 + messages.size() * 48 + (signed ? HMAC_LENGTH : 0));
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(signed ? FLAG_SIGNED : 0);
+        out.writeString(serverId);
+        out.writeVarLong(messages.size());
+        for (SyncMessage message : messages) {
+            out.write(typeCode(message.getType()));
+            out.writeLong(message.getUuid().getMostSignificantBits());
+            out.writeLong(message.getUuid().getLeastSignificantBits());
+            out.writeNullableString(message.getPlayerName());
+            out.writeAmount(message.getBalance());
+            out.writeAmount(message.getDailyIncome());
+            out.writeVarLong(message.getTimestamp());
+            out.writeVarLong(message.getVersion());
+            if (message.getType() == SyncType.BALANCE_DELTA) {
+                out.writeLong(message.getOperationId().getMostSignificantBits());
+                out.writeLong(message.getOperationId().getLeastSignificantBits());
+            }
+        }
+        if (signed) {
+            byte[] mac = out.sign(signer);
+            out.write(mac, 0, mac.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码一帧；signer 已配置密钥时要求帧已签名并校验签名
+     */
+    static List<SyncMessage> decode(byte[] data, SyncSigner signer) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data);
+            if (in.get() != MAGIC) {
+                throw new IllegalArgumentException("无效的同步消息格式");
+            }
+            byte version = in.get();
+            if (version != VERSION && version != VERSION_UNVERSIONED_ACCOUNTS) {
+                throw new IllegalArgumentException("不支持的同步消息版本: " + version);
+            }
+            boolean signed = (in.get() & FLAG_SIGNED) != 0;
+
+            if (signer != null && signer.isEnabled()) {
+                if (!signed || data.length < 3 + HMAC_LENGTH) {
+                    throw new IllegalArgumentException("同步消息缺少签名");
+                }
+                int payloadLength = data.length - HMAC_LENGTH;
+                byte[] signature = Arrays.copyOfRange(data, payloadLength, data.length);
+                if (!signer.verify(data, 0, payloadLength, signature)) {
+                    throw new IllegalArgumentException("同步消息签名验证失败");
+                }
+                in.limit(payloadLength);
+            } else if (signed) {
+                in.limit(data.length - HMAC_LENGTH);
+            }
+
+            String serverId = readString(in);
+            int count = (int) readVarLong(in);
+            List<SyncMessage> messages = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                SyncType type = typeOf(in.get());
+                UUID uuid = new UUID(in.getLong(), in.getLong());
+                String playerName = readNullableString(in);
+                BigDecimal balance = readAmount(in);
+                BigDecimal dailyIncome = readAmount(in);
+                long timestamp = readVarLong(in);
+                long accountVersion = version == VERSION ? readVarLong(in) : 0L;
+                UUID operationId = type == SyncType.BALANCE_DELTA ? new UUID(in.getLong(), in.getLong()) : null;
+                messages.add(new SyncMessage(type, serverId, uuid, playerName, balance, dailyIncome, timestamp, accountVersion, operationId));
+            }
+            return messages;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("同步消息长度不足");
+        }
+    }
+
+    private static int typeCode(SyncType type) {
+        return switch (type) {
+            case BALANCE_UPDATE -> 1;
+            case DAILY_INCOME_RESET -> 2;
+            case BALANCE_DELTA -> 3;
+        };
+    }
+
+    private static SyncType typeOf(byte code) {
+        return switch (code) {
+            case 1 -> SyncType.BALANCE_UPDATE;
+            case 2 -> SyncType.DAILY_INCOME_RESET;
+            case 3 -> SyncType.BALANCE_DELTA;
+            default -> throw new IllegalArgumentException("未知的消息类型: " + code);
+        };
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        return readUtf8(in, length);
+    }
+
+    private static String readNullableString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("同步消息长度不足");
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static BigDecimal readAmount(ByteBuffer in) {
+        byte kind = in.get();
+        if (kind == AMOUNT_LONG) {
+            int scale = in.get();
+            return BigDecimal.valueOf(in.getLong(), scale);
+        }
+        if (kind == AMOUNT_BIG) {
+            int scale = (int) zigzagDecode(readVarLong(in));
+            int length = (int) readVarLong(in);
+            if (length <= 0 || length > in.remaining()) {
+                throw new IllegalArgumentException("同步消息长度不足");
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
+        throw new IllegalArgumentException("无效的金额编码: " + kind);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("无效的 varint");
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 带定长 long、varint 与金额编码的字节缓冲
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int size) {
+            super(size);
+        }
+
+        /**
+         * 直接对内部缓冲区签名，不复制已写入的字节
+         */
+        byte[] sign(SyncSigner signer) {
+            return signer.sign(buf, 0, count);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeAmount(BigDecimal value) {
+            BigInteger unscaled = value.unscaledValue();
+            int scale = value.scale();
+            if (unscaled.bitLength() < 64 && scale >= Byte.MIN_VALUE && scale <= Byte.MAX_VALUE) {
+                write(AMOUNT_LONG);
+                write(scale);
+                writeLong(unscaled.longValue());
+                return;
+            }
+            byte[] bytes = unscaled.toByteArray();
+            write(AMOUNT_BIG);
+            writeVarLong(((long) scale << 1) ^ ((long) scale >> 63));
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.WooEco;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * 同步消息 HMAC-SHA256 签名器
+ * 每个密钥只初始化一次原型 Mac，各线程克隆一份缓存在 ThreadLocal 中复用，避免每条消息都查找算法提供者和重新调度密钥；
+ * 更换密钥后旧密钥在宽限期内仍可用于验签，重载期间在途的消息不会被拒绝
+ */
+final class SyncSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    static final int SIGNATURE_LENGTH = 32;
+
+    private final WooEco plugin;
+
+    private volatile KeyState current;
+    private volatile KeyState previous;
+    private volatile long previousExpiresAt;
+
+    SyncSigner(WooEco plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 设置签名密钥，空字符串表示关闭签名；密钥变化时旧密钥保留 graceMs 毫秒用于验签
+     */
+    synchronized void updateKey(String key, long graceMs) {
+        String normalized = key == null || key.isEmpty() ? null : key;
+        KeyState old = current;
+        if (old == null ? normalized == null : old.key.equals(normalized)) {
+            return;
+        }
+        current = normalized != null ? new KeyState(normalized) : null;
+        if (old != null && graceMs > 0) {
+            previousExpiresAt = System.currentTimeMillis() + graceMs;
+            previous = old;
+        } else {
+            previous = null;
+        }
+    }
+
+    boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * 使用当前密钥计算 data[offset, offset + length) 的签名
+     */
+    byte[] sign(byte[] data, int offset, int length) {
+        KeyState state = current;
+        if (state == null) {
+            throw new IllegalStateException("未配置同步消息签名密钥");
+        }
+        long start = System.nanoTime();
+        byte[] signature = state.compute(data, offset, length);
+        record("sync_sign", System.nanoTime() - start);
+        return signature;
+    }
+
+    /**
+     * 依次使用当前密钥和宽限期内的旧密钥验签
+     */
+    boolean verify(byte[] data, int offset, int length, byte[] signature) {
+        KeyState state = current;
+        if (state == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean valid = MessageDigest.isEqual(state.compute(data, offset, length), signature);
+        if (!valid) {
+            KeyState old = previous;
+            if (old != null && System.currentTimeMillis() < previousExpiresAt) {
+                valid = MessageDigest.isEqual(old.compute(data, offset, length), signature);
+                if (valid) {
+                    plugin.getDebugManager().incrementCounter("sync_verify_previous_key");
+                }
+            }
+        }
+        record("sync_verify", System.nanoTime() - start);
+        return valid;
+    }
+
+    private void record(String name, long nanos) {
+        plugin.getDebugManager().incrementCounter(name);
+        plugin.getDebugManager().incrementCounter(name + "_nanos", nanos);
+    }
+
+    private static final class KeyState {
+        final String key;
+        final Mac prototype;
+        final ThreadLocal<Mac> macs;
+
+        KeyState(String key) {
+            this.key = key;
+            try {
+                this.prototype = Mac.getInstance(ALGORITHM);
+                this.prototype.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC 初始化失败", e);
+            }
+            this.macs = ThreadLocal.withInitial(this::newMac);
+        }
+
+        private Mac newMac() {
+            try {
+                synchronized (prototype) {
+                    return (Mac) prototype.clone();
+                }
+            } catch (CloneNotSupportedException e) {
+                // 提供者不支持克隆时退回为每个线程单独初始化一次
+                try {
+                    Mac mac = Mac.getInstance(ALGORITHM);
+                    mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+                    return mac;
+                } catch (GeneralSecurityException ex) {
+                    throw new IllegalStateException("HMAC 初始化失败", ex);
+                }
+            }
+        }
+
+        byte[] compute(byte[] data, int offset, int length) {
+            Mac mac = macs.get();
+            mac.reset();
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.oolonghoo.wooeco.WooEco;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +22,8 @@ public class AsyncUtils {
     private static WooEco plugin;
     private static int defaultTimeout = 3;
     private static ExecutorService executor;
+    /** 经济操作专用线程池，与数据库查询线程池隔离，避免慢查询拖住余额变动 */
+    private static ExecutorService economyExecutor;
     
     public static void initialize(WooEco wooEco) {
         plugin = wooEco;
@@ -37,6 +40,15 @@ public class AsyncUtils {
             t.setDaemon(true);
             return t;
         });
+        int economyPoolSize = plugin.getConfig().getInt("performance.economy-pool-size", 2);
+        if (economyPoolSize < 1) {
+            economyPoolSize = 2;
+        }
+        economyExecutor = Executors.newFixedThreadPool(economyPoolSize, r -> {
+            Thread t = new Thread(r, "WooEco-Economy");
+            t.setDaemon(true);
+            return t;
+        });
     }
     
     public static void reload() {
@@ -47,15 +59,21 @@ public class AsyncUtils {
     }
     
     public static void shutdown() {
-        if (executor != null) {
-            executor.shutdown();
+        // 先关闭经济线程池，其中的任务可能还会向异步线程池提交加载
+        shutdownExecutor(economyExecutor, "经济线程池");
+        shutdownExecutor(executor, "异步线程池");
+    }
+    
+    private static void shutdownExecutor(ExecutorService service, String name) {
+        if (service != null) {
+            service.shutdown();
             try {
-                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                    plugin.getLogger().warning("[WooEco] 异步线程池未在10秒内关闭，强制终止");
-                    executor.shutdownNow();
+                if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("[WooEco] " + name + "未在10秒内关闭，强制终止");
+                    service.shutdownNow();
                 }
             } catch (InterruptedException e) {
-                executor.shutdownNow();
+                service.shutdownNow();
                 Thread.currentThread().interrupt();
             }
         }
@@ -86,6 +104,25 @@ public class AsyncUtils {
         }
     }
     
+    /**
+     * 等待已提交的异步任务，超时或异常时返回默认值
+     */
+    public static <T> T getWithTimeout(CompletableFuture<T> future, T defaultValue) {
+        try {
+            return future.get(defaultTimeout, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().warning("异步操作被中断: " + e.getMessage());
+            return defaultValue;
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.WARNING, "异步操作执行异常: " + e.getMessage(), e.getCause());
+            return defaultValue;
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("异步操作超时 (" + defaultTimeout + "秒)，使用默认值");
+            return defaultValue;
+        }
+    }
+    
     public static void runAsyncWithTimeout(Runnable task, int timeoutSeconds) {
         try {
             CompletableFuture.runAsync(task, executor)
@@ -107,4 +144,11 @@ public class AsyncUtils {
     public static CompletableFuture<Void> runAsync(Runnable task) {
         return CompletableFuture.runAsync(task, executor);
     }
+    
+    /**
+     * 获取经济操作线程池，异步 API 的余额变动都在此执行
+     */
+    public static Executor getEconomyExecutor() {
+        return economyExecutor;
+    }
 }
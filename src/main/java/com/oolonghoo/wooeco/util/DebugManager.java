@@ -1,6 +1,13 @@
 package com.oolonghoo.wooeco.util;
 
 import com.oolonghoo.wooeco.WooEco;
+import com.oolonghoo.wooeco.hook.PlaceholderRenderCache;
+import com.oolonghoo.wooeco.manager.AccountBatchLoader;
+import com.oolonghoo.wooeco.manager.EconomySnapshotManager;
+import com.oolonghoo.wooeco.manager.OfflineAccountCache;
+import com.oolonghoo.wooeco.manager.PeriodIncomeCache;
+import com.oolonghoo.wooeco.manager.SharedAccountCache;
+import com.oolonghoo.wooeco.sync.RedisSyncPublisher;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -162,6 +169,10 @@ public class DebugManager {
         counters.merge(name, 1L, (oldVal, newVal) -> oldVal + newVal);
     }
     
+    public void incrementCounter(String name, long delta) {
+        counters.merge(name, delta, (oldVal, newVal) -> oldVal + newVal);
+    }
+    
     public long getCounter(String name) {
         return counters.getOrDefault(name, 0L);
     }
@@ -272,6 +283,15 @@ public class DebugManager {
             lookupType, input, found, timeMs / 1_000_000.0));
     }
     
+    /**
+     * 计次计数器 name 与耗时计数器 name_nanos 的平均耗时
+     */
+    private String formatAverage(String name) {
+        long count = getCounter(name);
+        double avgMicros = count > 0 ? getCounter(name + "_nanos") / 1000.0 / count : 0;
+        return String.format("%d 次，平均 %.2fμs", count, avgMicros);
+    }
+    
     public void dumpState(CommandSender sender) {
         Audience audience = (Audience) sender;
         
@@ -282,6 +302,8 @@ public class DebugManager {
         audience.sendMessage(Component.text("  - 数据库类型: ", NamedTextColor.GRAY).append(Component.text(plugin.getDatabaseConfig().getType().name(), NamedTextColor.WHITE)));
         audience.sendMessage(Component.text("  - UUID模式: ", NamedTextColor.GRAY).append(Component.text(plugin.getDatabaseConfig().getUuidMode().name(), NamedTextColor.WHITE)));
         audience.sendMessage(Component.text("  - 调试模式: ", NamedTextColor.GRAY).append(Component.text(enabled ? "启用" : "禁用", NamedTextColor.WHITE)));
+        audience.sendMessage(Component.text("  - 定点余额: ", NamedTextColor.GRAY).append(Component.text(FixedPoint.isEnabled() ? "启用 (" + FixedPoint.getScale() + " 位小数)" : "禁用", NamedTextColor.WHITE)));
+        audience.sendMessage(Component.text("  - 余额操作: ", NamedTextColor.GRAY).append(Component.text("无锁 " + getCounter("economy_lock_free") + " 次 / 加锁 " + getCounter("economy_locked") + " 次", NamedTextColor.WHITE)));
         
         audience.sendMessage(Component.text("缓存状态:", NamedTextColor.YELLOW));
         audience.sendMessage(Component.text("  - 在线玩家缓存: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getPlayerDataManager().getOnlineAccounts().size()), NamedTextColor.WHITE)));
@@ -292,6 +314,50 @@ public class DebugManager {
             double hitRate = (double) getCounter("cache_hit") / (getCounter("cache_hit") + getCounter("cache_miss")) * 100;
             audience.sendMessage(Component.text("  - 命中率: ", NamedTextColor.GRAY).append(Component.text(String.format("%.2f%%", hitRate), NamedTextColor.WHITE)));
         }
+        OfflineAccountCache offlineCache = plugin.getPlayerDataManager().getOfflineCache();
+        if (offlineCache != null) {
+            audience.sendMessage(Component.text("  - 离线账户缓存: ", NamedTextColor.GRAY).append(Component.text(offlineCache.size() + "/" + offlineCache.getMaxSize(), NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("  - 离线缓存命中: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(offlineCache.getHits()), NamedTextColor.GREEN)));
+            audience.sendMessage(Component.text("  - 离线缓存未命中: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(offlineCache.getMisses()), NamedTextColor.RED)));
+            audience.sendMessage(Component.text("  - 离线缓存淘汰: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(offlineCache.getEvictions()), NamedTextColor.WHITE)));
+        }
+        PlaceholderRenderCache renderCache = plugin.getPlaceholderRenderCache();
+        if (renderCache != null) {
+            audience.sendMessage(Component.text("  - 变量渲染缓存: ", NamedTextColor.GRAY).append(Component.text(renderCache.size() + " 名玩家，命中 " + renderCache.getHits() + " / 未命中 " + renderCache.getMisses(), NamedTextColor.WHITE)));
+        }
+        if (plugin.getEconomyManager() != null) {
+            PeriodIncomeCache incomeCache = plugin.getEconomyManager().getIncomeCache();
+            audience.sendMessage(Component.text("  - 周/月收入缓存: ", NamedTextColor.GRAY).append(Component.text(incomeCache.size() + " 名玩家，查询 " + incomeCache.getLoads() + " 次 / 合并 " + incomeCache.getJoined() + " 次", NamedTextColor.WHITE)));
+        }
+        EconomySnapshotManager snapshotManager = plugin.getEconomySnapshotManager();
+        if (snapshotManager != null) {
+            audience.sendMessage(Component.text("  - 经济快照: ", NamedTextColor.GRAY).append(Component.text(snapshotManager.size() + " 名玩家，发布 " + snapshotManager.getBuilds() + " 次，重建 " + snapshotManager.getRebuiltEntries() + " 项", NamedTextColor.WHITE)));
+        }
+        audience.sendMessage(Component.text("  - 登录预加载: ", NamedTextColor.GRAY).append(Component.text(formatAverage("preload") + "，超时 " + getCounter("preload_timeout") + " 次", NamedTextColor.WHITE)));
+        audience.sendMessage(Component.text("  - 占位账户: ", NamedTextColor.GRAY).append(Component.text(getCounter("preload_miss") + " 次 / 重放 " + getCounter("preload_replayed") + " 次", NamedTextColor.WHITE)));
+        AccountBatchLoader batchLoader = plugin.getAccountBatchLoader();
+        if (batchLoader != null) {
+            long[] latency = batchLoader.getLatencyPercentiles(50, 95, 99);
+            audience.sendMessage(Component.text("  - 批量加载: ", NamedTextColor.GRAY).append(Component.text(batchLoader.getLoadCount() + " 个 / " + getCounter("batch_load") + " 批，最近 " + batchLoader.getLastBatchSize() + "，峰值 " + batchLoader.getPeakBatchSize() + "，队列 " + batchLoader.getQueueSize(), NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("  - 加载延迟: ", NamedTextColor.GRAY).append(Component.text(String.format("p50 %.2fms / p95 %.2fms / p99 %.2fms", latency[0] / 1e6, latency[1] / 1e6, latency[2] / 1e6), NamedTextColor.WHITE)));
+        }
+        if (plugin.getWriteBehindManager() != null) {
+            audience.sendMessage(Component.text("  - 待写入账户: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getWriteBehindManager().getPendingCount()), NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("  - 批量写入次数: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(getCounter("write_behind_flush")), NamedTextColor.WHITE)));
+        }
+        audience.sendMessage(Component.text("  - 日志队列: ", NamedTextColor.GRAY).append(Component.text(plugin.getLogManager().getQueueSize() + "/" + plugin.getLogManager().getQueueCapacity(), NamedTextColor.WHITE)));
+        audience.sendMessage(Component.text("  - 日志溢写: ", NamedTextColor.GRAY).append(Component.text(getCounter("log_spill") + " 条 / 已重放 " + getCounter("log_spill_replay") + " 条", NamedTextColor.WHITE)));
+        if (plugin.getTransferCommitWriter() != null) {
+            audience.sendMessage(Component.text("  - 转账待提交: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getTransferCommitWriter().getQueueSize()), NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("  - 转账组提交: ", NamedTextColor.GRAY).append(Component.text(getCounter("group_commit_transfer") + " 笔 / " + getCounter("group_commit_batch") + " 次提交", NamedTextColor.WHITE)));
+        }
+        
+        if (plugin.getDatabaseManager().isMySQL()) {
+            audience.sendMessage(Component.text("数据库锁:", NamedTextColor.YELLOW));
+            audience.sendMessage(Component.text("  - 加锁次数: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getDatabaseManager().getLockAcquisitionCount()), NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("  - 锁等待次数: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getDatabaseManager().getLockContentionCount()), NamedTextColor.RED)));
+            audience.sendMessage(Component.text("  - 峰值并发写入: ", NamedTextColor.GRAY).append(Component.text(String.valueOf(plugin.getDatabaseManager().getPeakActiveWriters()), NamedTextColor.WHITE)));
+        }
         
         audience.sendMessage(Component.text("同步状态:", NamedTextColor.YELLOW));
         boolean syncEnabled = plugin.getDatabaseConfig().isSyncEnabled();
@@ -301,6 +367,35 @@ public class DebugManager {
                 .append(Component.text(plugin.getRedisSyncManager().isRunning() ? "正常" : "断开", NamedTextColor.WHITE)));
             audience.sendMessage(Component.text("  - 服务器ID: ", NamedTextColor.GRAY)
                 .append(Component.text(plugin.getDatabaseConfig().getServerId(), NamedTextColor.WHITE)));
+            RedisSyncPublisher publisher = plugin.getRedisSyncManager().getPublisher();
+            if (publisher != null) {
+                audience.sendMessage(Component.text("  - 发布队列: ", NamedTextColor.GRAY)
+                    .append(Component.text(String.valueOf(publisher.getQueueSize()), NamedTextColor.WHITE)));
+                audience.sendMessage(Component.text("  - 批次大小: ", NamedTextColor.GRAY)
+                    .append(Component.text("最近 " + publisher.getLastBatchSize() + " / 峰值 " + publisher.getPeakBatchSize(), NamedTextColor.WHITE)));
+                audience.sendMessage(Component.text("  - 消息发布: ", NamedTextColor.GRAY)
+                    .append(Component.text(getCounter("redis_publish_enqueued") + " 条入队 / " + getCounter("redis_publish_sent")
+                        + " 条发送 / " + getCounter("redis_publish_batch") + " 次往返", NamedTextColor.WHITE)));
+            }
+            if (getCounter("sync_sign") + getCounter("sync_verify") > 0) {
+                audience.sendMessage(Component.text("  - 签名: ", NamedTextColor.GRAY)
+                    .append(Component.text(formatAverage("sync_sign"), NamedTextColor.WHITE)));
+                audience.sendMessage(Component.text("  - 验签: ", NamedTextColor.GRAY)
+                    .append(Component.text(formatAverage("sync_verify") + "，旧密钥通过 " + getCounter("sync_verify_previous_key") + " 次", NamedTextColor.WHITE)));
+            }
+            audience.sendMessage(Component.text("  - 版本同步: ", NamedTextColor.GRAY)
+                .append(Component.text("过期消息丢弃 " + getCounter("sync_stale_ignored") + " 条 / 写库冲突 " + getCounter("account_version_conflict") + " 次", NamedTextColor.WHITE)));
+            SharedAccountCache sharedCache = plugin.getSharedAccountCache();
+            if (sharedCache != null) {
+                audience.sendMessage(Component.text("  - 共享账户缓存: ", NamedTextColor.GRAY)
+                    .append(Component.text("命中 " + sharedCache.getHits() + " / 未命中 " + sharedCache.getMisses()
+                        + " / 已写回 " + sharedCache.getDrained() + (sharedCache.isWriter() ? "（写库节点）" : ""), NamedTextColor.WHITE)));
+            }
+            if (plugin.getDatabaseConfig().isDeltaSync()) {
+                audience.sendMessage(Component.text("  - 增量同步: ", NamedTextColor.GRAY)
+                    .append(Component.text("已应用 " + getCounter("sync_delta_applied") + " / 重复 " + getCounter("sync_delta_duplicate")
+                        + " / 去重记录 " + plugin.getRedisSyncManager().getSeenOperationCount(), NamedTextColor.WHITE)));
+            }
         }
         
         audience.sendMessage(Component.text("货币配置:", NamedTextColor.YELLOW));
@@ -0,0 +1,92 @@
+package com.oolonghoo.wooeco.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 定点余额换算
+ * 启用后账户余额以最小货币单位（long）存储，小数位数在启动时确定，
+ * 只在 API、数据库和事件边界换算为 BigDecimal
+ */
+public final class FixedPoint {
+
+    /** 10^18 以内的幂，超出后 long 无法表示 1 个货币单位 */
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** toUnitsExact 无法精确换算时的返回值（余额与金额不会为 Long.MIN_VALUE） */
+    public static final long NOT_EXACT = Long.MIN_VALUE;
+
+    /** 启用时的小数位数，-1 表示未启用 */
+    private static volatile int scale = -1;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * 启用定点余额；最大余额换算后超出 long 范围时不启用
+     *
+     * @return 是否已启用
+     */
+    public static boolean enable(int decimalPlaces, BigDecimal maxBalance) {
+        if (decimalPlaces < 0 || decimalPlaces >= POW10.length) {
+            return false;
+        }
+        try {
+            maxBalance.setScale(decimalPlaces, RoundingMode.DOWN).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        scale = decimalPlaces;
+        return true;
+    }
+
+    public static void disable() {
+        scale = -1;
+    }
+
+    public static boolean isEnabled() {
+        return scale >= 0;
+    }
+
+    public static int getScale() {
+        return scale;
+    }
+
+    /**
+     * 换算为最小货币单位，多余的小数位向零舍去
+     *
+     * @throws ArithmeticException 超出 long 范围
+     */
+    public static long toUnits(BigDecimal amount, int scale) {
+        return amount.setScale(scale, RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 金额恰好能以最小货币单位表示时返回换算结果，否则返回 NOT_EXACT（有多余小数位或超出范围）
+     */
+    public static long toUnitsExact(BigDecimal amount, int scale) {
+        if (amount.scale() > scale && amount.stripTrailingZeros().scale() > scale) {
+            return NOT_EXACT;
+        }
+        try {
+            return toUnits(amount, scale);
+        } catch (ArithmeticException e) {
+            return NOT_EXACT;
+        }
+    }
+
+    public static BigDecimal toDecimal(long units, int scale) {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    public static double toDouble(long units, int scale) {
+        return (double) units / POW10[scale];
+    }
+}
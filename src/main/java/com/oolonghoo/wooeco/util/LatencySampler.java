@@ -0,0 +1,55 @@
+package com.oolonghoo.wooeco.util;
+
+import java.util.Arrays;
+
+/**
+ * 延迟采样器 (线程安全)
+ * 在环形缓冲区中保留最近 capacity 个样本，按需排序计算百分位，记录操作为 O(1)
+ */
+public class LatencySampler {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long total;
+
+    public LatencySampler(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        total++;
+    }
+
+    /**
+     * 累计记录的样本数（含已被覆盖的旧样本）
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * 计算最近样本的多个百分位（0-100），没有样本时全部为 0
+     */
+    public long[] percentiles(double... percents) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        long[] result = new long[percents.length];
+        if (sorted.length == 0) {
+            return result;
+        }
+        for (int i = 0; i < percents.length; i++) {
+            int index = (int) Math.ceil(percents[i] / 100.0 * sorted.length) - 1;
+            result[i] = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package com.oolonghoo.wooeco.database.dao;
+
+import com.oolonghoo.wooeco.database.dao.PlayerDAO.AccountSnapshot;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO.PersistedState;
+import com.oolonghoo.wooeco.database.dao.PlayerDAO.Resolution;
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 写库比较并交换未命中时的冲突处理：只改写快照，账户在提交后才按快照更新
+ */
+class PlayerDAOResolveTest {
+
+    private static BigDecimal money(String value) {
+        return new BigDecimal(value);
+    }
+
+    /**
+     * 从数据库加载 v3、余额 100 的账户
+     */
+    private static PlayerAccount loaded() {
+        return new PlayerAccount(UUID.randomUUID(), "Steve", money("100"), BigDecimal.ZERO, 0L, 0L, 0L, 3L);
+    }
+
+    @Test
+    void rebaseRewritesSnapshotWithoutTouchingAccount() {
+        PlayerAccount account = loaded();
+        account.setBalance(money("110"));
+        AccountSnapshot snapshot = new AccountSnapshot(account);
+
+        Resolution resolution = PlayerDAO.resolve(snapshot, new PersistedState(money("150"), 5), account.getPersistedVersion());
+
+        assertEquals(Resolution.REBASE, resolution);
+        assertEquals(0, money("160").compareTo(snapshot.balance));
+        assertEquals(6, snapshot.version);
+        assertEquals(5, snapshot.expectedVersion);
+        assertTrue(snapshot.rewritten);
+        // 提交前账户保持原样，回滚后下一次保存仍以 v3 为期望版本
+        assertEquals(0, money("110").compareTo(account.getBalance()));
+        assertEquals(4, account.getVersion());
+        assertEquals(3, account.getPersistedVersion());
+    }
+
+    @Test
+    void rebaseAfterCommitKeepsChangesMadeSinceSnapshot() {
+        PlayerAccount account = loaded();
+        account.setBalance(money("110"));
+        AccountSnapshot snapshot = new AccountSnapshot(account);
+        PlayerDAO.resolve(snapshot, new PersistedState(money("150"), 5), account.getPersistedVersion());
+        // 写库期间本地又增加 5
+        account.setBalance(money("115"));
+
+        boolean settled = account.rebaseOnPersisted(snapshot.balance, snapshot.version, snapshot.delta, snapshot.snapshotVersion);
+
+        assertFalse(settled);
+        assertEquals(0, money("165").compareTo(account.getBalance()));
+        assertEquals(0, money("5").compareTo(account.getUnpersistedDelta()));
+        assertEquals(7, account.getVersion());
+        assertEquals(6, account.getPersistedVersion());
+    }
+
+    @Test
+    void adoptRecordsPersistedStateOnSnapshot() {
+        PlayerAccount account = loaded();
+        AccountSnapshot snapshot = new AccountSnapshot(account);
+
+        Resolution resolution = PlayerDAO.resolve(snapshot, new PersistedState(money("150"), 5), account.getPersistedVersion());
+
+        assertEquals(Resolution.ADOPT, resolution);
+        assertEquals(0, money("150").compareTo(snapshot.balance));
+        assertEquals(5, snapshot.version);
+        assertEquals(0, money("100").compareTo(account.getBalance()));
+        assertEquals(3, account.getVersion());
+
+        assertTrue(account.rebaseOnPersisted(snapshot.balance, snapshot.version, BigDecimal.ZERO, snapshot.snapshotVersion));
+        assertEquals(0, money("150").compareTo(account.getBalance()));
+        assertEquals(5, account.getVersion());
+        assertEquals(5, account.getPersistedVersion());
+    }
+
+    @Test
+    void snapshotOlderThanLocalWriteIsStale() {
+        PlayerAccount account = loaded();
+        account.setBalance(money("110"));
+        AccountSnapshot snapshot = new AccountSnapshot(account);
+        // 快照之后本服务器已写入 v5
+        account.markPersisted(5);
+
+        Resolution resolution = PlayerDAO.resolve(snapshot, new PersistedState(money("120"), 5), account.getPersistedVersion());
+
+        assertEquals(Resolution.STALE, resolution);
+    }
+
+    @Test
+    void replayedAccountIsRebasedOntoNewerRow() {
+        // 崩溃前：从 v3 / 100 加载，本地增加 25 到 v4 后写入日志；其他服务器随后把数据库写到 v6 / 300
+        PlayerAccount replayed = PlayerAccount.recovered(UUID.randomUUID(), "Steve", money("125"), BigDecimal.ZERO,
+            0L, 0L, 0L, 4L, 3L, money("25"));
+        AccountSnapshot snapshot = new AccountSnapshot(replayed);
+
+        Resolution resolution = PlayerDAO.resolve(snapshot, new PersistedState(money("300"), 6), replayed.getPersistedVersion());
+
+        assertEquals(Resolution.REBASE, resolution);
+        assertEquals(0, money("325").compareTo(snapshot.balance));
+        assertEquals(7, snapshot.version);
+        assertEquals(6, snapshot.expectedVersion);
+    }
+
+    @Test
+    void missingRowIsInserted() {
+        AccountSnapshot snapshot = new AccountSnapshot(new PlayerAccount(UUID.randomUUID(), "Alex"));
+
+        assertEquals(Resolution.INSERT, PlayerDAO.resolve(snapshot, null, -1));
+    }
+}
@@ -0,0 +1,75 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 未缓存账户的远程增量：读取之前收到的等待写库后由读取带回，读取之后收到的在放入缓存时补记
+ */
+class RemoteDeltaBufferTest {
+
+    private static final long SETTLE_MS = 50;
+
+    private final UUID uuid = UUID.randomUUID();
+    private final RemoteDeltaBuffer buffer = new RemoteDeltaBuffer(SETTLE_MS);
+
+    private PlayerAccount account(String balance) {
+        return new PlayerAccount(uuid, "Steve", new BigDecimal(balance), BigDecimal.ZERO, 0L, 0L, 0L, 1L);
+    }
+
+    @Test
+    void cachedAccountReceivesDeltaDirectly() {
+        PlayerAccount cached = account("10");
+
+        PlayerAccount applied = buffer.applyOrBuffer(uuid, new BigDecimal("5"), key -> cached);
+
+        assertSame(cached, applied);
+        assertEquals(0, new BigDecimal("15").compareTo(cached.getBalance()));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void deltaReceivedAfterReadIsReplayedOnDrain() {
+        buffer.awaitSettled(List.of(uuid));
+        PlayerAccount loaded = account("10");
+
+        assertNull(buffer.applyOrBuffer(uuid, new BigDecimal("5"), key -> null));
+
+        assertEquals(0, new BigDecimal("5").compareTo(buffer.drain(loaded)));
+        assertEquals(0, new BigDecimal("15").compareTo(loaded.getBalance()));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void deltaReceivedBeforeReadWaitsForPublisherAndIsNotReplayed() {
+        buffer.applyOrBuffer(uuid, new BigDecimal("5"), key -> null);
+
+        long start = System.currentTimeMillis();
+        buffer.awaitSettled(List.of(uuid));
+
+        assertTrue(System.currentTimeMillis() - start >= SETTLE_MS - 5);
+        // 发布方已写库，读取到的余额已包含该增量
+        PlayerAccount loaded = account("15");
+        assertEquals(0, buffer.drain(loaded).signum());
+        assertEquals(0, new BigDecimal("15").compareTo(loaded.getBalance()));
+    }
+
+    @Test
+    void settledDeltasAreEvicted() throws InterruptedException {
+        buffer.applyOrBuffer(uuid, new BigDecimal("5"), key -> null);
+
+        Thread.sleep(SETTLE_MS + 10);
+        buffer.evictSettled();
+
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,280 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import com.oolonghoo.wooeco.sync.MemoryAccountStore;
+import com.oolonghoo.wooeco.sync.StoredAccount;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 共享账户缓存层在进程内缓存模拟上的行为：保存只写缓存、认领写库与确认、清空缓存保留待写库账户、冲突处理
+ */
+class SharedAccountCacheTest {
+
+    private static final String SERVER = "server-1";
+
+    private final UUID uuid = UUID.randomUUID();
+    private final MemoryAccountStore store = new MemoryAccountStore();
+    private final MemoryDatabase database = new MemoryDatabase();
+
+    private static BigDecimal money(String value) {
+        return new BigDecimal(value);
+    }
+
+    private static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    private SharedAccountCache cache(boolean deltaSync) {
+        return new SharedAccountCache(store, database, quietLogger(), SERVER, 100, deltaSync);
+    }
+
+    @Test
+    void saveAllWritesCacheAndDrainWritesDatabase() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount account = cache.load(uuid);
+        account.setBalance(money("150"));
+
+        cache.saveAll(List.of(account));
+
+        assertEquals(0, database.saves);
+        assertEquals(0, money("150").compareTo(store.load(uuid).getBalance()));
+        assertEquals(0, money("100").compareTo(database.balance(uuid)));
+
+        cache.drain();
+
+        assertEquals(0, money("150").compareTo(database.balance(uuid)));
+        assertEquals(4, database.version(uuid));
+        StoredAccount stored = store.load(uuid);
+        assertEquals(4, stored.getPersistedVersion());
+        assertEquals(0, money("150").compareTo(stored.getPersistedBalance()));
+        assertTrue(store.claimDirty(SERVER, 10).isEmpty());
+        assertEquals(0, store.recoverInFlight(SERVER));
+    }
+
+    @Test
+    void drainRebasesOntoRowChangedOutsideCache() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount account = cache.load(uuid);
+        account.setBalance(money("150"));
+        cache.saveAll(List.of(account));
+        // 其他途径（如共享缓存不可用时的直接写库）把数据库改为 v5 / 300
+        database.put(uuid, money("300"), 5);
+
+        cache.drain();
+
+        // 缓存中的 +50 叠加到数据库余额上，而不是以缓存余额覆盖
+        assertEquals(0, money("350").compareTo(database.balance(uuid)));
+        assertEquals(6, database.version(uuid));
+        StoredAccount stored = store.load(uuid);
+        assertEquals(0, money("350").compareTo(stored.getBalance()));
+        assertEquals(6, stored.getPersistedVersion());
+        assertTrue(stored.getVersion() >= 6);
+    }
+
+    @Test
+    void saveDeltaMergesChangesFromTwoServers() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(true);
+        PlayerAccount first = cache.load(uuid);
+        PlayerAccount second = cache.load(uuid);
+        first.setBalance(money("110"));
+        second.setBalance(money("120"));
+
+        cache.saveAll(List.of(first));
+        cache.saveAll(List.of(second));
+
+        assertEquals(0, money("130").compareTo(store.load(uuid).getBalance()));
+        assertEquals(0, first.getUnpersistedDelta().signum());
+        assertEquals(0, second.getUnpersistedDelta().signum());
+
+        cache.drain();
+
+        assertEquals(0, money("130").compareTo(database.balance(uuid)));
+    }
+
+    @Test
+    void saveDeltaAdoptsCacheWhenOtherServerSpentFirst() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(true);
+        PlayerAccount first = cache.load(uuid);
+        PlayerAccount second = cache.load(uuid);
+        first.setBalance(money("0"));
+        second.setBalance(money("50"));
+
+        cache.saveAll(List.of(first));
+        cache.saveAll(List.of(second));
+
+        // 第二个服务器的扣减无法完成，采用缓存中的余额
+        assertEquals(0, store.load(uuid).getBalance().signum());
+        assertEquals(0, second.getBalance().signum());
+        assertEquals(1, database.counter("account_version_conflict"));
+    }
+
+    @Test
+    void saveAbsoluteAdoptsNewerCachedVersion() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount first = cache.load(uuid);
+        PlayerAccount second = cache.load(uuid);
+        first.setBalance(money("110"));
+        first.setBalance(money("120"));
+        cache.saveAll(List.of(first));
+        second.setBalance(money("90"));
+
+        cache.saveAll(List.of(second));
+
+        assertEquals(0, money("120").compareTo(second.getBalance()));
+        assertEquals(0, money("120").compareTo(store.load(uuid).getBalance()));
+        assertEquals(1, database.counter("account_version_conflict"));
+    }
+
+    @Test
+    void invalidateAllKeepsUnflushedAccounts() throws SQLException {
+        UUID clean = UUID.randomUUID();
+        database.put(uuid, money("100"), 3);
+        database.put(clean, money("10"), 1);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount account = cache.load(uuid);
+        cache.load(clean);
+        account.setBalance(money("150"));
+        cache.saveAll(List.of(account));
+
+        cache.invalidateAll();
+
+        assertNull(store.load(clean));
+        assertNotNull(store.load(uuid));
+        cache.drain();
+        assertEquals(0, money("150").compareTo(database.balance(uuid)));
+    }
+
+    @Test
+    void failedDrainReleasesClaimedAccounts() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount account = cache.load(uuid);
+        account.setBalance(money("150"));
+        cache.saveAll(List.of(account));
+        database.failNext = true;
+
+        cache.drain();
+
+        assertEquals(0, money("100").compareTo(database.balance(uuid)));
+        assertEquals(0, store.recoverInFlight(SERVER));
+        cache.drain();
+        assertEquals(0, money("150").compareTo(database.balance(uuid)));
+    }
+
+    @Test
+    void claimedAccountMissingFromCacheIsCountedAndPruned() throws SQLException {
+        database.put(uuid, money("100"), 3);
+        SharedAccountCache cache = cache(false);
+        PlayerAccount account = cache.load(uuid);
+        account.setBalance(money("150"));
+        cache.saveAll(List.of(account));
+        store.expire(uuid);
+
+        cache.drain();
+
+        assertEquals(1, database.counter("account_cache_expired_dirty"));
+        assertEquals(1, database.counter("account_cache_index_pruned"));
+        assertEquals(0, store.indexSize());
+        assertEquals(0, store.recoverInFlight(SERVER));
+        assertEquals(0, money("100").compareTo(database.balance(uuid)));
+    }
+
+    /**
+     * 数据库模拟：按 PlayerDAO 的规则写入，期望版本命中时比较并交换，
+     * 版本未知时以本地为准，数据库被修改过时把本地增量叠加到数据库余额上
+     */
+    private static final class MemoryDatabase implements SharedAccountCache.Backend {
+        private final Map<UUID, BigDecimal> balances = new HashMap<>();
+        private final Map<UUID, Long> versions = new HashMap<>();
+        private final Map<String, Long> counters = new HashMap<>();
+        private int saves;
+        private boolean failNext;
+
+        synchronized void put(UUID uuid, BigDecimal balance, long version) {
+            balances.put(uuid, balance);
+            versions.put(uuid, version);
+        }
+
+        synchronized BigDecimal balance(UUID uuid) {
+            return balances.get(uuid);
+        }
+
+        synchronized long version(UUID uuid) {
+            return versions.get(uuid);
+        }
+
+        synchronized long counter(String name) {
+            return counters.getOrDefault(name, 0L);
+        }
+
+        @Override
+        public synchronized PlayerAccount loadAccount(UUID uuid) {
+            BigDecimal balance = balances.get(uuid);
+            return balance == null ? null
+                : new PlayerAccount(uuid, "Steve", balance, BigDecimal.ZERO, 0L, 0L, 0L, versions.get(uuid));
+        }
+
+        @Override
+        public synchronized void saveAccounts(List<PlayerAccount> accounts) throws SQLException {
+            if (failNext) {
+                failNext = false;
+                throw new SQLException("connection lost");
+            }
+            if (accounts.isEmpty()) {
+                return;
+            }
+            saves++;
+            for (PlayerAccount account : accounts) {
+                UUID uuid = account.getUuid();
+                long snapshotVersion = account.getVersion();
+                long expected = account.getPersistedVersion();
+                BigDecimal delta = account.getUnpersistedDelta();
+                Long current = versions.get(uuid);
+                if (current == null || expected < 0) {
+                    long version = current == null ? snapshotVersion : Math.max(snapshotVersion, current + 1);
+                    put(uuid, account.getBalance(), version);
+                    account.rebaseOnPersisted(account.getBalance(), version, delta, snapshotVersion);
+                } else if (current == expected) {
+                    put(uuid, account.getBalance(), snapshotVersion);
+                    account.markPersisted(snapshotVersion);
+                    account.commitDelta(delta);
+                } else {
+                    BigDecimal balance = balances.get(uuid).add(delta);
+                    put(uuid, balance, current + 1);
+                    account.rebaseOnPersisted(balance, current + 1, delta, snapshotVersion);
+                }
+                account.markSaved();
+            }
+        }
+
+        @Override
+        public synchronized void incrementCounter(String name, long delta) {
+            counters.merge(name, delta, Long::sum);
+        }
+
+        @Override
+        public void databaseTiming(String operation, String detail, long nanos) {
+        }
+    }
+}
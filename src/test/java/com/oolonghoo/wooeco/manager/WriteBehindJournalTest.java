@@ -0,0 +1,52 @@
+package com.oolonghoo.wooeco.manager;
+
+import com.oolonghoo.wooeco.model.PlayerAccount;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 延迟写入日志行的格式：重放得到的账户保留崩溃前的版本、已持久化版本和未写入增量
+ */
+class WriteBehindJournalTest {
+
+    @Test
+    void replayedAccountKeepsVersionsAndDelta() {
+        PlayerAccount account = new PlayerAccount(UUID.randomUUID(), "Steve", new BigDecimal("100"),
+            new BigDecimal("7"), 11L, 22L, 33L, 3L);
+        account.setBalance(new BigDecimal("125.50"));
+
+        PlayerAccount replayed = WriteBehindManager.parseJournalLine(WriteBehindManager.formatJournalLine(account));
+
+        assertEquals(account.getUuid(), replayed.getUuid());
+        assertEquals("Steve", replayed.getPlayerName());
+        assertEquals(0, new BigDecimal("125.50").compareTo(replayed.getBalance()));
+        assertEquals(0, new BigDecimal("7").compareTo(replayed.getDailyIncome()));
+        assertEquals(11L, replayed.getLastIncomeReset());
+        assertEquals(22L, replayed.getCreatedAt());
+        assertEquals(4L, replayed.getVersion());
+        assertEquals(3L, replayed.getPersistedVersion());
+        assertEquals(0, new BigDecimal("25.50").compareTo(replayed.getUnpersistedDelta()));
+        assertTrue(replayed.isDirty());
+    }
+
+    @Test
+    void legacyLineReplaysWithUnknownVersion() {
+        UUID uuid = UUID.randomUUID();
+
+        PlayerAccount replayed = WriteBehindManager.parseJournalLine(uuid + "|Steve|10.00|0|1|2");
+
+        assertEquals(uuid, replayed.getUuid());
+        assertEquals(-1L, replayed.getPersistedVersion());
+    }
+
+    @Test
+    void lineWithWrongColumnCountIsSkipped() {
+        assertNull(WriteBehindManager.parseJournalLine("a|b|c"));
+    }
+}
@@ -0,0 +1,208 @@
+package com.oolonghoo.wooeco.sync;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 进程内的共享账户缓存模拟，语义与 {@link RedisAccountStore} 的 Lua 脚本一致，仅用于测试
+ */
+public class MemoryAccountStore implements AccountStore {
+
+    private final Map<UUID, StoredAccount> accounts = new HashMap<>();
+    private final Set<UUID> dirty = new LinkedHashSet<>();
+    private final Set<UUID> index = new LinkedHashSet<>();
+
+    private final Map<String, Set<UUID>> inFlight = new HashMap<>();
+
+    private String writer;
+    private String lastWriter;
+    private long writerExpiresAt;
+
+    @Override
+    public synchronized StoredAccount load(UUID uuid) {
+        return accounts.get(uuid);
+    }
+
+    @Override
+    public synchronized void putIfAbsent(StoredAccount account) {
+        if (accounts.containsKey(account.getUuid())) {
+            return;
+        }
+        accounts.put(account.getUuid(), withPersisted(account, account.getVersion(), account.getBalance()));
+        index.add(account.getUuid());
+    }
+
+    @Override
+    public synchronized StoredAccount saveIfNewer(StoredAccount account) {
+        StoredAccount current = accounts.get(account.getUuid());
+        if (current != null && current.getVersion() > account.getVersion()) {
+            return current;
+        }
+        accounts.put(account.getUuid(), current != null
+            ? withPersisted(account, current.getPersistedVersion(), current.getPersistedBalance())
+            : account);
+        dirty.add(account.getUuid());
+        index.add(account.getUuid());
+        return null;
+    }
+
+    @Override
+    public synchronized DeltaResult applyDelta(UUID uuid, BigDecimal delta, String playerName,
+                                               BigDecimal dailyIncome, long lastIncomeReset) {
+        StoredAccount current = accounts.get(uuid);
+        if (current == null) {
+            return new DeltaResult(DeltaStatus.MISSING, null);
+        }
+        BigDecimal balance = current.getBalance().add(delta);
+        if (delta.signum() < 0 && balance.signum() < 0) {
+            return new DeltaResult(DeltaStatus.INSUFFICIENT, current);
+        }
+        StoredAccount updated = new StoredAccount(uuid, playerName, balance, dailyIncome, lastIncomeReset,
+            current.getCreatedAt(), current.getVersion() + 1, current.getPersistedVersion(), current.getPersistedBalance());
+        accounts.put(uuid, updated);
+        dirty.add(uuid);
+        return new DeltaResult(DeltaStatus.APPLIED, updated);
+    }
+
+    @Override
+    public synchronized boolean tryAcquireWriter(String serverId, long leaseMs) {
+        long now = System.currentTimeMillis();
+        if (writer != null && writer.equals(serverId) && now < writerExpiresAt) {
+            writerExpiresAt = now + leaseMs;
+            return true;
+        }
+        if (writer == null || now >= writerExpiresAt) {
+            writer = serverId;
+            writerExpiresAt = now + leaseMs;
+            if (lastWriter != null && !lastWriter.equals(serverId)) {
+                recoverInFlight(lastWriter);
+            }
+            lastWriter = serverId;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized List<UUID> claimDirty(String serverId, int max) {
+        List<UUID> result = new ArrayList<>(Math.min(max, dirty.size()));
+        Set<UUID> claimed = inFlight.computeIfAbsent(serverId, k -> new LinkedHashSet<>());
+        Iterator<UUID> it = dirty.iterator();
+        while (it.hasNext() && result.size() < max) {
+            UUID uuid = it.next();
+            it.remove();
+            claimed.add(uuid);
+            result.add(uuid);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void markPersisted(UUID uuid, long persistedVersion, BigDecimal persistedBalance,
+                                           BigDecimal adjustment) {
+        StoredAccount current = accounts.get(uuid);
+        if (current == null) {
+            return;
+        }
+        BigDecimal balance = current.getBalance().add(adjustment);
+        long version = current.getVersion() + (adjustment.signum() != 0 ? 1 : 0);
+        long persisted = current.getPersistedVersion();
+        BigDecimal persistedAt = current.getPersistedBalance();
+        if (persisted <= persistedVersion) {
+            persisted = persistedVersion;
+            persistedAt = persistedBalance;
+            version = Math.max(version, persistedVersion);
+        }
+        accounts.put(uuid, new StoredAccount(uuid, current.getPlayerName(), balance, current.getDailyIncome(),
+            current.getLastIncomeReset(), current.getCreatedAt(), version, persisted, persistedAt));
+    }
+
+    @Override
+    public synchronized void ackDirty(String serverId, Collection<UUID> uuids) {
+        Set<UUID> claimed = inFlight.get(serverId);
+        if (claimed != null) {
+            claimed.removeAll(uuids);
+        }
+    }
+
+    @Override
+    public synchronized void releaseDirty(String serverId, Collection<UUID> uuids) {
+        Set<UUID> claimed = inFlight.get(serverId);
+        if (claimed == null) {
+            return;
+        }
+        for (UUID uuid : uuids) {
+            if (claimed.remove(uuid)) {
+                dirty.add(uuid);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int recoverInFlight(String serverId) {
+        Set<UUID> claimed = inFlight.remove(serverId);
+        if (claimed == null) {
+            return 0;
+        }
+        dirty.addAll(claimed);
+        return claimed.size();
+    }
+
+    @Override
+    public synchronized int invalidateAll() {
+        int kept = 0;
+        Iterator<UUID> it = accounts.keySet().iterator();
+        while (it.hasNext()) {
+            UUID uuid = it.next();
+            if (dirty.contains(uuid) || inFlight.values().stream().anyMatch(claimed -> claimed.contains(uuid))) {
+                kept++;
+            } else {
+                it.remove();
+                index.remove(uuid);
+            }
+        }
+        return kept;
+    }
+
+    @Override
+    public synchronized int pruneIndex(int sample) {
+        int removed = 0;
+        int checked = 0;
+        Iterator<UUID> it = index.iterator();
+        while (it.hasNext() && checked++ < sample) {
+            if (!accounts.containsKey(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 模拟缓存过期：删除账户，索引与待写库集合保持不变
+     */
+    public synchronized void expire(UUID uuid) {
+        accounts.remove(uuid);
+    }
+
+    public synchronized int indexSize() {
+        return index.size();
+    }
+
+    private static StoredAccount withPersisted(StoredAccount account, long persistedVersion, BigDecimal persistedBalance) {
+        return new StoredAccount(account.getUuid(), account.getPlayerName(), account.getBalance(), account.getDailyIncome(),
+            account.getLastIncomeReset(), account.getCreatedAt(), account.getVersion(), persistedVersion, persistedBalance);
+    }
+
+    @Override
+    public void close() {
+    }
+}
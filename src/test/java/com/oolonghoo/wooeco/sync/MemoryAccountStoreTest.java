@@ -0,0 +1,175 @@
+package com.oolonghoo.wooeco.sync;
+
+import com.oolonghoo.wooeco.sync.AccountStore.DeltaResult;
+import com.oolonghoo.wooeco.sync.AccountStore.DeltaStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 共享账户缓存的语义测试：版本比较写入、检查并扣减、写库认领与租约换手
+ */
+class MemoryAccountStoreTest {
+
+    private final UUID uuid = UUID.randomUUID();
+    private MemoryAccountStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MemoryAccountStore();
+    }
+
+    private StoredAccount account(String balance, long version) {
+        return new StoredAccount(uuid, "Steve", new BigDecimal(balance), BigDecimal.ZERO, 0L, 0L, version);
+    }
+
+    @Test
+    void saveIfNewerWritesEqualOrHigherVersion() {
+        assertNull(store.saveIfNewer(account("10.00", 1)));
+        assertNull(store.saveIfNewer(account("20.00", 1)));
+        assertNull(store.saveIfNewer(account("30.00", 2)));
+
+        StoredAccount stored = store.load(uuid);
+        assertEquals(new BigDecimal("30.00"), stored.getBalance());
+        assertEquals(2, stored.getVersion());
+    }
+
+    @Test
+    void saveIfNewerReturnsHigherCachedVersion() {
+        store.saveIfNewer(account("30.00", 5));
+
+        StoredAccount newer = store.saveIfNewer(account("10.00", 4));
+
+        assertNotNull(newer);
+        assertEquals(5, newer.getVersion());
+        assertEquals(new BigDecimal("30.00"), store.load(uuid).getBalance());
+    }
+
+    @Test
+    void applyDeltaDecrementsWhenBalanceSuffices() {
+        store.putIfAbsent(account("10.00", 1));
+
+        DeltaResult result = store.applyDelta(uuid, new BigDecimal("-10.00"), "Steve", BigDecimal.ZERO, 0L);
+
+        assertEquals(DeltaStatus.APPLIED, result.getStatus());
+        assertEquals(0, result.getState().getBalance().signum());
+        assertEquals(2, result.getState().getVersion());
+    }
+
+    @Test
+    void applyDeltaRejectsOverdraftWithoutChangingBalance() {
+        store.putIfAbsent(account("10.00", 1));
+
+        DeltaResult result = store.applyDelta(uuid, new BigDecimal("-10.01"), "Steve", BigDecimal.ZERO, 0L);
+
+        assertEquals(DeltaStatus.INSUFFICIENT, result.getStatus());
+        assertEquals(new BigDecimal("10.00"), store.load(uuid).getBalance());
+        assertEquals(1, store.load(uuid).getVersion());
+        assertTrue(store.claimDirty("server-1", 10).isEmpty());
+    }
+
+    @Test
+    void applyDeltaReportsMissingAccount() {
+        DeltaResult result = store.applyDelta(uuid, BigDecimal.ONE, "Steve", BigDecimal.ZERO, 0L);
+
+        assertEquals(DeltaStatus.MISSING, result.getStatus());
+        assertNull(result.getState());
+    }
+
+    @Test
+    void leaseIsExclusiveUntilItExpires() {
+        assertTrue(store.tryAcquireWriter("server-1", 60_000));
+        assertTrue(store.tryAcquireWriter("server-1", 60_000));
+        assertFalse(store.tryAcquireWriter("server-2", 60_000));
+    }
+
+    @Test
+    void leaseTakeoverRecoversPreviousWritersInFlightAccounts() {
+        store.saveIfNewer(account("10.00", 1));
+        assertTrue(store.tryAcquireWriter("server-1", 0));
+        assertEquals(List.of(uuid), store.claimDirty("server-1", 10));
+
+        // server-1 在确认写库前停止续约，租约过期后由 server-2 接管
+        assertTrue(store.tryAcquireWriter("server-2", 60_000));
+
+        assertEquals(List.of(uuid), store.claimDirty("server-2", 10));
+    }
+
+    @Test
+    void claimedAccountsStayInFlightUntilAcknowledged() {
+        store.saveIfNewer(account("10.00", 1));
+
+        List<UUID> claimed = store.claimDirty("server-1", 10);
+        assertEquals(List.of(uuid), claimed);
+        assertTrue(store.claimDirty("server-1", 10).isEmpty());
+        assertEquals(1, store.invalidateAll());
+
+        store.ackDirty("server-1", claimed);
+
+        assertEquals(0, store.recoverInFlight("server-1"));
+        assertEquals(0, store.invalidateAll());
+        assertNull(store.load(uuid));
+    }
+
+    @Test
+    void releasedAccountsReturnToDirtySet() {
+        store.saveIfNewer(account("10.00", 1));
+        List<UUID> claimed = store.claimDirty("server-1", 10);
+
+        store.releaseDirty("server-1", claimed);
+
+        assertEquals(List.of(uuid), store.claimDirty("server-2", 10));
+    }
+
+    @Test
+    void invalidateAllKeepsDirtyAccounts() {
+        UUID clean = UUID.randomUUID();
+        store.putIfAbsent(new StoredAccount(clean, "Alex", BigDecimal.ONE, BigDecimal.ZERO, 0L, 0L, 1));
+        store.saveIfNewer(account("10.00", 1));
+
+        assertEquals(1, store.invalidateAll());
+
+        assertNull(store.load(clean));
+        assertNotNull(store.load(uuid));
+        assertEquals(List.of(uuid), store.claimDirty("server-1", 10));
+    }
+
+    @Test
+    void persistedStateSurvivesSavesAndAdvancesOnMark() {
+        store.putIfAbsent(account("10.00", 3));
+        store.saveIfNewer(account("15.00", 4));
+
+        StoredAccount stored = store.load(uuid);
+        assertEquals(3, stored.getPersistedVersion());
+        assertEquals(new BigDecimal("10.00"), stored.getPersistedBalance());
+
+        // 写库时数据库已被其他途径加了 20，冲突处理叠加后写入 v5 / 35
+        store.markPersisted(uuid, 5, new BigDecimal("35.00"), new BigDecimal("20.00"));
+
+        stored = store.load(uuid);
+        assertEquals(new BigDecimal("35.00"), stored.getBalance());
+        assertEquals(5, stored.getVersion());
+        assertEquals(5, stored.getPersistedVersion());
+        assertEquals(new BigDecimal("35.00"), stored.getPersistedBalance());
+    }
+
+    @Test
+    void pruneIndexRemovesExpiredAccounts() {
+        UUID expired = UUID.randomUUID();
+        store.putIfAbsent(account("10.00", 1));
+        store.putIfAbsent(new StoredAccount(expired, "Alex", BigDecimal.ONE, BigDecimal.ZERO, 0L, 0L, 1));
+        store.expire(expired);
+
+        assertEquals(1, store.pruneIndex(10));
+        assertEquals(1, store.indexSize());
+    }
+}